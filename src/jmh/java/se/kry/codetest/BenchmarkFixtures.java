@@ -0,0 +1,82 @@
+package se.kry.codetest;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceRepository;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Collections.nCopies;
+
+/**
+ * What the benchmarks share: services to run on and a way to wait for Vert.x futures from a benchmark thread.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    // named, with a poll interval of their own, the way most services get added
+    public static List<Service> services(String baseUrl, int count) {
+        List<Service> services = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            services.add(new Service(URI.create(baseUrl + "/service-" + i), "service " + i, Instant.ofEpochMilli(1_600_000_000_000L + i), Duration.ofSeconds(30)));
+        }
+        return services;
+    }
+
+    public static <T> T await(Future<T> future) {
+        CompletableFuture<T> done = new CompletableFuture<>();
+        future.setHandler(result -> {
+            if (result.succeeded()) {
+                done.complete(result.result());
+            } else {
+                done.completeExceptionally(result.cause());
+            }
+        });
+        return done.join();
+    }
+
+    // hands out the services it was given and keeps nothing, for benchmarks of what sits in front of the repository
+    public static ServiceRepository inMemory(List<Service> services) {
+        return new ServiceRepository() {
+            @Override
+            public Future<Service> add(Service service) {
+                return Future.succeededFuture(service);
+            }
+
+            @Override
+            public Future<Void> delete(Service service) {
+                return Future.succeededFuture();
+            }
+
+            @Override
+            public Future<Collection<Service>> findAll() {
+                return Future.succeededFuture(services);
+            }
+
+            @Override
+            public Future<Void> streamAll(Handler<Service> handler) {
+                services.forEach(handler::handle);
+                return Future.succeededFuture();
+            }
+
+            @Override
+            public Future<List<Boolean>> addAll(List<Service> added) {
+                return Future.succeededFuture(new ArrayList<>(nCopies(added.size(), true)));
+            }
+
+            @Override
+            public Future<List<Boolean>> deleteAll(List<Service> deleted) {
+                return Future.succeededFuture(new ArrayList<>(nCopies(deleted.size(), true)));
+            }
+        };
+    }
+}
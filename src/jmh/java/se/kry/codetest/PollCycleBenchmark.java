@@ -0,0 +1,106 @@
+package se.kry.codetest;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kry.codetest.probe.AdaptiveTimeouts;
+import se.kry.codetest.probe.Probes;
+import se.kry.codetest.services.ColumnarStatusMap;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.util.concurrent.TimeUnit;
+
+import static se.kry.codetest.BenchmarkFixtures.await;
+import static se.kry.codetest.BenchmarkFixtures.inMemory;
+import static se.kry.codetest.BenchmarkFixtures.services;
+
+/**
+ * One full poll of every service, end to end: real probes over HTTP to a stub server in the same process, results
+ * through confirmation into the store. The stub answers after a fixed delay, and a share of the services with a 503.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class PollCycleBenchmark {
+
+    // the stub is a single host, so the per-host cap is lifted to this for it to be the only limit
+    private static final int CONNECTIONS = 256;
+
+    @Param({"1000", "10000"})
+    public int services;
+
+    @Param({"0", "20"})
+    public long latencyMillis;
+
+    // services 0..n-1 of every hundred fail
+    @Param({"0", "10"})
+    public int failurePercent;
+
+    private Vertx vertx;
+    private BackgroundPoller poller;
+
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        HttpServer stub = await(Future.<HttpServer>future(listening -> vertx.createHttpServer()
+                .requestHandler(this::answer)
+                .listen(0, "127.0.0.1", listening)));
+
+        PollerOptions options = new PollerOptions()
+                .setMaxInFlight(CONNECTIONS)
+                .setMaxInFlightPerHost(CONNECTIONS)
+                .setMaxQueued(services);
+        WebClient webClient = WebClient.create(vertx, new WebClientOptions()
+                .setKeepAlive(true)
+                .setMaxPoolSize(CONNECTIONS));
+        ServiceStatusStore store = new ServiceStatusStore(
+                inMemory(services("http://127.0.0.1:" + stub.actualPort(), services)),
+                new ColumnarStatusMap()
+        );
+        AdaptiveTimeouts timeouts = new AdaptiveTimeouts(options);
+        store.addListener(timeouts);
+        StatusConfirmation confirmation = new StatusConfirmation(options);
+        store.addListener(confirmation);
+        await(store.init());
+        poller = new BackgroundPoller(store, new Probes(vertx, webClient, options), timeouts, confirmation, options);
+    }
+
+    @TearDown
+    public void tearDown() {
+        await(Future.<Void>future(vertx::close));
+    }
+
+    @Benchmark
+    public void poll() {
+        await(poller.poll());
+    }
+
+    private void answer(HttpServerRequest request) {
+        // paths are /service-<i>
+        int i = Integer.parseInt(request.path().substring("/service-".length()));
+        int status = i % 100 < failurePercent ? 503 : 200;
+        if (latencyMillis == 0) {
+            request.response().setStatusCode(status).end("ok");
+        } else {
+            vertx.setTimer(latencyMillis, timerId -> request.response().setStatusCode(status).end("ok"));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package se.kry.codetest;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static se.kry.codetest.BenchmarkFixtures.services;
+
+/**
+ * What GET /service does whenever the list has changed: serialize every status, then encode the whole array.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServiceListBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int services;
+
+    private List<ServiceStatus> statuses;
+    private JsonArray serialized;
+
+    @Setup
+    public void setUp() {
+        Instant now = Instant.now();
+        statuses = new ArrayList<>(services);
+        for (Service service : services("https://bench.kry.se", services)) {
+            // probed, so every field that can be in the JSON is
+            ProbeResult probe = new ProbeResult(service.uri(), now, Status.OK, 12_345_678L, 200);
+            statuses.add(new ServiceStatus(service, Status.OK, probe, now));
+        }
+        serialized = new JsonArray(statuses.stream().map(MainVerticle::serialize).collect(toList()));
+    }
+
+    @Benchmark
+    public List<JsonObject> serialize() {
+        return statuses.stream().map(MainVerticle::serialize).collect(toList());
+    }
+
+    @Benchmark
+    public Buffer encode() {
+        return serialized.toBuffer();
+    }
+
+    @Benchmark
+    public Buffer serializeAndEncode() {
+        return new JsonArray(statuses.stream().map(MainVerticle::serialize).collect(toList())).toBuffer();
+    }
+}
@@ -0,0 +1,87 @@
+package se.kry.codetest.persistence;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kry.codetest.persistence.migrate.DBMigration;
+import se.kry.codetest.services.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static se.kry.codetest.BenchmarkFixtures.await;
+import static se.kry.codetest.BenchmarkFixtures.services;
+
+/**
+ * The repository against a real SQLite file with the default storage profile: one add at a time, and reading back
+ * every service as the store does on startup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SqliteServiceRepositoryBenchmark {
+
+    // already in the table when the benchmark starts
+    @Param({"1000", "10000"})
+    public int services;
+
+    private final AtomicLong added = new AtomicLong();
+    private Vertx vertx;
+    private Path directory;
+    private SqliteServiceRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        vertx = Vertx.vertx();
+        directory = Files.createTempDirectory("repository-benchmark");
+        DBConnector connector = new DBConnector(vertx, new StorageProfile().setPath(directory.resolve("poller.db").toString()));
+        await(DBMigration.migrate(connector));
+        repository = new SqliteServiceRepository(connector);
+        await(repository.addAll(services("https://bench.kry.se", services)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        await(Future.<Void>future(vertx::close));
+        // the database and its WAL files
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Service add() {
+        URI uri = URI.create("https://added.kry.se/service-" + added.incrementAndGet());
+        return await(repository.add(new Service(uri, "added", Instant.now())));
+    }
+
+    @Benchmark
+    public Collection<Service> findAll() {
+        return await(repository.findAll());
+    }
+}
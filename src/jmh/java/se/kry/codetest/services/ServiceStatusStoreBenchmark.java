@@ -0,0 +1,82 @@
+package se.kry.codetest.services;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static se.kry.codetest.BenchmarkFixtures.await;
+import static se.kry.codetest.BenchmarkFixtures.inMemory;
+import static se.kry.codetest.BenchmarkFixtures.services;
+
+/**
+ * Probe results landing in the store from several threads while a reader walks the whole list, the way the poller
+ * and GET /service share it. Every update flips a random service's status, so the index and the change log move too.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ServiceStatusStoreBenchmark {
+
+    @Param({"10000", "100000"})
+    public int services;
+
+    private ServiceStatusStore store;
+    private ServiceStatus[] ok;
+    private ServiceStatus[] failed;
+
+    @Setup
+    public void setUp() {
+        List<Service> all = services("https://bench.kry.se", services);
+        store = new ServiceStatusStore(inMemory(all), new ColumnarStatusMap());
+        await(store.init());
+        ok = new ServiceStatus[services];
+        failed = new ServiceStatus[services];
+        Instant now = Instant.now();
+        for (int i = 0; i < services; i++) {
+            Service service = all.get(i);
+            ok[i] = new ServiceStatus(service, Status.OK, new ProbeResult(service.uri(), now, Status.OK, 1_000_000L, 200), null);
+            failed[i] = new ServiceStatus(service, Status.FAIL, new ProbeResult(service.uri(), now, Status.FAIL, 2_000_000L, 503), null);
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public void update() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(services);
+        ServiceStatus status = random.nextBoolean() ? ok[i] : failed[i];
+        store.update(status.service().uri(), status);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public long getAll() {
+        long up = 0;
+        for (ServiceStatus status : store.getAll()) {
+            up += status.status() == Status.OK ? 1 : 0;
+        }
+        return up;
+    }
+}
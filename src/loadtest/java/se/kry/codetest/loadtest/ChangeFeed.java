@@ -0,0 +1,44 @@
+package se.kry.codetest.loadtest;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows the API's change feed, GET /service?since=, the way a dashboard would: every call returns the services
+ * that changed since the previous one.
+ */
+class ChangeFeed {
+
+    private final WebClient client;
+    private final int port;
+    private long version;
+
+    ChangeFeed(WebClient client, int port) {
+        this.client = client;
+        this.port = port;
+    }
+
+    Future<List<JsonObject>> next() {
+        Future<HttpResponse<Buffer>> fetched = Future.future();
+        client.get(port, "localhost", "/service")
+                .addQueryParam("since", String.valueOf(version))
+                .send(fetched);
+        return fetched.map(response -> {
+            JsonObject changes = response.bodyAsJsonObject();
+            version = changes.getLong("version");
+            JsonArray services = changes.getJsonArray("services");
+            List<JsonObject> updated = new ArrayList<>(services.size());
+            for (int i = 0; i < services.size(); i++) {
+                updated.add(services.getJsonObject(i));
+            }
+            return updated;
+        });
+    }
+}
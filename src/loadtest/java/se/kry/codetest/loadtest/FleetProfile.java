@@ -0,0 +1,210 @@
+package se.kry.codetest.loadtest;
+
+import io.vertx.core.json.JsonObject;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * How the simulated fleet behaves. Every endpoint is steady, flapping or slow to send its body, picked from the seed,
+ * so the same profile gives the same fleet on every run. Latency, errors and hangs are drawn per request.
+ */
+public class FleetProfile {
+
+    public static final int DEFAULT_ENDPOINTS = 100_000;
+    // every port is a host of its own to the poller, which caps the probes in flight per host
+    public static final int DEFAULT_PORTS = 64;
+    public static final long DEFAULT_SEED = 42;
+    // log-normal, most answers come close to the median and a few take many times as long
+    public static final double DEFAULT_MEDIAN_LATENCY_MILLIS = 20;
+    public static final double DEFAULT_LATENCY_SIGMA = 0.5;
+    public static final double DEFAULT_ERROR_RATE = 0.01;
+    // never answered, the poller's timeout ends them
+    public static final double DEFAULT_HANG_RATE = 0.001;
+    public static final double DEFAULT_SLOW_BODY_RATE = 0.01;
+    public static final int DEFAULT_SLOW_BODY_CHUNKS = 5;
+    public static final long DEFAULT_SLOW_BODY_CHUNK_DELAY_MILLIS = 200;
+    public static final double DEFAULT_FLAP_RATE = 0.001;
+    public static final long DEFAULT_FLAP_PERIOD_SECONDS = 120;
+    public static final long DEFAULT_FLAP_DOWN_SECONDS = 30;
+
+    private int endpoints = DEFAULT_ENDPOINTS;
+    private int ports = DEFAULT_PORTS;
+    private long seed = DEFAULT_SEED;
+    private double medianLatencyMillis = DEFAULT_MEDIAN_LATENCY_MILLIS;
+    private double latencySigma = DEFAULT_LATENCY_SIGMA;
+    private double errorRate = DEFAULT_ERROR_RATE;
+    private double hangRate = DEFAULT_HANG_RATE;
+    private double slowBodyRate = DEFAULT_SLOW_BODY_RATE;
+    private int slowBodyChunks = DEFAULT_SLOW_BODY_CHUNKS;
+    private long slowBodyChunkDelayMillis = DEFAULT_SLOW_BODY_CHUNK_DELAY_MILLIS;
+    private double flapRate = DEFAULT_FLAP_RATE;
+    private long flapPeriodSeconds = DEFAULT_FLAP_PERIOD_SECONDS;
+    private long flapDownSeconds = DEFAULT_FLAP_DOWN_SECONDS;
+
+    public FleetProfile() {
+    }
+
+    // the keys are the property names, anything missing keeps its default
+    public FleetProfile(JsonObject json) {
+        setEndpoints(json.getInteger("endpoints", endpoints));
+        setPorts(json.getInteger("ports", ports));
+        setSeed(json.getLong("seed", seed));
+        setMedianLatencyMillis(json.getDouble("medianLatencyMillis", medianLatencyMillis));
+        setLatencySigma(json.getDouble("latencySigma", latencySigma));
+        setErrorRate(json.getDouble("errorRate", errorRate));
+        setHangRate(json.getDouble("hangRate", hangRate));
+        setSlowBodyRate(json.getDouble("slowBodyRate", slowBodyRate));
+        setSlowBodyChunks(json.getInteger("slowBodyChunks", slowBodyChunks));
+        setSlowBodyChunkDelayMillis(json.getLong("slowBodyChunkDelayMillis", slowBodyChunkDelayMillis));
+        setFlapRate(json.getDouble("flapRate", flapRate));
+        setFlapPeriodSeconds(json.getLong("flapPeriodSeconds", flapPeriodSeconds));
+        setFlapDownSeconds(json.getLong("flapDownSeconds", flapDownSeconds));
+    }
+
+    public JsonObject toJson() {
+        return new JsonObject()
+                .put("endpoints", endpoints)
+                .put("ports", ports)
+                .put("seed", seed)
+                .put("medianLatencyMillis", medianLatencyMillis)
+                .put("latencySigma", latencySigma)
+                .put("errorRate", errorRate)
+                .put("hangRate", hangRate)
+                .put("slowBodyRate", slowBodyRate)
+                .put("slowBodyChunks", slowBodyChunks)
+                .put("slowBodyChunkDelayMillis", slowBodyChunkDelayMillis)
+                .put("flapRate", flapRate)
+                .put("flapPeriodSeconds", flapPeriodSeconds)
+                .put("flapDownSeconds", flapDownSeconds);
+    }
+
+    public int getEndpoints() {
+        return endpoints;
+    }
+
+    public FleetProfile setEndpoints(int endpoints) {
+        checkArgument(endpoints > 0, "Endpoints must be positive");
+        this.endpoints = endpoints;
+        return this;
+    }
+
+    public int getPorts() {
+        return ports;
+    }
+
+    public FleetProfile setPorts(int ports) {
+        checkArgument(ports > 0, "Ports must be positive");
+        this.ports = ports;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public FleetProfile setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public double getMedianLatencyMillis() {
+        return medianLatencyMillis;
+    }
+
+    public FleetProfile setMedianLatencyMillis(double medianLatencyMillis) {
+        checkArgument(medianLatencyMillis >= 0, "Median latency must not be negative");
+        this.medianLatencyMillis = medianLatencyMillis;
+        return this;
+    }
+
+    public double getLatencySigma() {
+        return latencySigma;
+    }
+
+    public FleetProfile setLatencySigma(double latencySigma) {
+        checkArgument(latencySigma >= 0, "Latency sigma must not be negative");
+        this.latencySigma = latencySigma;
+        return this;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public FleetProfile setErrorRate(double errorRate) {
+        this.errorRate = rate(errorRate, "Error rate");
+        return this;
+    }
+
+    public double getHangRate() {
+        return hangRate;
+    }
+
+    public FleetProfile setHangRate(double hangRate) {
+        this.hangRate = rate(hangRate, "Hang rate");
+        return this;
+    }
+
+    public double getSlowBodyRate() {
+        return slowBodyRate;
+    }
+
+    public FleetProfile setSlowBodyRate(double slowBodyRate) {
+        this.slowBodyRate = rate(slowBodyRate, "Slow body rate");
+        return this;
+    }
+
+    public int getSlowBodyChunks() {
+        return slowBodyChunks;
+    }
+
+    public FleetProfile setSlowBodyChunks(int slowBodyChunks) {
+        checkArgument(slowBodyChunks > 0, "Slow body chunks must be positive");
+        this.slowBodyChunks = slowBodyChunks;
+        return this;
+    }
+
+    public long getSlowBodyChunkDelayMillis() {
+        return slowBodyChunkDelayMillis;
+    }
+
+    public FleetProfile setSlowBodyChunkDelayMillis(long slowBodyChunkDelayMillis) {
+        checkArgument(slowBodyChunkDelayMillis > 0, "Slow body chunk delay must be positive");
+        this.slowBodyChunkDelayMillis = slowBodyChunkDelayMillis;
+        return this;
+    }
+
+    public double getFlapRate() {
+        return flapRate;
+    }
+
+    public FleetProfile setFlapRate(double flapRate) {
+        this.flapRate = rate(flapRate, "Flap rate");
+        return this;
+    }
+
+    public long getFlapPeriodSeconds() {
+        return flapPeriodSeconds;
+    }
+
+    public FleetProfile setFlapPeriodSeconds(long flapPeriodSeconds) {
+        checkArgument(flapPeriodSeconds > 0, "Flap period must be positive");
+        this.flapPeriodSeconds = flapPeriodSeconds;
+        return this;
+    }
+
+    public long getFlapDownSeconds() {
+        return flapDownSeconds;
+    }
+
+    public FleetProfile setFlapDownSeconds(long flapDownSeconds) {
+        checkArgument(flapDownSeconds >= 0, "Flap down time must not be negative");
+        this.flapDownSeconds = flapDownSeconds;
+        return this;
+    }
+
+    private static double rate(double rate, String name) {
+        checkArgument(rate >= 0 && rate <= 1, name + " must be between 0 and 1");
+        return rate;
+    }
+}
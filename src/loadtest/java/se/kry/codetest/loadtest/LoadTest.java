@@ -0,0 +1,268 @@
+package se.kry.codetest.loadtest;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.metrics.MetricsOptions;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import se.kry.codetest.ApplicationVerticle;
+import se.kry.codetest.Status;
+import se.kry.codetest.batch.BatchHandler;
+import se.kry.codetest.metrics.VertxMetricsCollector;
+import se.kry.codetest.persistence.DBConnector;
+import se.kry.codetest.persistence.migrate.DBMigration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runs the whole application against a {@link TargetFleet} in the same process, over the loopback interface, and
+ * reports as JSON:
+ * <ul>
+ * <li>how long registering every endpoint through POST /service/batch takes,</li>
+ * <li>how long until every endpoint has been probed once,</li>
+ * <li>how long injected outages take to show as FAIL, and the restored endpoints as OK again,</li>
+ * <li>the poller's own metrics and what the process used meanwhile.</li>
+ * </ul>
+ * Arguments are {@code key=value} pairs: the {@link FleetProfile} properties, plus {@code pollIntervalSeconds},
+ * {@code outages}, {@code detectionTimeoutSeconds} and {@code report}, the file the report goes to. The application
+ * keeps its database and snapshot in the working directory, which should start out empty.
+ */
+public class LoadTest {
+
+    private static final int API_PORT = 8080;
+    private static final long FEED_INTERVAL_MILLIS = 500;
+
+    private final TargetFleet fleet;
+    private final WebClient client;
+    private final long pollIntervalSeconds;
+    private final int outageCount;
+    private final long detectionTimeoutMillis;
+    // endpoint by URL, to tell which endpoint a service in the feed is
+    private final Map<String, Integer> endpoints = new HashMap<>();
+
+    LoadTest(TargetFleet fleet, WebClient client, long pollIntervalSeconds, int outageCount, long detectionTimeoutMillis) {
+        this.fleet = fleet;
+        this.client = client;
+        this.pollIntervalSeconds = pollIntervalSeconds;
+        this.outageCount = outageCount;
+        this.detectionTimeoutMillis = detectionTimeoutMillis;
+    }
+
+    public static void main(String[] args) throws IOException {
+        JsonObject config = parse(args);
+        FleetProfile profile = new FleetProfile(config);
+        long pollIntervalSeconds = config.getLong("pollIntervalSeconds", 30L);
+        int outages = config.getInteger("outages", 100);
+        // a service that keeps failing backs off to 16 times its interval, recovering can take that long
+        long detectionTimeoutSeconds = config.getLong("detectionTimeoutSeconds", pollIntervalSeconds * 20);
+        String reportPath = config.getString("report", "loadtest-report.json");
+
+        // the fleet gets event loops of its own, so a busy poller doesn't slow down the endpoints it measures
+        Vertx fleetVertx = Vertx.vertx();
+        Vertx appVertx = Vertx.vertx(new VertxOptions()
+                .setMetricsOptions(new MetricsOptions().setEnabled(true).setFactory(new VertxMetricsCollector.Factory())));
+        ResourceSampler resources = new ResourceSampler();
+        resources.start(fleetVertx);
+
+        TargetFleet fleet = new TargetFleet(fleetVertx, profile);
+        await(fleet.start());
+        await(DBMigration.migrate(new DBConnector(appVertx)));
+        await(Future.<String>future(deployed -> appVertx.deployVerticle(new ApplicationVerticle(), deployed)));
+
+        LoadTest test = new LoadTest(fleet, WebClient.create(fleetVertx), pollIntervalSeconds, outages, TimeUnit.SECONDS.toMillis(detectionTimeoutSeconds));
+        JsonObject report = new JsonObject()
+                .put("profile", profile.toJson())
+                .put("poll_interval_seconds", pollIntervalSeconds);
+        ChangeFeed feed = new ChangeFeed(test.client, API_PORT);
+        report.put("registration", test.register());
+        report.put("coverage", test.coverage(feed));
+        List<Integer> outaged = test.pickOutages(profile.getSeed());
+        long injectedAt = System.currentTimeMillis();
+        fleet.injectOutage(outaged);
+        report.put("detection", test.awaitStatus(feed, outaged, Status.FAIL, injectedAt));
+        long restoredAt = System.currentTimeMillis();
+        fleet.restore(outaged);
+        report.put("recovery", test.awaitStatus(feed, outaged, Status.OK, restoredAt));
+        report.put("fleet", new JsonObject().put("requests", fleet.requests()).put("hung", fleet.hung()));
+        report.put("metrics", test.pollerMetrics());
+        resources.stop(fleetVertx);
+        report.put("resources", resources.report());
+
+        String json = report.encodePrettily();
+        System.out.println(json);
+        Files.write(Paths.get(reportPath), json.getBytes(UTF_8));
+        appVertx.close();
+        fleetVertx.close();
+        // the connection pools keep threads of their own
+        System.exit(0);
+    }
+
+    private JsonObject register() {
+        Buffer body = Buffer.buffer(fleet.size() * 96);
+        for (int i = 0; i < fleet.size(); i++) {
+            String url = fleet.uri(i).toString();
+            endpoints.put(url, i);
+            body.appendString(new JsonObject()
+                    .put("url", url)
+                    .put("name", "endpoint " + i)
+                    .put("poll_interval", pollIntervalSeconds)
+                    .encode()).appendString("\n");
+        }
+        long startedAt = System.nanoTime();
+        HttpResponse<Buffer> response = await(Future.<HttpResponse<Buffer>>future(sent -> client
+                .post(API_PORT, "localhost", "/service/batch")
+                .putHeader("content-type", BatchHandler.NDJSON)
+                .sendBuffer(body, sent)));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Registering the fleet failed with " + response.statusCode());
+        }
+        return new JsonObject()
+                .put("services", fleet.size())
+                .put("millis", millis)
+                .put("per_second", fleet.size() * 1000L / Math.max(1, millis));
+    }
+
+    // every service gets a phase within its interval, so a full round takes about one interval when the poller keeps up
+    private JsonObject coverage(ChangeFeed feed) {
+        long registeredAt = System.currentTimeMillis();
+        long deadline = registeredAt + TimeUnit.SECONDS.toMillis(pollIntervalSeconds) * 3;
+        boolean[] probed = new boolean[fleet.size()];
+        int count = 0;
+        long lastProbedAt = registeredAt;
+        while (count < fleet.size() && System.currentTimeMillis() < deadline) {
+            for (JsonObject service : await(feed.next())) {
+                Integer endpoint = endpoints.get(service.getString("url"));
+                String checkedAt = service.getString("checked_at");
+                if (endpoint != null && checkedAt != null && !probed[endpoint]) {
+                    probed[endpoint] = true;
+                    count++;
+                    lastProbedAt = Math.max(lastProbedAt, Instant.parse(checkedAt).toEpochMilli());
+                }
+            }
+            sleep(FEED_INTERVAL_MILLIS);
+        }
+        return new JsonObject()
+                .put("services", fleet.size())
+                .put("probed", count)
+                .put("millis", lastProbedAt - registeredAt);
+    }
+
+    // steady endpoints only, a flapping one could go down on its own
+    private List<Integer> pickOutages(long seed) {
+        List<Integer> steady = new ArrayList<>();
+        for (int i = 0; i < fleet.size(); i++) {
+            if (fleet.kind(i) == TargetFleet.Kind.STEADY) {
+                steady.add(i);
+            }
+        }
+        Collections.shuffle(steady, new Random(seed));
+        return new ArrayList<>(steady.subList(0, Math.min(outageCount, steady.size())));
+    }
+
+    // from the change until the API shows the status, by when the store says it changed
+    private JsonObject awaitStatus(ChangeFeed feed, List<Integer> targets, Status status, long changedAt) {
+        Map<Integer, Long> pending = new HashMap<>();
+        targets.forEach(endpoint -> pending.put(endpoint, changedAt));
+        List<Long> latencies = new ArrayList<>();
+        long deadline = changedAt + detectionTimeoutMillis;
+        while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+            for (JsonObject service : await(feed.next())) {
+                Integer endpoint = endpoints.get(service.getString("url"));
+                String lastChanged = service.getString("last_changed");
+                if (endpoint != null && pending.containsKey(endpoint) && status.name().equals(service.getString("status"))
+                        && lastChanged != null && Instant.parse(lastChanged).toEpochMilli() >= changedAt) {
+                    pending.remove(endpoint);
+                    latencies.add(Instant.parse(lastChanged).toEpochMilli() - changedAt);
+                }
+            }
+            sleep(FEED_INTERVAL_MILLIS);
+        }
+        Collections.sort(latencies);
+        return new JsonObject()
+                .put("endpoints", targets.size())
+                .put("detected", latencies.size())
+                .put("p50_millis", percentile(latencies, 0.50))
+                .put("p95_millis", percentile(latencies, 0.95))
+                .put("max_millis", percentile(latencies, 1.0));
+    }
+
+    // the poller's series from /metrics, by their name and labels
+    private JsonObject pollerMetrics() {
+        HttpResponse<Buffer> response = await(Future.<HttpResponse<Buffer>>future(fetched -> client
+                .get(API_PORT, "localhost", "/metrics")
+                .send(fetched)));
+        JsonObject metrics = new JsonObject();
+        for (String line : response.bodyAsString().split("\n")) {
+            if (line.startsWith("poller_") || line.startsWith("store_")) {
+                int space = line.lastIndexOf(' ');
+                metrics.put(line.substring(0, space), Double.parseDouble(line.substring(space + 1)));
+            }
+        }
+        return metrics;
+    }
+
+    private static Long percentile(List<Long> sorted, double q) {
+        if (sorted.isEmpty()) {
+            return null;
+        }
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(q * sorted.size()) - 1));
+    }
+
+    private static JsonObject parse(String[] args) {
+        JsonObject config = new JsonObject();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("Arguments must be key=value pairs, got " + arg);
+            }
+            String key = arg.substring(0, equals);
+            String value = arg.substring(equals + 1);
+            if (value.matches("-?\\d+")) {
+                config.put(key, Long.parseLong(value));
+            } else if (value.matches("-?\\d*\\.\\d+")) {
+                config.put(key, Double.parseDouble(value));
+            } else {
+                config.put(key, value);
+            }
+        }
+        return config;
+    }
+
+    private static <T> T await(Future<T> future) {
+        CompletableFuture<T> done = new CompletableFuture<>();
+        future.setHandler(result -> {
+            if (result.succeeded()) {
+                done.complete(result.result());
+            } else {
+                done.completeExceptionally(result.cause());
+            }
+        });
+        return done.join();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package se.kry.codetest.loadtest;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * What the process uses while the load test runs, sampled once a second. The fleet runs in the same process as the
+ * poller, so this covers both.
+ */
+class ResourceSampler {
+
+    private static final long INTERVAL_MILLIS = 1000;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private long timerId = -1;
+    // guarded by this
+    private long samples;
+    private double cpuSum;
+    private double cpuMax;
+    private long heapMax;
+    private int threadsMax;
+
+    void start(Vertx vertx) {
+        timerId = vertx.setPeriodic(INTERVAL_MILLIS, id -> sample());
+    }
+
+    void stop(Vertx vertx) {
+        vertx.cancelTimer(timerId);
+    }
+
+    synchronized JsonObject report() {
+        long gcMillis = 0;
+        long gcCount = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcMillis += Math.max(0, collector.getCollectionTime());
+            gcCount += Math.max(0, collector.getCollectionCount());
+        }
+        return new JsonObject()
+                .put("samples", samples)
+                .put("cpu_avg", samples == 0 ? null : cpuSum / samples)
+                .put("cpu_max", cpuMax)
+                .put("heap_max_mb", heapMax / (1024 * 1024))
+                .put("threads_max", threadsMax)
+                .put("gc_count", gcCount)
+                .put("gc_millis", gcMillis);
+    }
+
+    private synchronized void sample() {
+        samples++;
+        // the process' share of all cores, where the JVM can tell
+        double cpu = os instanceof com.sun.management.OperatingSystemMXBean
+                ? Math.max(0, ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad())
+                : 0;
+        cpuSum += cpu;
+        cpuMax = Math.max(cpuMax, cpu);
+        heapMax = Math.max(heapMax, memory.getHeapMemoryUsage().getUsed());
+        threadsMax = Math.max(threadsMax, threads.getThreadCount());
+    }
+}
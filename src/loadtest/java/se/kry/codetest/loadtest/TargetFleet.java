@@ -0,0 +1,166 @@
+package se.kry.codetest.loadtest;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fleet of virtual endpoints served from one process, spread over {@link FleetProfile#getPorts()} local ports.
+ * Endpoint {@code i} is {@code http://127.0.0.1:<port>/t/<i>} and answers as its profile says, until an outage is
+ * injected, after which it answers 503 until restored.
+ */
+public class TargetFleet {
+
+    private static final String PATH = "/t/";
+
+    enum Kind {
+        STEADY,
+        // down for part of every period, at a phase of its own
+        FLAPPING,
+        // the body comes in chunks, with a pause before each
+        SLOW_BODY
+    }
+
+    private final Vertx vertx;
+    private final FleetProfile profile;
+    private final HashFunction hash;
+    private final int[] ports;
+    // endpoint to when its outage started, in millis
+    private final ConcurrentHashMap<Integer, Long> outages = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hung = new LongAdder();
+
+    public TargetFleet(Vertx vertx, FleetProfile profile) {
+        this.vertx = vertx;
+        this.profile = profile;
+        this.hash = Hashing.murmur3_32((int) profile.getSeed());
+        this.ports = new int[profile.getPorts()];
+    }
+
+    public Future<Void> start() {
+        @SuppressWarnings("rawtypes") // CompositeFuture.all takes a raw list
+        List<Future> listening = new ArrayList<>();
+        for (int i = 0; i < ports.length; i++) {
+            int slot = i;
+            Future<HttpServer> server = Future.future();
+            vertx.createHttpServer()
+                    .requestHandler(this::answer)
+                    .listen(0, "127.0.0.1", server);
+            listening.add(server.map(started -> ports[slot] = started.actualPort()));
+        }
+        return CompositeFuture.all(listening).mapEmpty();
+    }
+
+    public int size() {
+        return profile.getEndpoints();
+    }
+
+    public URI uri(int endpoint) {
+        return URI.create("http://127.0.0.1:" + ports[endpoint % ports.length] + PATH + endpoint);
+    }
+
+    public Kind kind(int endpoint) {
+        double u = (hash.hashInt(endpoint).asInt() & 0xFFFFFFFFL) / (double) (1L << 32);
+        if (u < profile.getFlapRate()) {
+            return Kind.FLAPPING;
+        }
+        if (u < profile.getFlapRate() + profile.getSlowBodyRate()) {
+            return Kind.SLOW_BODY;
+        }
+        return Kind.STEADY;
+    }
+
+    public void injectOutage(Collection<Integer> endpoints) {
+        long now = System.currentTimeMillis();
+        endpoints.forEach(endpoint -> outages.put(endpoint, now));
+    }
+
+    public void restore(Collection<Integer> endpoints) {
+        endpoints.forEach(outages::remove);
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long hung() {
+        return hung.sum();
+    }
+
+    private void answer(HttpServerRequest request) {
+        requests.increment();
+        int endpoint;
+        try {
+            endpoint = Integer.parseInt(request.path().substring(PATH.length()));
+        } catch (RuntimeException e) {
+            request.response().setStatusCode(404).end();
+            return;
+        }
+        if (outages.containsKey(endpoint) || flappedDown(endpoint)) {
+            request.response().setStatusCode(503).end();
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < profile.getHangRate()) {
+            hung.increment();
+            return;
+        }
+        boolean error = random.nextDouble() < profile.getErrorRate();
+        long latency = Math.round(profile.getMedianLatencyMillis() * Math.exp(profile.getLatencySigma() * random.nextGaussian()));
+        Runnable respond = () -> {
+            if (request.response().closed()) {
+                return;
+            }
+            if (error) {
+                request.response().setStatusCode(500).end();
+            } else if (kind(endpoint) == Kind.SLOW_BODY) {
+                writeSlowly(request.response().setChunked(true), profile.getSlowBodyChunks());
+            } else {
+                request.response().end("ok");
+            }
+        };
+        // a timer can't be shorter than a millisecond
+        if (latency < 1) {
+            respond.run();
+        } else {
+            vertx.setTimer(latency, timerId -> respond.run());
+        }
+    }
+
+    private boolean flappedDown(int endpoint) {
+        if (kind(endpoint) != Kind.FLAPPING) {
+            return false;
+        }
+        long period = profile.getFlapPeriodSeconds();
+        long phase = (hash.hashInt(~endpoint).asInt() & 0xFFFFFFFFL) % period;
+        return (System.currentTimeMillis() / 1000 + phase) % period < profile.getFlapDownSeconds();
+    }
+
+    private void writeSlowly(HttpServerResponse response, int chunksLeft) {
+        vertx.setTimer(profile.getSlowBodyChunkDelayMillis(), timerId -> {
+            if (response.closed()) {
+                // the poller gave up on it
+                return;
+            }
+            if (chunksLeft == 1) {
+                response.end("ok");
+            } else {
+                response.write("ok\n");
+                writeSlowly(response, chunksLeft - 1);
+            }
+        });
+    }
+}
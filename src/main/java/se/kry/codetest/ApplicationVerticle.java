@@ -0,0 +1,204 @@
+package se.kry.codetest;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import se.kry.codetest.cluster.ClusterNode;
+import se.kry.codetest.history.HistoryStore;
+import se.kry.codetest.metrics.MetricsRegistry;
+import se.kry.codetest.metrics.PollerMetrics;
+import se.kry.codetest.metrics.VertxMetricsCollector;
+import se.kry.codetest.persistence.DBConnector;
+import se.kry.codetest.persistence.SqliteHistoryRepository;
+import se.kry.codetest.persistence.SqliteServiceRepository;
+import se.kry.codetest.persistence.StorageProfile;
+import se.kry.codetest.persistence.WriteBehindServiceRepository;
+import se.kry.codetest.probe.AdaptiveTimeouts;
+import se.kry.codetest.probe.ProbeStrategy;
+import se.kry.codetest.probe.Probes;
+import se.kry.codetest.scheduling.PollScheduler;
+import se.kry.codetest.services.ColumnarStatusMap;
+import se.kry.codetest.services.ServiceRepository;
+import se.kry.codetest.services.ServiceStatusStore;
+import se.kry.codetest.services.StatusSnapshot;
+import se.kry.codetest.uptime.UptimeAggregator;
+import se.kry.codetest.vantage.ProbeAgent;
+import se.kry.codetest.vantage.QuorumProbe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Wires the application together and deploys it: one {@link PollerVerticle}, then once the store is loaded as many
+ * {@link MainVerticle}s as there are cores, all sharing the same store. The verticle the launcher starts, so it can't
+ * take anything in its constructor.
+ * <p>
+ * With {@code "vantages": [{"name": ..., "client": {WebClientOptions}}, ...]} in its config every service is probed
+ * from each of them, through a {@link ProbeAgent} per vantage, and its status follows what a majority of them see.
+ */
+public class ApplicationVerticle extends AbstractVerticle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationVerticle.class);
+
+    // keep-alive connections kept per host, so services sharing a host reuse them, and as many probes in flight
+    private static final int MAX_CONNECTIONS_PER_HOST = 8;
+    // 1024 slots of 250ms cover intervals up to ~4 minutes in a single turn of the wheel
+    private static final long SCHEDULER_TICK_MILLIS = 250;
+    private static final int SCHEDULER_SLOTS = 1024;
+    // writes are grouped into one transaction per this many services, or after this long
+    private static final int WRITE_BATCH_SIZE = 1000;
+    private static final long WRITE_DELAY_MILLIS = 5;
+    // probe history is written in one group per this interval, and at most this much is lost on a crash
+    private static final long HISTORY_FLUSH_MILLIS = 10_000;
+    // the last known statuses, served right away on a restart
+    private static final String SNAPSHOT_PATH = "poller.snapshot";
+    // one HTTP verticle per event loop the API is given
+    private static final int HTTP_INSTANCES = Runtime.getRuntime().availableProcessors();
+    // a node that misses 3 heartbeats in a row loses its services to the others
+    private static final long CLUSTER_HEARTBEAT_MILLIS = 1000;
+    private static final long CLUSTER_TIMEOUT_MILLIS = 3500;
+    // probe requests and results cross the event bus in batches of up to this many, or after this long
+    private static final long VANTAGE_FLUSH_MILLIS = 50;
+    private static final int VANTAGE_BATCH_SIZE = 512;
+
+    private ClusterNode clusterNode;
+
+    @Override
+    public void start(Future<Void> startFuture) {
+        // shared with Vert.x's own metrics when it was started with them
+        MetricsRegistry metrics = VertxMetricsCollector.registry(vertx);
+        DBConnector dbConnector = new DBConnector(vertx, new StorageProfile(), metrics);
+        ServiceRepository serviceRepository = new WriteBehindServiceRepository(
+                vertx,
+                new SqliteServiceRepository(dbConnector),
+                WRITE_BATCH_SIZE,
+                WRITE_DELAY_MILLIS
+        );
+        ServiceStatusStore serviceStatusStore = new ServiceStatusStore(
+                serviceRepository,
+                new ColumnarStatusMap()
+        );
+        PollerOptions pollerOptions = new PollerOptions()
+                // how many probes may be waiting on a response at the same time, across all hosts
+                .setMaxInFlight(4096)
+                .setMaxInFlightPerHost(MAX_CONNECTIONS_PER_HOST)
+                // a bounded backlog keeps memory flat when upstreams degrade
+                .setMaxQueued(65536)
+                .setOverflowPolicy(OverflowPolicy.DROP_OLDEST)
+                // until a service has answered, afterwards its timeout follows its latency within these bounds
+                .setRequestTimeout(2000)
+                .setMinRequestTimeout(200)
+                .setMaxRequestTimeout(10_000)
+                // a status changes once 3 of the last 5 probes disagree with it
+                .setConfirmWindow(5)
+                .setConfirmThreshold(3);
+        WebClient webClient = WebClient.create(vertx, new WebClientOptions()
+                // the per-probe timeout is the one that counts, this only caps it for the connect
+                .setConnectTimeout((int) pollerOptions.getMaxRequestTimeout())
+                .setKeepAlive(true)
+                .setMaxPoolSize(MAX_CONNECTIONS_PER_HOST)
+                .setIdleTimeout(30)
+                .setUserAgent("kry-status-poller"));
+
+        JsonArray vantages = config().getJsonArray("vantages", new JsonArray());
+        @SuppressWarnings("rawtypes") // CompositeFuture.all takes a raw list
+        List<Future> agentsDeployed = new ArrayList<>();
+        ProbeStrategy probes;
+        if (vantages.isEmpty()) {
+            probes = new Probes(vertx, webClient, pollerOptions);
+        } else {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < vantages.size(); i++) {
+                JsonObject vantage = vantages.getJsonObject(i);
+                names.add(vantage.getString("name"));
+                WebClientOptions clientOptions = new WebClientOptions(vantage.getJsonObject("client", new JsonObject()));
+                Future<String> agentDeployed = Future.future();
+                vertx.deployVerticle(new ProbeAgent(
+                        vantage.getString("name"),
+                        agentVertx -> new Probes(agentVertx, WebClient.create(agentVertx, clientOptions), pollerOptions),
+                        VANTAGE_FLUSH_MILLIS,
+                        VANTAGE_BATCH_SIZE
+                ), agentDeployed);
+                agentsDeployed.add(agentDeployed);
+            }
+            QuorumProbe quorumProbe = new QuorumProbe(vertx, names, VANTAGE_FLUSH_MILLIS, VANTAGE_BATCH_SIZE);
+            quorumProbe.start();
+            probes = quorumProbe;
+        }
+
+        AdaptiveTimeouts timeouts = new AdaptiveTimeouts(pollerOptions);
+        serviceStatusStore.addListener(timeouts);
+        StatusConfirmation confirmation = new StatusConfirmation(pollerOptions);
+        serviceStatusStore.addListener(confirmation);
+        BackgroundPoller poller = new BackgroundPoller(
+                serviceStatusStore,
+                probes,
+                timeouts,
+                confirmation,
+                pollerOptions
+        );
+        PollScheduler scheduler = new PollScheduler(poller, SCHEDULER_TICK_MILLIS, SCHEDULER_SLOTS);
+        scheduler.setCycleDuration(metrics.histogram("poller_cycle_duration_seconds", "Time from a tick's services falling due to the last of their probes completing"));
+        poller.addObserver(new PollerMetrics(metrics, poller, scheduler, serviceStatusStore));
+        // failing services back off, services that just changed status are confirmed quickly
+        poller.addObserver(scheduler);
+        HistoryStore historyStore = new HistoryStore(new SqliteHistoryRepository(dbConnector), HISTORY_FLUSH_MILLIS);
+        poller.addObserver(historyStore);
+        UptimeAggregator uptimeAggregator = new UptimeAggregator();
+        poller.addObserver(uptimeAggregator);
+        ServiceListCache serviceListCache = new ServiceListCache(serviceStatusStore, metrics);
+        if (vertx.isClustered()) {
+            // every node loads every service, but only probes its share of them and hears about the rest
+            clusterNode = new ClusterNode(UUID.randomUUID().toString(), serviceStatusStore, CLUSTER_HEARTBEAT_MILLIS, CLUSTER_TIMEOUT_MILLIS);
+            serviceStatusStore.addListener(clusterNode);
+            poller.addObserver(clusterNode);
+            clusterNode.addObserver(uptimeAggregator);
+            scheduler.setOwnership(clusterNode::owns);
+        }
+
+        CompositeFuture.all(agentsDeployed)
+                .compose(agents -> {
+                    Future<String> pollerDeployed = Future.future();
+                    vertx.deployVerticle(new PollerVerticle(
+                            serviceStatusStore,
+                            scheduler,
+                            historyStore,
+                            uptimeAggregator,
+                            new StatusSnapshot(vertx, SNAPSHOT_PATH)
+                    ), pollerDeployed);
+                    return pollerDeployed;
+                })
+                .compose(id -> {
+                    if (clusterNode != null) {
+                        clusterNode.start(vertx);
+                    }
+                    Future<String> httpDeployed = Future.future();
+                    vertx.deployVerticle(
+                            () -> new MainVerticle(serviceStatusStore, serviceListCache, historyStore, uptimeAggregator, metrics),
+                            new DeploymentOptions().setInstances(HTTP_INSTANCES),
+                            httpDeployed
+                    );
+                    return httpDeployed;
+                })
+                .<Void>map(httpId -> {
+                    LOGGER.info("KRY code test service started");
+                    return null;
+                })
+                .setHandler(startFuture);
+    }
+
+    @Override
+    public void stop() {
+        if (clusterNode != null) {
+            clusterNode.stop();
+        }
+    }
+}
@@ -1,64 +1,212 @@
 package se.kry.codetest;
 
-import com.squareup.okhttp.OkHttpClient;
-import com.squareup.okhttp.Request;
-import com.squareup.okhttp.Response;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import se.kry.codetest.probe.AdaptiveTimeouts;
+import se.kry.codetest.probe.ProbeStrategy;
 import se.kry.codetest.services.Service;
 import se.kry.codetest.services.ServiceStatus;
 import se.kry.codetest.services.ServiceStatusStore;
 
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.util.stream.Collectors.toList;
-import static se.kry.codetest.Status.FAIL;
-import static se.kry.codetest.Status.OK;
 
 public class BackgroundPoller {
 
     private final ServiceStatusStore store;
-    // didn't figure out how to use the vertx one in time, sorry
-    private final OkHttpClient httpClient;
-    private final ExecutorService executor;
+    private final ProbeStrategy probes;
+    private final AdaptiveTimeouts timeouts;
+    private final StatusConfirmation confirmation;
+    private final PollerOptions options;
+    private final List<ProbeObserver> observers = new CopyOnWriteArrayList<>();
 
-    public BackgroundPoller(ServiceStatusStore store, OkHttpClient httpClient, ExecutorService executor) {
+    // probes waiting for a free in-flight slot, guarded by this
+    private final Deque<PendingProbe> pending = new ArrayDeque<>();
+    // queued or in-flight probe per coalescing key, guarded by this
+    private final Map<String, PendingProbe> active = new HashMap<>();
+    // hosts with probes in flight, guarded by this
+    private final Map<String, Host> hosts = new HashMap<>();
+    private int inFlight;
+    // probes waiting for their host rather than for a slot
+    private int parked;
+    private boolean overflowed;
+    // work-in-progress counter so that probes completing synchronously don't recurse into drain()
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public BackgroundPoller(ServiceStatusStore store, ProbeStrategy probes, AdaptiveTimeouts timeouts,
+                            StatusConfirmation confirmation, PollerOptions options) {
         this.store = store;
-        this.httpClient = httpClient;
-        this.executor = executor;
+        this.probes = probes;
+        this.timeouts = timeouts;
+        this.confirmation = confirmation;
+        this.options = options;
+    }
+
+    public void addObserver(ProbeObserver observer) {
+        observers.add(observer);
     }
 
     public Future<Void> poll() {
-        return Future.future(future -> {
-            try {
-                services()
-                        .parallelStream()
-                        .forEach(this::updateStatus);
-                future.complete();
-            } catch (Exception e) {
-                future.fail(e);
+        return poll(services());
+    }
+
+    public Future<Void> poll(Collection<Service> services) {
+        @SuppressWarnings("rawtypes") // CompositeFuture.all takes a raw list
+        List<Future> probes = new ArrayList<>(services.size());
+        for (Service service : services) {
+            probes.add(enqueue(service));
+            // hand out free slots straight away so the queue only holds probes that really have to wait
+            drain();
+        }
+        return CompositeFuture.all(probes).mapEmpty();
+    }
+
+    public synchronized int queued() {
+        return pending.size() + parked;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private Future<Void> enqueue(Service service) {
+        PendingProbe evicted = null;
+        PendingProbe probe;
+        synchronized (this) {
+            String key = ProbeKeys.coalescing(service);
+            PendingProbe existing = active.get(key);
+            if (existing != null) {
+                // the previous cycle hasn't finished with this service yet, or another service checks the same
+                // thing: piggyback on it
+                coalesced.increment();
+                existing.join(service);
+                return existing.await();
             }
-        });
+            if (overflowed && queued() == 0) {
+                overflowed = false;
+            }
+            if (queued() >= options.getMaxQueued() || overflowed) {
+                dropped.increment();
+                switch (options.getOverflowPolicy()) {
+                    case DROP_OLDEST:
+                        evicted = pending.poll();
+                        if (evicted == null) {
+                            // everything queued is waiting for a busy host, which keeps its place
+                            return Future.succeededFuture();
+                        }
+                        active.remove(evicted.key);
+                        break;
+                    case SKIP_UNTIL_IDLE:
+                        overflowed = true;
+                        return Future.succeededFuture();
+                    case DROP_NEWEST:
+                        return Future.succeededFuture();
+                }
+            }
+            probe = new PendingProbe(service, key);
+            pending.add(probe);
+            active.put(key, probe);
+        }
+        if (evicted != null) {
+            // skipped this time round, the service keeps its last known status
+            evicted.complete();
+        }
+        return probe.await();
     }
 
-    private void updateStatus(Service service) {
-        store.update(service.uri(), new ServiceStatus(service, getStatus(service)));
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            PendingProbe next;
+            while ((next = nextProbe()) != null) {
+                start(next);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
     }
 
-    private Status getStatus(Service service) {
-        try {
-            java.util.concurrent.Future<Status> future = executor.submit(() -> {
-                Request request = new Request.Builder()
-                        .url(service.uri().toString())
-                        .build();
-                Response response = httpClient.newCall(request).execute();
-                return response.isSuccessful() ? OK : FAIL;
-            });
-            return future.get();
-        } catch (Exception e) {
-            e.printStackTrace();
-            return FAIL;
+    private synchronized PendingProbe nextProbe() {
+        while (inFlight < options.getMaxInFlight()) {
+            PendingProbe probe = pending.poll();
+            if (probe == null) {
+                return null;
+            }
+            Host host = hosts.computeIfAbsent(probe.origin, origin -> new Host());
+            if (host.inFlight >= options.getMaxInFlightPerHost()) {
+                // waits for a probe of its own host to finish instead of holding up the ones behind it
+                host.parked.add(probe);
+                parked++;
+                continue;
+            }
+            host.inFlight++;
+            inFlight++;
+            return probe;
         }
+        return null;
+    }
+
+    private synchronized List<Service> release(PendingProbe probe) {
+        inFlight--;
+        active.remove(probe.key);
+        Host host = hosts.get(probe.origin);
+        host.inFlight--;
+        PendingProbe next = host.parked.poll();
+        if (next != null) {
+            // first in line, it has waited the longest
+            parked--;
+            pending.addFirst(next);
+        } else if (host.inFlight == 0) {
+            hosts.remove(probe.origin);
+        }
+        // nobody can join once the probe is no longer active
+        return probe.services();
+    }
+
+    private void start(PendingProbe probe) {
+        probes.probe(probe.service, timeouts.timeout(probe.service.uri())).setHandler(probed -> {
+            List<Service> services = release(probe);
+            for (Service service : services) {
+                URI uri = service.uri();
+                ProbeResult result = uri.equals(probe.service.uri()) ? probed.result() : probed.result().withUri(uri);
+                timeouts.onProbe(result);
+                // the probe shows up straight away, the status only once the change is confirmed
+                store.update(uri, new ServiceStatus(service, confirmation.record(uri, result.status()), result, null));
+                observers.forEach(observer -> observer.onProbe(result));
+            }
+            probe.complete();
+            for (Service service : services) {
+                if (confirmation.retry(service.uri())) {
+                    // out of cycle, nobody waits for it
+                    enqueue(service);
+                }
+            }
+            drain();
+        });
     }
 
     private List<Service> services() {
@@ -67,4 +215,53 @@ public class BackgroundPoller {
                 .map(ServiceStatus::service)
                 .collect(toList());
     }
+
+    private static class Host {
+        private final Deque<PendingProbe> parked = new ArrayDeque<>();
+        private int inFlight;
+    }
+
+    private static class PendingProbe {
+        // the service probed, any others sharing the probe get its result under their own URI
+        private final Service service;
+        private final String key;
+        private final String origin;
+        private final List<Service> services = new ArrayList<>(1);
+        // a vertx future only takes a single handler, so every poll() waiting on this probe gets its own
+        private final List<Future<Void>> waiters = new ArrayList<>(1);
+        private boolean completed;
+
+        private PendingProbe(Service service, String key) {
+            this.service = service;
+            this.key = key;
+            this.origin = ProbeKeys.origin(service.uri());
+            this.services.add(service);
+        }
+
+        private synchronized void join(Service service) {
+            if (services.stream().noneMatch(joined -> joined.uri().equals(service.uri()))) {
+                services.add(service);
+            }
+        }
+
+        private synchronized List<Service> services() {
+            return new ArrayList<>(services);
+        }
+
+        private synchronized Future<Void> await() {
+            if (completed) {
+                return Future.succeededFuture();
+            }
+            Future<Void> waiter = Future.future();
+            waiters.add(waiter);
+            return waiter;
+        }
+
+        private void complete() {
+            synchronized (this) {
+                completed = true;
+            }
+            waiters.forEach(Future::complete);
+        }
+    }
 }
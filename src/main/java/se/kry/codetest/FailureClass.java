@@ -0,0 +1,54 @@
+package se.kry.codetest;
+
+import io.netty.channel.ConnectTimeoutException;
+
+import javax.net.ssl.SSLException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Why a probe failed, from the earliest step that did.
+ */
+public enum FailureClass {
+    // the URL could not be turned into a request
+    INVALID_URL,
+    DNS,
+    CONNECT_TIMEOUT,
+    CONNECTION_REFUSED,
+    TLS,
+    // connected, but no response within the request timeout
+    READ_TIMEOUT,
+    // a response that isn't 2xx
+    HTTP_ERROR,
+    OTHER,
+    // new classes go last from here on, the ordinal is kept in the probe history
+    // a 2xx response whose body doesn't match what the service expects
+    ASSERTION,
+    // the TLS certificate expires within the warning period
+    CERT_EXPIRY,
+    // too few vantages answered to tell whether the service is down
+    NO_QUORUM;
+
+    public static FailureClass of(Throwable failure) {
+        // the interesting exception is often wrapped, e.g. a handshake failure inside a closed connection
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnknownHostException) {
+                return DNS;
+            }
+            if (cause instanceof ConnectTimeoutException) {
+                return CONNECT_TIMEOUT;
+            }
+            if (cause instanceof ConnectException) {
+                return CONNECTION_REFUSED;
+            }
+            if (cause instanceof SSLException) {
+                return TLS;
+            }
+            if (cause instanceof TimeoutException) {
+                return READ_TIMEOUT;
+            }
+        }
+        return OTHER;
+    }
+}
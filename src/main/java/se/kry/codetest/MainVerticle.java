@@ -2,47 +2,113 @@ package se.kry.codetest;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.StaticHandler;
+import se.kry.codetest.batch.BatchHandler;
+import se.kry.codetest.history.HistoryHandler;
+import se.kry.codetest.history.HistoryStore;
+import se.kry.codetest.metrics.Counter;
+import se.kry.codetest.metrics.Histogram;
+import se.kry.codetest.metrics.MetricsRegistry;
+import se.kry.codetest.services.ProbeType;
 import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceChanges;
+import se.kry.codetest.services.ServicePage;
+import se.kry.codetest.services.ServiceQuery;
+import se.kry.codetest.services.ServiceSort;
 import se.kry.codetest.services.ServiceStatus;
 import se.kry.codetest.services.ServiceStatusStore;
+import se.kry.codetest.stream.StatusEventPublisher;
+import se.kry.codetest.stream.StatusStream;
+import se.kry.codetest.uptime.Uptime;
+import se.kry.codetest.uptime.UptimeAggregator;
+import se.kry.codetest.uptime.UptimeWindow;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static java.time.format.DateTimeFormatter.ISO_DATE;
 import static java.time.format.DateTimeFormatter.ISO_INSTANT;
+import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
 
 public class MainVerticle extends AbstractVerticle {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MainVerticle.class);
+
+    // per dashboard connection, a client this far behind gets disconnected
+    private static final int MAX_STREAM_BUFFER_BYTES = 64 * 1024;
+    private static final long STREAM_KEEP_ALIVE_MILLIS = 15_000;
+    // services written per transaction by the batch endpoints
+    private static final int BATCH_SIZE = 500;
+
+    // pre-encoded header names and values for the GET /service hot path
+    private static final CharSequence CONTENT_TYPE = HttpHeaders.createOptimized("content-type");
+    private static final CharSequence APPLICATION_JSON = HttpHeaders.createOptimized("application/json");
+    private static final CharSequence ETAG = HttpHeaders.createOptimized("etag");
+    private static final CharSequence IF_NONE_MATCH = HttpHeaders.createOptimized("if-none-match");
+    private static final CharSequence VARY = HttpHeaders.createOptimized("vary");
+    private static final CharSequence ACCEPT_ENCODING = HttpHeaders.createOptimized("accept-encoding");
+    private static final CharSequence CONTENT_ENCODING = HttpHeaders.createOptimized("content-encoding");
+    private static final CharSequence GZIP = HttpHeaders.createOptimized("gzip");
+    private static final CharSequence PROMETHEUS_TEXT = HttpHeaders.createOptimized("text/plain; version=0.0.4");
+
+    // any of these turns GET /service into a paged query instead of the full cached list
+    private static final List<String> QUERY_PARAMS = asList("limit", "after", "status", "name_prefix", "host", "sort", "order");
+
     private final ServiceStatusStore statusStore;
-    private final BackgroundPoller poller;
+    private final ServiceListCache serviceListCache;
+    private final BatchHandler batchHandler;
+    private final HistoryStore historyStore;
+    private final HistoryHandler historyHandler;
+    private final UptimeAggregator uptimeAggregator;
+    private final MetricsRegistry metrics;
+    private final Histogram encodeDuration;
+    private final Counter errors;
+    private StatusStream statusStream;
 
-    public MainVerticle(ServiceStatusStore statusStore, BackgroundPoller poller) {
+    // the store, the list cache, the aggregates and the metrics are shared by every instance, each instance has a
+    // stream of its own
+    public MainVerticle(ServiceStatusStore statusStore, ServiceListCache serviceListCache, HistoryStore historyStore,
+                        UptimeAggregator uptimeAggregator, MetricsRegistry metrics) {
         this.statusStore = statusStore;
-        this.poller = poller;
+        this.serviceListCache = serviceListCache;
+        this.batchHandler = new BatchHandler(statusStore, BATCH_SIZE);
+        this.historyStore = historyStore;
+        this.historyHandler = new HistoryHandler(historyStore);
+        this.uptimeAggregator = uptimeAggregator;
+        this.metrics = metrics;
+        this.encodeDuration = metrics.histogram("api_service_list_encode_seconds", "Time encoding the full service list for GET /service takes");
+        this.errors = metrics.counter("api_errors_total", "API requests that failed on the server's side");
     }
 
     @Override
     public void start(Future<Void> startFuture) {
-        statusStore.init();
+        statusStream = new StatusStream(vertx, MAX_STREAM_BUFFER_BYTES, STREAM_KEEP_ALIVE_MILLIS);
+        vertx.eventBus().<JsonObject>consumer(StatusEventPublisher.ADDRESS, event -> statusStream.publish(event.body()));
         Router router = Router.router(vertx);
-        router.route().handler(BodyHandler.create());
-        vertx.setPeriodic(1000 * 60, timerId -> poller.poll());
         setRoutes(router);
+        // every instance listens on the same port, connections are spread across them
         vertx
                 .createHttpServer()
                 .requestHandler(router)
                 .listen(8080, result -> {
                     if (result.succeeded()) {
-                        System.out.println("KRY code test service started");
                         startFuture.complete();
                     } else {
                         startFuture.fail(result.cause());
@@ -53,8 +119,19 @@ public class MainVerticle extends AbstractVerticle {
     private void setRoutes(Router router) {
         router.route("/*").handler(StaticHandler.create());
         router.get("/service").handler(this::getServiceStatuses);
+        router.get("/service/events").handler(req -> statusStream.subscribe(req));
+        router.get("/service/history").handler(historyHandler::handle);
+        router.get("/service/uptime").handler(this::getUptime);
+        router.get("/metrics").handler(this::getMetrics);
+        // the batch endpoints stream their bodies, only the single service ones are buffered
+        BodyHandler bodyHandler = BodyHandler.create();
+        router.post("/service").handler(bodyHandler);
         router.post("/service").handler(this::addService);
+        router.delete("/service").handler(bodyHandler);
         router.delete("/service").handler(this::deleteService);
+        router.get("/service/batch").handler(batchHandler::export);
+        router.post("/service/batch").handler(batchHandler::add);
+        router.delete("/service/batch").handler(batchHandler::delete);
     }
 
     private void deleteService(RoutingContext req) {
@@ -66,6 +143,8 @@ public class MainVerticle extends AbstractVerticle {
                         .putHeader("content-type", "text/plain")
                         .end("OK");
             } else {
+                errors.increment();
+                LOGGER.error("Could not delete " + uri, event.cause());
                 req.response()
                         .putHeader("content-type", "text/plain")
                         .setStatusCode(500)
@@ -78,15 +157,26 @@ public class MainVerticle extends AbstractVerticle {
         JsonObject json = req.getBodyAsJson();
         URI uri = URI.create(json.getString("url"));
         String name = json.getString("name");
-        Instant now = Instant.now();
-        statusStore.add(new Service(uri, name, now)).setHandler(event -> {
+        Service service;
+        try {
+            ProbeType probeType = json.containsKey("probe_type") ? ProbeType.of(json.getString("probe_type")) : ProbeType.GET;
+            Duration pollInterval = Duration.ofSeconds(json.getLong("poll_interval", probeType.defaultPollInterval().getSeconds()));
+            service = new Service(uri, name, Instant.now(), pollInterval, probeType, json.getString("expect"));
+        } catch (IllegalArgumentException e) {
+            req.response()
+                    .putHeader("content-type", "text/plain")
+                    .setStatusCode(400)
+                    .end(e.getMessage());
+            return;
+        }
+        statusStore.add(service).setHandler(event -> {
             if (event.succeeded()) {
                 req.response()
                         .putHeader("content-type", "text/plain")
                         .end("OK");
             } else {
-                System.err.println("error");
-                System.err.println(event.cause());
+                errors.increment();
+                LOGGER.error("Could not add " + uri, event.cause());
                 // TODO: should handle a duplicate error as a success
                 req.response()
                         .putHeader("content-type", "text/plain")
@@ -97,29 +187,206 @@ public class MainVerticle extends AbstractVerticle {
     }
 
     private void getServiceStatuses(RoutingContext req) {
-        List<JsonObject> jsonServices = statusStore.getAll()
-                .stream()
-                .map(this::serialize)
-                .collect(toList());
+        String since = req.request().getParam("since");
+        if (since != null) {
+            getServiceChanges(req, since);
+            return;
+        }
+        if (QUERY_PARAMS.stream().anyMatch(req.request().params()::contains)) {
+            queryServices(req);
+            return;
+        }
+        if (includesUptime(req)) {
+            // changes with every probe, so it can't come from the cache
+            long startedAt = System.nanoTime();
+            Buffer json = new JsonArray(statusStore.getAll().stream().map(serializer(req)).collect(toList())).toBuffer();
+            encodeDuration.recordSince(startedAt);
+            req.response()
+                    .putHeader(CONTENT_TYPE, APPLICATION_JSON)
+                    .end(json);
+            return;
+        }
+        ServiceListCache.Snapshot snapshot = serviceListCache.get();
+        if (snapshot.etag().equals(req.request().getHeader(IF_NONE_MATCH))) {
+            req.response()
+                    .setStatusCode(304)
+                    .putHeader(ETAG, snapshot.etag())
+                    .end();
+            return;
+        }
+        HttpServerResponse response = req.response()
+                .putHeader(CONTENT_TYPE, APPLICATION_JSON)
+                .putHeader(ETAG, snapshot.etag())
+                .putHeader(VARY, ACCEPT_ENCODING);
+        if (acceptsGzip(req)) {
+            response.putHeader(CONTENT_ENCODING, GZIP).end(snapshot.gzipped());
+        } else {
+            response.end(snapshot.json());
+        }
+    }
+
+    private static boolean acceptsGzip(RoutingContext req) {
+        String acceptEncoding = req.request().getHeader(ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private void getServiceChanges(RoutingContext req, String since) {
+        long version;
+        try {
+            version = Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            req.response()
+                    .putHeader("content-type", "text/plain")
+                    .setStatusCode(400)
+                    .end("since must be a version number");
+            return;
+        }
+        ServiceChanges changes = statusStore.changesSince(version);
+        JsonObject json = new JsonObject()
+                .put("version", changes.version())
+                .put("full", changes.full())
+                .put("services", new JsonArray(changes.updated().stream().map(MainVerticle::serialize).collect(toList())))
+                .put("deleted", new JsonArray(changes.deleted().stream().map(URI::toString).collect(toList())));
         req.response()
                 .putHeader("content-type", "application/json")
-                .end(new JsonArray(jsonServices).encode());
+                .end(json.encode());
     }
 
-    private JsonObject serialize(ServiceStatus serviceStatus) {
+    private void queryServices(RoutingContext req) {
+        ServiceQuery query;
+        try {
+            query = toQuery(req.request().params());
+        } catch (IllegalArgumentException e) {
+            req.response()
+                    .putHeader("content-type", "text/plain")
+                    .setStatusCode(400)
+                    .end(e.getMessage());
+            return;
+        }
+        ServicePage page;
+        try {
+            page = statusStore.query(query);
+        } catch (IllegalArgumentException e) {
+            req.response()
+                    .putHeader("content-type", "text/plain")
+                    .setStatusCode(400)
+                    .end("after must be a cursor from a previous page");
+            return;
+        }
+        JsonObject json = new JsonObject()
+                .put("services", new JsonArray(page.services().stream().map(serializer(req)).collect(toList())))
+                .put("next", page.next().orElse(null));
+        req.response()
+                .putHeader("content-type", "application/json")
+                .end(json.encode());
+    }
+
+    private void getUptime(RoutingContext req) {
+        String url = req.request().getParam("url");
+        long now = System.currentTimeMillis();
+        if (url != null) {
+            JsonObject json = new JsonObject()
+                    .put("url", url)
+                    .put("uptime", serialize(uptimeAggregator.uptime(URI.create(url), now)));
+            req.response()
+                    .putHeader("content-type", "application/json")
+                    .end(json.encode());
+            return;
+        }
+        JsonArray json = new JsonArray(statusStore.getAll().stream()
+                .map(status -> new JsonObject()
+                        .put("url", status.service().uri().toString())
+                        .put("uptime", serialize(uptimeAggregator.uptime(status.service().uri(), now))))
+                .collect(toList()));
+        req.response()
+                .putHeader("content-type", "application/json")
+                .end(json.encode());
+    }
+
+    private void getMetrics(RoutingContext req) {
+        req.response()
+                .putHeader(CONTENT_TYPE, PROMETHEUS_TEXT)
+                .end(metrics.scrape());
+    }
+
+    private static boolean includesUptime(RoutingContext req) {
+        return req.request().params().getAll("include").stream()
+                .flatMap(include -> Stream.of(include.split(",")))
+                .anyMatch("uptime"::equals);
+    }
+
+    private Function<ServiceStatus, JsonObject> serializer(RoutingContext req) {
+        if (!includesUptime(req)) {
+            return MainVerticle::serialize;
+        }
+        long now = System.currentTimeMillis();
+        return status -> serialize(status).put("uptime", serialize(uptimeAggregator.uptime(status.service().uri(), now)));
+    }
+
+    private static ServiceQuery toQuery(MultiMap params) {
+        int limit;
+        try {
+            limit = params.contains("limit") ? Integer.parseInt(params.get("limit")) : ServiceQuery.DEFAULT_LIMIT;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number");
+        }
+        Status status = params.contains("status") ? toEnum(Status.class, "status", params.get("status")) : null;
+        ServiceSort sort = params.contains("sort") ? toEnum(ServiceSort.class, "sort", params.get("sort")) : ServiceSort.NAME;
+        String order = params.get("order");
+        boolean descending;
+        if (order == null) {
+            // most recently changed first is the useful default for that one
+            descending = sort == ServiceSort.LAST_CHANGE;
+        } else if (order.equals("asc") || order.equals("desc")) {
+            descending = order.equals("desc");
+        } else {
+            throw new IllegalArgumentException("order must be asc or desc");
+        }
+        return new ServiceQuery(limit, params.get("after"), status, params.get("name_prefix"), params.get("host"), sort, descending);
+    }
+
+    private static <E extends Enum<E>> E toEnum(Class<E> type, String param, String value) {
+        return Stream.of(type.getEnumConstants())
+                .filter(constant -> constant.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(param + " must be one of " + asList(type.getEnumConstants())));
+    }
+
+    public static JsonObject serialize(ServiceStatus serviceStatus) {
         Service service = serviceStatus.service();
         Status status = serviceStatus.status();
         JsonObject json = new JsonObject()
                 .put("url", service.uri().toString())
                 .put("created_at", ISO_INSTANT.format(service.createdAt()))
+                .put("poll_interval", service.pollInterval().getSeconds())
+                .put("probe_type", service.probeType())
                 .put("status", status);
 
         service.name().ifPresent(name -> json.put("name", name));
+        service.expect().ifPresent(expect -> json.put("expect", expect.pattern()));
+        serviceStatus.probe().ifPresent(probe -> {
+            json.put("checked_at", ISO_INSTANT.format(probe.timestamp()));
+            json.put("latency_ms", probe.latencyNanos() / 1e6);
+            if (probe.statusCode() != ProbeResult.NO_STATUS_CODE) {
+                json.put("status_code", probe.statusCode());
+            }
+            probe.failure().ifPresent(failure -> json.put("failure", failure));
+        });
+        serviceStatus.lastChanged().ifPresent(lastChanged -> json.put("last_changed", ISO_INSTANT.format(lastChanged)));
 
         return json;
     }
 
-}
-
-
+    public static JsonObject serialize(Map<UptimeWindow, Uptime> windows) {
+        JsonObject json = new JsonObject();
+        windows.forEach((window, uptime) -> json.put(window.label(), new JsonObject()
+                .put("probes", uptime.probes())
+                .put("ok", uptime.ok())
+                .put("uptime", uptime.probes() == 0 ? null : uptime.ratio())
+                .put("p50_ms", uptime.p50Micros() / 1e3)
+                .put("p95_ms", uptime.p95Micros() / 1e3)
+                .put("p99_ms", uptime.p99Micros() / 1e3)));
+        return json;
+    }
 
+}
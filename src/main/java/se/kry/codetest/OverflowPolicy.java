@@ -0,0 +1,10 @@
+package se.kry.codetest;
+
+public enum OverflowPolicy {
+    // evict the probe that has waited longest to make room for the new one
+    DROP_OLDEST,
+    // reject the new probe, leaving the queue as it is
+    DROP_NEWEST,
+    // once the queue has overflowed, reject every new probe until it has drained completely
+    SKIP_UNTIL_IDLE
+}
@@ -0,0 +1,148 @@
+package se.kry.codetest;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+public class PollerOptions {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4096;
+    public static final int DEFAULT_MAX_IN_FLIGHT_PER_HOST = 8;
+    public static final int DEFAULT_MAX_QUEUED = 65536;
+    public static final long DEFAULT_REQUEST_TIMEOUT = 2000;
+    public static final long DEFAULT_MIN_REQUEST_TIMEOUT = 200;
+    public static final long DEFAULT_MAX_REQUEST_TIMEOUT = 10_000;
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_OLDEST;
+    public static final long DEFAULT_CERT_EXPIRY_WARNING = TimeUnit.DAYS.toMillis(14);
+    public static final int DEFAULT_MAX_BODY_BYTES = 64 * 1024;
+    public static final int DEFAULT_CONFIRM_WINDOW = 5;
+    public static final int DEFAULT_CONFIRM_THRESHOLD = 3;
+
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private int maxInFlightPerHost = DEFAULT_MAX_IN_FLIGHT_PER_HOST;
+    private int maxQueued = DEFAULT_MAX_QUEUED;
+    private long requestTimeout = DEFAULT_REQUEST_TIMEOUT;
+    private long minRequestTimeout = DEFAULT_MIN_REQUEST_TIMEOUT;
+    private long maxRequestTimeout = DEFAULT_MAX_REQUEST_TIMEOUT;
+    private OverflowPolicy overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+    private long certExpiryWarning = DEFAULT_CERT_EXPIRY_WARNING;
+    private int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+    private int confirmWindow = DEFAULT_CONFIRM_WINDOW;
+    private int confirmThreshold = DEFAULT_CONFIRM_THRESHOLD;
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public PollerOptions setMaxInFlight(int maxInFlight) {
+        checkArgument(maxInFlight > 0, "Max in-flight probes must be positive");
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public int getMaxInFlightPerHost() {
+        return maxInFlightPerHost;
+    }
+
+    // probes of one host and port beyond this wait, without holding up probes of other hosts
+    public PollerOptions setMaxInFlightPerHost(int maxInFlightPerHost) {
+        checkArgument(maxInFlightPerHost > 0, "Max in-flight probes per host must be positive");
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        return this;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public PollerOptions setMaxQueued(int maxQueued) {
+        checkArgument(maxQueued > 0, "Max queued probes must be positive");
+        this.maxQueued = maxQueued;
+        return this;
+    }
+
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    // the timeout of a service that hasn't answered yet, afterwards it follows the service's latency
+    public PollerOptions setRequestTimeout(long requestTimeout) {
+        checkArgument(requestTimeout > 0, "Request timeout must be positive");
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public long getMinRequestTimeout() {
+        return minRequestTimeout;
+    }
+
+    public PollerOptions setMinRequestTimeout(long minRequestTimeout) {
+        checkArgument(minRequestTimeout > 0, "Min request timeout must be positive");
+        this.minRequestTimeout = minRequestTimeout;
+        return this;
+    }
+
+    public long getMaxRequestTimeout() {
+        return maxRequestTimeout;
+    }
+
+    public PollerOptions setMaxRequestTimeout(long maxRequestTimeout) {
+        checkArgument(maxRequestTimeout > 0, "Max request timeout must be positive");
+        this.maxRequestTimeout = maxRequestTimeout;
+        return this;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public PollerOptions setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        checkArgument(nonNull(overflowPolicy), "Overflow policy must be non-null");
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public long getCertExpiryWarning() {
+        return certExpiryWarning;
+    }
+
+    // a TLS probe fails once the certificate expires within this many millis
+    public PollerOptions setCertExpiryWarning(long certExpiryWarning) {
+        checkArgument(certExpiryWarning >= 0, "Certificate expiry warning must not be negative");
+        this.certExpiryWarning = certExpiryWarning;
+        return this;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    // how much of the body a BODY probe matches against, the rest is dropped as it arrives
+    public PollerOptions setMaxBodyBytes(int maxBodyBytes) {
+        checkArgument(maxBodyBytes > 0, "Max body bytes must be positive");
+        this.maxBodyBytes = maxBodyBytes;
+        return this;
+    }
+
+    public int getConfirmWindow() {
+        return confirmWindow;
+    }
+
+    // a status changes once the threshold of the last window probes disagree with it
+    public PollerOptions setConfirmWindow(int confirmWindow) {
+        checkArgument(confirmWindow > 0 && confirmWindow <= Long.SIZE, "Confirm window must be between 1 and 64");
+        this.confirmWindow = confirmWindow;
+        return this;
+    }
+
+    public int getConfirmThreshold() {
+        return confirmThreshold;
+    }
+
+    public PollerOptions setConfirmThreshold(int confirmThreshold) {
+        checkArgument(confirmThreshold > 0, "Confirm threshold must be positive");
+        this.confirmThreshold = confirmThreshold;
+        return this;
+    }
+}
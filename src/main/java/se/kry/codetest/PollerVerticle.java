@@ -0,0 +1,62 @@
+package se.kry.codetest;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import se.kry.codetest.history.HistoryStore;
+import se.kry.codetest.scheduling.PollScheduler;
+import se.kry.codetest.services.ServiceStatusStore;
+import se.kry.codetest.services.StatusSnapshot;
+import se.kry.codetest.stream.StatusEventPublisher;
+import se.kry.codetest.uptime.UptimeAggregator;
+
+/**
+ * Everything there is one of per process beside the HTTP verticles: loading the store, scheduling probes, flushing
+ * history and snapshotting statuses. Deployed as a single instance, so its timers all run on one event loop. It is
+ * started once the store is loaded, the HTTP verticles are only deployed after it.
+ */
+public class PollerVerticle extends AbstractVerticle {
+
+    // at most this much of the statuses is lost on a crash, a restart probes those services again anyway
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 60_000;
+
+    private final ServiceStatusStore statusStore;
+    private final PollScheduler scheduler;
+    private final HistoryStore historyStore;
+    private final UptimeAggregator uptimeAggregator;
+    private final StatusSnapshot snapshot;
+
+    public PollerVerticle(ServiceStatusStore statusStore, PollScheduler scheduler, HistoryStore historyStore,
+                          UptimeAggregator uptimeAggregator, StatusSnapshot snapshot) {
+        this.statusStore = statusStore;
+        this.scheduler = scheduler;
+        this.historyStore = historyStore;
+        this.uptimeAggregator = uptimeAggregator;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void start(Future<Void> startFuture) {
+        statusStore.addListener(scheduler);
+        statusStore.addListener(uptimeAggregator);
+        // published to every HTTP verticle's status stream
+        statusStore.addListener(new StatusEventPublisher(vertx.eventBus()));
+        scheduler.start(vertx);
+        historyStore.start(vertx);
+        // every service is known once started, with its last known status if the snapshot has it
+        snapshot.load()
+                .compose(statusStore::init)
+                .setHandler(result -> {
+                    if (result.succeeded()) {
+                        vertx.setPeriodic(SNAPSHOT_INTERVAL_MILLIS, timerId -> snapshot.save(statusStore.getAll()));
+                        startFuture.complete();
+                    } else {
+                        startFuture.fail(result.cause());
+                    }
+                });
+    }
+
+    @Override
+    public void stop(Future<Void> stopFuture) {
+        snapshot.save(statusStore.getAll()).setHandler(saved -> stopFuture.complete());
+    }
+}
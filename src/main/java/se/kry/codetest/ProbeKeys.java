@@ -0,0 +1,74 @@
+package se.kry.codetest;
+
+import se.kry.codetest.services.ProbeType;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * What probes are grouped by: services whose probes would check the same thing share one, and probes of the same
+ * origin share its concurrency limit.
+ */
+final class ProbeKeys {
+
+    private ProbeKeys() {
+    }
+
+    // equal for services that would send the same probe
+    static String coalescing(Service service) {
+        ProbeType type = service.probeType();
+        if (type == ProbeType.TCP || type == ProbeType.TLS) {
+            // only the host and port matter to a connect
+            return type + " " + origin(service.uri());
+        }
+        return type + " " + service.expect().map(Pattern::pattern).orElse("") + " " + normalize(service.uri());
+    }
+
+    // host and port, with the scheme's port filled in
+    static String origin(URI uri) {
+        if (uri.getHost() == null) {
+            return "";
+        }
+        int port = uri.getPort() >= 0 ? uri.getPort() : defaultPort(lowerCase(uri.getScheme()));
+        return lowerCase(uri.getHost()) + ":" + port;
+    }
+
+    // URIs differing only in the case of the scheme or host, a default port or an empty path reach the same resource
+    static String normalize(URI uri) {
+        if (uri.isOpaque() || uri.getHost() == null) {
+            return uri.toString();
+        }
+        String scheme = lowerCase(uri.getScheme());
+        StringBuilder normalized = new StringBuilder(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            normalized.append(uri.getRawUserInfo()).append('@');
+        }
+        normalized.append(lowerCase(uri.getHost()));
+        if (uri.getPort() >= 0 && uri.getPort() != defaultPort(scheme)) {
+            normalized.append(':').append(uri.getPort());
+        }
+        String path = uri.getRawPath();
+        normalized.append(path == null || path.isEmpty() ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            normalized.append('?').append(uri.getRawQuery());
+        }
+        return normalized.toString();
+    }
+
+    private static int defaultPort(String scheme) {
+        switch (scheme) {
+            case "http":
+                return 80;
+            case "https":
+                return 443;
+            default:
+                return -1;
+        }
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,8 @@
+package se.kry.codetest;
+
+public interface ProbeObserver {
+
+    // called for every completed probe, including ones that didn't change the status
+    void onProbe(ProbeResult result);
+
+}
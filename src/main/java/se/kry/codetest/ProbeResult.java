@@ -0,0 +1,93 @@
+package se.kry.codetest;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+/**
+ * Outcome of a single probe of a service.
+ */
+public class ProbeResult {
+    // no HTTP response at all, e.g. the connection was refused
+    public static final int NO_STATUS_CODE = 0;
+
+    private final URI uri;
+    private final Instant timestamp;
+    private final Status status;
+    private final long latencyNanos;
+    private final int statusCode;
+    private final FailureClass failure;
+
+    // the failure class follows from the status code: an HTTP error if there was one, otherwise unknown
+    public ProbeResult(URI uri, Instant timestamp, Status status, long latencyNanos, int statusCode) {
+        this(uri, timestamp, status, latencyNanos, statusCode, status == Status.OK
+                ? null
+                : statusCode == NO_STATUS_CODE ? FailureClass.OTHER : FailureClass.HTTP_ERROR);
+    }
+
+    public ProbeResult(URI uri, Instant timestamp, Status status, long latencyNanos, int statusCode, FailureClass failure) {
+        checkArgument(nonNull(uri), "URI must be non-null");
+        checkArgument(nonNull(timestamp), "Timestamp must be non-null");
+        checkArgument(nonNull(status), "Status must be non-null");
+        checkArgument(latencyNanos >= 0, "Latency must not be negative");
+        checkArgument((status == Status.OK) == (failure == null), "Failure class must be given exactly when the probe failed");
+        this.uri = uri;
+        this.timestamp = timestamp;
+        this.status = status;
+        this.latencyNanos = latencyNanos;
+        this.statusCode = statusCode;
+        this.failure = failure;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    // when the probe was sent
+    public Instant timestamp() {
+        return timestamp;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    public long latencyNanos() {
+        return latencyNanos;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    public Optional<FailureClass> failure() {
+        return Optional.ofNullable(failure);
+    }
+
+    // the same outcome for another service, one whose probe this was shared with
+    public ProbeResult withUri(URI uri) {
+        return new ProbeResult(uri, timestamp, status, latencyNanos, statusCode, failure);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ProbeResult that = (ProbeResult) o;
+        return latencyNanos == that.latencyNanos &&
+                statusCode == that.statusCode &&
+                failure == that.failure &&
+                uri.equals(that.uri) &&
+                timestamp.equals(that.timestamp) &&
+                status == that.status;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(uri, timestamp, status, latencyNanos, statusCode, failure);
+    }
+}
@@ -0,0 +1,126 @@
+package se.kry.codetest;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import se.kry.codetest.metrics.Histogram;
+import se.kry.codetest.metrics.MetricsRegistry;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Encoded GET /service bodies, rebuilt straight away once the store version moves. Probes that keep a service's
+ * status change its latency and failure without moving the version; those are caught up with at most once every
+ * {@code probeRefreshMillis}. Until then every request is answered with the same buffers.
+ */
+public class ServiceListCache {
+
+    private static final long DEFAULT_PROBE_REFRESH_MILLIS = 1000;
+
+    private final ServiceStatusStore store;
+    private final Histogram encodeDuration;
+    private final long probeRefreshNanos;
+    private volatile Snapshot snapshot;
+
+    public ServiceListCache(ServiceStatusStore store) {
+        this(store, new MetricsRegistry());
+    }
+
+    public ServiceListCache(ServiceStatusStore store, MetricsRegistry metrics) {
+        this(store, metrics, DEFAULT_PROBE_REFRESH_MILLIS);
+    }
+
+    ServiceListCache(ServiceStatusStore store, MetricsRegistry metrics, long probeRefreshMillis) {
+        checkArgument(probeRefreshMillis >= 0, "Probe refresh must not be negative");
+        this.store = store;
+        this.encodeDuration = metrics.histogram("api_service_list_encode_seconds", "Time encoding the full service list for GET /service takes");
+        this.probeRefreshNanos = MILLISECONDS.toNanos(probeRefreshMillis);
+    }
+
+    public Snapshot get() {
+        long version = store.version();
+        long probeEpoch = store.probeEpoch();
+        Snapshot current = snapshot;
+        if (isCurrent(current, version, probeEpoch)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (!isCurrent(current, version, probeEpoch)) {
+                current = new Snapshot(version, probeEpoch, System.nanoTime(), encode());
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    private boolean isCurrent(Snapshot snapshot, long version, long probeEpoch) {
+        return snapshot != null && snapshot.version == version
+                && (snapshot.probeEpoch == probeEpoch || System.nanoTime() - snapshot.builtAt < probeRefreshNanos);
+    }
+
+    private Buffer encode() {
+        long startedAt = System.nanoTime();
+        JsonArray services = new JsonArray(store.getAll()
+                .stream()
+                .map(MainVerticle::serialize)
+                .collect(toList()));
+        Buffer json = services.toBuffer();
+        encodeDuration.recordSince(startedAt);
+        return json;
+    }
+
+    public static class Snapshot {
+        private final long version;
+        private final long probeEpoch;
+        // System.nanoTime()
+        private final long builtAt;
+        private final String etag;
+        private final Buffer json;
+        private volatile Buffer gzipped;
+
+        private Snapshot(long version, long probeEpoch, long builtAt, Buffer json) {
+            this.version = version;
+            this.probeEpoch = probeEpoch;
+            this.builtAt = builtAt;
+            // the body changes with probes too, so the tag does
+            this.etag = "\"" + version + "-" + probeEpoch + "\"";
+            this.json = json;
+        }
+
+        public String etag() {
+            return etag;
+        }
+
+        public Buffer json() {
+            return json;
+        }
+
+        // compressed on first use, most dashboards ask for it but API clients often don't
+        public Buffer gzipped() {
+            Buffer result = gzipped;
+            if (result == null) {
+                result = gzip(json);
+                gzipped = result;
+            }
+            return result;
+        }
+
+        private static Buffer gzip(Buffer json) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length() / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                gzip.write(json.getBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return Buffer.buffer(bytes.toByteArray());
+        }
+    }
+}
@@ -1,39 +1,46 @@
 package se.kry.codetest;
 
-import com.squareup.okhttp.OkHttpClient;
 import io.vertx.core.Vertx;
-import se.kry.codetest.persistence.DBConnector;
-import se.kry.codetest.persistence.SqliteServiceRepository;
-import se.kry.codetest.services.ServiceRepository;
-import se.kry.codetest.services.ServiceStatusStore;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.dns.AddressResolverOptions;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.metrics.MetricsOptions;
+import se.kry.codetest.metrics.VertxMetricsCollector;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
+import static java.util.Arrays.asList;
 
-import static java.util.concurrent.Executors.newFixedThreadPool;
-import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class Start {
 
-  public static void main(String[] args) {
-    Vertx vertx = Vertx.vertx();
-
-    DBConnector dbConnector = new DBConnector(vertx);
-    ServiceRepository serviceRepository = new SqliteServiceRepository(dbConnector);
-    ServiceStatusStore serviceStatusStore = new ServiceStatusStore(
-            serviceRepository,
-            new ConcurrentHashMap<>()
-    );
-    OkHttpClient httpClient = new OkHttpClient();
-    // to avoid getting slowed down by an unresponsive service
-    httpClient.setConnectTimeout(1, SECONDS);
-    httpClient.setReadTimeout(2, SECONDS);
+  private static final Logger LOGGER = LoggerFactory.getLogger(Start.class);
 
-    // to avoid hogging all the threads of our server
-    ExecutorService executorService = newFixedThreadPool(4);
+  private static final int DNS_MIN_TTL_SECONDS = 1;
+  private static final int DNS_MAX_TTL_SECONDS = 300;
+  private static final int DNS_NEGATIVE_TTL_SECONDS = 5;
 
-    BackgroundPoller poller = new BackgroundPoller(serviceStatusStore, httpClient, executorService);
-
-    vertx.deployVerticle(new MainVerticle(serviceStatusStore, poller));
+  public static void main(String[] args) {
+    VertxOptions options = new VertxOptions().setAddressResolverOptions(new AddressResolverOptions()
+            // lookups are cached for as long as their TTL says, within these bounds, so probes of the same host
+            // don't resolve it every time
+            .setCacheMinTimeToLive(DNS_MIN_TTL_SECONDS)
+            .setCacheMaxTimeToLive(DNS_MAX_TTL_SECONDS)
+            // and a host that doesn't resolve isn't asked about again right away
+            .setCacheNegativeTimeToLive(DNS_NEGATIVE_TTL_SECONDS))
+        // HTTP, event bus and worker pool metrics, served on /metrics with the application's own
+        .setMetricsOptions(new MetricsOptions().setEnabled(true).setFactory(new VertxMetricsCollector.Factory()));
+
+    if (asList(args).contains("-cluster")) {
+      // needs a cluster manager on the classpath, the nodes then split the services between them
+      Vertx.clusteredVertx(options, clustered -> {
+        if (clustered.succeeded()) {
+          clustered.result().deployVerticle(new ApplicationVerticle());
+        } else {
+          LOGGER.error("Could not join the cluster", clustered.cause());
+        }
+      });
+    } else {
+      Vertx.vertx(options).deployVerticle(new ApplicationVerticle());
+    }
   }
 }
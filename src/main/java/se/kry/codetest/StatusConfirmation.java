@@ -0,0 +1,111 @@
+package se.kry.codetest;
+
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatusListener;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Decides which status a service is published with, so that a single blip doesn't flip it. A service changes status
+ * once N of its last M probes disagree with the current one, and the first probe to disagree asks for up to N - 1
+ * immediate retries so a real change is confirmed within the same cycle.
+ * <p>
+ * A service that keeps changing its mind is flapping: while it is, a change takes all M probes. It starts flapping
+ * when half of its last 20 probes differed from the one before, and stops once a quarter or less did.
+ * <p>
+ * Each service's history is a handful of bit windows, recording a probe allocates nothing.
+ */
+public class StatusConfirmation implements ServiceStatusListener {
+
+    private static final int FLAP_WINDOW = 20;
+    private static final long FLAP_MASK = (1L << FLAP_WINDOW) - 1;
+    private static final int FLAP_START = FLAP_WINDOW / 2;
+    private static final int FLAP_STOP = FLAP_WINDOW / 4;
+
+    private final int window;
+    private final int threshold;
+    private final Map<URI, History> histories = new ConcurrentHashMap<>();
+
+    public StatusConfirmation(PollerOptions options) {
+        checkArgument(options.getConfirmThreshold() <= options.getConfirmWindow(), "Confirm threshold must not exceed the confirm window");
+        this.window = options.getConfirmWindow();
+        this.threshold = options.getConfirmThreshold();
+    }
+
+    // the status to publish once this probe's outcome is in
+    public Status record(URI uri, Status outcome) {
+        History history = histories.get(uri);
+        if (history == null) {
+            history = histories.computeIfAbsent(uri, any -> new History());
+        }
+        return history.record(outcome, window, threshold);
+    }
+
+    // whether the service should be probed again right away, to confirm or dismiss a change
+    public boolean retry(URI uri) {
+        History history = histories.get(uri);
+        return history != null && history.retry();
+    }
+
+    @Override
+    public void onRemoved(Service service) {
+        histories.remove(service.uri());
+    }
+
+    private static class History {
+        // bit i is set when the i-th most recent probe failed
+        private long failures;
+        // bit i is set when the i-th most recent probe differed from the one before it
+        private long changes;
+        private int count;
+        private Status confirmed = Status.UNKNOWN;
+        private boolean flapping;
+        private int retries;
+
+        private synchronized Status record(Status outcome, int window, int threshold) {
+            boolean failed = outcome == Status.FAIL;
+            boolean changed = count > 0 && failed != ((failures & 1) != 0);
+            failures = failures << 1 | (failed ? 1 : 0);
+            changes = changes << 1 | (changed ? 1 : 0);
+            count = Math.min(count + 1, Long.SIZE);
+
+            int recentChanges = Long.bitCount(changes & FLAP_MASK);
+            if (flapping ? recentChanges <= FLAP_STOP : recentChanges >= FLAP_START) {
+                flapping = !flapping;
+            }
+
+            if (confirmed == Status.UNKNOWN || outcome == confirmed) {
+                // nothing to confirm for a service that has no status yet
+                confirmed = outcome;
+                retries = 0;
+                return confirmed;
+            }
+            int needed = flapping ? window : threshold;
+            long recent = (confirmed == Status.OK ? failures : ~failures) & mask(Math.min(count, window));
+            if (Long.bitCount(recent) >= needed) {
+                confirmed = outcome;
+                retries = 0;
+            } else if (changed && !flapping) {
+                // the first probe to disagree, a flapping service gets probed no more often than it already is
+                retries = threshold - 1;
+            }
+            return confirmed;
+        }
+
+        private synchronized boolean retry() {
+            if (retries == 0) {
+                return false;
+            }
+            retries--;
+            return true;
+        }
+
+        private static long mask(int bits) {
+            return bits == Long.SIZE ? -1L : (1L << bits) - 1;
+        }
+    }
+}
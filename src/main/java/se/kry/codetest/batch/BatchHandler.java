@@ -0,0 +1,362 @@
+package se.kry.codetest.batch;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEventType;
+import io.vertx.core.parsetools.JsonParser;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.ext.web.RoutingContext;
+import se.kry.codetest.MainVerticle;
+import se.kry.codetest.services.ProbeType;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+/**
+ * Bulk add, delete and export of services. Request bodies are a JSON array or newline delimited JSON objects, parsed
+ * as they arrive and written in transactions of up to {@code batchSize} services. The request is paused while a batch
+ * is written, and every item gets a result line in the same format as the request, so neither side holds the whole
+ * payload.
+ */
+public class BatchHandler {
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final Buffer NEWLINE = Buffer.buffer("\n");
+
+    private final ServiceStatusStore store;
+    private final int batchSize;
+
+    public BatchHandler(ServiceStatusStore store, int batchSize) {
+        checkArgument(batchSize > 0, "Batch size must be positive");
+        this.store = store;
+        this.batchSize = batchSize;
+    }
+
+    public void add(RoutingContext req) {
+        new BatchRun(req, this::addAll).start();
+    }
+
+    public void delete(RoutingContext req) {
+        new BatchRun(req, this::deleteAll).start();
+    }
+
+    // one service per line, in the format POST accepts, so an export can be imported elsewhere as is
+    public void export(RoutingContext req) {
+        HttpServerResponse response = req.response()
+                .setChunked(true)
+                .putHeader("content-type", NDJSON);
+        writeExport(response, store.getAll().iterator());
+    }
+
+    private void writeExport(HttpServerResponse response, Iterator<ServiceStatus> statuses) {
+        while (statuses.hasNext()) {
+            Buffer lines = Buffer.buffer();
+            for (int i = 0; i < batchSize && statuses.hasNext(); i++) {
+                lines.appendString(MainVerticle.serialize(statuses.next()).encode()).appendBuffer(NEWLINE);
+            }
+            response.write(lines);
+            if (response.writeQueueFull()) {
+                response.drainHandler(drained -> writeExport(response, statuses));
+                return;
+            }
+        }
+        response.end();
+    }
+
+    private Future<List<JsonObject>> addAll(List<Item> items) {
+        JsonObject[] results = new JsonObject[items.size()];
+        List<Service> services = new ArrayList<>(items.size());
+        List<Integer> positions = new ArrayList<>(items.size());
+        Instant now = Instant.now();
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                services.add(toService(items.get(i), now));
+                positions.add(i);
+            } catch (RuntimeException e) {
+                results[i] = items.get(i).invalid(e);
+            }
+        }
+        if (services.isEmpty()) {
+            return Future.succeededFuture(Arrays.asList(results));
+        }
+        return store.addAll(services).map(added -> {
+            for (int i = 0; i < services.size(); i++) {
+                Item item = items.get(positions.get(i));
+                results[positions.get(i)] = item.result(added.get(i) ? "added" : "exists");
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    private Future<List<JsonObject>> deleteAll(List<Item> items) {
+        JsonObject[] results = new JsonObject[items.size()];
+        List<URI> uris = new ArrayList<>(items.size());
+        List<Integer> positions = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                uris.add(toUri(items.get(i)));
+                positions.add(i);
+            } catch (RuntimeException e) {
+                results[i] = items.get(i).invalid(e);
+            }
+        }
+        if (uris.isEmpty()) {
+            return Future.succeededFuture(Arrays.asList(results));
+        }
+        return store.deleteAll(uris).map(deleted -> {
+            for (int i = 0; i < uris.size(); i++) {
+                Item item = items.get(positions.get(i));
+                results[positions.get(i)] = item.result(deleted.get(i) ? "deleted" : "not_found");
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    private static Service toService(Item item, Instant now) {
+        URI uri = toUri(item);
+        String name = item.json.getString("name");
+        ProbeType probeType = item.json.containsKey("probe_type") ? ProbeType.of(item.json.getString("probe_type")) : ProbeType.GET;
+        Duration pollInterval = Duration.ofSeconds(item.json.getLong("poll_interval", probeType.defaultPollInterval().getSeconds()));
+        return new Service(uri, name, now, pollInterval, probeType, item.json.getString("expect"));
+    }
+
+    private static URI toUri(Item item) {
+        checkArgument(nonNull(item.json), item.error);
+        String url = item.json.getString("url");
+        checkArgument(nonNull(url), "url must be non-null");
+        return URI.create(url);
+    }
+
+    private class BatchRun {
+        private final Context context;
+        private final HttpServerRequest request;
+        private final HttpServerResponse response;
+        private final Function<List<Item>, Future<List<JsonObject>>> apply;
+        private final boolean ndjson;
+        private List<Item> chunk = new ArrayList<>();
+        private int nextIndex;
+        private int arrayDepth;
+        private boolean firstResult = true;
+        private boolean writing;
+        private boolean ended;
+        private boolean closed;
+        private boolean finished;
+        private String malformed;
+        private RecordParser lines;
+        private JsonParser json;
+
+        private BatchRun(RoutingContext req, Function<List<Item>, Future<List<JsonObject>>> apply) {
+            this.context = req.vertx().getOrCreateContext();
+            this.request = req.request();
+            this.response = req.response();
+            this.apply = apply;
+            String contentType = request.getHeader("content-type");
+            this.ndjson = contentType != null && contentType.startsWith(NDJSON);
+        }
+
+        private void start() {
+            response.setChunked(true)
+                    .putHeader("content-type", ndjson ? NDJSON : "application/json")
+                    .closeHandler(closedConnection -> closed = true);
+            if (ndjson) {
+                lines = RecordParser.newDelimited(NEWLINE, this::onLine);
+                request.handler(lines);
+            } else {
+                response.write("[");
+                json = JsonParser.newParser().objectValueMode();
+                json.handler(event -> {
+                    if (event.type() == JsonEventType.START_ARRAY) {
+                        if (arrayDepth++ == 1) {
+                            onItem(new Item(nextIndex++, null, "item must be an object"));
+                        }
+                    } else if (event.type() == JsonEventType.END_ARRAY) {
+                        arrayDepth--;
+                    } else if (event.type() == JsonEventType.VALUE && arrayDepth <= 1) {
+                        boolean isObject = event.value() instanceof JsonObject;
+                        onItem(new Item(nextIndex++, isObject ? event.objectValue() : null, "item must be an object"));
+                    }
+                });
+                json.exceptionHandler(e -> {
+                    if (malformed != null) {
+                        return;
+                    }
+                    // nothing after this point can be trusted, finish off what was read so far
+                    malformed = "malformed JSON: " + e.getMessage();
+                    ended = true;
+                    request.pause();
+                    flushIfDone();
+                });
+                request.handler(json);
+            }
+            request.endHandler(end -> {
+                if (ended) {
+                    // already given up on a malformed body
+                    return;
+                }
+                if (ndjson) {
+                    // the last record doesn't need a trailing newline
+                    lines.handle(NEWLINE);
+                } else {
+                    json.end();
+                }
+                ended = true;
+                flushIfDone();
+            });
+        }
+
+        private void onLine(Buffer line) {
+            if (line.toString().trim().isEmpty()) {
+                return;
+            }
+            int index = nextIndex++;
+            try {
+                onItem(new Item(index, new JsonObject(line), null));
+            } catch (RuntimeException e) {
+                onItem(new Item(index, null, "malformed JSON: " + e.getMessage()));
+            }
+        }
+
+        private void onItem(Item item) {
+            if (malformed != null) {
+                return;
+            }
+            chunk.add(item);
+            if (chunk.size() >= batchSize) {
+                pause();
+                flush();
+            }
+        }
+
+        private void flushIfDone() {
+            if (ended && !writing && !finished) {
+                if (chunk.isEmpty()) {
+                    finish();
+                } else {
+                    flush();
+                }
+            }
+        }
+
+        private void flush() {
+            writing = true;
+            List<Item> items = chunk;
+            chunk = new ArrayList<>();
+            // batches that complete straight away (nothing valid in them) must not re-enter the parser
+            apply.apply(items).setHandler(written -> context.runOnContext(next -> {
+                writing = false;
+                if (written.succeeded()) {
+                    writeResults(written.result());
+                } else {
+                    // the whole transaction was rolled back
+                    List<JsonObject> failed = new ArrayList<>(items.size());
+                    items.forEach(item -> failed.add(item.result("failed").put("error", String.valueOf(written.cause().getMessage()))));
+                    writeResults(failed);
+                }
+                if (closed) {
+                    return;
+                }
+                if (response.writeQueueFull()) {
+                    response.drainHandler(drained -> resume());
+                } else {
+                    resume();
+                }
+            }));
+        }
+
+        private void writeResults(List<JsonObject> results) {
+            if (closed) {
+                return;
+            }
+            Buffer buffer = Buffer.buffer();
+            for (JsonObject result : results) {
+                if (!ndjson && !firstResult) {
+                    buffer.appendString(",");
+                }
+                firstResult = false;
+                buffer.appendString(result.encode());
+                if (ndjson) {
+                    buffer.appendBuffer(NEWLINE);
+                }
+            }
+            response.write(buffer);
+        }
+
+        private void pause() {
+            request.pause();
+            if (ndjson) {
+                lines.pause();
+            } else {
+                json.pause();
+            }
+        }
+
+        private void resume() {
+            // records already buffered by the parser come out first and may fill up the next batch
+            if (ndjson) {
+                lines.resume();
+            } else {
+                json.resume();
+            }
+            if (writing) {
+                return;
+            }
+            if (ended) {
+                flushIfDone();
+            } else {
+                request.resume();
+            }
+        }
+
+        private void finish() {
+            finished = true;
+            if (closed) {
+                return;
+            }
+            if (malformed != null) {
+                writeResults(Arrays.asList(new JsonObject().put("result", "invalid").put("error", malformed)));
+            }
+            response.end(ndjson ? "" : "]");
+        }
+    }
+
+    private static class Item {
+        private final int index;
+        private final JsonObject json;
+        private final String error;
+
+        private Item(int index, JsonObject json, String error) {
+            this.index = index;
+            this.json = json;
+            this.error = error;
+        }
+
+        private JsonObject result(String result) {
+            JsonObject json = new JsonObject().put("index", index);
+            if (this.json != null && this.json.getValue("url") instanceof String) {
+                json.put("url", this.json.getString("url"));
+            }
+            return json.put("result", result);
+        }
+
+        private JsonObject invalid(RuntimeException e) {
+            return result("invalid").put("error", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package se.kry.codetest.cluster;
+
+import io.vertx.core.json.JsonObject;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.services.ProbeType;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.regex.Pattern;
+
+/**
+ * What nodes tell each other over the event bus. Instants go as epoch nanoseconds so a service compares equal on
+ * every node, whatever precision its creation time has.
+ */
+final class ClusterMessages {
+
+    static final String NODE = "node";
+
+    private ClusterMessages() {
+    }
+
+    static JsonObject encode(Service service) {
+        return new JsonObject()
+                .put("url", service.uri().toString())
+                .put("name", service.name().orElse(null))
+                .put("created_at", nanos(service.createdAt()))
+                .put("poll_interval", service.pollInterval().toMillis())
+                .put("probe_type", service.probeType().name())
+                .put("expect", service.expect().map(Pattern::pattern).orElse(null));
+    }
+
+    static Service decodeService(JsonObject json) {
+        return new Service(
+                URI.create(json.getString("url")),
+                json.getString("name"),
+                instant(json.getLong("created_at")),
+                Duration.ofMillis(json.getLong("poll_interval")),
+                ProbeType.valueOf(json.getString("probe_type")),
+                json.getString("expect")
+        );
+    }
+
+    static JsonObject encode(ProbeResult probe) {
+        return new JsonObject()
+                .put("url", probe.uri().toString())
+                .put("checked_at", nanos(probe.timestamp()))
+                .put("status", probe.status().name())
+                .put("latency_nanos", probe.latencyNanos())
+                .put("status_code", probe.statusCode())
+                .put("failure", probe.failure().map(FailureClass::name).orElse(null));
+    }
+
+    static ProbeResult decodeProbe(JsonObject json) {
+        String failure = json.getString("failure");
+        return new ProbeResult(
+                URI.create(json.getString("url")),
+                instant(json.getLong("checked_at")),
+                Status.valueOf(json.getString("status")),
+                json.getLong("latency_nanos"),
+                json.getInteger("status_code"),
+                failure == null ? null : FailureClass.valueOf(failure)
+        );
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static Instant instant(long nanos) {
+        return Instant.ofEpochSecond(0, nanos);
+    }
+}
@@ -0,0 +1,225 @@
+package se.kry.codetest.cluster;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import se.kry.codetest.ProbeObserver;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+import se.kry.codetest.services.ServiceStatusListener;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.singleton;
+import static java.util.Objects.nonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * This node's part in a cluster of pollers sharing one database. Nodes announce themselves on the event bus every
+ * heartbeat and are dropped once they miss a few. Each node only probes the services the {@link HashRing} of the live
+ * nodes gives it, and publishes what its probes find, so every node has every service's status and can answer for all
+ * of them. Services added or deleted through one node are applied to the others' stores and written to their
+ * databases: nothing changes when the nodes share one, and each stays complete when they don't.
+ * <p>
+ * Nothing here depends on the cluster manager: on a clustered event bus the nodes are processes, on a local one any
+ * number of nodes in one process make a cluster just the same.
+ */
+public class ClusterNode implements ServiceStatusListener, ProbeObserver {
+
+    static final String HEARTBEATS = "cluster.heartbeat";
+    static final String PROBES = "cluster.probe";
+    static final String SERVICES = "cluster.service";
+    private static final int POINTS_PER_NODE = 128;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterNode.class);
+
+    private final String id;
+    private final ServiceStatusStore store;
+    private final long heartbeatMillis;
+    private final long timeoutMillis;
+    private final List<ProbeObserver> observers = new CopyOnWriteArrayList<>();
+    // when each other node was last heard from, in System.nanoTime()
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+    // changes being applied from other nodes, which aren't published again
+    private final Set<URI> replicating = ConcurrentHashMap.newKeySet();
+    private final List<MessageConsumer<JsonObject>> consumers = new ArrayList<>();
+    // the last change from another node, the next one is applied once it is written
+    private Future<Void> replicated = Future.succeededFuture();
+    private volatile HashRing ring;
+    private volatile boolean started;
+    // owns nothing until the other nodes have had a heartbeat to answer, rather than probing everything meanwhile
+    private volatile boolean settled;
+    private Vertx vertx;
+    private long timerId;
+
+    public ClusterNode(String id, ServiceStatusStore store, long heartbeatMillis, long timeoutMillis) {
+        checkArgument(nonNull(id) && !id.isEmpty(), "Node id must be non-empty");
+        checkArgument(heartbeatMillis > 0, "Heartbeat must be positive");
+        checkArgument(timeoutMillis > heartbeatMillis, "Timeout must be longer than the heartbeat");
+        this.id = id;
+        this.store = store;
+        this.heartbeatMillis = heartbeatMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.ring = new HashRing(singleton(id), POINTS_PER_NODE);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    // told of the probes other nodes made
+    public void addObserver(ProbeObserver observer) {
+        observers.add(observer);
+    }
+
+    // once the store is loaded, so the services in it aren't announced as new
+    public void start(Vertx vertx) {
+        this.vertx = vertx;
+        EventBus eventBus = vertx.eventBus();
+        consumers.add(eventBus.consumer(HEARTBEATS, message -> onHeartbeat(message.body())));
+        consumers.add(eventBus.consumer(PROBES, message -> onRemoteProbe(message.body())));
+        consumers.add(eventBus.consumer(SERVICES, message -> onRemoteChange(message.body())));
+        started = true;
+        // the others answer a newcomer straight away instead of on their next heartbeat
+        eventBus.publish(HEARTBEATS, heartbeat().put("joining", true));
+        vertx.setTimer(heartbeatMillis, settledId -> settled = true);
+        timerId = vertx.setPeriodic(heartbeatMillis, heartbeatId -> {
+            eventBus.publish(HEARTBEATS, heartbeat());
+            expire();
+        });
+    }
+
+    // tells the others right away rather than having them time this node out
+    public void stop() {
+        started = false;
+        settled = false;
+        vertx.cancelTimer(timerId);
+        consumers.forEach(MessageConsumer::unregister);
+        consumers.clear();
+        vertx.eventBus().publish(HEARTBEATS, heartbeat().put("leaving", true));
+    }
+
+    public boolean owns(URI uri) {
+        return settled && ring.owner(uri).equals(id);
+    }
+
+    public SortedSet<String> members() {
+        SortedSet<String> members = new TreeSet<>(lastSeen.keySet());
+        members.add(id);
+        return members;
+    }
+
+    @Override
+    public void onProbe(ProbeResult result) {
+        if (!started) {
+            return;
+        }
+        // the status as confirmed here, the others don't see the probes that led to it
+        store.get(result.uri()).ifPresent(current -> vertx.eventBus().publish(PROBES, new JsonObject()
+                .put(ClusterMessages.NODE, id)
+                .put("status", current.status().name())
+                .put("probe", ClusterMessages.encode(result))));
+    }
+
+    @Override
+    public void onAdded(Service service) {
+        if (started && !replicating.contains(service.uri())) {
+            vertx.eventBus().publish(SERVICES, new JsonObject()
+                    .put(ClusterMessages.NODE, id)
+                    .put("type", "added")
+                    .put("service", ClusterMessages.encode(service)));
+        }
+    }
+
+    @Override
+    public void onRemoved(Service service) {
+        if (started && !replicating.contains(service.uri())) {
+            vertx.eventBus().publish(SERVICES, new JsonObject()
+                    .put(ClusterMessages.NODE, id)
+                    .put("type", "removed")
+                    .put("url", service.uri().toString()));
+        }
+    }
+
+    private JsonObject heartbeat() {
+        return new JsonObject().put(ClusterMessages.NODE, id);
+    }
+
+    private void onHeartbeat(JsonObject heartbeat) {
+        String node = heartbeat.getString(ClusterMessages.NODE);
+        if (node.equals(id)) {
+            return;
+        }
+        if (heartbeat.getBoolean("leaving", false)) {
+            if (lastSeen.remove(node) != null) {
+                rebuild();
+            }
+            return;
+        }
+        if (lastSeen.put(node, System.nanoTime()) == null) {
+            rebuild();
+        }
+        if (heartbeat.getBoolean("joining", false)) {
+            vertx.eventBus().publish(HEARTBEATS, heartbeat());
+        }
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        if (lastSeen.values().removeIf(seen -> NANOSECONDS.toMillis(now - seen) > timeoutMillis)) {
+            rebuild();
+        }
+    }
+
+    private synchronized void rebuild() {
+        ring = new HashRing(members(), POINTS_PER_NODE);
+    }
+
+    private void onRemoteProbe(JsonObject message) {
+        if (message.getString(ClusterMessages.NODE).equals(id)) {
+            return;
+        }
+        ProbeResult probe = ClusterMessages.decodeProbe(message.getJsonObject("probe"));
+        Status status = Status.valueOf(message.getString("status"));
+        store.get(probe.uri()).ifPresent(current ->
+                store.update(probe.uri(), new ServiceStatus(current.service(), status, probe, null)));
+        observers.forEach(observer -> observer.onProbe(probe));
+    }
+
+    private void onRemoteChange(JsonObject message) {
+        if (message.getString(ClusterMessages.NODE).equals(id)) {
+            return;
+        }
+        boolean added = message.getString("type").equals("added");
+        Service service = added ? ClusterMessages.decodeService(message.getJsonObject("service")) : null;
+        URI uri = added ? service.uri() : URI.create(message.getString("url"));
+        // in the order they were made, a delete overtaking the add before it would bring the service back
+        synchronized (this) {
+            replicated = replicated.compose(previous -> {
+                replicating.add(uri);
+                return added ? store.addReplica(service) : store.removeReplica(uri);
+            }).recover(failure -> {
+                LOGGER.error("Could not apply a change to " + uri + " from another node", failure);
+                return Future.succeededFuture();
+            }).map(done -> {
+                replicating.remove(uri);
+                return null;
+            });
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package se.kry.codetest.cluster;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Consistent hashing of service URIs onto nodes. Every node is placed on the ring at a number of points, a URI
+ * belongs to the first node at or after its own hash. When a node joins or leaves, only the URIs between its points
+ * and the ones before them move, about 1/n of them, and the points keep the shares within a few percent of even.
+ */
+class HashRing {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    HashRing(Collection<String> nodes, int pointsPerNode) {
+        checkArgument(!nodes.isEmpty(), "Nodes must not be empty");
+        checkArgument(pointsPerNode > 0, "Points per node must be positive");
+        for (String node : nodes) {
+            for (int i = 0; i < pointsPerNode; i++) {
+                // on the rare collision the node sorting first keeps the point, the same on every node
+                points.merge(hash(node + "#" + i), node, (current, other) -> current.compareTo(other) <= 0 ? current : other);
+            }
+        }
+    }
+
+    String owner(URI uri) {
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(uri.toString()));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        return HASH.hashString(value, UTF_8).asLong();
+    }
+}
@@ -0,0 +1,59 @@
+package se.kry.codetest.history;
+
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+
+import java.time.Instant;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A rollup still being added to, from probes or from finer rollups.
+ */
+class Bucket {
+    private final long start;
+    // the earliest probe in it, which its segment is keyed by
+    private long first = Long.MAX_VALUE;
+    private long probes;
+    private long ok;
+    private long latencySumMicros;
+    private long maxLatencyMicros;
+
+    Bucket(long start) {
+        this.start = start;
+    }
+
+    long start() {
+        return start;
+    }
+
+    long first() {
+        return first;
+    }
+
+    void add(ProbeResult result) {
+        long latencyMicros = NANOSECONDS.toMicros(result.latencyNanos());
+        // a probe completing after its own bucket closed is counted in this one
+        first = Math.min(first, Math.max(start, result.timestamp().toEpochMilli()));
+        probes++;
+        ok += result.status() == Status.OK ? 1 : 0;
+        latencySumMicros += latencyMicros;
+        maxLatencyMicros = Math.max(maxLatencyMicros, latencyMicros);
+    }
+
+    void add(Rollup rollup) {
+        probes += rollup.probes();
+        ok += rollup.ok();
+        latencySumMicros += rollup.meanLatencyMicros() * rollup.probes();
+        maxLatencyMicros = Math.max(maxLatencyMicros, rollup.maxLatencyMicros());
+    }
+
+    void add(Bucket bucket) {
+        add(bucket.toRollup());
+        first = Math.min(first, bucket.first);
+    }
+
+    Rollup toRollup() {
+        return new Rollup(Instant.ofEpochMilli(start), probes, ok, latencySumMicros / probes, maxLatencyMicros);
+    }
+}
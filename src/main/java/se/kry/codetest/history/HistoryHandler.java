@@ -0,0 +1,131 @@
+package se.kry.codetest.history;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import se.kry.codetest.ProbeResult;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import static java.time.format.DateTimeFormatter.ISO_INSTANT;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * GET /service/history?url=...&amp;resolution=raw|minute|hour&amp;from=...&amp;to=..., with ISO-8601 instants. Without
+ * them it returns the last day in minute rollups.
+ */
+public class HistoryHandler {
+
+    private static final Duration DEFAULT_RANGE = Duration.ofDays(1);
+
+    private final HistoryStore historyStore;
+
+    public HistoryHandler(HistoryStore historyStore) {
+        this.historyStore = historyStore;
+    }
+
+    public void handle(RoutingContext req) {
+        HttpServerRequest request = req.request();
+        URI uri;
+        Resolution resolution;
+        Instant from;
+        Instant to;
+        try {
+            uri = URI.create(required(request, "url"));
+            resolution = toResolution(request.getParam("resolution"));
+            to = request.getParam("to") == null ? Instant.now() : toInstant("to", request.getParam("to"));
+            from = request.getParam("from") == null ? to.minus(DEFAULT_RANGE) : toInstant("from", request.getParam("from"));
+            if (!from.isBefore(to)) {
+                throw new IllegalArgumentException("from must be before to");
+            }
+        } catch (IllegalArgumentException e) {
+            req.response()
+                    .putHeader("content-type", "text/plain")
+                    .setStatusCode(400)
+                    .end(e.getMessage());
+            return;
+        }
+        if (resolution == Resolution.RAW) {
+            historyStore.probes(uri, from, to)
+                    .setHandler(probes -> respond(req, uri, resolution, probes, HistoryHandler::serialize));
+        } else {
+            historyStore.rollups(uri, resolution, from, to)
+                    .setHandler(rollups -> respond(req, uri, resolution, rollups, HistoryHandler::serialize));
+        }
+    }
+
+    private static <T> void respond(RoutingContext req, URI uri, Resolution resolution, AsyncResult<List<T>> entries,
+                                    Function<T, JsonObject> serializer) {
+        if (entries.failed()) {
+            req.response()
+                    .putHeader("content-type", "text/plain")
+                    .setStatusCode(500)
+                    .end("FAIL");
+            return;
+        }
+        JsonObject json = new JsonObject()
+                .put("url", uri.toString())
+                .put("resolution", resolution.name().toLowerCase(Locale.ROOT))
+                .put("entries", new JsonArray(entries.result().stream().map(serializer).collect(toList())));
+        req.response()
+                .putHeader("content-type", "application/json")
+                .end(json.encode());
+    }
+
+    private static JsonObject serialize(ProbeResult probe) {
+        JsonObject json = new JsonObject()
+                .put("timestamp", ISO_INSTANT.format(probe.timestamp()))
+                .put("status", probe.status())
+                .put("latency_ms", probe.latencyNanos() / 1e6);
+        if (probe.statusCode() != ProbeResult.NO_STATUS_CODE) {
+            json.put("status_code", probe.statusCode());
+        }
+        probe.failure().ifPresent(failure -> json.put("failure", failure));
+        return json;
+    }
+
+    private static JsonObject serialize(Rollup rollup) {
+        return new JsonObject()
+                .put("start", ISO_INSTANT.format(rollup.start()))
+                .put("probes", rollup.probes())
+                .put("ok", rollup.ok())
+                .put("mean_latency_ms", rollup.meanLatencyMicros() / 1e3)
+                .put("max_latency_ms", rollup.maxLatencyMicros() / 1e3);
+    }
+
+    private static String required(HttpServerRequest request, String param) {
+        String value = request.getParam(param);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(param + " is required");
+        }
+        return value;
+    }
+
+    private static Resolution toResolution(String value) {
+        if (value == null) {
+            return Resolution.MINUTE;
+        }
+        for (Resolution resolution : Resolution.values()) {
+            if (resolution.name().equalsIgnoreCase(value)) {
+                return resolution;
+            }
+        }
+        throw new IllegalArgumentException("resolution must be raw, minute or hour");
+    }
+
+    private static Instant toInstant(String param, String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(param + " must be an ISO-8601 instant");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package se.kry.codetest.history;
+
+import io.vertx.core.Future;
+
+import java.net.URI;
+import java.util.List;
+
+public interface HistoryRepository {
+
+    // replaces a stored segment with the same service, resolution and start
+    Future<Void> save(List<Segment> segments);
+
+    // segments of one service that may hold entries between from (inclusive) and to (exclusive), epoch millis
+    Future<List<Segment>> find(URI uri, Resolution resolution, long from, long to);
+
+    // drops segments of a resolution whose last entry is older than before, epoch millis
+    Future<Void> deleteBefore(Resolution resolution, long before);
+
+}
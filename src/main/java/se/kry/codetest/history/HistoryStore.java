@@ -0,0 +1,143 @@
+package se.kry.codetest.history;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import se.kry.codetest.ProbeObserver;
+import se.kry.codetest.ProbeResult;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Every probe outcome, kept per service as delta encoded segments of raw probes and of minute and hour rollups.
+ * Probes only touch their own service's open segments in memory; segments are written in groups every flush, the
+ * open ones that changed included, so a crash loses at most one flush interval. Open segments are kept short, so a
+ * flush rewrites little of what it already wrote. Each resolution is kept for its own retention.
+ */
+public class HistoryStore implements ProbeObserver {
+
+    private static final long RETENTION_INTERVAL_MILLIS = HOURS.toMillis(1);
+
+    private final HistoryRepository repository;
+    private final long flushIntervalMillis;
+    private final Map<URI, ServiceHistory> histories = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    public HistoryStore(HistoryRepository repository, long flushIntervalMillis) {
+        checkArgument(flushIntervalMillis > 0, "Flush interval must be positive");
+        this.repository = repository;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public void start(Vertx vertx) {
+        vertx.setPeriodic(flushIntervalMillis, timerId -> flush(System.currentTimeMillis()));
+        vertx.setPeriodic(RETENTION_INTERVAL_MILLIS, timerId -> expire(System.currentTimeMillis()));
+    }
+
+    @Override
+    public void onProbe(ProbeResult result) {
+        // compute rather than computeIfAbsent, a flush may be dropping the same history as empty
+        histories.compute(result.uri(), (uri, history) -> {
+            ServiceHistory appended = history == null ? new ServiceHistory(uri) : history;
+            appended.append(result);
+            return appended;
+        });
+    }
+
+    public Future<Void> flush(long now) {
+        if (!flushing.compareAndSet(false, true)) {
+            // the previous flush is still being written, this one's segments go with the next
+            return Future.succeededFuture();
+        }
+        List<ServiceHistory> drained = new ArrayList<>();
+        List<Segment> segments = new ArrayList<>();
+        for (URI uri : histories.keySet()) {
+            histories.computeIfPresent(uri, (key, history) -> {
+                history.closeBefore(now);
+                List<Segment> dirty = history.drain();
+                if (!dirty.isEmpty()) {
+                    drained.add(history);
+                    segments.addAll(dirty);
+                    return history;
+                }
+                // a service that stopped being probed is forgotten once all of it is saved
+                return history.isEmpty() ? null : history;
+            });
+        }
+        if (segments.isEmpty()) {
+            flushing.set(false);
+            return Future.succeededFuture();
+        }
+        Future<Void> flushed = Future.future();
+        repository.save(segments).setHandler(saved -> {
+            if (saved.succeeded()) {
+                drained.forEach(ServiceHistory::saved);
+            } else {
+                // written again with the next flush
+                drained.forEach(ServiceHistory::failed);
+            }
+            flushing.set(false);
+            flushed.handle(saved);
+        });
+        return flushed;
+    }
+
+    @SuppressWarnings("rawtypes") // CompositeFuture.all takes a raw list
+    public Future<Void> expire(long now) {
+        List<Future> deleted = new ArrayList<>();
+        for (Resolution resolution : Resolution.values()) {
+            deleted.add(repository.deleteBefore(resolution, now - resolution.retention().toMillis()));
+        }
+        return CompositeFuture.all(deleted).mapEmpty();
+    }
+
+    public Future<List<ProbeResult>> probes(URI uri, Instant from, Instant to) {
+        return segments(uri, Resolution.RAW, from, to).map(segments -> segments.stream()
+                .flatMap(segment -> SeriesCodec.decodeProbes(uri, segment.start(), segment.data()).stream())
+                .filter(probe -> !probe.timestamp().isBefore(from) && probe.timestamp().isBefore(to))
+                .sorted(Comparator.comparing(ProbeResult::timestamp))
+                .collect(toList()));
+    }
+
+    public Future<List<Rollup>> rollups(URI uri, Resolution resolution, Instant from, Instant to) {
+        checkArgument(resolution != Resolution.RAW, "Resolution must be a rollup");
+        return segments(uri, resolution, from, to).map(segments -> {
+            // the same bucket shows up in two segments when it was written both before and after a restart
+            TreeMap<Long, Bucket> buckets = new TreeMap<>();
+            for (Segment segment : segments) {
+                for (Rollup rollup : SeriesCodec.decodeRollups(resolution, segment.start(), segment.data())) {
+                    if (!rollup.start().isBefore(from) && rollup.start().isBefore(to)) {
+                        buckets.computeIfAbsent(rollup.start().toEpochMilli(), Bucket::new).add(rollup);
+                    }
+                }
+            }
+            return buckets.values().stream().map(Bucket::toRollup).collect(toList());
+        });
+    }
+
+    private Future<List<Segment>> segments(URI uri, Resolution resolution, Instant from, Instant to) {
+        return repository.find(uri, resolution, from.toEpochMilli(), to.toEpochMilli()).map(stored -> {
+            Map<Long, Segment> byStart = new LinkedHashMap<>();
+            stored.forEach(segment -> byStart.put(segment.start(), segment));
+            ServiceHistory history = histories.get(uri);
+            if (history != null) {
+                // what is in memory is at least as new as what got written
+                history.segments(resolution).forEach(segment -> byStart.put(segment.start(), segment));
+            }
+            return new ArrayList<>(byStart.values());
+        });
+    }
+}
@@ -0,0 +1,53 @@
+package se.kry.codetest.history;
+
+import java.time.Duration;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+public enum Resolution {
+    // every probe as it happened, in hourly segments
+    RAW(0, 0, HOURS.toMillis(1), Duration.ofDays(7)),
+    // one rollup per minute, in hourly segments
+    MINUTE(1, MINUTES.toMillis(1), HOURS.toMillis(1), Duration.ofDays(30)),
+    // one rollup per hour, in daily segments
+    HOUR(2, HOURS.toMillis(1), DAYS.toMillis(1), Duration.ofDays(365));
+
+    // persisted, unlike the ordinal
+    private final int id;
+    private final long bucketMillis;
+    private final long segmentMillis;
+    private final Duration retention;
+
+    Resolution(int id, long bucketMillis, long segmentMillis, Duration retention) {
+        this.id = id;
+        this.bucketMillis = bucketMillis;
+        this.segmentMillis = segmentMillis;
+        this.retention = retention;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public long bucketMillis() {
+        return bucketMillis;
+    }
+
+    public long segmentMillis() {
+        return segmentMillis;
+    }
+
+    public Duration retention() {
+        return retention;
+    }
+
+    long bucketStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, bucketMillis);
+    }
+
+    long segmentStart(long timestamp) {
+        return timestamp - Math.floorMod(timestamp, segmentMillis);
+    }
+}
@@ -0,0 +1,65 @@
+package se.kry.codetest.history;
+
+import java.time.Instant;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+/**
+ * Probes of one service over a minute or an hour.
+ */
+public class Rollup {
+    private final Instant start;
+    private final long probes;
+    private final long ok;
+    private final long meanLatencyMicros;
+    private final long maxLatencyMicros;
+
+    public Rollup(Instant start, long probes, long ok, long meanLatencyMicros, long maxLatencyMicros) {
+        checkArgument(nonNull(start), "Start must be non-null");
+        checkArgument(probes > 0 && ok >= 0 && ok <= probes, "Ok probes must be between 0 and the probe count");
+        this.start = start;
+        this.probes = probes;
+        this.ok = ok;
+        this.meanLatencyMicros = meanLatencyMicros;
+        this.maxLatencyMicros = maxLatencyMicros;
+    }
+
+    public Instant start() {
+        return start;
+    }
+
+    public long probes() {
+        return probes;
+    }
+
+    public long ok() {
+        return ok;
+    }
+
+    public long meanLatencyMicros() {
+        return meanLatencyMicros;
+    }
+
+    public long maxLatencyMicros() {
+        return maxLatencyMicros;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Rollup rollup = (Rollup) o;
+        return probes == rollup.probes &&
+                ok == rollup.ok &&
+                meanLatencyMicros == rollup.meanLatencyMicros &&
+                maxLatencyMicros == rollup.maxLatencyMicros &&
+                start.equals(rollup.start);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, probes, ok, meanLatencyMicros, maxLatencyMicros);
+    }
+}
@@ -0,0 +1,56 @@
+package se.kry.codetest.history;
+
+import java.net.URI;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+/**
+ * Encoded history of one service over one time partition, the unit history is written and read in.
+ */
+public class Segment {
+    private final URI uri;
+    private final Resolution resolution;
+    private final long start;
+    private final long end;
+    private final int count;
+    private final byte[] data;
+
+    public Segment(URI uri, Resolution resolution, long start, long end, int count, byte[] data) {
+        checkArgument(nonNull(uri), "URI must be non-null");
+        checkArgument(nonNull(resolution), "Resolution must be non-null");
+        checkArgument(nonNull(data), "Data must be non-null");
+        this.uri = uri;
+        this.resolution = resolution;
+        this.start = start;
+        this.end = end;
+        this.count = count;
+        this.data = data;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    public Resolution resolution() {
+        return resolution;
+    }
+
+    // time of the first probe in it, epoch millis
+    public long start() {
+        return start;
+    }
+
+    // time of the last entry, epoch millis
+    public long end() {
+        return end;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public byte[] data() {
+        return data;
+    }
+}
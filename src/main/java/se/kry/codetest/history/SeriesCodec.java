@@ -0,0 +1,212 @@
+package se.kry.codetest.history;
+
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Segment encoding. Every number is a LEB128 varint, most of them as a zigzag delta from the previous entry:
+ * <ul>
+ * <li>probe: time delta (ms), header byte (status, whether the status code changed, failure class), status code if it
+ * changed, latency delta (micros). A service probed every minute that keeps answering the same way takes 5-6 bytes per
+ * probe.</li>
+ * <li>rollup: bucket delta, probes, ok probes, mean and max latency (micros).</li>
+ * </ul>
+ */
+final class SeriesCodec {
+
+    private static final Status[] STATUSES = Status.values();
+    private static final FailureClass[] FAILURES = FailureClass.values();
+    private static final int STATUS_MASK = 0x3;
+    private static final int CODE_CHANGED = 0x4;
+    // failure class ordinal + 1 in the upper bits, 0 for none
+    private static final int FAILURE_SHIFT = 3;
+
+    private SeriesCodec() {
+    }
+
+    static List<ProbeResult> decodeProbes(URI uri, long start, byte[] data) {
+        List<ProbeResult> probes = new ArrayList<>();
+        Reader in = new Reader(data);
+        long timestamp = start;
+        long latencyMicros = 0;
+        int code = ProbeResult.NO_STATUS_CODE;
+        while (in.hasMore()) {
+            timestamp += in.readZigZag();
+            int header = in.readByte();
+            if ((header & CODE_CHANGED) != 0) {
+                code = (int) in.readVarLong();
+            }
+            latencyMicros += in.readZigZag();
+            int failure = header >>> FAILURE_SHIFT;
+            probes.add(new ProbeResult(
+                    uri,
+                    Instant.ofEpochMilli(timestamp),
+                    STATUSES[header & STATUS_MASK],
+                    MICROSECONDS.toNanos(latencyMicros),
+                    code,
+                    failure == 0 ? null : FAILURES[failure - 1]
+            ));
+        }
+        return probes;
+    }
+
+    static List<Rollup> decodeRollups(Resolution resolution, long start, byte[] data) {
+        List<Rollup> rollups = new ArrayList<>();
+        Reader in = new Reader(data);
+        long base = resolution.bucketStart(start);
+        long bucket = 0;
+        while (in.hasMore()) {
+            bucket += in.readZigZag();
+            rollups.add(new Rollup(
+                    Instant.ofEpochMilli(base + bucket * resolution.bucketMillis()),
+                    in.readVarLong(),
+                    in.readVarLong(),
+                    in.readVarLong(),
+                    in.readVarLong()
+            ));
+        }
+        return rollups;
+    }
+
+    /**
+     * Builds one segment, entry by entry. The segment starts at its first probe, rather than at its partition or its
+     * first bucket, which keeps it apart from a segment of the same partition written before a restart.
+     */
+    static class Encoder {
+        private final Resolution resolution;
+        private final long start;
+        private byte[] bytes = new byte[64];
+        private int size;
+        private int count;
+        private long end;
+        // state the next entry is encoded relative to
+        private long last;
+        private long lastLatencyMicros;
+        private int lastCode = ProbeResult.NO_STATUS_CODE;
+
+        Encoder(Resolution resolution, long start) {
+            this.resolution = resolution;
+            this.start = start;
+            this.end = start;
+            this.last = resolution == Resolution.RAW ? start : 0;
+        }
+
+        int count() {
+            return count;
+        }
+
+        // where the next segment of this resolution starts
+        long limit() {
+            return resolution.segmentStart(start) + resolution.segmentMillis();
+        }
+
+        void append(ProbeResult result) {
+            long timestamp = result.timestamp().toEpochMilli();
+            long latencyMicros = NANOSECONDS.toMicros(result.latencyNanos());
+            writeZigZag(timestamp - last);
+            boolean codeChanged = result.statusCode() != lastCode;
+            int failure = result.failure().map(failureClass -> failureClass.ordinal() + 1).orElse(0);
+            writeByte(result.status().ordinal() | (codeChanged ? CODE_CHANGED : 0) | failure << FAILURE_SHIFT);
+            if (codeChanged) {
+                writeVarLong(result.statusCode());
+            }
+            writeZigZag(latencyMicros - lastLatencyMicros);
+            last = timestamp;
+            lastLatencyMicros = latencyMicros;
+            lastCode = result.statusCode();
+            end = Math.max(end, timestamp);
+            count++;
+        }
+
+        void append(Rollup rollup) {
+            long bucket = (rollup.start().toEpochMilli() - resolution.bucketStart(start)) / resolution.bucketMillis();
+            writeZigZag(bucket - last);
+            writeVarLong(rollup.probes());
+            writeVarLong(rollup.ok());
+            writeVarLong(rollup.meanLatencyMicros());
+            writeVarLong(rollup.maxLatencyMicros());
+            last = bucket;
+            end = Math.max(end, rollup.start().toEpochMilli());
+            count++;
+        }
+
+        Segment build(URI uri) {
+            return new Segment(uri, resolution, start, end, count, Arrays.copyOf(bytes, size));
+        }
+
+        // the segment as it would be with one more rollup, this encoder is left as it is
+        Segment build(URI uri, Rollup open) {
+            Encoder copy = new Encoder(resolution, start);
+            copy.bytes = Arrays.copyOf(bytes, size + 64);
+            copy.size = size;
+            copy.count = count;
+            copy.end = end;
+            copy.last = last;
+            copy.append(open);
+            return copy.build(uri);
+        }
+
+        private void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeByte(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+        }
+    }
+
+    private static class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private boolean hasMore() {
+            return position < bytes.length;
+        }
+
+        private int readByte() {
+            return bytes[position++] & 0xFF;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private long readZigZag() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
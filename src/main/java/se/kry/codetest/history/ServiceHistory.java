@@ -0,0 +1,183 @@
+package se.kry.codetest.history;
+
+import se.kry.codetest.ProbeResult;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static se.kry.codetest.history.Resolution.HOUR;
+import static se.kry.codetest.history.Resolution.MINUTE;
+import static se.kry.codetest.history.Resolution.RAW;
+
+/**
+ * History of one service not yet known to be saved: the open segment of every resolution, the minute and hour being
+ * rolled up, and closed segments waiting to be written. Hours are rolled up from closed minutes, not from probes.
+ * <p>
+ * An open segment is written again on every flush it changed in, so it is closed early once it holds
+ * {@link #MAX_OPEN_ENTRIES} entries. A flush then rewrites at most that short tail per resolution, however long the
+ * segment's partition is.
+ */
+class ServiceHistory {
+
+    static final int MAX_OPEN_ENTRIES = 128;
+
+    private final URI uri;
+    private final SeriesCodec.Encoder[] open = new SeriesCodec.Encoder[Resolution.values().length];
+    private Bucket minute;
+    private Bucket hour;
+    // closed segments, written once and never changed again
+    private List<Segment> unsaved = new ArrayList<>();
+    private List<Segment> saving = new ArrayList<>();
+    // per resolution, whether its open segment changed since the last drain
+    private final boolean[] dirty = new boolean[Resolution.values().length];
+
+    ServiceHistory(URI uri) {
+        this.uri = uri;
+    }
+
+    synchronized void append(ProbeResult result) {
+        long timestamp = result.timestamp().toEpochMilli();
+        closeBefore(timestamp);
+        append(RAW, result, timestamp);
+        if (minute == null) {
+            minute = new Bucket(MINUTE.bucketStart(timestamp));
+        }
+        minute.add(result);
+        dirty[MINUTE.ordinal()] = true;
+    }
+
+    // closes every bucket and segment whose time is up, even when no probe came to do it
+    synchronized void closeBefore(long now) {
+        if (minute != null && now >= minute.start() + MINUTE.bucketMillis()) {
+            Bucket closed = minute;
+            minute = null;
+            append(MINUTE, closed);
+            if (hour != null && closed.start() >= hour.start() + HOUR.bucketMillis()) {
+                closeHour();
+            }
+            if (hour == null) {
+                hour = new Bucket(HOUR.bucketStart(closed.start()));
+            }
+            hour.add(closed);
+            dirty[HOUR.ordinal()] = true;
+        }
+        if (hour != null && now >= hour.start() + HOUR.bucketMillis()) {
+            closeHour();
+        }
+        for (Resolution resolution : Resolution.values()) {
+            SeriesCodec.Encoder encoder = open[resolution.ordinal()];
+            if (encoder != null && now >= encoder.limit()) {
+                close(resolution);
+            }
+        }
+    }
+
+    // everything to write: closed segments, and the open ones that changed as they are now so that a crash loses at
+    // most one flush
+    synchronized List<Segment> drain() {
+        List<Segment> segments = new ArrayList<>(unsaved);
+        saving.addAll(unsaved);
+        unsaved = new ArrayList<>();
+        for (Resolution resolution : Resolution.values()) {
+            if (dirty[resolution.ordinal()]) {
+                Segment segment = snapshot(resolution);
+                if (segment != null) {
+                    segments.add(segment);
+                }
+                dirty[resolution.ordinal()] = false;
+            }
+        }
+        return segments;
+    }
+
+    synchronized void saved() {
+        saving = new ArrayList<>();
+    }
+
+    synchronized void failed() {
+        saving.addAll(unsaved);
+        unsaved = saving;
+        saving = new ArrayList<>();
+        Arrays.fill(dirty, true);
+    }
+
+    synchronized boolean isEmpty() {
+        if (minute != null || hour != null || !unsaved.isEmpty() || !saving.isEmpty()) {
+            return false;
+        }
+        for (SeriesCodec.Encoder encoder : open) {
+            if (encoder != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the segments of a resolution only held here, newer than anything stored for the same start
+    synchronized List<Segment> segments(Resolution resolution) {
+        List<Segment> segments = new ArrayList<>();
+        for (Segment segment : saving) {
+            if (segment.resolution() == resolution) {
+                segments.add(segment);
+            }
+        }
+        for (Segment segment : unsaved) {
+            if (segment.resolution() == resolution) {
+                segments.add(segment);
+            }
+        }
+        Segment segment = snapshot(resolution);
+        if (segment != null) {
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    private Segment snapshot(Resolution resolution) {
+        SeriesCodec.Encoder encoder = open[resolution.ordinal()];
+        Bucket bucket = resolution == MINUTE ? minute : resolution == HOUR ? hour : null;
+        if (bucket != null) {
+            return (encoder == null ? new SeriesCodec.Encoder(resolution, bucket.first()) : encoder).build(uri, bucket.toRollup());
+        }
+        return encoder == null ? null : encoder.build(uri);
+    }
+
+    private void closeHour() {
+        append(HOUR, hour);
+        hour = null;
+    }
+
+    private void append(Resolution resolution, ProbeResult result, long timestamp) {
+        encoder(resolution, timestamp, timestamp).append(result);
+        dirty[resolution.ordinal()] = true;
+    }
+
+    private void append(Resolution resolution, Bucket bucket) {
+        encoder(resolution, bucket.start(), bucket.first()).append(bucket.toRollup());
+        dirty[resolution.ordinal()] = true;
+    }
+
+    // the open encoder for an entry at timestamp, a new one starting at first if the entry belongs to the next segment
+    // or the open one is full
+    private SeriesCodec.Encoder encoder(Resolution resolution, long timestamp, long first) {
+        SeriesCodec.Encoder encoder = open[resolution.ordinal()];
+        if (encoder != null && (timestamp >= encoder.limit() || encoder.count() >= MAX_OPEN_ENTRIES)) {
+            close(resolution);
+            encoder = null;
+        }
+        if (encoder == null) {
+            encoder = new SeriesCodec.Encoder(resolution, first);
+            open[resolution.ordinal()] = encoder;
+        }
+        return encoder;
+    }
+
+    private void close(Resolution resolution) {
+        unsaved.add(open[resolution.ordinal()].build(uri));
+        open[resolution.ordinal()] = null;
+        dirty[resolution.ordinal()] = true;
+    }
+
+}
@@ -0,0 +1,23 @@
+package se.kry.codetest.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up. Increments from many threads don't contend, reading it sums the cells.
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long n) {
+        count.add(n);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,59 @@
+package se.kry.codetest.metrics;
+
+import se.kry.codetest.uptime.LatencySketch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Durations in the log-linear buckets of {@link LatencySketch}, to within 1/16 of a microsecond value. Recording is
+ * one atomic increment and one adder, no locks and no allocation, so it can sit on every probe and every request.
+ */
+public final class Histogram {
+
+    private final AtomicLongArray counts = new AtomicLongArray(LatencySketch.BUCKETS);
+    private final LongAdder sumNanos = new LongAdder();
+
+    public void record(long nanos) {
+        counts.incrementAndGet(LatencySketch.index(NANOSECONDS.toMicros(nanos)));
+        sumNanos.add(nanos);
+    }
+
+    // elapsed since a System.nanoTime() taken earlier
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    Snapshot snapshot() {
+        long[] histogram = new long[LatencySketch.BUCKETS];
+        long count = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = counts.get(i);
+            count += histogram[i];
+        }
+        return new Snapshot(histogram, count, sumNanos.sum());
+    }
+
+    // counts read one bucket at a time while recording goes on, close enough for a scrape
+    static class Snapshot {
+        final long[] histogram;
+        final long count;
+        final long sumNanos;
+
+        private Snapshot(long[] histogram, long count, long sumNanos) {
+            this.histogram = histogram;
+            this.count = count;
+            this.sumNanos = sumNanos;
+        }
+
+        long quantileMicros(double q) {
+            return LatencySketch.quantile(histogram, count, q);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package se.kry.codetest.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+/**
+ * Every metric of one application, written out in the Prometheus text format. Metrics are registered once, when the
+ * application is wired together, and the hot paths keep the {@link Counter} or {@link Histogram} they got back, so
+ * they never look anything up here. Histograms are exposed as summaries in seconds, with their 0.5, 0.95 and 0.99
+ * quantiles.
+ * <p>
+ * A name with a label can be registered once per label value; registering the same series again returns the same
+ * metric.
+ */
+public class MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    // in the order registered, which is the order they are written out in
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    public Counter counter(String name, String help) {
+        return series(name, help, Type.COUNTER, "", Counter.class, new Counter());
+    }
+
+    public Counter counter(String name, String help, String label, String value) {
+        return series(name, help, Type.COUNTER, labels(label, value), Counter.class, new Counter());
+    }
+
+    // a count kept elsewhere, read on every scrape
+    public void counter(String name, String help, LongSupplier count) {
+        series(name, help, Type.COUNTER, "", LongSupplier.class, count);
+    }
+
+    public void gauge(String name, String help, LongSupplier value) {
+        series(name, help, Type.GAUGE, "", LongSupplier.class, value);
+    }
+
+    public void gauge(String name, String help, String label, String labelValue, LongSupplier value) {
+        series(name, help, Type.GAUGE, labels(label, labelValue), LongSupplier.class, value);
+    }
+
+    public Histogram histogram(String name, String help) {
+        return series(name, help, Type.SUMMARY, "", Histogram.class, new Histogram());
+    }
+
+    public Histogram histogram(String name, String help, String label, String value) {
+        return series(name, help, Type.SUMMARY, labels(label, value), Histogram.class, new Histogram());
+    }
+
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder(families.size() * 128);
+        families.values().forEach(family -> family.writeTo(out));
+        return out.toString();
+    }
+
+    private synchronized <T> T series(String name, String help, Type type, String labels, Class<T> kind, T metric) {
+        checkArgument(nonNull(name) && name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*"), "Name must be a valid metric name");
+        Family family = families.computeIfAbsent(name, missing -> new Family(name, help, type));
+        checkArgument(family.type == type, "Metric " + name + " is already registered as a " + family.type.name);
+        Object existing = family.series.get(labels);
+        // a supplier is replaced, there is nothing in it to keep
+        if (existing == null || kind == LongSupplier.class) {
+            family.series.put(labels, metric);
+            return metric;
+        }
+        checkArgument(kind.isInstance(existing), "Metric " + name + " is already registered with a supplier");
+        return kind.cast(existing);
+    }
+
+    private static String labels(String label, String value) {
+        checkArgument(nonNull(label) && label.matches("[a-zA-Z_][a-zA-Z0-9_]*"), "Label must be a valid label name");
+        checkArgument(nonNull(value), "Label value must be non-null");
+        return label + "=\"" + escape(value) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private enum Type {
+        COUNTER("counter"),
+        GAUGE("gauge"),
+        SUMMARY("summary");
+
+        private final String name;
+
+        Type(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        // by rendered labels, empty for the one series of an unlabelled metric
+        private final Map<String, Object> series = new LinkedHashMap<>();
+
+        private Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        private void writeTo(StringBuilder out) {
+            out.append("# HELP ").append(name).append(' ').append(help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type.name).append('\n');
+            series.forEach((labels, metric) -> {
+                if (metric instanceof Counter) {
+                    line(out, name, labels, ((Counter) metric).count());
+                } else if (metric instanceof LongSupplier) {
+                    line(out, name, labels, ((LongSupplier) metric).getAsLong());
+                } else {
+                    Histogram.Snapshot snapshot = ((Histogram) metric).snapshot();
+                    for (double q : QUANTILES) {
+                        String quantile = "quantile=\"" + q + "\"";
+                        line(out, name, labels.isEmpty() ? quantile : labels + "," + quantile, snapshot.quantileMicros(q) / 1e6);
+                    }
+                    line(out, name + "_sum", labels, snapshot.sumNanos / 1e9);
+                    line(out, name + "_count", labels, snapshot.count);
+                }
+            });
+        }
+
+        private static void line(StringBuilder out, String name, String labels, Object value) {
+            out.append(name);
+            if (!labels.isEmpty()) {
+                out.append('{').append(labels).append('}');
+            }
+            out.append(' ').append(value).append('\n');
+        }
+    }
+}
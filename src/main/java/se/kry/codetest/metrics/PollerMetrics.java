@@ -0,0 +1,52 @@
+package se.kry.codetest.metrics;
+
+import se.kry.codetest.BackgroundPoller;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeObserver;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.scheduling.PollScheduler;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.util.Locale;
+
+/**
+ * What the poller does, probe by probe: how many, how fast and why they failed. The counters are looked up by ordinal,
+ * so a probe costs a few uncontended atomic adds. Queue depths and sizes are read from the poller, the scheduler and
+ * the store when scraped.
+ */
+public class PollerMetrics implements ProbeObserver {
+
+    private final Counter[] probes = new Counter[Status.values().length];
+    private final Counter[] failures = new Counter[FailureClass.values().length];
+    private final Histogram latency;
+
+    public PollerMetrics(MetricsRegistry registry, BackgroundPoller poller, PollScheduler scheduler, ServiceStatusStore store) {
+        for (Status status : Status.values()) {
+            probes[status.ordinal()] = registry.counter("poller_probes_total", "Probes completed, by the status they found", "status", label(status));
+        }
+        for (FailureClass failure : FailureClass.values()) {
+            failures[failure.ordinal()] = registry.counter("poller_probe_failures_total", "Failed probes, by cause", "cause", label(failure));
+        }
+        latency = registry.histogram("poller_probe_latency_seconds", "Time from sending a probe to its result");
+        registry.gauge("poller_queued", "Probes waiting for an in-flight slot or for their host", poller::queued);
+        registry.gauge("poller_in_flight", "Probes waiting on a response", poller::inFlight);
+        registry.counter("poller_coalesced_total", "Probes that joined one already queued or in flight", poller::coalesced);
+        registry.counter("poller_dropped_total", "Probes dropped because the queue was full", poller::dropped);
+        registry.gauge("poller_scheduled_services", "Services on the poll schedule", scheduler::scheduledCount);
+        registry.gauge("store_services", "Services in the status store", () -> store.getAll().size());
+    }
+
+    @Override
+    public void onProbe(ProbeResult result) {
+        probes[result.status().ordinal()].increment();
+        if (result.status() == Status.FAIL) {
+            failures[result.failure().orElse(FailureClass.OTHER).ordinal()].increment();
+        }
+        latency.record(result.latencyNanos());
+    }
+
+    private static String label(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,189 @@
+package se.kry.codetest.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.spi.VertxMetricsFactory;
+import io.vertx.core.spi.metrics.EventBusMetrics;
+import io.vertx.core.spi.metrics.HttpServerMetrics;
+import io.vertx.core.spi.metrics.Metrics;
+import io.vertx.core.spi.metrics.MetricsProvider;
+import io.vertx.core.spi.metrics.PoolMetrics;
+import io.vertx.core.spi.metrics.VertxMetrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vert.x's own metrics SPI, into a {@link MetricsRegistry}: HTTP requests served, event bus traffic and the queue
+ * depth of every worker pool, which is where blocking work such as the SQLite calls waits. Enabled with
+ * {@code new MetricsOptions().setEnabled(true).setFactory(new VertxMetricsCollector.Factory())}, or by the launcher
+ * with {@code -Dvertx.metrics.options.enabled=true}, which finds the factory through the service loader.
+ */
+public class VertxMetricsCollector implements VertxMetrics {
+
+    private final MetricsRegistry registry;
+    // one for every HTTP server, the instances listening on the same port share a server anyway
+    private ServerMetrics serverMetrics;
+
+    VertxMetricsCollector(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    // the registry Vert.x reports into when it was started with these metrics, otherwise a new one of its own
+    public static MetricsRegistry registry(Vertx vertx) {
+        Metrics metrics = vertx instanceof MetricsProvider ? ((MetricsProvider) vertx).getMetrics() : null;
+        return metrics instanceof VertxMetricsCollector ? ((VertxMetricsCollector) metrics).registry : new MetricsRegistry();
+    }
+
+    @Override
+    public synchronized HttpServerMetrics<Long, Void, Void> createHttpServerMetrics(HttpServerOptions options, SocketAddress localAddress) {
+        if (serverMetrics == null) {
+            serverMetrics = new ServerMetrics(registry);
+        }
+        return serverMetrics;
+    }
+
+    @Override
+    public EventBusMetrics<Void> createEventBusMetrics() {
+        return new BusMetrics(registry);
+    }
+
+    @Override
+    public PoolMetrics<Long> createPoolMetrics(String poolType, String poolName, int maxPoolSize) {
+        return new WorkerPoolMetrics(registry, poolType + "/" + poolName);
+    }
+
+    public static class Factory implements VertxMetricsFactory {
+
+        @Override
+        public VertxMetrics metrics(VertxOptions options) {
+            return new VertxMetricsCollector(new MetricsRegistry());
+        }
+    }
+
+    // requests are timed from their first byte to the last byte of the response
+    private static class ServerMetrics implements HttpServerMetrics<Long, Void, Void> {
+        private final Counter requests;
+        private final Counter resets;
+        private final Histogram duration;
+        private final AtomicLong connections = new AtomicLong();
+
+        private ServerMetrics(MetricsRegistry registry) {
+            requests = registry.counter("http_server_requests_total", "HTTP requests received");
+            resets = registry.counter("http_server_resets_total", "HTTP requests reset before a response was sent");
+            duration = registry.histogram("http_server_request_duration_seconds", "Time from an HTTP request to the end of its response");
+            registry.gauge("http_server_connections", "Open HTTP connections", connections::get);
+        }
+
+        @Override
+        public Long requestBegin(Void socketMetric, HttpServerRequest request) {
+            requests.increment();
+            return System.nanoTime();
+        }
+
+        @Override
+        public void requestReset(Long startedAt) {
+            resets.increment();
+        }
+
+        @Override
+        public void responseEnd(Long startedAt, HttpServerResponse response) {
+            duration.recordSince(startedAt);
+        }
+
+        @Override
+        public Void connected(SocketAddress remoteAddress, String remoteName) {
+            connections.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void disconnected(Void socketMetric, SocketAddress remoteAddress) {
+            connections.decrementAndGet();
+        }
+    }
+
+    private static class BusMetrics implements EventBusMetrics<Void> {
+        private final Counter sent;
+        private final Counter received;
+        private final Counter replyFailures;
+        private final AtomicLong pending = new AtomicLong();
+
+        private BusMetrics(MetricsRegistry registry) {
+            sent = registry.counter("eventbus_messages_sent_total", "Messages sent or published on the event bus");
+            received = registry.counter("eventbus_messages_received_total", "Messages received from the event bus");
+            replyFailures = registry.counter("eventbus_reply_failures_total", "Messages whose reply failed or timed out");
+            registry.gauge("eventbus_messages_pending", "Messages delivered to a handler that hasn't run yet", pending::get);
+        }
+
+        @Override
+        public void scheduleMessage(Void handler, boolean local) {
+            pending.incrementAndGet();
+        }
+
+        @Override
+        public void beginHandleMessage(Void handler, boolean local) {
+            pending.decrementAndGet();
+        }
+
+        @Override
+        public void messageSent(String address, boolean publish, boolean local, boolean remote) {
+            sent.increment();
+        }
+
+        @Override
+        public void messageReceived(String address, boolean publish, boolean local, int handlers) {
+            received.increment();
+        }
+
+        @Override
+        public void replyFailure(String address, ReplyFailure failure) {
+            replyFailures.increment();
+        }
+    }
+
+    // a task is timed from being submitted, so the wait for a thread shows separately from the work itself
+    private static class WorkerPoolMetrics implements PoolMetrics<Long> {
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong inUse = new AtomicLong();
+        private final Histogram waited;
+        private final Histogram used;
+
+        private WorkerPoolMetrics(MetricsRegistry registry, String pool) {
+            registry.gauge("pool_queued", "Tasks waiting for a thread of the pool", "pool", pool, queued::get);
+            registry.gauge("pool_in_use", "Threads of the pool running a task", "pool", pool, inUse::get);
+            waited = registry.histogram("pool_queue_wait_seconds", "Time tasks wait for a thread of the pool", "pool", pool);
+            used = registry.histogram("pool_usage_seconds", "Time tasks hold a thread of the pool", "pool", pool);
+        }
+
+        @Override
+        public Long submitted() {
+            queued.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        @Override
+        public Long begin(Long submittedAt) {
+            queued.decrementAndGet();
+            inUse.incrementAndGet();
+            long now = System.nanoTime();
+            waited.record(now - submittedAt);
+            return now;
+        }
+
+        @Override
+        public void rejected(Long submittedAt) {
+            queued.decrementAndGet();
+        }
+
+        @Override
+        public void end(Long startedAt, boolean succeeded) {
+            inUse.decrementAndGet();
+            used.recordSince(startedAt);
+        }
+    }
+}
@@ -1,25 +1,56 @@
 package se.kry.codetest.persistence;
 
+import com.mchange.v2.c3p0.DataSources;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLConnection;
+import io.vertx.ext.sql.SQLRowStream;
+import io.vertx.ext.sql.UpdateResult;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+import se.kry.codetest.metrics.Histogram;
+import se.kry.codetest.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class DBConnector {
 
-  private final String DB_PATH = "poller.db";
-  private final SQLClient client;
+  // SQLite serializes writers anyway, so all writes go through one connection and reads get a pool of their own
+  private final SQLClient writer;
+  private final SQLClient readers;
+  // from the call to its result, time spent waiting for a connection included
+  private final Histogram queryDuration;
+  private final Histogram streamDuration;
+  private final Histogram updateDuration;
+  private final Histogram batchDuration;
 
   public DBConnector(Vertx vertx){
-    JsonObject config = new JsonObject()
-        .put("url", "jdbc:sqlite:" + DB_PATH)
-        .put("driver_class", "org.sqlite.JDBC")
-        .put("max_pool_size", 30);
+    this(vertx, new StorageProfile());
+  }
 
-    client = JDBCClient.createShared(vertx, config);
+  public DBConnector(Vertx vertx, StorageProfile profile){
+    this(vertx, profile, new MetricsRegistry());
+  }
+
+  public DBConnector(Vertx vertx, StorageProfile profile, MetricsRegistry metrics){
+    String name = "db_operation_duration_seconds";
+    String help = "Time SQLite operations take";
+    queryDuration = metrics.histogram(name, help, "operation", "query");
+    streamDuration = metrics.histogram(name, help, "operation", "stream");
+    updateDuration = metrics.histogram(name, help, "operation", "update");
+    batchDuration = metrics.histogram(name, help, "operation", "batch");
+    writer = JDBCClient.create(vertx, pooled(profile, 1, profile.getStatementCacheSize()));
+    // sqlite-jdbc fails to reset a cached statement once its result set has been read, so reads can't use the cache
+    readers = JDBCClient.create(vertx, pooled(profile, profile.getReaders(), 0));
   }
 
   public Future<ResultSet> query(String query) {
@@ -30,13 +61,12 @@ public class DBConnector {
     if(query == null || query.isEmpty()) {
       return Future.failedFuture("Query is null or empty");
     }
-    if(!query.endsWith(";")) {
-      query = query + ";";
-    }
 
     Future<ResultSet> queryResultFuture = Future.future();
 
-    client.queryWithParams(query, params, result -> {
+    long startedAt = System.nanoTime();
+    readers.queryWithParams(query, params, result -> {
+      queryDuration.recordSince(startedAt);
       if(result.failed()){
         queryResultFuture.fail(result.cause());
       } else {
@@ -46,5 +76,118 @@ public class DBConnector {
     return queryResultFuture;
   }
 
+  // hands every row over as it is read rather than collecting the whole result set first
+  public Future<Void> queryStream(String query, Handler<JsonArray> rowHandler) {
+    if(query == null || query.isEmpty()) {
+      return Future.failedFuture("Query is null or empty");
+    }
+
+    Future<Void> streamFuture = Future.future();
+
+    long startedAt = System.nanoTime();
+    readers.queryStream(query, result -> {
+      if(result.failed()){
+        streamDuration.recordSince(startedAt);
+        streamFuture.fail(result.cause());
+        return;
+      }
+      SQLRowStream rows = result.result();
+      rows
+          .exceptionHandler(failure -> {
+            streamDuration.recordSince(startedAt);
+            streamFuture.tryFail(failure);
+          })
+          .endHandler(end -> {
+            streamDuration.recordSince(startedAt);
+            streamFuture.tryComplete();
+          })
+          .handler(rowHandler);
+    });
+    return streamFuture;
+  }
+
+  public Future<UpdateResult> update(String statement) {
+    return update(statement, new JsonArray());
+  }
+
+  public Future<UpdateResult> update(String statement, JsonArray params) {
+    if(statement == null || statement.isEmpty()) {
+      return Future.failedFuture("Statement is null or empty");
+    }
 
+    Future<UpdateResult> updateResultFuture = Future.future();
+
+    long startedAt = System.nanoTime();
+    writer.updateWithParams(statement, params, result -> {
+      updateDuration.recordSince(startedAt);
+      if(result.failed()){
+        updateResultFuture.fail(result.cause());
+      } else {
+        updateResultFuture.complete(result.result());
+      }
+    });
+    return updateResultFuture;
+  }
+
+  // one prepared statement executed for every row of params, all in a single transaction
+  public Future<List<Integer>> batch(String statement, List<JsonArray> params) {
+    if(statement == null || statement.isEmpty()) {
+      return Future.failedFuture("Statement is null or empty");
+    }
+
+    Future<List<Integer>> batchResultFuture = Future.future();
+
+    long startedAt = System.nanoTime();
+    writer.getConnection(connected -> {
+      if(connected.failed()){
+        batchResultFuture.fail(connected.cause());
+        return;
+      }
+      SQLConnection connection = connected.result();
+      Future<Void> autoCommitOff = Future.future();
+      connection.setAutoCommit(false, autoCommitOff);
+      autoCommitOff
+          .compose(done -> {
+            Future<List<Integer>> counts = Future.future();
+            connection.batchWithParams(statement, params, counts);
+            return counts;
+          })
+          .compose(counts -> {
+            Future<Void> committed = Future.future();
+            connection.commit(committed);
+            return committed.map(counts);
+          })
+          .setHandler(result -> {
+            batchDuration.recordSince(startedAt);
+            if(result.succeeded()){
+              connection.close(closed -> batchResultFuture.complete(result.result()));
+            } else {
+              connection.rollback(rolledBack -> connection.close(closed -> batchResultFuture.fail(result.cause())));
+            }
+          });
+    });
+    return batchResultFuture;
+  }
+
+  private static DataSource pooled(StorageProfile profile, int connections, int statementCacheSize) {
+    SQLiteConfig config = new SQLiteConfig();
+    config.setJournalMode(profile.getJournalMode());
+    config.setSynchronous(profile.getSynchronous());
+    config.setCacheSize(profile.getCacheSize());
+    config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(profile.getMmapSize()));
+    SQLiteDataSource sqlite = new SQLiteDataSource(config);
+    sqlite.setUrl("jdbc:sqlite:" + profile.getPath());
+
+    Map<String, Object> pool = new HashMap<>();
+    pool.put("minPoolSize", connections);
+    pool.put("initialPoolSize", connections);
+    pool.put("maxPoolSize", connections);
+    // reuse prepared statements instead of compiling the same SQL on every call
+    pool.put("maxStatementsPerConnection", statementCacheSize);
+    try {
+      return DataSources.pooledDataSource(sqlite, pool);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Could not set up the connection pool for " + profile.getPath(), e);
+    }
+  }
 }
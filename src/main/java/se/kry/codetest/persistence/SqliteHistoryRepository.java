@@ -0,0 +1,86 @@
+package se.kry.codetest.persistence;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import se.kry.codetest.history.HistoryRepository;
+import se.kry.codetest.history.Resolution;
+import se.kry.codetest.history.Segment;
+
+import java.net.URI;
+import java.util.Base64;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+
+public class SqliteHistoryRepository implements HistoryRepository {
+
+    private static final String COLUMN_START_AT = "start_at";
+    private static final String COLUMN_END_AT = "end_at";
+    private static final String COLUMN_COUNT = "count";
+    private static final String COLUMN_DATA = "data";
+
+    private final DBConnector dbConnector;
+
+    public SqliteHistoryRepository(DBConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    @Override
+    public Future<Void> save(List<Segment> segments) {
+        return dbConnector
+                .batch(
+                        "insert or replace into history (url, resolution, start_at, end_at, count, data) values (?, ?, ?, ?, ?, ?)",
+                        segments.stream().map(SqliteHistoryRepository::toValues).collect(toList())
+                )
+                .mapEmpty();
+    }
+
+    @Override
+    public Future<List<Segment>> find(URI uri, Resolution resolution, long from, long to) {
+        // a segment never spans more than one partition, so one starting a partition before from can still overlap it
+        return dbConnector
+                .query(
+                        "select start_at, end_at, count, data from history where url = ? and resolution = ? and start_at >= ? and start_at < ? order by start_at",
+                        new JsonArray()
+                                .add(uri.toString())
+                                .add(resolution.id())
+                                .add(from - resolution.segmentMillis())
+                                .add(to)
+                )
+                .map(resultSet -> resultSet.getRows()
+                        .stream()
+                        .map(row -> toSegment(uri, resolution, row))
+                        .collect(toList()));
+    }
+
+    @Override
+    public Future<Void> deleteBefore(Resolution resolution, long before) {
+        return dbConnector.update(
+                "delete from history where resolution = ? and end_at < ?",
+                new JsonArray().add(resolution.id()).add(before)
+        ).mapEmpty();
+    }
+
+    private static JsonArray toValues(Segment segment) {
+        return new JsonArray()
+                .add(segment.uri().toString())
+                .add(segment.resolution().id())
+                .add(segment.start())
+                .add(segment.end())
+                .add(segment.count())
+                // the JDBC client only binds JSON types, so the encoded bytes are stored as text
+                .add(Base64.getEncoder().encodeToString(segment.data()));
+    }
+
+    private static Segment toSegment(URI uri, Resolution resolution, JsonObject row) {
+        return new Segment(
+                uri,
+                resolution,
+                row.getLong(COLUMN_START_AT),
+                row.getLong(COLUMN_END_AT),
+                row.getInteger(COLUMN_COUNT),
+                Base64.getDecoder().decode(row.getString(COLUMN_DATA))
+        );
+    }
+}
@@ -1,15 +1,19 @@
 package se.kry.codetest.persistence;
 
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.ResultSet;
+import se.kry.codetest.services.ProbeType;
 import se.kry.codetest.services.Service;
 import se.kry.codetest.services.ServiceRepository;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
 
 import static java.util.stream.Collectors.toList;
 
@@ -18,6 +22,9 @@ public class SqliteServiceRepository implements ServiceRepository {
     private static final String COLUMN_URL = "url";
     private static final String COLUMN_NAME = "name";
     private static final String COLUMN_CREATED_AT = "created_at";
+    private static final String COLUMN_POLL_INTERVAL = "poll_interval";
+    private static final String COLUMN_PROBE_TYPE = "probe_type";
+    private static final String COLUMN_EXPECT = "expect";
 
     private final DBConnector dbConnector;
 
@@ -27,32 +34,76 @@ public class SqliteServiceRepository implements ServiceRepository {
 
     @Override
     public Future<Service> add(Service service) {
-        JsonArray values = new JsonArray();
-        values.add(service.uri().toString());
-        if (service.name().isPresent()) {
-            values.add(service.name().get());
-        } else {
-            values.addNull();
-        }
-        values.add(service.createdAt().toEpochMilli());
         return dbConnector
-                .query("insert into service (url, name, created_at) values (?, ?, ?)", values)
+                .update("insert into service (url, name, created_at, poll_interval, probe_type, expect) values (?, ?, ?, ?, ?, ?)", toValues(service))
                 .map(service);
     }
 
+    @Override
+    public Future<List<Boolean>> addAll(List<Service> services) {
+        return dbConnector
+                .batch(
+                        "insert or ignore into service (url, name, created_at, poll_interval, probe_type, expect) values (?, ?, ?, ?, ?, ?)",
+                        services.stream().map(this::toValues).collect(toList())
+                )
+                .map(SqliteServiceRepository::toWritten);
+    }
+
     @Override
     public Future<Void> delete(Service service) {
-        return dbConnector.query(
+        return dbConnector.update(
                 "delete from service where url = ?",
                 new JsonArray().add(service.uri().toString())
         ).mapEmpty();
     }
 
+    @Override
+    public Future<List<Boolean>> deleteAll(List<Service> services) {
+        return dbConnector
+                .batch(
+                        "delete from service where url = ?",
+                        services.stream().map(service -> new JsonArray().add(service.uri().toString())).collect(toList())
+                )
+                .map(SqliteServiceRepository::toWritten);
+    }
+
     @Override
     public Future<Collection<Service>> findAll() {
         return dbConnector.query("select * from service").map(this::toServices);
     }
 
+    @Override
+    public Future<Void> streamAll(Handler<Service> handler) {
+        // rows come as arrays in the order of the columns selected, without a JSON object per row
+        return dbConnector.queryStream(
+                "select url, name, created_at, poll_interval, probe_type, expect from service",
+                row -> handler.handle(toService(row))
+        );
+    }
+
+    private JsonArray toValues(Service service) {
+        JsonArray values = new JsonArray();
+        values.add(service.uri().toString());
+        if (service.name().isPresent()) {
+            values.add(service.name().get());
+        } else {
+            values.addNull();
+        }
+        values.add(service.createdAt().toEpochMilli());
+        values.add(service.pollInterval().toMillis());
+        values.add(service.probeType().name());
+        if (service.expect().isPresent()) {
+            values.add(service.expect().get().pattern());
+        } else {
+            values.addNull();
+        }
+        return values;
+    }
+
+    private static List<Boolean> toWritten(List<Integer> updateCounts) {
+        return updateCounts.stream().map(count -> count > 0).collect(toList());
+    }
+
     private Collection<Service> toServices(ResultSet resultSet) {
         return resultSet.getRows()
                 .stream()
@@ -61,10 +112,29 @@ public class SqliteServiceRepository implements ServiceRepository {
     }
 
     private Service toService(JsonObject entries) {
-        return new Service(
-                URI.create(entries.getString(COLUMN_URL)),
+        return toService(
+                entries.getString(COLUMN_URL),
                 entries.getString(COLUMN_NAME),
-                Instant.ofEpochMilli(entries.getLong(COLUMN_CREATED_AT))
+                entries.getLong(COLUMN_CREATED_AT),
+                entries.getLong(COLUMN_POLL_INTERVAL),
+                entries.getString(COLUMN_PROBE_TYPE),
+                entries.getString(COLUMN_EXPECT)
+        );
+    }
+
+    private Service toService(JsonArray row) {
+        return toService(row.getString(0), row.getString(1), row.getLong(2), row.getLong(3), row.getString(4), row.getString(5));
+    }
+
+    private Service toService(String url, String name, long createdAt, Long pollInterval, String probeType, String expect) {
+        return new Service(
+                URI.create(url),
+                name,
+                Instant.ofEpochMilli(createdAt),
+                pollInterval == null ? Service.DEFAULT_POLL_INTERVAL : Duration.ofMillis(pollInterval),
+                // services added before probe types existed are all probed with a GET
+                probeType == null ? ProbeType.GET : ProbeType.valueOf(probeType),
+                expect
         );
     }
 }
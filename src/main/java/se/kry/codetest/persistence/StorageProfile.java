@@ -0,0 +1,102 @@
+package se.kry.codetest.persistence;
+
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+/**
+ * How the SQLite database is opened. Every connection gets these pragmas when it is opened. The defaults give WAL with
+ * synchronous=NORMAL, which is durable against process crashes and lets readers run alongside the single writer.
+ */
+public class StorageProfile {
+
+    public static final String DEFAULT_PATH = "poller.db";
+    public static final JournalMode DEFAULT_JOURNAL_MODE = JournalMode.WAL;
+    public static final SynchronousMode DEFAULT_SYNCHRONOUS = SynchronousMode.NORMAL;
+    public static final long DEFAULT_MMAP_SIZE = 256L * 1024 * 1024;
+    // negative means KiB rather than pages
+    public static final int DEFAULT_CACHE_SIZE = -16 * 1024;
+    public static final int DEFAULT_READERS = 4;
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private String path = DEFAULT_PATH;
+    private JournalMode journalMode = DEFAULT_JOURNAL_MODE;
+    private SynchronousMode synchronous = DEFAULT_SYNCHRONOUS;
+    private long mmapSize = DEFAULT_MMAP_SIZE;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private int readers = DEFAULT_READERS;
+    private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
+    public String getPath() {
+        return path;
+    }
+
+    public StorageProfile setPath(String path) {
+        checkArgument(nonNull(path) && !path.isEmpty(), "Path must be non-empty");
+        this.path = path;
+        return this;
+    }
+
+    public JournalMode getJournalMode() {
+        return journalMode;
+    }
+
+    public StorageProfile setJournalMode(JournalMode journalMode) {
+        checkArgument(nonNull(journalMode), "Journal mode must be non-null");
+        this.journalMode = journalMode;
+        return this;
+    }
+
+    public SynchronousMode getSynchronous() {
+        return synchronous;
+    }
+
+    public StorageProfile setSynchronous(SynchronousMode synchronous) {
+        checkArgument(nonNull(synchronous), "Synchronous mode must be non-null");
+        this.synchronous = synchronous;
+        return this;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    // bytes of the database file read through memory mapping, 0 turns it off
+    public StorageProfile setMmapSize(long mmapSize) {
+        checkArgument(mmapSize >= 0, "Mmap size must not be negative");
+        this.mmapSize = mmapSize;
+        return this;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public StorageProfile setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        return this;
+    }
+
+    public int getReaders() {
+        return readers;
+    }
+
+    public StorageProfile setReaders(int readers) {
+        checkArgument(readers > 0, "Readers must be positive");
+        this.readers = readers;
+        return this;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    // prepared statements kept open on the writer connection
+    public StorageProfile setStatementCacheSize(int statementCacheSize) {
+        checkArgument(statementCacheSize >= 0, "Statement cache size must not be negative");
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+}
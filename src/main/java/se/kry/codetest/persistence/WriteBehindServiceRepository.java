@@ -0,0 +1,283 @@
+package se.kry.codetest.persistence;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceRepository;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Single writer in front of a repository. Mutations are queued and coalesced per url, then written as one group of
+ * deletes and one group of inserts, either once {@code maxBatchSize} urls are waiting or {@code maxDelayMillis} after the
+ * first one, and straight after the previous group if writes piled up meanwhile. Callers' futures complete only once
+ * their group is committed, so durability is the same as writing each mutation on its own.
+ */
+public class WriteBehindServiceRepository implements ServiceRepository {
+
+    private final Vertx vertx;
+    private final ServiceRepository delegate;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+
+    // the fields below are guarded by this
+    private Batch pending = new Batch();
+    private boolean flushing;
+    private long timerId = -1;
+
+    public WriteBehindServiceRepository(Vertx vertx, ServiceRepository delegate, int maxBatchSize, long maxDelayMillis) {
+        checkArgument(maxBatchSize > 0, "Max batch size must be positive");
+        checkArgument(maxDelayMillis > 0, "Max delay must be positive");
+        this.vertx = vertx;
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    @Override
+    public Future<Service> add(Service service) {
+        return enqueueAdd(service).map(written -> {
+            if (!written) {
+                throw new IllegalStateException("Service already exists: " + service.uri());
+            }
+            return service;
+        });
+    }
+
+    @Override
+    public Future<Void> delete(Service service) {
+        return enqueueDelete(service).mapEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // CompositeFuture.all takes a raw list
+    public Future<List<Boolean>> addAll(List<Service> services) {
+        List<Future> written = new ArrayList<>(services.size());
+        services.forEach(service -> written.add(enqueueAdd(service)));
+        return CompositeFuture.all(written).map(CompositeFuture::list);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // CompositeFuture.all takes a raw list
+    public Future<List<Boolean>> deleteAll(List<Service> services) {
+        List<Future> deleted = new ArrayList<>(services.size());
+        services.forEach(service -> deleted.add(enqueueDelete(service)));
+        return CompositeFuture.all(deleted).map(CompositeFuture::list);
+    }
+
+    @Override
+    public Future<Collection<Service>> findAll() {
+        // reads have to see everything written before them
+        return flushed().compose(done -> delegate.findAll());
+    }
+
+    @Override
+    public Future<Void> streamAll(Handler<Service> handler) {
+        return flushed().compose(done -> delegate.streamAll(handler));
+    }
+
+    public synchronized int queued() {
+        return pending.writes.size();
+    }
+
+    // completes once everything queued so far is committed
+    public Future<Void> flushed() {
+        Future<Void> flushed = Future.future();
+        synchronized (this) {
+            if (!flushing && pending.writes.isEmpty()) {
+                flushed.complete();
+                return flushed;
+            }
+            pending.barriers.add(flushed);
+        }
+        scheduleFlush();
+        return flushed;
+    }
+
+    private Future<Boolean> enqueueAdd(Service service) {
+        Future<Boolean> written = Future.future();
+        synchronized (this) {
+            PendingWrite write = pending.writes.computeIfAbsent(service.uri(), uri -> new PendingWrite());
+            if (write.insert != null) {
+                written.complete(false);
+                return written;
+            }
+            write.insert = service;
+            write.waiters.add(new Waiter(written, true));
+        }
+        scheduleFlush();
+        return written;
+    }
+
+    private Future<Boolean> enqueueDelete(Service service) {
+        Future<Boolean> deleted = Future.future();
+        synchronized (this) {
+            PendingWrite write = pending.writes.computeIfAbsent(service.uri(), uri -> new PendingWrite());
+            Waiter waiter = new Waiter(deleted, false);
+            if (write.insert != null) {
+                // an add followed by a delete cancels out; the delete still runs in case the row was there before
+                write.insert = null;
+                write.waiters.stream().filter(pending -> pending.add).forEach(Waiter::cancel);
+                waiter.cancel();
+            }
+            write.delete = service;
+            write.waiters.add(waiter);
+        }
+        scheduleFlush();
+        return deleted;
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (flushing) {
+                // picked up as soon as the group being written is committed
+                return;
+            }
+            if (pending.writes.size() < maxBatchSize && pending.barriers.isEmpty()) {
+                if (timerId == -1) {
+                    timerId = vertx.setTimer(maxDelayMillis, id -> {
+                        synchronized (this) {
+                            timerId = -1;
+                        }
+                        flush();
+                    });
+                }
+                return;
+            }
+        }
+        flush();
+    }
+
+    private void flush() {
+        Batch batch;
+        synchronized (this) {
+            if (flushing || pending.isEmpty()) {
+                return;
+            }
+            if (timerId != -1) {
+                vertx.cancelTimer(timerId);
+                timerId = -1;
+            }
+            flushing = true;
+            batch = pending;
+            pending = new Batch();
+        }
+        List<PendingWrite> deletes = new ArrayList<>();
+        List<PendingWrite> inserts = new ArrayList<>();
+        for (PendingWrite write : batch.writes.values()) {
+            if (write.delete != null) {
+                deletes.add(write);
+            }
+            if (write.insert != null) {
+                inserts.add(write);
+            }
+        }
+        // deletes first, a url that got deleted and re-added is written in that order. The deletes are committed on
+        // their own, so if only the inserts fail the deletes still succeed
+        Future<Void> deleted = delete(deletes);
+        Future<Void> inserted = deleted.compose(done -> insert(inserts));
+        inserted.setHandler(result -> {
+            batch.complete(deleted, result);
+            boolean more;
+            synchronized (this) {
+                flushing = false;
+                more = !pending.isEmpty();
+            }
+            if (more) {
+                flush();
+            }
+        });
+    }
+
+    private Future<Void> delete(List<PendingWrite> deletes) {
+        if (deletes.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        return delegate.deleteAll(collect(deletes, true)).map(results -> {
+            for (int i = 0; i < deletes.size(); i++) {
+                deletes.get(i).deleted = results.get(i);
+            }
+            return null;
+        });
+    }
+
+    private Future<Void> insert(List<PendingWrite> inserts) {
+        if (inserts.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        return delegate.addAll(collect(inserts, false)).map(results -> {
+            for (int i = 0; i < inserts.size(); i++) {
+                inserts.get(i).inserted = results.get(i);
+            }
+            return null;
+        });
+    }
+
+    private static List<Service> collect(List<PendingWrite> writes, boolean deletes) {
+        List<Service> services = new ArrayList<>(writes.size());
+        writes.forEach(write -> services.add(deletes ? write.delete : write.insert));
+        return services;
+    }
+
+    private static class Batch {
+        private final Map<URI, PendingWrite> writes = new LinkedHashMap<>();
+        private final List<Future<Void>> barriers = new ArrayList<>();
+
+        private boolean isEmpty() {
+            return writes.isEmpty() && barriers.isEmpty();
+        }
+
+        // inserts only run once the deletes are committed, so a failed delete fails them as well
+        private void complete(AsyncResult<Void> deleted, AsyncResult<Void> result) {
+            for (PendingWrite write : writes.values()) {
+                for (Waiter waiter : write.waiters) {
+                    // a cancelled add is settled by the delete that cancelled it
+                    AsyncResult<Void> own = waiter.add && !waiter.cancelled ? result : deleted;
+                    if (own.failed()) {
+                        waiter.future.fail(own.cause());
+                    } else if (waiter.cancelled) {
+                        waiter.future.complete(true);
+                    } else {
+                        waiter.future.complete(waiter.add ? write.inserted : write.deleted);
+                    }
+                }
+            }
+            barriers.forEach(barrier -> barrier.handle(result));
+        }
+    }
+
+    private static class PendingWrite {
+        private final List<Waiter> waiters = new ArrayList<>(1);
+        // the row is deleted first, then this service inserted, either may be missing
+        private Service delete;
+        private Service insert;
+        private boolean deleted;
+        private boolean inserted;
+    }
+
+    private static class Waiter {
+        private final Future<Boolean> future;
+        private final boolean add;
+        // part of an add and delete pair that cancelled out, which counts as done
+        private boolean cancelled;
+
+        private Waiter(Future<Boolean> future, boolean add) {
+            this.future = future;
+            this.add = add;
+        }
+
+        private void cancel() {
+            cancelled = true;
+        }
+    }
+}
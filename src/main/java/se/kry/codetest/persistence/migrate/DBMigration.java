@@ -1,22 +1,57 @@
 package se.kry.codetest.persistence.migrate;
 
+import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 import se.kry.codetest.persistence.DBConnector;
 
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
 public class DBMigration {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(DBMigration.class);
+
+  // append only: the index of a statement + 1 is the schema version it brings the db to
+  private static final List<String> MIGRATIONS = asList(
+      "CREATE TABLE IF NOT EXISTS service (url VARCHAR(128) NOT NULL UNIQUE, name VARCHAR(64) NULL, created_at TIMESTAMP NON NULL)",
+      "ALTER TABLE service ADD COLUMN poll_interval INTEGER NULL",
+      // clustered on the primary key, so one service's range is read without touching any other service's rows
+      "CREATE TABLE IF NOT EXISTS history (url VARCHAR(128) NOT NULL, resolution INTEGER NOT NULL, start_at INTEGER NOT NULL, end_at INTEGER NOT NULL, count INTEGER NOT NULL, data TEXT NOT NULL, PRIMARY KEY (url, resolution, start_at)) WITHOUT ROWID",
+      "CREATE INDEX IF NOT EXISTS history_by_end ON history (resolution, end_at)",
+      "ALTER TABLE service ADD COLUMN probe_type VARCHAR(16) NULL",
+      "ALTER TABLE service ADD COLUMN expect TEXT NULL"
+  );
+
   public static void main(String[] args) {
     Vertx vertx = Vertx.vertx();
     DBConnector connector = new DBConnector(vertx);
-    connector.query("CREATE TABLE IF NOT EXISTS service (url VARCHAR(128) NOT NULL UNIQUE, name VARCHAR(64) NULL, created_at TIMESTAMP NON NULL)").setHandler(done -> {
+    migrate(connector).setHandler(done -> {
       if(done.succeeded()){
         System.out.println("completed db migrations");
       } else {
-        done.cause().printStackTrace();
+        LOGGER.error("Could not migrate the database", done.cause());
       }
       vertx.close(shutdown -> {
         System.exit(0);
       });
     });
   }
+
+  public static Future<Void> migrate(DBConnector connector) {
+    return connector.query("PRAGMA user_version")
+        .map(result -> result.getResults().get(0).getInteger(0))
+        .compose(version -> migrateFrom(connector, version));
+  }
+
+  private static Future<Void> migrateFrom(DBConnector connector, int version) {
+    if (version >= MIGRATIONS.size()) {
+      return Future.succeededFuture();
+    }
+    return connector.update(MIGRATIONS.get(version))
+        .compose(done -> connector.update("PRAGMA user_version = " + (version + 1)))
+        .compose(done -> migrateFrom(connector, version + 1));
+  }
 }
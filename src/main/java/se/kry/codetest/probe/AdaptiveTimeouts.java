@@ -0,0 +1,92 @@
+package se.kry.codetest.probe;
+
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.PollerOptions;
+import se.kry.codetest.ProbeObserver;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatusListener;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Per service timeouts that follow the service's latency, computed the way TCP computes its retransmission timeout
+ * (RFC 6298): a smoothed latency plus four times its mean deviation. Every timeout doubles the next one until the
+ * service answers again, so a service that got slower isn't failed over and over by a timeout that's too tight.
+ */
+public class AdaptiveTimeouts implements ProbeObserver, ServiceStatusListener {
+
+    private static final double ALPHA = 1 / 8.0;
+    private static final double BETA = 1 / 4.0;
+    private static final int K = 4;
+    // 2^5 = 32 times the estimate is past any sensible max timeout already
+    private static final int MAX_BACKOFF_SHIFT = 5;
+
+    private final long initial;
+    private final long min;
+    private final long max;
+    private final Map<URI, Estimate> estimates = new ConcurrentHashMap<>();
+
+    public AdaptiveTimeouts(PollerOptions options) {
+        this.initial = options.getRequestTimeout();
+        this.min = options.getMinRequestTimeout();
+        this.max = options.getMaxRequestTimeout();
+    }
+
+    public long timeout(URI uri) {
+        Estimate estimate = estimates.get(uri);
+        return estimate == null ? clamp(initial) : estimate.timeout();
+    }
+
+    @Override
+    public void onProbe(ProbeResult result) {
+        FailureClass failure = result.failure().orElse(null);
+        if (failure == FailureClass.READ_TIMEOUT || failure == FailureClass.CONNECT_TIMEOUT) {
+            estimates.computeIfAbsent(result.uri(), uri -> new Estimate()).timedOut();
+        } else if (result.status() == Status.OK || result.statusCode() != ProbeResult.NO_STATUS_CODE) {
+            // a refused connection or a DNS failure comes back fast and says nothing about the service's latency
+            estimates.computeIfAbsent(result.uri(), uri -> new Estimate()).sample(NANOSECONDS.toMicros(result.latencyNanos()) / 1000.0);
+        }
+    }
+
+    @Override
+    public void onRemoved(Service service) {
+        estimates.remove(service.uri());
+    }
+
+    private long clamp(double timeout) {
+        return Math.max(min, Math.min(max, (long) Math.ceil(timeout)));
+    }
+
+    private class Estimate {
+        // millis, NaN until the first answer
+        private double smoothed = Double.NaN;
+        private double deviation;
+        private int backoff;
+
+        private synchronized void sample(double latency) {
+            if (Double.isNaN(smoothed)) {
+                smoothed = latency;
+                deviation = latency / 2;
+            } else {
+                deviation = (1 - BETA) * deviation + BETA * Math.abs(smoothed - latency);
+                smoothed = (1 - ALPHA) * smoothed + ALPHA * latency;
+            }
+            backoff = 0;
+        }
+
+        private synchronized void timedOut() {
+            backoff = Math.min(backoff + 1, MAX_BACKOFF_SHIFT);
+        }
+
+        private synchronized long timeout() {
+            double base = Double.isNaN(smoothed) ? initial : smoothed + K * deviation;
+            return clamp(base * (1 << backoff));
+        }
+    }
+}
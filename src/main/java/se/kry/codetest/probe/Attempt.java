@@ -0,0 +1,60 @@
+package se.kry.codetest.probe;
+
+import io.vertx.core.Future;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+
+import java.net.URI;
+import java.time.Instant;
+
+import static se.kry.codetest.ProbeResult.NO_STATUS_CODE;
+import static se.kry.codetest.Status.FAIL;
+import static se.kry.codetest.Status.OK;
+
+/**
+ * A probe under way, timed from its creation to the first outcome reported. Later outcomes are ignored, so a timeout
+ * and a late answer can race.
+ */
+class Attempt {
+    private final URI uri;
+    private final Instant sentAt = Instant.now();
+    private final long started = System.nanoTime();
+    private final Future<ProbeResult> result = Future.future();
+
+    Attempt(URI uri) {
+        this.uri = uri;
+    }
+
+    Future<ProbeResult> result() {
+        return result;
+    }
+
+    boolean done() {
+        return result.isComplete();
+    }
+
+    void ok(int statusCode) {
+        complete(new ProbeResult(uri, sentAt, OK, System.nanoTime() - started, statusCode, null));
+    }
+
+    // a 2xx answer is fine, anything else an HTTP error
+    void responded(int statusCode) {
+        if (statusCode >= 200 && statusCode < 300) {
+            ok(statusCode);
+        } else {
+            fail(statusCode, FailureClass.HTTP_ERROR);
+        }
+    }
+
+    void fail(Throwable cause) {
+        fail(NO_STATUS_CODE, FailureClass.of(cause));
+    }
+
+    void fail(int statusCode, FailureClass failure) {
+        complete(new ProbeResult(uri, sentAt, FAIL, System.nanoTime() - started, statusCode, failure));
+    }
+
+    private void complete(ProbeResult probe) {
+        result.tryComplete(probe);
+    }
+}
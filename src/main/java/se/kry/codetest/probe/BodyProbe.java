@@ -0,0 +1,137 @@
+package se.kry.codetest.probe;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+import io.vertx.ext.web.codec.spi.BodyStream;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.Service;
+
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static se.kry.codetest.ProbeResult.NO_STATUS_CODE;
+
+/**
+ * Checks that a GET answers 2xx with a body matching the service's expected pattern. Only the head of the body is
+ * kept and matched, so a large page costs no more memory than a small one.
+ * <p>
+ * The pattern is a regular expression found anywhere in the body, so plain text only matches as itself while it has
+ * no metacharacters; quote it ({@code \Q...\E}) otherwise.
+ */
+class BodyProbe implements ProbeStrategy {
+
+    private final WebClient webClient;
+    private final int maxBodyBytes;
+
+    BodyProbe(WebClient webClient, int maxBodyBytes) {
+        this.webClient = webClient;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public Future<ProbeResult> probe(Service service, long timeout) {
+        Attempt attempt = new Attempt(service.uri());
+        // always there for a body probe
+        Pattern expect = service.expect().get();
+        try {
+            webClient.requestAbs(HttpMethod.GET, service.uri().toString())
+                    .timeout(timeout)
+                    .as(new CappedBody(maxBodyBytes))
+                    .send(response -> check(attempt, expect, response));
+        } catch (Exception e) {
+            // the URI could not even be turned into a request
+            attempt.fail(NO_STATUS_CODE, FailureClass.INVALID_URL);
+        }
+        return attempt.result();
+    }
+
+    private static void check(Attempt attempt, Pattern expect, AsyncResult<HttpResponse<Buffer>> response) {
+        if (response.failed()) {
+            attempt.fail(response.cause());
+            return;
+        }
+        int code = response.result().statusCode();
+        Buffer body = response.result().body();
+        if (code < 200 || code >= 300) {
+            attempt.responded(code);
+        } else if (body != null && expect.matcher(body.toString(UTF_8)).find()) {
+            attempt.ok(code);
+        } else {
+            attempt.fail(code, FailureClass.ASSERTION);
+        }
+    }
+
+    /**
+     * Keeps the first bytes of a body and drops the rest as it arrives. The rest is still read, so the connection
+     * can go back to the pool rather than being closed half way through a response.
+     */
+    private static class CappedBody implements BodyCodec<Buffer> {
+        private final int maxBytes;
+
+        private CappedBody(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void create(Handler<AsyncResult<BodyStream<Buffer>>> handler) {
+            handler.handle(Future.succeededFuture(new Stream()));
+        }
+
+        private class Stream implements BodyStream<Buffer> {
+            private final Buffer head = Buffer.buffer();
+            private final Future<Buffer> result = Future.future();
+
+            @Override
+            public Future<Buffer> result() {
+                return result;
+            }
+
+            @Override
+            public void handle(Throwable failure) {
+                result.tryFail(failure);
+            }
+
+            @Override
+            public WriteStream<Buffer> write(Buffer data) {
+                int room = maxBytes - head.length();
+                if (room > 0) {
+                    head.appendBuffer(data, 0, Math.min(room, data.length()));
+                }
+                return this;
+            }
+
+            @Override
+            public void end() {
+                result.tryComplete(head);
+            }
+
+            @Override
+            public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+                return this;
+            }
+
+            @Override
+            public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+                return this;
+            }
+
+            @Override
+            public boolean writeQueueFull() {
+                return false;
+            }
+
+            @Override
+            public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+                return this;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package se.kry.codetest.probe;
+
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.Service;
+
+import static se.kry.codetest.ProbeResult.NO_STATUS_CODE;
+
+/**
+ * Checks the status code of a GET or HEAD.
+ */
+class HttpProbe implements ProbeStrategy {
+
+    private final WebClient webClient;
+    private final HttpMethod method;
+
+    HttpProbe(WebClient webClient, HttpMethod method) {
+        this.webClient = webClient;
+        this.method = method;
+    }
+
+    @Override
+    public Future<ProbeResult> probe(Service service, long timeout) {
+        Attempt attempt = new Attempt(service.uri());
+        try {
+            webClient.requestAbs(method, service.uri().toString())
+                    .timeout(timeout)
+                    // the status code is all we look at: the body is dropped as it arrives and the connection goes
+                    // back to the pool once it has
+                    .as(BodyCodec.none())
+                    .send(response -> {
+                        if (response.succeeded()) {
+                            attempt.responded(response.result().statusCode());
+                        } else {
+                            attempt.fail(response.cause());
+                        }
+                    });
+        } catch (Exception e) {
+            // the URI could not even be turned into a request
+            attempt.fail(NO_STATUS_CODE, FailureClass.INVALID_URL);
+        }
+        return attempt.result();
+    }
+}
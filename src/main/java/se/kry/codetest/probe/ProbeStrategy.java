@@ -0,0 +1,14 @@
+package se.kry.codetest.probe;
+
+import io.vertx.core.Future;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.Service;
+
+/**
+ * One way of checking a service. The returned future never fails, a failed check is a {@link ProbeResult} too.
+ */
+public interface ProbeStrategy {
+
+    // the timeout covers the whole check, from connecting to the last byte looked at
+    Future<ProbeResult> probe(Service service, long timeout);
+}
@@ -0,0 +1,40 @@
+package se.kry.codetest.probe;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.net.NetClientOptions;
+import io.vertx.ext.web.client.WebClient;
+import se.kry.codetest.PollerOptions;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.ProbeType;
+import se.kry.codetest.services.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Probes every service the way its {@link ProbeType} says.
+ */
+public class Probes implements ProbeStrategy {
+
+    private final Map<ProbeType, ProbeStrategy> strategies = new EnumMap<>(ProbeType.class);
+
+    public Probes(Vertx vertx, WebClient webClient, PollerOptions options) {
+        NetClientOptions connect = new NetClientOptions().setConnectTimeout((int) options.getMaxRequestTimeout());
+        strategies.put(ProbeType.GET, new HttpProbe(webClient, HttpMethod.GET));
+        strategies.put(ProbeType.HEAD, new HttpProbe(webClient, HttpMethod.HEAD));
+        strategies.put(ProbeType.TCP, new TcpProbe(vertx, vertx.createNetClient(connect)));
+        strategies.put(ProbeType.TLS, new TlsProbe(
+                vertx,
+                vertx.createNetClient(new NetClientOptions(connect).setSsl(true).setHostnameVerificationAlgorithm("HTTPS")),
+                options.getCertExpiryWarning()
+        ));
+        strategies.put(ProbeType.BODY, new BodyProbe(webClient, options.getMaxBodyBytes()));
+    }
+
+    @Override
+    public Future<ProbeResult> probe(Service service, long timeout) {
+        return strategies.get(service.probeType()).probe(service, timeout);
+    }
+}
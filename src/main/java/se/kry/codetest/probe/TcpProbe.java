@@ -0,0 +1,71 @@
+package se.kry.codetest.probe;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetSocket;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+
+import static se.kry.codetest.ProbeResult.NO_STATUS_CODE;
+
+/**
+ * Checks that a TCP connection to the service's host and port can be opened, and closes it straight away. The port
+ * defaults to the one of the URL's scheme.
+ */
+class TcpProbe implements ProbeStrategy {
+
+    private final Vertx vertx;
+    private final NetClient client;
+
+    TcpProbe(Vertx vertx, NetClient client) {
+        this.vertx = vertx;
+        this.client = client;
+    }
+
+    @Override
+    public Future<ProbeResult> probe(Service service, long timeout) {
+        Attempt attempt = new Attempt(service.uri());
+        String host = service.uri().getHost();
+        int port = port(service.uri());
+        if (host == null || port < 0) {
+            attempt.fail(NO_STATUS_CODE, FailureClass.INVALID_URL);
+            return attempt.result();
+        }
+        // the client's connect timeout is only the upper bound, and doesn't cover a TLS handshake either
+        long timer = vertx.setTimer(timeout, expired -> attempt.fail(NO_STATUS_CODE, FailureClass.CONNECT_TIMEOUT));
+        client.connect(port, host, host, connected -> {
+            vertx.cancelTimer(timer);
+            if (connected.failed()) {
+                attempt.fail(connected.cause());
+                return;
+            }
+            NetSocket socket = connected.result();
+            if (!attempt.done()) {
+                check(socket, attempt);
+            }
+            socket.close();
+        });
+        return attempt.result();
+    }
+
+    void check(NetSocket socket, Attempt attempt) {
+        attempt.ok(NO_STATUS_CODE);
+    }
+
+    int port(URI uri) {
+        if (uri.getPort() >= 0) {
+            return uri.getPort();
+        }
+        if ("https".equalsIgnoreCase(uri.getScheme())) {
+            return 443;
+        }
+        if ("http".equalsIgnoreCase(uri.getScheme())) {
+            return 80;
+        }
+        return -1;
+    }
+}
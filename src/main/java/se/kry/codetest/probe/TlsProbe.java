@@ -0,0 +1,48 @@
+package se.kry.codetest.probe;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetSocket;
+import se.kry.codetest.FailureClass;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import java.net.URI;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+
+import static se.kry.codetest.ProbeResult.NO_STATUS_CODE;
+
+/**
+ * Checks that a TLS handshake with the service succeeds, which the client only lets through for a trusted certificate
+ * matching the host, and that the certificate doesn't expire within the warning period.
+ */
+class TlsProbe extends TcpProbe {
+
+    private final long expiryWarning;
+
+    TlsProbe(Vertx vertx, NetClient client, long expiryWarning) {
+        super(vertx, client);
+        this.expiryWarning = expiryWarning;
+    }
+
+    @Override
+    void check(NetSocket socket, Attempt attempt) {
+        try {
+            Certificate[] chain = socket.sslSession().getPeerCertificates();
+            long remaining = ((X509Certificate) chain[0]).getNotAfter().getTime() - System.currentTimeMillis();
+            if (remaining < expiryWarning) {
+                attempt.fail(NO_STATUS_CODE, FailureClass.CERT_EXPIRY);
+            } else {
+                attempt.ok(NO_STATUS_CODE);
+            }
+        } catch (SSLPeerUnverifiedException e) {
+            attempt.fail(e);
+        }
+    }
+
+    // TLS is what's being checked, whatever the scheme
+    @Override
+    int port(URI uri) {
+        return uri.getPort() >= 0 ? uri.getPort() : 443;
+    }
+}
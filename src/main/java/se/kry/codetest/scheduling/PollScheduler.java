@@ -0,0 +1,195 @@
+package se.kry.codetest.scheduling;
+
+import com.google.common.hash.Hashing;
+import io.vertx.core.Vertx;
+import se.kry.codetest.BackgroundPoller;
+import se.kry.codetest.ProbeObserver;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.metrics.Histogram;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+import se.kry.codetest.services.ServiceStatusListener;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Polls every service on its own interval. Each service gets a fixed phase within its interval derived from a hash
+ * of its URI, so probes are spread evenly over the period and land on the same offsets after a restart.
+ * <p>
+ * The interval adapts to what the probes find: right after a status change a service is probed a few times at a
+ * fraction of its interval to confirm the change quickly, and a service that keeps failing backs off exponentially.
+ * Once it is back to normal, it returns to its phase.
+ */
+public class PollScheduler implements ServiceStatusListener, ProbeObserver {
+
+    private static final int CONFIRM_PROBES = 3;
+    private static final int CONFIRM_DIVISOR = 4;
+    // at most 2^4 = 16 times the interval
+    private static final int MAX_BACKOFF_SHIFT = 4;
+
+    private final BackgroundPoller poller;
+    private final long tickMillis;
+    private final TimingWheel<Service> wheel;
+    private final Map<URI, TimingWheel.Timeout<Service>> scheduled = new HashMap<>();
+    private final Map<URI, Pace> paces = new HashMap<>();
+    // every service stays scheduled, only the ones owned are probed when due, so ownership can move at any time
+    private volatile Predicate<URI> owned = uri -> true;
+    // from a tick's services falling due to the last of their probes completing, unmeasured until set
+    private volatile Histogram cycleDuration;
+    private long startedAt;
+
+    public PollScheduler(BackgroundPoller poller, long tickMillis, int slotCount) {
+        checkArgument(tickMillis > 0, "Tick must be positive");
+        this.poller = poller;
+        this.tickMillis = tickMillis;
+        this.wheel = new TimingWheel<>(slotCount);
+    }
+
+    public void setOwnership(Predicate<URI> owned) {
+        this.owned = owned;
+    }
+
+    public void setCycleDuration(Histogram cycleDuration) {
+        this.cycleDuration = cycleDuration;
+    }
+
+    public void start(Vertx vertx) {
+        startedAt = System.nanoTime();
+        vertx.setPeriodic(tickMillis, timerId -> catchUp());
+    }
+
+    @Override
+    public synchronized void onAdded(Service service) {
+        cancel(service.uri());
+        paces.put(service.uri(), new Pace());
+        scheduled.put(service.uri(), wheel.schedule(service, inPhase(service)));
+    }
+
+    @Override
+    public synchronized void onRemoved(Service service) {
+        cancel(service.uri());
+        paces.remove(service.uri());
+    }
+
+    @Override
+    public synchronized void onStatusChanged(ServiceStatus previous, ServiceStatus current) {
+        Service service = current.service();
+        Pace pace = paces.get(service.uri());
+        // the first probe of a service isn't a change worth confirming
+        if (pace == null || previous.status() == Status.UNKNOWN) {
+            return;
+        }
+        pace.confirming = CONFIRM_PROBES;
+        cancel(service.uri());
+        scheduled.put(service.uri(), wheel.schedule(service, next(service, pace)));
+    }
+
+    @Override
+    public synchronized void onProbe(ProbeResult result) {
+        Pace pace = paces.get(result.uri());
+        if (pace != null) {
+            pace.failures = result.status() == Status.FAIL ? pace.failures + 1 : 0;
+        }
+    }
+
+    public synchronized int scheduledCount() {
+        return scheduled.size();
+    }
+
+    void tick() {
+        List<Service> due = new ArrayList<>();
+        synchronized (this) {
+            advance(due);
+        }
+        pollAll(due);
+    }
+
+    private void catchUp() {
+        // a late timer (GC pause, busy event loop) must not shift every service's phase
+        long target = NANOSECONDS.toMillis(System.nanoTime() - startedAt) / tickMillis;
+        List<Service> due = new ArrayList<>();
+        synchronized (this) {
+            while (wheel.currentTick() < target) {
+                advance(due);
+            }
+        }
+        pollAll(due);
+    }
+
+    private void advance(List<Service> due) {
+        int before = due.size();
+        wheel.advance(due::add);
+        for (int i = before; i < due.size(); i++) {
+            Service service = due.get(i);
+            scheduled.put(service.uri(), wheel.schedule(service, next(service, paces.get(service.uri()))));
+        }
+    }
+
+    private void pollAll(List<Service> due) {
+        due.removeIf(service -> !owned.test(service.uri()));
+        if (due.isEmpty()) {
+            return;
+        }
+        Histogram cycles = cycleDuration;
+        if (cycles == null) {
+            poller.poll(due);
+            return;
+        }
+        long pollStarted = System.nanoTime();
+        poller.poll(due).setHandler(polled -> cycles.recordSince(pollStarted));
+    }
+
+    private void cancel(URI uri) {
+        TimingWheel.Timeout<Service> timeout = scheduled.remove(uri);
+        if (timeout != null) {
+            wheel.cancel(timeout);
+        }
+    }
+
+    private long next(Service service, Pace pace) {
+        long interval = ticks(service.pollInterval());
+        if (pace.confirming > 0) {
+            pace.confirming--;
+            return Math.max(1, interval / CONFIRM_DIVISOR);
+        }
+        // the failure has been confirmed by then, from there on every failed probe doubles the interval
+        int backoff = Math.min(MAX_BACKOFF_SHIFT, pace.failures - CONFIRM_PROBES);
+        if (backoff > 0) {
+            return interval << backoff;
+        }
+        return inPhase(service);
+    }
+
+    // ticks until the service's next turn in its phase, a whole interval if that's now
+    private long inPhase(Service service) {
+        long interval = ticks(service.pollInterval());
+        long delay = Math.floorMod(phase(service) - wheel.currentTick(), interval);
+        return delay == 0 ? interval : delay;
+    }
+
+    private long phase(Service service) {
+        return Hashing.murmur3_32().hashString(service.uri().toString(), UTF_8).asInt() & 0x7fffffffL;
+    }
+
+    private long ticks(Duration interval) {
+        return Math.max(1, (interval.toMillis() + tickMillis - 1) / tickMillis);
+    }
+
+    private static class Pace {
+        // probes left at the confirming interval
+        private int confirming;
+        // consecutive failed probes
+        private int failures;
+    }
+}
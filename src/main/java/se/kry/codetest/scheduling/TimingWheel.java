@@ -0,0 +1,118 @@
+package se.kry.codetest.scheduling;
+
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Hashed timing wheel: timeouts are hashed into slots by deadline tick, so scheduling and cancelling are O(1)
+ * and advancing one tick only visits the timeouts of a single slot. Not thread-safe.
+ */
+public class TimingWheel<T> {
+
+    private final Timeout<T>[] slots;
+    private final int mask;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // no generic array creation
+    public TimingWheel(int slotCount) {
+        checkArgument(slotCount > 0 && Integer.bitCount(slotCount) == 1, "Slot count must be a power of two");
+        this.slots = new Timeout[slotCount];
+        this.mask = slotCount - 1;
+    }
+
+    public Timeout<T> schedule(T item, long ticks) {
+        checkArgument(ticks > 0, "Timeouts must be at least one tick away");
+        Timeout<T> timeout = new Timeout<>(item, currentTick + ticks);
+        link(timeout);
+        return timeout;
+    }
+
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.slot < 0) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    public void advance(Consumer<T> onExpired) {
+        currentTick++;
+        Timeout<T> timeout = slots[(int) (currentTick & mask)];
+        Timeout<T> expired = null;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            // timeouts further away than a full turn of the wheel share the slot until their round comes
+            if (timeout.deadline <= currentTick) {
+                unlink(timeout);
+                timeout.next = expired;
+                expired = timeout;
+            }
+            timeout = next;
+        }
+        // callbacks run once the slot is consistent again, so they are free to schedule or cancel
+        while (expired != null) {
+            Timeout<T> next = expired.next;
+            expired.next = null;
+            onExpired.accept(expired.item);
+            expired = next;
+        }
+    }
+
+    public long currentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void link(Timeout<T> timeout) {
+        int slot = (int) (timeout.deadline & mask);
+        Timeout<T> head = slots[slot];
+        timeout.slot = slot;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[slot] = timeout;
+        size++;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.slot = -1;
+        size--;
+    }
+
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private int slot = -1;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T item() {
+            return item;
+        }
+
+        public long deadline() {
+            return deadline;
+        }
+    }
+}
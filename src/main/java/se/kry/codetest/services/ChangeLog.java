@@ -0,0 +1,84 @@
+package se.kry.codetest.services;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static java.util.Optional.empty;
+
+/**
+ * Orders services by the store version of their last change, so the changes since a given version are a tail of
+ * the index instead of a scan of every service. Deletions are kept as tombstones up to a limit; asking for changes
+ * from before the oldest forgotten tombstone has to fall back to a full listing.
+ */
+class ChangeLog {
+
+    private final int maxTombstones;
+    private final ConcurrentSkipListMap<Long, URI> changes = new ConcurrentSkipListMap<>();
+    // the fields below are guarded by this
+    private final Map<URI, Long> lastChange = new HashMap<>();
+    private final Deque<Long> tombstones = new ArrayDeque<>();
+    private long version;
+    private long horizon;
+
+    ChangeLog(int maxTombstones, long initialVersion) {
+        this.maxTombstones = maxTombstones;
+        this.version = initialVersion;
+        this.horizon = initialVersion;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    synchronized long record(URI uri, boolean deleted) {
+        long next = ++version;
+        Long previous = lastChange.put(uri, next);
+        if (previous != null) {
+            changes.remove(previous);
+        }
+        changes.put(next, uri);
+        if (deleted) {
+            tombstones.add(next);
+            if (tombstones.size() > maxTombstones) {
+                forget(tombstones.poll());
+            }
+        }
+        return next;
+    }
+
+    synchronized long lastChange(URI uri) {
+        Long last = lastChange.get(uri);
+        return last == null ? horizon : last;
+    }
+
+    // every live service and remembered deletion, keyed by the version of its last change
+    NavigableMap<Long, URI> changes() {
+        return changes;
+    }
+
+    Optional<Collection<URI>> since(long since, long upTo) {
+        synchronized (this) {
+            // versions handed out by a previous process are outside [horizon, version] too
+            if (since < horizon || since > upTo) {
+                return empty();
+            }
+        }
+        return Optional.of(changes.subMap(since, false, upTo, true).values());
+    }
+
+    private void forget(long tombstone) {
+        // the service may have been re-added since, in which case the tombstone is already gone
+        URI uri = changes.remove(tombstone);
+        if (uri != null) {
+            lastChange.remove(uri);
+        }
+        horizon = Math.max(horizon, tombstone);
+    }
+}
@@ -0,0 +1,319 @@
+package se.kry.codetest.services;
+
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Statuses by URI, kept in columns of primitives indexed by a per-service id rather than as a {@link ServiceStatus}
+ * with its {@link ProbeResult} and instants per service. An update overwrites a service's slots in place, so the
+ * statuses of a poll cycle don't become garbage in the next one; the objects handed out are views assembled on read.
+ * <p>
+ * Adding and removing services is synchronized. Reads, {@link #replace(URI, ServiceStatus, ServiceStatus)} and
+ * {@link #probed(Service, Status, ProbeResult)}, which is what every probe goes through, are lock-free: each slot has a
+ * version that a writer makes odd while it writes, and a reader retries when the version it started with is odd or has
+ * moved on.
+ */
+public class ColumnarStatusMap extends AbstractMap<URI, ServiceStatus> implements ConcurrentMap<URI, ServiceStatus> {
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final long ABSENT = Long.MIN_VALUE;
+    private static final Status[] STATUSES = Status.values();
+    private static final FailureClass[] FAILURES = FailureClass.values();
+    // header: status in bits 0-3, probe status in bits 4-7, failure class + 1 in bits 8-15 and whether there is a probe
+    private static final int HAS_PROBE = 1 << 16;
+
+    // ids are only ever added or removed under the lock
+    private final Map<URI, Integer> ids = new ConcurrentHashMap<>();
+    private final Queue<Integer> free = new ConcurrentLinkedQueue<>();
+    private int nextId;
+    // grows a chunk at a time, so a slot never moves once handed out
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    @Override
+    public ServiceStatus get(Object key) {
+        Integer id = key instanceof URI ? ids.get(key) : null;
+        return id == null ? null : read(id, (URI) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public synchronized ServiceStatus put(URI key, ServiceStatus value) {
+        checkArgument(key.equals(value.service().uri()), "Statuses must be keyed by their service's URI");
+        Integer id = ids.get(key);
+        ServiceStatus previous = null;
+        if (id == null) {
+            id = allocate();
+        } else {
+            previous = read(id, key);
+        }
+        write(id, null, value);
+        // only once the slot is filled in, so a reader never finds an empty one
+        ids.put(key, id);
+        return previous;
+    }
+
+    @Override
+    public synchronized ServiceStatus putIfAbsent(URI key, ServiceStatus value) {
+        ServiceStatus previous = get(key);
+        return previous == null ? put(key, value) : previous;
+    }
+
+    @Override
+    public synchronized ServiceStatus remove(Object key) {
+        Integer id = key instanceof URI ? ids.remove(key) : null;
+        if (id == null) {
+            return null;
+        }
+        ServiceStatus previous = read(id, (URI) key);
+        write(id, null, null);
+        free.add(id);
+        return previous;
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        if (value != null && value.equals(get(key))) {
+            remove(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean replace(URI key, ServiceStatus oldValue, ServiceStatus newValue) {
+        checkArgument(key.equals(newValue.service().uri()), "Statuses must be keyed by their service's URI");
+        Integer id = ids.get(key);
+        return id != null && write(id, oldValue, newValue);
+    }
+
+    /**
+     * Records a probe of a service whose status it confirms, in place and without building the status it replaces.
+     * Returns false, leaving the slot as it is, when the slot no longer holds this service or holds another status;
+     * those go through {@link #replace(URI, ServiceStatus, ServiceStatus)}.
+     */
+    public boolean probed(Service service, Status status, ProbeResult probe) {
+        Integer id = ids.get(service.uri());
+        if (id == null) {
+            return false;
+        }
+        Chunk chunk = chunks[id >>> CHUNK_BITS];
+        int slot = id & CHUNK_MASK;
+        long version = lock(chunk, slot);
+        Service held = chunk.services.get(slot);
+        boolean holds = held != null && (held == service || held.equals(service))
+                && STATUSES[chunk.headers.get(slot) & 0xF] == status;
+        if (holds) {
+            // the status holds, and so does when it last changed
+            writeProbe(chunk, slot, status, probe);
+        }
+        chunk.versions.set(slot, version + 2);
+        return holds;
+    }
+
+    @Override
+    public synchronized ServiceStatus replace(URI key, ServiceStatus value) {
+        return containsKey(key) ? put(key, value) : null;
+    }
+
+    @Override
+    public Set<Entry<URI, ServiceStatus>> entrySet() {
+        return new AbstractSet<Entry<URI, ServiceStatus>>() {
+            @Override
+            public Iterator<Entry<URI, ServiceStatus>> iterator() {
+                return new Entries(ids.entrySet().iterator());
+            }
+
+            @Override
+            public int size() {
+                return ids.size();
+            }
+        };
+    }
+
+    private int allocate() {
+        Integer recycled = free.poll();
+        if (recycled != null) {
+            return recycled;
+        }
+        int id = nextId++;
+        if ((id >>> CHUNK_BITS) == chunks.length) {
+            Chunk[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[chunks.length] = new Chunk();
+            chunks = grown;
+        }
+        return id;
+    }
+
+    private ServiceStatus read(int id, URI uri) {
+        Chunk chunk = chunks[id >>> CHUNK_BITS];
+        int slot = id & CHUNK_MASK;
+        while (true) {
+            long version = chunk.versions.get(slot);
+            if ((version & 1) != 0) {
+                continue;
+            }
+            Service service = chunk.services.get(slot);
+            int header = chunk.headers.get(slot);
+            int code = chunk.codes.get(slot);
+            long checkedAt = chunk.checkedAt.get(slot);
+            long latency = chunk.latencies.get(slot);
+            long lastChanged = chunk.lastChanged.get(slot);
+            if (chunk.versions.get(slot) != version) {
+                continue;
+            }
+            // the id may have been handed to another service since it was looked up
+            if (service == null || !service.uri().equals(uri)) {
+                return null;
+            }
+            ProbeResult probe = null;
+            if ((header & HAS_PROBE) != 0) {
+                int failure = (header >>> 8) & 0xFF;
+                probe = new ProbeResult(uri, instant(checkedAt), STATUSES[(header >>> 4) & 0xF], latency, code,
+                        failure == 0 ? null : FAILURES[failure - 1]);
+            }
+            return new ServiceStatus(service, STATUSES[header & 0xF], probe, lastChanged == ABSENT ? null : instant(lastChanged));
+        }
+    }
+
+    // writes the status, or clears the slot for none, if the slot still holds the expected status (any for null)
+    private boolean write(int id, ServiceStatus expected, ServiceStatus status) {
+        Chunk chunk = chunks[id >>> CHUNK_BITS];
+        int slot = id & CHUNK_MASK;
+        long version = lock(chunk, slot);
+        boolean matches = expected == null || holds(chunk, slot, expected);
+        if (matches) {
+            chunk.services.set(slot, status == null ? null : status.service());
+            if (status != null) {
+                writeProbe(chunk, slot, status.status(), status.probe().orElse(null));
+                chunk.lastChanged.set(slot, status.lastChanged().map(ColumnarStatusMap::nanos).orElse(ABSENT));
+            }
+        }
+        chunk.versions.set(slot, version + 2);
+        return matches;
+    }
+
+    // makes the slot's version odd, returns the even one it was
+    private static long lock(Chunk chunk, int slot) {
+        long version;
+        do {
+            version = chunk.versions.get(slot);
+        } while ((version & 1) != 0 || !chunk.versions.compareAndSet(slot, version, version + 1));
+        return version;
+    }
+
+    private static void writeProbe(Chunk chunk, int slot, Status status, ProbeResult probe) {
+        chunk.headers.set(slot, header(status, probe));
+        chunk.codes.set(slot, probe == null ? 0 : probe.statusCode());
+        chunk.checkedAt.set(slot, probe == null ? ABSENT : nanos(probe.timestamp()));
+        chunk.latencies.set(slot, probe == null ? 0 : probe.latencyNanos());
+    }
+
+    // compares column by column, without building the status the slot holds
+    private static boolean holds(Chunk chunk, int slot, ServiceStatus expected) {
+        Service service = chunk.services.get(slot);
+        ProbeResult probe = expected.probe().orElse(null);
+        if (service == null || !service.equals(expected.service()) || chunk.headers.get(slot) != header(expected.status(), probe)) {
+            return false;
+        }
+        if (chunk.lastChanged.get(slot) != expected.lastChanged().map(ColumnarStatusMap::nanos).orElse(ABSENT)) {
+            return false;
+        }
+        if (probe == null) {
+            return true;
+        }
+        return chunk.codes.get(slot) == probe.statusCode()
+                && chunk.checkedAt.get(slot) == nanos(probe.timestamp())
+                && chunk.latencies.get(slot) == probe.latencyNanos();
+    }
+
+    private static int header(Status status, ProbeResult probe) {
+        int header = status.ordinal();
+        if (probe != null) {
+            FailureClass failure = probe.failure().orElse(null);
+            header |= HAS_PROBE | probe.status().ordinal() << 4;
+            header |= (failure == null ? 0 : failure.ordinal() + 1) << 8;
+        }
+        return header;
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static Instant instant(long nanos) {
+        return Instant.ofEpochSecond(0, nanos);
+    }
+
+    private static final class Chunk {
+        private final AtomicLongArray versions = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicReferenceArray<Service> services = new AtomicReferenceArray<>(CHUNK_SIZE);
+        private final AtomicIntegerArray headers = new AtomicIntegerArray(CHUNK_SIZE);
+        private final AtomicIntegerArray codes = new AtomicIntegerArray(CHUNK_SIZE);
+        private final AtomicLongArray checkedAt = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray latencies = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray lastChanged = new AtomicLongArray(CHUNK_SIZE);
+    }
+
+    // skips services removed while iterating
+    private class Entries implements Iterator<Entry<URI, ServiceStatus>> {
+        private final Iterator<Entry<URI, Integer>> ids;
+        private Entry<URI, ServiceStatus> next;
+
+        private Entries(Iterator<Entry<URI, Integer>> ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && ids.hasNext()) {
+                Entry<URI, Integer> id = ids.next();
+                ServiceStatus status = read(id.getValue(), id.getKey());
+                if (status != null) {
+                    next = new SimpleImmutableEntry<>(id.getKey(), status);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Entry<URI, ServiceStatus> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<URI, ServiceStatus> entry = next;
+            next = null;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package se.kry.codetest.services;
+
+import java.time.Duration;
+
+import static java.util.Arrays.asList;
+
+/**
+ * How a service is checked. The cheaper the check, the more often it can run, which is what the default poll
+ * interval of each type reflects.
+ */
+public enum ProbeType {
+    // status code of a GET, the body is dropped unread
+    GET(Duration.ofMinutes(1)),
+    // status code of a HEAD, no body is sent at all
+    HEAD(Duration.ofSeconds(30)),
+    // a TCP connection can be opened
+    TCP(Duration.ofSeconds(15)),
+    // a TLS handshake succeeds and the certificate isn't about to expire
+    TLS(Duration.ofHours(1)),
+    // a GET with a 2xx status whose body matches the service's expected regular expression
+    BODY(Duration.ofMinutes(5));
+
+    private final Duration defaultPollInterval;
+
+    ProbeType(Duration defaultPollInterval) {
+        this.defaultPollInterval = defaultPollInterval;
+    }
+
+    public Duration defaultPollInterval() {
+        return defaultPollInterval;
+    }
+
+    public static ProbeType of(String value) {
+        for (ProbeType type : values()) {
+            if (type.name().equalsIgnoreCase(value)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("probe_type must be one of " + asList(values()));
+    }
+}
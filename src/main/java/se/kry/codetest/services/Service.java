@@ -2,26 +2,49 @@ package se.kry.codetest.services;
 
 import javax.annotation.Nullable;
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.hash;
 import static java.util.Objects.nonNull;
 
 public class Service {
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMinutes(1);
+
     private final URI uri;
     private final Optional<String> name;
     private final Instant createdAt;
+    private final Duration pollInterval;
+    private final ProbeType probeType;
+    // what the body of a BODY probe has to contain
+    private final Optional<Pattern> expect;
 
     public Service(URI uri, @Nullable String name, Instant createdAt) {
+        this(uri, name, createdAt, DEFAULT_POLL_INTERVAL);
+    }
+
+    public Service(URI uri, @Nullable String name, Instant createdAt, Duration pollInterval) {
+        this(uri, name, createdAt, pollInterval, ProbeType.GET, null);
+    }
+
+    public Service(URI uri, @Nullable String name, Instant createdAt, Duration pollInterval, ProbeType probeType, @Nullable String expect) {
         checkArgument(nonNull(uri), "URI must be non-null");
         checkArgument(name == null || !name.trim().isEmpty(), "Name must be null or non-blank");
         checkArgument(nonNull(createdAt), "Created at must be non-null");
+        checkArgument(nonNull(pollInterval) && pollInterval.toMillis() > 0, "Poll interval must be positive");
+        checkArgument(nonNull(probeType), "Probe type must be non-null");
+        checkArgument((probeType == ProbeType.BODY) == (expect != null), "Expect must be given for body probes only");
         this.uri = uri;
         this.name = Optional.ofNullable(name);
         this.createdAt = createdAt;
+        this.pollInterval = pollInterval;
+        this.probeType = probeType;
+        // an invalid pattern fails here, with a PatternSyntaxException
+        this.expect = Optional.ofNullable(expect).map(Pattern::compile);
     }
 
     public URI uri() {
@@ -36,6 +59,18 @@ public class Service {
         return createdAt;
     }
 
+    public Duration pollInterval() {
+        return pollInterval;
+    }
+
+    public ProbeType probeType() {
+        return probeType;
+    }
+
+    public Optional<Pattern> expect() {
+        return expect;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -43,11 +78,15 @@ public class Service {
         Service service = (Service) o;
         return uri.equals(service.uri) &&
                 name.equals(service.name) &&
-                createdAt.equals(service.createdAt);
+                createdAt.equals(service.createdAt) &&
+                pollInterval.equals(service.pollInterval) &&
+                probeType == service.probeType &&
+                // patterns don't implement equals
+                expect.map(Pattern::pattern).equals(service.expect.map(Pattern::pattern));
     }
 
     @Override
     public int hashCode() {
-        return hash(uri, name, createdAt);
+        return hash(uri, name, createdAt, pollInterval, probeType, expect.map(Pattern::pattern));
     }
 }
@@ -0,0 +1,35 @@
+package se.kry.codetest.services;
+
+import java.net.URI;
+import java.util.Collection;
+
+public class ServiceChanges {
+    private final long version;
+    private final boolean full;
+    private final Collection<ServiceStatus> updated;
+    private final Collection<URI> deleted;
+
+    public ServiceChanges(long version, boolean full, Collection<ServiceStatus> updated, Collection<URI> deleted) {
+        this.version = version;
+        this.full = full;
+        this.updated = updated;
+        this.deleted = deleted;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    // true when the requested version was too old to compute a delta, and updated holds every service
+    public boolean full() {
+        return full;
+    }
+
+    public Collection<ServiceStatus> updated() {
+        return updated;
+    }
+
+    public Collection<URI> deleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,249 @@
+package se.kry.codetest.services;
+
+import io.vertx.core.json.JsonArray;
+import se.kry.codetest.Status;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.nonNull;
+import static java.util.Optional.empty;
+
+/**
+ * Secondary indexes over the store, so that a page of services costs roughly the page size rather than a scan.
+ * Sorted indexes by name and creation time (last change order comes from the {@link ChangeLog}), plus posting sets
+ * by status and by host. The indexes may briefly lag the status map, so every candidate is checked against the map
+ * before it is returned.
+ */
+class ServiceIndex {
+
+    private final NavigableMap<IndexKey, URI> byName = new ConcurrentSkipListMap<>();
+    private final NavigableMap<IndexKey, URI> byCreatedAt = new ConcurrentSkipListMap<>();
+    private final Map<Status, Set<URI>> byStatus = new EnumMap<>(Status.class);
+    private final Map<String, Set<URI>> byHost = new ConcurrentHashMap<>();
+
+    ServiceIndex() {
+        for (Status status : Status.values()) {
+            byStatus.put(status, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    void add(ServiceStatus status) {
+        Service service = status.service();
+        byName.put(nameKey(service), service.uri());
+        byCreatedAt.put(createdAtKey(service), service.uri());
+        byStatus.get(status.status()).add(service.uri());
+        byHost.computeIfAbsent(host(service.uri()), host -> ConcurrentHashMap.newKeySet()).add(service.uri());
+    }
+
+    void remove(ServiceStatus status) {
+        Service service = status.service();
+        byName.remove(nameKey(service));
+        byCreatedAt.remove(createdAtKey(service));
+        byStatus.get(status.status()).remove(service.uri());
+        byHost.computeIfPresent(host(service.uri()), (host, uris) -> {
+            uris.remove(service.uri());
+            return uris.isEmpty() ? null : uris;
+        });
+    }
+
+    void statusChanged(URI uri, Status from, Status to) {
+        byStatus.get(to).add(uri);
+        byStatus.get(from).remove(uri);
+    }
+
+    ServicePage query(ServiceQuery query, Map<URI, ServiceStatus> statuses, ChangeLog changeLog) {
+        Optional<IndexKey> after = query.after().map(cursor -> decode(cursor, query.sort()));
+        Predicate<ServiceStatus> matches = filter(query);
+        Optional<Set<URI>> candidates = smallestCandidateSet(query);
+        long total = Math.max(1, statuses.size());
+        List<ServiceStatus> page = new ArrayList<>(query.limit() + 1);
+        // expected cost of walking the sort order is limit / selectivity, of sorting the candidates |candidates|;
+        // sorting wins when |candidates|^2 <= limit * total
+        if (candidates.isPresent() && (long) candidates.get().size() * candidates.get().size() <= query.limit() * total) {
+            List<ServiceStatus> matching = new ArrayList<>(candidates.get().size());
+            for (URI uri : candidates.get()) {
+                ServiceStatus status = statuses.get(uri);
+                if (status != null && matches.test(status)) {
+                    matching.add(status);
+                }
+            }
+            Comparator<IndexKey> order = query.descending() ? Comparator.<IndexKey>reverseOrder() : Comparator.<IndexKey>naturalOrder();
+            List<IndexKey> keys = new ArrayList<>(matching.size());
+            for (ServiceStatus status : matching) {
+                keys.add(key(status, query.sort(), changeLog));
+            }
+            List<Integer> positions = new ArrayList<>(matching.size());
+            for (int i = 0; i < matching.size(); i++) {
+                if (!after.isPresent() || order.compare(keys.get(i), after.get()) > 0) {
+                    positions.add(i);
+                }
+            }
+            positions.sort((a, b) -> order.compare(keys.get(a), keys.get(b)));
+            for (int i = 0; i < positions.size() && page.size() <= query.limit(); i++) {
+                page.add(matching.get(positions.get(i)));
+            }
+        } else {
+            Iterator<URI> walk = walk(query, after, changeLog);
+            while (walk.hasNext() && page.size() <= query.limit()) {
+                ServiceStatus status = statuses.get(walk.next());
+                if (status != null && matches.test(status)) {
+                    page.add(status);
+                }
+            }
+        }
+        if (page.size() <= query.limit()) {
+            return new ServicePage(page, empty());
+        }
+        page.remove(page.size() - 1);
+        ServiceStatus last = page.get(page.size() - 1);
+        return new ServicePage(page, Optional.of(encode(key(last, query.sort(), changeLog))));
+    }
+
+    private Optional<Set<URI>> smallestCandidateSet(ServiceQuery query) {
+        Optional<Set<URI>> byStatusSet = query.status().map(byStatus::get);
+        Optional<Set<URI>> byHostSet = query.host().map(host -> byHost.getOrDefault(host, Collections.emptySet()));
+        if (byStatusSet.isPresent() && byHostSet.isPresent()) {
+            return byStatusSet.get().size() <= byHostSet.get().size() ? byStatusSet : byHostSet;
+        }
+        return byStatusSet.isPresent() ? byStatusSet : byHostSet;
+    }
+
+    private Iterator<URI> walk(ServiceQuery query, Optional<IndexKey> after, ChangeLog changeLog) {
+        if (query.sort() == ServiceSort.LAST_CHANGE) {
+            NavigableMap<Long, URI> changes = changeLog.changes();
+            if (after.isPresent()) {
+                long version = after.get().number;
+                changes = query.descending() ? changes.headMap(version, false) : changes.tailMap(version, false);
+            }
+            return (query.descending() ? changes.descendingMap() : changes).values().iterator();
+        }
+        NavigableMap<IndexKey, URI> index = query.sort() == ServiceSort.NAME ? byName : byCreatedAt;
+        if (query.sort() == ServiceSort.NAME && query.namePrefix().isPresent()) {
+            // names sharing the prefix are a contiguous range of the name index
+            String prefix = query.namePrefix().get();
+            index = index.subMap(new IndexKey(prefix, ""), true, new IndexKey(prefix + Character.MAX_VALUE, ""), false);
+        }
+        if (after.isPresent()) {
+            index = query.descending() ? index.headMap(after.get(), false) : index.tailMap(after.get(), false);
+        }
+        return (query.descending() ? index.descendingMap() : index).values().iterator();
+    }
+
+    private static Predicate<ServiceStatus> filter(ServiceQuery query) {
+        Predicate<ServiceStatus> matches = status -> true;
+        if (query.status().isPresent()) {
+            Status wanted = query.status().get();
+            matches = matches.and(status -> status.status() == wanted);
+        }
+        if (query.host().isPresent()) {
+            String wanted = query.host().get();
+            matches = matches.and(status -> host(status.service().uri()).equals(wanted));
+        }
+        if (query.namePrefix().isPresent()) {
+            String prefix = query.namePrefix().get();
+            matches = matches.and(status -> status.service().name()
+                    .map(name -> name.toLowerCase(Locale.ROOT).startsWith(prefix))
+                    .orElse(false));
+        }
+        return matches;
+    }
+
+    private static IndexKey key(ServiceStatus status, ServiceSort sort, ChangeLog changeLog) {
+        switch (sort) {
+            case NAME:
+                return nameKey(status.service());
+            case CREATED_AT:
+                return createdAtKey(status.service());
+            default:
+                return new IndexKey(changeLog.lastChange(status.service().uri()), "");
+        }
+    }
+
+    private static IndexKey nameKey(Service service) {
+        // unnamed services are shown by their URL, so that's what they sort by
+        String name = service.name().orElse(service.uri().toString());
+        return new IndexKey(name.toLowerCase(Locale.ROOT), service.uri().toString());
+    }
+
+    private static IndexKey createdAtKey(Service service) {
+        return new IndexKey(service.createdAt().toEpochMilli(), service.uri().toString());
+    }
+
+    static String host(URI uri) {
+        return uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+    }
+
+    private static String encode(IndexKey key) {
+        JsonArray primary = key.text != null ? new JsonArray().add(key.text) : new JsonArray().add(key.number);
+        String json = primary.add(key.uri).encode();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(UTF_8));
+    }
+
+    private static IndexKey decode(String cursor, ServiceSort sort) {
+        try {
+            JsonArray json = new JsonArray(new String(Base64.getUrlDecoder().decode(cursor), UTF_8));
+            return sort == ServiceSort.NAME
+                    ? new IndexKey(json.getString(0), json.getString(1))
+                    : new IndexKey(json.getLong(0), json.getString(1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    // keys of one index all have a text, the lower case name, or all a number, a time or a version, never both
+    private static class IndexKey implements Comparable<IndexKey> {
+        private final String text;
+        private final long number;
+        private final String uri;
+
+        private IndexKey(String text, String uri) {
+            checkArgument(nonNull(text), "Text must be non-null");
+            this.text = text;
+            this.number = 0;
+            this.uri = uri;
+        }
+
+        private IndexKey(long number, String uri) {
+            this.text = null;
+            this.number = number;
+            this.uri = uri;
+        }
+
+        @Override
+        public int compareTo(IndexKey other) {
+            int byPrimary = text != null ? text.compareTo(other.text) : Long.compare(number, other.number);
+            return byPrimary != 0 ? byPrimary : uri.compareTo(other.uri);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IndexKey that = (IndexKey) o;
+            return Objects.equals(text, that.text) && number == that.number && uri.equals(that.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (text != null ? text.hashCode() : Long.hashCode(number)) + uri.hashCode();
+        }
+    }
+}
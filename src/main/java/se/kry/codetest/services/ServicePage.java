@@ -0,0 +1,23 @@
+package se.kry.codetest.services;
+
+import java.util.List;
+import java.util.Optional;
+
+public class ServicePage {
+    private final List<ServiceStatus> services;
+    private final Optional<String> next;
+
+    public ServicePage(List<ServiceStatus> services, Optional<String> next) {
+        this.services = services;
+        this.next = next;
+    }
+
+    public List<ServiceStatus> services() {
+        return services;
+    }
+
+    // cursor for the following page, empty on the last one
+    public Optional<String> next() {
+        return next;
+    }
+}
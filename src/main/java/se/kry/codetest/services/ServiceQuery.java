@@ -0,0 +1,70 @@
+package se.kry.codetest.services;
+
+import se.kry.codetest.Status;
+
+import javax.annotation.Nullable;
+import java.util.Locale;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+public class ServiceQuery {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private final int limit;
+    private final Optional<String> after;
+    private final Optional<Status> status;
+    private final Optional<String> namePrefix;
+    private final Optional<String> host;
+    private final ServiceSort sort;
+    private final boolean descending;
+
+    public ServiceQuery(int limit,
+                        @Nullable String after,
+                        @Nullable Status status,
+                        @Nullable String namePrefix,
+                        @Nullable String host,
+                        ServiceSort sort,
+                        boolean descending) {
+        checkArgument(limit > 0 && limit <= MAX_LIMIT, "Limit must be between 1 and " + MAX_LIMIT);
+        checkArgument(nonNull(sort), "Sort must be non-null");
+        this.limit = limit;
+        this.after = Optional.ofNullable(after);
+        this.status = Optional.ofNullable(status);
+        this.namePrefix = Optional.ofNullable(namePrefix).map(value -> value.toLowerCase(Locale.ROOT));
+        this.host = Optional.ofNullable(host).map(value -> value.toLowerCase(Locale.ROOT));
+        this.sort = sort;
+        this.descending = descending;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    // opaque cursor from a previous page
+    public Optional<String> after() {
+        return after;
+    }
+
+    public Optional<Status> status() {
+        return status;
+    }
+
+    public Optional<String> namePrefix() {
+        return namePrefix;
+    }
+
+    public Optional<String> host() {
+        return host;
+    }
+
+    public ServiceSort sort() {
+        return sort;
+    }
+
+    public boolean descending() {
+        return descending;
+    }
+}
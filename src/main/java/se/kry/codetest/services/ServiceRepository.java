@@ -1,8 +1,10 @@
 package se.kry.codetest.services;
 
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface ServiceRepository {
 
@@ -12,4 +14,13 @@ public interface ServiceRepository {
 
     Future<Collection<Service>> findAll();
 
+    // hands each service over as it is read, completes once all of them have been
+    Future<Void> streamAll(Handler<Service> handler);
+
+    // per service, whether it was written; services that already exist are skipped rather than failing the batch
+    Future<List<Boolean>> addAll(List<Service> services);
+
+    // per service, whether it was there to delete
+    Future<List<Boolean>> deleteAll(List<Service> services);
+
 }
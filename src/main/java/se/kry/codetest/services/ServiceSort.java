@@ -0,0 +1,7 @@
+package se.kry.codetest.services;
+
+public enum ServiceSort {
+    NAME,
+    CREATED_AT,
+    LAST_CHANGE
+}
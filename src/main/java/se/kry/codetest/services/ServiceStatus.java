@@ -1,8 +1,11 @@
 package se.kry.codetest.services;
 
+import se.kry.codetest.ProbeResult;
 import se.kry.codetest.Status;
 
+import java.time.Instant;
 import java.util.Objects;
+import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.nonNull;
@@ -10,12 +13,23 @@ import static java.util.Objects.nonNull;
 public class ServiceStatus {
     private final Service service;
     private final Status status;
+    // the probe the status comes from, none until the service has been probed
+    private final ProbeResult probe;
+    // when the status last became what it is
+    private final Instant lastChanged;
 
     public ServiceStatus(Service service, Status status) {
+        this(service, status, null, null);
+    }
+
+    // the store fills in when the status last changed
+    public ServiceStatus(Service service, Status status, ProbeResult probe, Instant lastChanged) {
         checkArgument(nonNull(service), "Service must be non-null");
         checkArgument(nonNull(status), "Status must be non-null");
         this.service = service;
         this.status = status;
+        this.probe = probe;
+        this.lastChanged = lastChanged;
     }
 
     public Service service() {
@@ -26,17 +40,31 @@ public class ServiceStatus {
         return status;
     }
 
+    public Optional<ProbeResult> probe() {
+        return Optional.ofNullable(probe);
+    }
+
+    public Optional<Instant> lastChanged() {
+        return Optional.ofNullable(lastChanged);
+    }
+
+    ServiceStatus changedAt(Instant lastChanged) {
+        return new ServiceStatus(service, status, probe, lastChanged);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ServiceStatus that = (ServiceStatus) o;
         return service.equals(that.service) &&
-                status == that.status;
+                status == that.status &&
+                Objects.equals(probe, that.probe) &&
+                Objects.equals(lastChanged, that.lastChanged);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(service, status);
+        return Objects.hash(service, status, probe, lastChanged);
     }
 }
@@ -0,0 +1,15 @@
+package se.kry.codetest.services;
+
+public interface ServiceStatusListener {
+
+    default void onAdded(Service service) {
+    }
+
+    default void onRemoved(Service service) {
+    }
+
+    // only called when the status itself transitions, e.g. OK to FAIL
+    default void onStatusChanged(ServiceStatus previous, ServiceStatus current) {
+    }
+
+}
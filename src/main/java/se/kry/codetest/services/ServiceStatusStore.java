@@ -1,46 +1,130 @@
 package se.kry.codetest.services;
 
 import io.vertx.core.Future;
-import se.kry.codetest.Status;
+import se.kry.codetest.ProbeResult;
 
 import java.io.Serializable;
 import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.vertx.core.Future.succeededFuture;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
 import static java.util.Optional.ofNullable;
 import static se.kry.codetest.Status.UNKNOWN;
 
 public class ServiceStatusStore {
 
+    // deletions remembered for delta queries, older ones force clients into a full reload
+    private static final int MAX_TOMBSTONES = 10_000;
+
     private final Map<URI, ServiceStatus> statuses;
+    // the same map, when it can take a probe in place
+    private final ColumnarStatusMap columnar;
     private final ServiceRepository repository;
+    private final List<ServiceStatusListener> listeners = new CopyOnWriteArrayList<>();
+    // seeded from the clock so versions keep increasing across restarts
+    private final ChangeLog changeLog = new ChangeLog(MAX_TOMBSTONES, System.currentTimeMillis() * 1000);
+    private final ServiceIndex index = new ServiceIndex();
+    // probes taken in, which change what a service shows without moving the version
+    private final AtomicLong probeEpoch = new AtomicLong();
 
     public ServiceStatusStore(ServiceRepository repository, Map<URI, ServiceStatus> statuses) {
         this.repository = repository;
         this.statuses = statuses;
+        this.columnar = statuses instanceof ColumnarStatusMap ? (ColumnarStatusMap) statuses : null;
     }
 
-    public void init() {
-        repository.findAll().setHandler(event -> {
-            if (event.succeeded()) {
-                event.result().forEach(service ->
-                        statuses.put(service.uri(), new ServiceStatus(service, UNKNOWN))
-                );
-            }
+    public void addListener(ServiceStatusListener listener) {
+        listeners.add(listener);
+    }
+
+    public Future<Void> init() {
+        return init(emptyMap());
+    }
+
+    // services become visible as they are read, completes once all of them are; those the last known statuses have
+    // for the very same service start out with them rather than as unknown
+    public Future<Void> init(Map<URI, ServiceStatus> lastKnown) {
+        return repository.streamAll(service -> {
+            ServiceStatus known = lastKnown.get(service.uri());
+            ServiceStatus status = known != null && known.service().equals(service)
+                    ? new ServiceStatus(service, known.status(), known.probe().orElse(null), known.lastChanged().orElse(null))
+                    : new ServiceStatus(service, UNKNOWN);
+            statuses.put(service.uri(), status);
+            index.add(status);
+            changeLog.record(service.uri(), false);
+            listeners.forEach(listener -> listener.onAdded(service));
         });
     }
 
     public Future<ServiceStatus> add(Service service) {
         return repository.add(service).map(persisted -> {
             ServiceStatus status = new ServiceStatus(persisted, UNKNOWN);
-            statuses.put(persisted.uri(), status);
+            ServiceStatus previous = statuses.put(persisted.uri(), status);
+            if (previous != null) {
+                index.remove(previous);
+            }
+            index.add(status);
+            changeLog.record(persisted.uri(), false);
+            if (previous != null) {
+                listeners.forEach(listener -> listener.onRemoved(previous.service()));
+            }
+            listeners.forEach(listener -> listener.onAdded(persisted));
             return status;
         });
     }
 
+    // per service, whether it was added; ones that already exist are left as they are
+    public Future<List<Boolean>> addAll(List<Service> services) {
+        return repository.addAll(services).map(written -> {
+            for (int i = 0; i < services.size(); i++) {
+                if (written.get(i)) {
+                    Service service = services.get(i);
+                    ServiceStatus status = new ServiceStatus(service, UNKNOWN);
+                    statuses.put(service.uri(), status);
+                    index.add(status);
+                    changeLog.record(service.uri(), false);
+                    listeners.forEach(listener -> listener.onAdded(service));
+                }
+            }
+            return written;
+        });
+    }
+
+    // per url, whether there was a service to delete
+    public Future<List<Boolean>> deleteAll(List<URI> uris) {
+        List<Service> known = new ArrayList<>(uris.size());
+        for (URI uri : uris) {
+            ServiceStatus status = statuses.get(uri);
+            if (status != null) {
+                known.add(status.service());
+            }
+        }
+        Future<List<Boolean>> deleted = known.isEmpty() ? succeededFuture(emptyList()) : repository.deleteAll(known);
+        return deleted.map(ignored -> {
+            List<Boolean> results = new ArrayList<>(uris.size());
+            for (URI uri : uris) {
+                ServiceStatus removed = statuses.remove(uri);
+                if (removed != null) {
+                    index.remove(removed);
+                    changeLog.record(uri, true);
+                    listeners.forEach(listener -> listener.onRemoved(removed.service()));
+                }
+                results.add(removed != null);
+            }
+            return results;
+        });
+    }
+
     public Future<Void> delete(URI uri) {
         Optional<ServiceStatus> optionalStatus = ofNullable(statuses.get(uri));
         if (optionalStatus.isPresent()) {
@@ -48,7 +132,12 @@ public class ServiceStatusStore {
             return repository
                     .delete(serviceStatus.service())
                     .map(aVoid -> {
-                        statuses.remove(uri);
+                        ServiceStatus removed = statuses.remove(uri);
+                        if (removed != null) {
+                            index.remove(removed);
+                            changeLog.record(uri, true);
+                            listeners.forEach(listener -> listener.onRemoved(removed.service()));
+                        }
                         return null;
                     });
         }
@@ -60,7 +149,118 @@ public class ServiceStatusStore {
         return statuses.values();
     }
 
+    public Optional<ServiceStatus> get(URI uri) {
+        return ofNullable(statuses.get(uri));
+    }
+
+    // a service another node has added. It is written here too: when the nodes share a database that changes nothing,
+    // when they don't it keeps this node's own one complete
+    public Future<Void> addReplica(Service service) {
+        ServiceStatus known = statuses.get(service.uri());
+        if (known != null && known.service().equals(service)) {
+            return succeededFuture();
+        }
+        Future<List<Boolean>> cleared = known == null
+                ? succeededFuture(emptyList())
+                : repository.deleteAll(singletonList(known.service()));
+        return cleared.compose(deleted -> repository.addAll(singletonList(service))).map(written -> {
+            ServiceStatus status = new ServiceStatus(service, UNKNOWN);
+            ServiceStatus previous = statuses.put(service.uri(), status);
+            if (previous != null) {
+                index.remove(previous);
+            }
+            index.add(status);
+            changeLog.record(service.uri(), false);
+            if (previous != null) {
+                listeners.forEach(listener -> listener.onRemoved(previous.service()));
+            }
+            listeners.forEach(listener -> listener.onAdded(service));
+            return null;
+        });
+    }
+
+    // a service another node has deleted, here as well as there
+    public Future<Void> removeReplica(URI uri) {
+        ServiceStatus known = statuses.get(uri);
+        if (known == null) {
+            return succeededFuture();
+        }
+        return repository.deleteAll(singletonList(known.service())).map(deleted -> {
+            ServiceStatus removed = statuses.remove(uri);
+            if (removed != null) {
+                index.remove(removed);
+                changeLog.record(uri, true);
+                listeners.forEach(listener -> listener.onRemoved(removed.service()));
+            }
+            return null;
+        });
+    }
+
     public void update(URI uri, ServiceStatus status) {
-        statuses.put(uri, status);
+        // most probes confirm the status there is, which changes nothing but the probe; that is written in place
+        ProbeResult probe = status.probe().orElse(null);
+        if (columnar != null && probe != null && uri.equals(status.service().uri())
+                && columnar.probed(status.service(), status.status(), probe)) {
+            probeEpoch.incrementAndGet();
+            return;
+        }
+        ServiceStatus previous = statuses.get(uri);
+        // a probe finishing after its service got deleted (or replaced) must not bring it back
+        if (previous == null || !previous.service().equals(status.service())) {
+            return;
+        }
+        ServiceStatus current = previous.status() == status.status()
+                ? status.changedAt(previous.lastChanged().orElse(null))
+                : status.changedAt(status.probe().map(ProbeResult::timestamp).orElseGet(Instant::now));
+        if (previous.equals(current)) {
+            return;
+        }
+        // the latest probe is kept, but only a change of status moves the version; otherwise every probe would
+        // invalidate cached lists and deltas, and reorder services sorted by change. Probes move the probe epoch
+        boolean changed = previous.status() != current.status()
+                || !previous.lastChanged().equals(current.lastChanged());
+        if (!statuses.replace(uri, previous, current)) {
+            return;
+        }
+        probeEpoch.incrementAndGet();
+        if (changed) {
+            changeLog.record(uri, false);
+            if (previous.status() != current.status()) {
+                index.statusChanged(uri, previous.status(), current.status());
+                listeners.forEach(listener -> listener.onStatusChanged(previous, current));
+            }
+        }
+    }
+
+    public long version() {
+        return changeLog.version();
+    }
+
+    // moves with every probe taken in, including those that leave the version where it is
+    public long probeEpoch() {
+        return probeEpoch.get();
+    }
+
+    public ServicePage query(ServiceQuery query) {
+        return index.query(query, statuses, changeLog);
+    }
+
+    public ServiceChanges changesSince(long since) {
+        long version = changeLog.version();
+        Optional<Collection<URI>> changed = changeLog.since(since, version);
+        if (!changed.isPresent()) {
+            return new ServiceChanges(version, true, new ArrayList<>(statuses.values()), emptyList());
+        }
+        List<ServiceStatus> updated = new ArrayList<>();
+        List<URI> deleted = new ArrayList<>();
+        for (URI uri : changed.get()) {
+            ServiceStatus status = statuses.get(uri);
+            if (status == null) {
+                deleted.add(uri);
+            } else {
+                updated.add(status);
+            }
+        }
+        return new ServiceChanges(version, false, updated, deleted);
     }
 }
@@ -0,0 +1,191 @@
+package se.kry.codetest.services;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.CopyOptions;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.emptyMap;
+import static java.util.Objects.nonNull;
+
+/**
+ * The last known statuses in a file, so that a restart serves them right away instead of showing every service as
+ * unknown until it has been probed again. The file is written whole next to the snapshot and then moved over it, a
+ * crash leaves the previous snapshot in place. Services keep the millisecond creation time the repository has, so
+ * a status is only restored for the very service it was taken of.
+ */
+public class StatusSnapshot {
+
+    // bumped whenever the layout, or the order of an enum in it, changes; other versions are ignored
+    private static final int FORMAT = 1;
+    private static final long ABSENT = Long.MIN_VALUE;
+    private static final Status[] STATUSES = Status.values();
+    private static final FailureClass[] FAILURES = FailureClass.values();
+    private static final ProbeType[] PROBE_TYPES = ProbeType.values();
+
+    private final Vertx vertx;
+    private final String path;
+
+    public StatusSnapshot(Vertx vertx, String path) {
+        checkArgument(nonNull(path) && !path.isEmpty(), "Path must be non-empty");
+        this.vertx = vertx;
+        this.path = path;
+    }
+
+    public Future<Void> save(Collection<ServiceStatus> statuses) {
+        String temporary = path + ".tmp";
+        Future<Void> written = Future.future();
+        vertx.fileSystem().writeFile(temporary, encode(statuses), written);
+        return written.compose(done -> {
+            Future<Void> moved = Future.future();
+            vertx.fileSystem().move(temporary, path, new CopyOptions().setReplaceExisting(true).setAtomicMove(true), moved);
+            return moved;
+        });
+    }
+
+    // by URI; none when there is no snapshot or it can't be read, as the services then simply start out unknown
+    public Future<Map<URI, ServiceStatus>> load() {
+        Future<Map<URI, ServiceStatus>> loaded = Future.future();
+        vertx.fileSystem().readFile(path, read -> {
+            if (read.failed()) {
+                loaded.complete(emptyMap());
+                return;
+            }
+            try {
+                loaded.complete(decode(read.result()));
+            } catch (RuntimeException e) {
+                loaded.complete(emptyMap());
+            }
+        });
+        return loaded;
+    }
+
+    static Buffer encode(Collection<ServiceStatus> statuses) {
+        Buffer buffer = Buffer.buffer(64 * statuses.size() + 8);
+        buffer.appendInt(FORMAT);
+        buffer.appendInt(statuses.size());
+        for (ServiceStatus status : statuses) {
+            Service service = status.service();
+            appendString(buffer, service.uri().toString());
+            appendString(buffer, service.name().orElse(null));
+            buffer.appendLong(service.createdAt().toEpochMilli());
+            buffer.appendLong(service.pollInterval().toMillis());
+            buffer.appendByte((byte) service.probeType().ordinal());
+            appendString(buffer, service.expect().map(Pattern::pattern).orElse(null));
+            buffer.appendByte((byte) status.status().ordinal());
+            buffer.appendLong(status.lastChanged().map(StatusSnapshot::nanos).orElse(ABSENT));
+            if (status.probe().isPresent()) {
+                ProbeResult probe = status.probe().get();
+                buffer.appendByte((byte) 1);
+                buffer.appendLong(nanos(probe.timestamp()));
+                buffer.appendByte((byte) probe.status().ordinal());
+                buffer.appendLong(probe.latencyNanos());
+                buffer.appendInt(probe.statusCode());
+                buffer.appendByte((byte) probe.failure().map(failure -> failure.ordinal() + 1).orElse(0).intValue());
+            } else {
+                buffer.appendByte((byte) 0);
+            }
+        }
+        return buffer;
+    }
+
+    static Map<URI, ServiceStatus> decode(Buffer buffer) {
+        Reader in = new Reader(buffer);
+        if (in.readInt() != FORMAT) {
+            return emptyMap();
+        }
+        int count = in.readInt();
+        Map<URI, ServiceStatus> statuses = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            URI uri = URI.create(in.readString());
+            Service service = new Service(
+                    uri,
+                    in.readString(),
+                    Instant.ofEpochMilli(in.readLong()),
+                    Duration.ofMillis(in.readLong()),
+                    PROBE_TYPES[in.readByte()],
+                    in.readString()
+            );
+            Status status = STATUSES[in.readByte()];
+            long lastChanged = in.readLong();
+            ProbeResult probe = null;
+            if (in.readByte() != 0) {
+                Instant timestamp = instant(in.readLong());
+                Status probeStatus = STATUSES[in.readByte()];
+                long latencyNanos = in.readLong();
+                int code = in.readInt();
+                int failure = in.readByte();
+                probe = new ProbeResult(uri, timestamp, probeStatus, latencyNanos, code, failure == 0 ? null : FAILURES[failure - 1]);
+            }
+            statuses.put(uri, new ServiceStatus(service, status, probe, lastChanged == ABSENT ? null : instant(lastChanged)));
+        }
+        return statuses;
+    }
+
+    // -1 for none
+    private static void appendString(Buffer buffer, String value) {
+        if (value == null) {
+            buffer.appendInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(bytes.length);
+        buffer.appendBytes(bytes);
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static Instant instant(long nanos) {
+        return Instant.ofEpochSecond(0, nanos);
+    }
+
+    private static class Reader {
+        private final Buffer buffer;
+        private int position;
+
+        private Reader(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private int readByte() {
+            return buffer.getByte(position++);
+        }
+
+        private int readInt() {
+            int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        private long readLong() {
+            long value = buffer.getLong(position);
+            position += Long.BYTES;
+            return value;
+        }
+
+        private String readString() {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            String value = buffer.getString(position, position + length, StandardCharsets.UTF_8.name());
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package se.kry.codetest.stream;
+
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+import se.kry.codetest.MainVerticle;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+import se.kry.codetest.services.ServiceStatusListener;
+
+import static se.kry.codetest.Status.UNKNOWN;
+
+public class StatusEventPublisher implements ServiceStatusListener {
+
+    public static final String ADDRESS = "service.status";
+
+    public static final String ADDED = "added";
+    public static final String REMOVED = "removed";
+    public static final String STATUS = "status";
+
+    private final EventBus eventBus;
+
+    public StatusEventPublisher(EventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    @Override
+    public void onAdded(Service service) {
+        publish(ADDED, new ServiceStatus(service, UNKNOWN));
+    }
+
+    @Override
+    public void onRemoved(Service service) {
+        eventBus.publish(ADDRESS, new JsonObject()
+                .put("type", REMOVED)
+                .put("service", new JsonObject().put("url", service.uri().toString())));
+    }
+
+    @Override
+    public void onStatusChanged(ServiceStatus previous, ServiceStatus current) {
+        publish(STATUS, current);
+    }
+
+    private void publish(String type, ServiceStatus status) {
+        eventBus.publish(ADDRESS, new JsonObject()
+                .put("type", type)
+                .put("service", MainVerticle.serialize(status)));
+    }
+}
@@ -0,0 +1,77 @@
+package se.kry.codetest.stream;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fans status events out to dashboards as Server-Sent Events. Each subscriber gets a bounded write buffer: a client
+ * that can't keep up with the stream is disconnected rather than buffered for, and its EventSource reconnects and
+ * reloads once it is able to.
+ * Lives on the event loop of the verticle that created it, so it needs no locking.
+ */
+public class StatusStream {
+
+    private static final Buffer KEEP_ALIVE = Buffer.buffer(":\n\n");
+
+    private final int maxBufferedBytes;
+    private final Set<HttpServerResponse> subscribers = new LinkedHashSet<>();
+    private long evicted;
+
+    public StatusStream(Vertx vertx, int maxBufferedBytes, long keepAliveMillis) {
+        this.maxBufferedBytes = maxBufferedBytes;
+        // stops proxies from timing out idle streams when nothing changes for a while
+        vertx.setPeriodic(keepAliveMillis, timerId -> broadcast(KEEP_ALIVE));
+    }
+
+    public void subscribe(RoutingContext req) {
+        HttpServerResponse response = req.response()
+                .putHeader("content-type", "text/event-stream")
+                .putHeader("cache-control", "no-cache")
+                .setChunked(true);
+        response.setWriteQueueMaxSize(maxBufferedBytes);
+        response.closeHandler(closed -> subscribers.remove(response));
+        subscribers.add(response);
+        response.write("retry: 2000\n\n");
+    }
+
+    public void publish(JsonObject event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        // encoded once, whatever the number of subscribers
+        broadcast(Buffer.buffer("event: " + event.getString("type") + "\ndata: " + event.getJsonObject("service").encode() + "\n\n"));
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    public long evicted() {
+        return evicted;
+    }
+
+    private void broadcast(Buffer frame) {
+        List<HttpServerResponse> slow = new ArrayList<>();
+        subscribers.removeIf(response -> {
+            if (response.closed()) {
+                return true;
+            }
+            if (response.writeQueueFull()) {
+                slow.add(response);
+                return true;
+            }
+            response.write(frame);
+            return false;
+        });
+        evicted += slow.size();
+        slow.forEach(HttpServerResponse::close);
+    }
+}
@@ -0,0 +1,108 @@
+package se.kry.codetest.uptime;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear latency histogram in the style of HDR histograms: every power of two is split into 8 equal buckets, so
+ * a value is known to within 1/16 of itself. Sketches merge by adding counts. Only the buckets in use are stored,
+ * most services keep their latency within a handful of them. The bucketing is shared with the dense histograms of
+ * the metrics.
+ */
+public final class LatencySketch {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // ~71 minutes, anything slower counts as this
+    private static final long MAX_MICROS = (1L << 32) - 1;
+    public static final int BUCKETS = index(MAX_MICROS) + 1;
+
+    // bucket indexes in ascending order, each below 256, with their counts
+    private byte[] indexes = new byte[0];
+    private int[] counts = new int[0];
+    private int size;
+
+    void record(long micros) {
+        int index = index(micros);
+        int position = search(index);
+        if (position >= 0) {
+            counts[position]++;
+            return;
+        }
+        position = -position - 1;
+        if (size == indexes.length) {
+            indexes = Arrays.copyOf(indexes, Math.max(4, size * 2));
+            counts = Arrays.copyOf(counts, indexes.length);
+        }
+        System.arraycopy(indexes, position, indexes, position + 1, size - position);
+        System.arraycopy(counts, position, counts, position + 1, size - position);
+        indexes[position] = (byte) index;
+        counts[position] = 1;
+        size++;
+    }
+
+    // adds the counts to a dense histogram of BUCKETS entries
+    void addTo(long[] histogram) {
+        for (int i = 0; i < size; i++) {
+            histogram[indexes[i] & 0xFF] += counts[i];
+        }
+    }
+
+    // keeps the arrays, a reused bucket most likely needs the same room again
+    void clear() {
+        size = 0;
+    }
+
+    // the value below which a share q of a dense histogram falls, 0 for an empty one
+    public static long quantile(long[] histogram, long total, double q) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int index = 0; index < histogram.length; index++) {
+            seen += histogram[index];
+            if (seen >= rank) {
+                return value(index);
+            }
+        }
+        return value(histogram.length - 1);
+    }
+
+    public static int index(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_MICROS);
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // middle of the bucket
+    public static long value(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + sub) * width + width / 2;
+    }
+
+    private int search(int index) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = indexes[middle] & 0xFF;
+            if (found < index) {
+                low = middle + 1;
+            } else if (found > index) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,109 @@
+package se.kry.codetest.uptime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ring buffers of one service's probes, one ring per bucket width, sized for the longest window using it. Recording a
+ * probe touches one bucket per ring; a window query reads at most one ring.
+ */
+class ServiceUptime {
+
+    private static final Map<Long, Integer> RING_SIZES = new HashMap<>();
+
+    static {
+        for (UptimeWindow window : UptimeWindow.values()) {
+            RING_SIZES.merge(window.bucketMillis(), window.buckets(), Math::max);
+        }
+    }
+
+    private final Map<Long, Ring> rings = new HashMap<>();
+
+    ServiceUptime() {
+        RING_SIZES.forEach((bucketMillis, size) -> rings.put(bucketMillis, new Ring(bucketMillis, size)));
+    }
+
+    synchronized void record(long timestamp, boolean ok, long latencyMicros, boolean responded) {
+        for (Ring ring : rings.values()) {
+            ring.record(timestamp, ok, latencyMicros, responded);
+        }
+    }
+
+    synchronized Uptime query(UptimeWindow window, long now) {
+        return rings.get(window.bucketMillis()).query(window, now);
+    }
+
+    private static class Ring {
+        private final long bucketMillis;
+        private final Bucket[] buckets;
+
+        private Ring(long bucketMillis, int size) {
+            this.bucketMillis = bucketMillis;
+            this.buckets = new Bucket[size];
+        }
+
+        private void record(long timestamp, boolean ok, long latencyMicros, boolean responded) {
+            long epoch = Math.floorDiv(timestamp, bucketMillis);
+            int slot = (int) Math.floorMod(epoch, (long) buckets.length);
+            Bucket bucket = buckets[slot];
+            if (bucket == null) {
+                bucket = new Bucket();
+                buckets[slot] = bucket;
+            }
+            if (bucket.epoch > epoch) {
+                // older than the ring reaches back
+                return;
+            }
+            if (bucket.epoch < epoch) {
+                bucket.reset(epoch);
+            }
+            bucket.probes++;
+            bucket.ok += ok ? 1 : 0;
+            if (responded) {
+                bucket.responses++;
+                bucket.latency.record(latencyMicros);
+            }
+        }
+
+        private Uptime query(UptimeWindow window, long now) {
+            long last = Math.floorDiv(now, bucketMillis);
+            long first = last - window.buckets() + 1;
+            long probes = 0;
+            long ok = 0;
+            long responses = 0;
+            long[] histogram = new long[LatencySketch.BUCKETS];
+            for (Bucket bucket : buckets) {
+                if (bucket != null && bucket.epoch >= first && bucket.epoch <= last) {
+                    probes += bucket.probes;
+                    ok += bucket.ok;
+                    responses += bucket.responses;
+                    bucket.latency.addTo(histogram);
+                }
+            }
+            return new Uptime(
+                    window,
+                    probes,
+                    ok,
+                    LatencySketch.quantile(histogram, responses, 0.50),
+                    LatencySketch.quantile(histogram, responses, 0.95),
+                    LatencySketch.quantile(histogram, responses, 0.99)
+            );
+        }
+    }
+
+    private static class Bucket {
+        private final LatencySketch latency = new LatencySketch();
+        private long epoch = Long.MIN_VALUE;
+        private long probes;
+        private long ok;
+        private long responses;
+
+        private void reset(long epoch) {
+            this.epoch = epoch;
+            probes = 0;
+            ok = 0;
+            responses = 0;
+            latency.clear();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package se.kry.codetest.uptime;
+
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+/**
+ * Probes of one service over a window, with response time percentiles of the probes that got a response.
+ */
+public class Uptime {
+    private final UptimeWindow window;
+    private final long probes;
+    private final long ok;
+    private final long p50Micros;
+    private final long p95Micros;
+    private final long p99Micros;
+
+    public Uptime(UptimeWindow window, long probes, long ok, long p50Micros, long p95Micros, long p99Micros) {
+        checkArgument(nonNull(window), "Window must be non-null");
+        checkArgument(probes >= 0 && ok >= 0 && ok <= probes, "Ok probes must be between 0 and the probe count");
+        this.window = window;
+        this.probes = probes;
+        this.ok = ok;
+        this.p50Micros = p50Micros;
+        this.p95Micros = p95Micros;
+        this.p99Micros = p99Micros;
+    }
+
+    public UptimeWindow window() {
+        return window;
+    }
+
+    public long probes() {
+        return probes;
+    }
+
+    public long ok() {
+        return ok;
+    }
+
+    // share of probes that were OK, NaN without any probes
+    public double ratio() {
+        return probes == 0 ? Double.NaN : (double) ok / probes;
+    }
+
+    // percentiles are 0 when no probe got a response
+    public long p50Micros() {
+        return p50Micros;
+    }
+
+    public long p95Micros() {
+        return p95Micros;
+    }
+
+    public long p99Micros() {
+        return p99Micros;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Uptime uptime = (Uptime) o;
+        return probes == uptime.probes &&
+                ok == uptime.ok &&
+                p50Micros == uptime.p50Micros &&
+                p95Micros == uptime.p95Micros &&
+                p99Micros == uptime.p99Micros &&
+                window == uptime.window;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(window, probes, ok, p50Micros, p95Micros, p99Micros);
+    }
+}
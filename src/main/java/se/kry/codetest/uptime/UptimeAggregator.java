@@ -0,0 +1,53 @@
+package se.kry.codetest.uptime;
+
+import se.kry.codetest.ProbeObserver;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatusListener;
+
+import java.net.URI;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Uptime and response time percentiles per service over every {@link UptimeWindow}, kept up to date as probes
+ * complete rather than computed from history. A query merges the buckets of one window, never the probes in it.
+ */
+public class UptimeAggregator implements ProbeObserver, ServiceStatusListener {
+
+    private final Map<URI, ServiceUptime> services = new ConcurrentHashMap<>();
+
+    @Override
+    public void onProbe(ProbeResult result) {
+        services.computeIfAbsent(result.uri(), uri -> new ServiceUptime()).record(
+                result.timestamp().toEpochMilli(),
+                result.status() == Status.OK,
+                NANOSECONDS.toMicros(result.latencyNanos()),
+                // a refused connection or a timeout says nothing about how fast the service answers, a TCP or TLS
+                // probe that got through does
+                result.status() == Status.OK || result.statusCode() != ProbeResult.NO_STATUS_CODE
+        );
+    }
+
+    @Override
+    public void onRemoved(Service service) {
+        services.remove(service.uri());
+    }
+
+    public Uptime uptime(URI uri, UptimeWindow window, long now) {
+        ServiceUptime uptime = services.get(uri);
+        return uptime == null ? new Uptime(window, 0, 0, 0, 0, 0) : uptime.query(window, now);
+    }
+
+    public Map<UptimeWindow, Uptime> uptime(URI uri, long now) {
+        Map<UptimeWindow, Uptime> windows = new EnumMap<>(UptimeWindow.class);
+        for (UptimeWindow window : UptimeWindow.values()) {
+            windows.put(window, uptime(uri, window, now));
+        }
+        return windows;
+    }
+}
@@ -0,0 +1,38 @@
+package se.kry.codetest.uptime;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Rolling windows uptime is kept for. A window covers its last {@code buckets} buckets, the current one included, so
+ * it is exact to one bucket.
+ */
+public enum UptimeWindow {
+    HOUR("1h", MINUTES.toMillis(1), 60),
+    DAY("24h", HOURS.toMillis(1), 24),
+    WEEK("7d", HOURS.toMillis(1), 7 * 24),
+    MONTH("30d", DAYS.toMillis(1), 30);
+
+    private final String label;
+    private final long bucketMillis;
+    private final int buckets;
+
+    UptimeWindow(String label, long bucketMillis, int buckets) {
+        this.label = label;
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    long bucketMillis() {
+        return bucketMillis;
+    }
+
+    int buckets() {
+        return buckets;
+    }
+}
@@ -0,0 +1,75 @@
+package se.kry.codetest.vantage;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.probe.ProbeStrategy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.nonNull;
+
+/**
+ * One vantage point: probes whatever the {@link QuorumProbe} asks for with probes of its own, e.g. through its own
+ * proxy or local address, and sends the results back in batches. Deployed once per vantage, in this process or, on a
+ * clustered event bus, in another one.
+ */
+public class ProbeAgent extends AbstractVerticle {
+
+    private final String vantage;
+    private final Function<Vertx, ProbeStrategy> probesFactory;
+    private final long flushMillis;
+    private final int maxBatchSize;
+    // results waiting to go back, per reply address; only touched on this verticle's event loop
+    private final Map<String, List<VantageCodec.Result>> unsent = new HashMap<>();
+    private ProbeStrategy probes;
+
+    public ProbeAgent(String vantage, Function<Vertx, ProbeStrategy> probesFactory, long flushMillis, int maxBatchSize) {
+        checkArgument(nonNull(vantage) && !vantage.isEmpty(), "Vantage must be non-empty");
+        checkArgument(flushMillis > 0, "Flush interval must be positive");
+        checkArgument(maxBatchSize > 0, "Max batch size must be positive");
+        this.vantage = vantage;
+        this.probesFactory = probesFactory;
+        this.flushMillis = flushMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void start() {
+        probes = probesFactory.apply(vertx);
+        vertx.eventBus().<Buffer>consumer(QuorumProbe.REQUESTS, message -> {
+            VantageCodec.Requests batch = VantageCodec.decodeRequests(message.body());
+            for (VantageCodec.Request request : batch.requests) {
+                probes.probe(request.service, request.timeout).setHandler(probed ->
+                        // back on this event loop, probes may complete on others
+                        context.runOnContext(done -> collect(batch.replyTo, request.id, probed.result())));
+            }
+        });
+        vertx.setPeriodic(flushMillis, timerId -> flushAll());
+    }
+
+    private void collect(String replyTo, long id, ProbeResult result) {
+        List<VantageCodec.Result> results = unsent.computeIfAbsent(replyTo, address -> new ArrayList<>());
+        results.add(VantageCodec.Result.of(id, result));
+        if (results.size() >= maxBatchSize) {
+            flush(replyTo, results);
+        }
+    }
+
+    private void flushAll() {
+        unsent.forEach(this::flush);
+    }
+
+    private void flush(String replyTo, List<VantageCodec.Result> results) {
+        if (!results.isEmpty()) {
+            vertx.eventBus().send(replyTo, VantageCodec.encodeResults(vantage, results));
+            results.clear();
+        }
+    }
+}
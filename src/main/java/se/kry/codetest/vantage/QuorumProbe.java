@@ -0,0 +1,158 @@
+package se.kry.codetest.vantage;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.probe.ProbeStrategy;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Probes every service from several vantage points and settles on what a majority of them see, so that one vantage's
+ * own network trouble doesn't take services down with it. Requests go to all {@link ProbeAgent}s in batches, results
+ * come back in batches, the poller sees a single probe result per service as before.
+ * <p>
+ * A service fails once a majority of all vantages, answering or not, saw it fail. Otherwise it is up if any vantage
+ * got through, and when none did and too few failed to tell, it fails as {@link FailureClass#NO_QUORUM}.
+ */
+public class QuorumProbe implements ProbeStrategy {
+
+    static final String REQUESTS = "vantage.requests";
+
+    private final Vertx vertx;
+    private final int vantages;
+    private final long flushMillis;
+    private final int maxBatchSize;
+    // where the agents send this instance's results
+    private final String replyTo = "vantage.results." + UUID.randomUUID();
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    // guarded by this
+    private List<VantageCodec.Request> unsent = new ArrayList<>();
+
+    public QuorumProbe(Vertx vertx, Collection<String> vantages, long flushMillis, int maxBatchSize) {
+        checkArgument(!vantages.isEmpty(), "Vantages must not be empty");
+        checkArgument(flushMillis > 0, "Flush interval must be positive");
+        checkArgument(maxBatchSize > 0, "Max batch size must be positive");
+        this.vertx = vertx;
+        this.vantages = vantages.size();
+        this.flushMillis = flushMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void start() {
+        vertx.eventBus().<Buffer>consumer(replyTo, message -> onResults(VantageCodec.decodeResults(message.body())));
+        vertx.setPeriodic(flushMillis, timerId -> flush(take()));
+    }
+
+    @Override
+    public Future<ProbeResult> probe(Service service, long timeout) {
+        Pending probe = new Pending(service.uri(), Instant.now());
+        long id = ids.incrementAndGet();
+        pending.put(id, probe);
+        // a vantage that hasn't answered by then counts as not having got through; the results wait for a batch at
+        // both ends
+        probe.timerId = vertx.setTimer(timeout + 2 * flushMillis, timerId -> complete(id));
+        List<VantageCodec.Request> full = null;
+        synchronized (this) {
+            unsent.add(new VantageCodec.Request(id, service, timeout));
+            if (unsent.size() >= maxBatchSize) {
+                full = take();
+            }
+        }
+        flush(full);
+        return probe.future;
+    }
+
+    private synchronized List<VantageCodec.Request> take() {
+        List<VantageCodec.Request> taken = unsent;
+        unsent = new ArrayList<>();
+        return taken;
+    }
+
+    private void flush(List<VantageCodec.Request> requests) {
+        if (requests != null && !requests.isEmpty()) {
+            vertx.eventBus().publish(REQUESTS, VantageCodec.encodeRequests(replyTo, requests));
+        }
+    }
+
+    private void onResults(VantageCodec.Results batch) {
+        for (VantageCodec.Result result : batch.results) {
+            Pending probe = pending.get(result.id);
+            if (probe != null && probe.answer(batch.vantage, result.probe(probe.uri, probe.startedAt)) == vantages) {
+                complete(result.id);
+            }
+        }
+    }
+
+    private void complete(long id) {
+        Pending probe = pending.remove(id);
+        if (probe != null) {
+            vertx.cancelTimer(probe.timerId);
+            probe.future.complete(decide(probe.uri, probe.startedAt, probe.answers(), vantages));
+        }
+    }
+
+    static ProbeResult decide(URI uri, Instant startedAt, Collection<ProbeResult> answers, int vantages) {
+        int quorum = vantages / 2 + 1;
+        List<ProbeResult> failed = answers.stream().filter(answer -> answer.status() == Status.FAIL).collect(toList());
+        List<ProbeResult> ok = answers.stream().filter(answer -> answer.status() == Status.OK).collect(toList());
+        if (failed.size() >= quorum) {
+            return median(failed);
+        }
+        if (!ok.isEmpty()) {
+            return median(ok);
+        }
+        if (failed.isEmpty()) {
+            return new ProbeResult(uri, startedAt, Status.FAIL, 0, ProbeResult.NO_STATUS_CODE, FailureClass.NO_QUORUM);
+        }
+        ProbeResult representative = median(failed);
+        return new ProbeResult(uri, startedAt, Status.FAIL, representative.latencyNanos(), representative.statusCode(), FailureClass.NO_QUORUM);
+    }
+
+    // the answer with the median latency stands for all of them
+    private static ProbeResult median(List<ProbeResult> answers) {
+        answers.sort(Comparator.comparingLong(ProbeResult::latencyNanos));
+        return answers.get(answers.size() / 2);
+    }
+
+    private static class Pending {
+        private final URI uri;
+        private final Instant startedAt;
+        private final Future<ProbeResult> future = Future.future();
+        // by vantage, an agent deployed twice only counts once
+        private final Map<String, ProbeResult> answers = new HashMap<>();
+        private volatile long timerId;
+
+        private Pending(URI uri, Instant startedAt) {
+            this.uri = uri;
+            this.startedAt = startedAt;
+        }
+
+        private synchronized int answer(String vantage, ProbeResult result) {
+            answers.put(vantage, result);
+            return answers.size();
+        }
+
+        private synchronized List<ProbeResult> answers() {
+            return new ArrayList<>(answers.values());
+        }
+    }
+}
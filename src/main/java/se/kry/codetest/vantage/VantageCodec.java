@@ -0,0 +1,198 @@
+package se.kry.codetest.vantage;
+
+import io.vertx.core.buffer.Buffer;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.services.ProbeType;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The batches exchanged between the quorum probe and its agents, one event bus message per batch rather than per
+ * probe:
+ * <ul>
+ * <li>requests: reply address, count, then per probe its id, timeout (ms), URL, probe type and expected body.</li>
+ * <li>results: vantage, count, then per probe its id, status, latency (ns), status code and failure class, 22 bytes
+ * a probe.</li>
+ * </ul>
+ * Strings are UTF-8 with an int length, -1 for none; enums go by ordinal, both ends run the same build.
+ */
+final class VantageCodec {
+
+    private static final Status[] STATUSES = Status.values();
+    private static final FailureClass[] FAILURES = FailureClass.values();
+    private static final ProbeType[] PROBE_TYPES = ProbeType.values();
+
+    private VantageCodec() {
+    }
+
+    static Buffer encodeRequests(String replyTo, List<Request> requests) {
+        Buffer buffer = Buffer.buffer(64 * requests.size() + 64);
+        appendString(buffer, replyTo);
+        buffer.appendInt(requests.size());
+        for (Request request : requests) {
+            buffer.appendLong(request.id);
+            buffer.appendLong(request.timeout);
+            appendString(buffer, request.service.uri().toString());
+            buffer.appendByte((byte) request.service.probeType().ordinal());
+            appendString(buffer, request.service.expect().map(Pattern::pattern).orElse(null));
+        }
+        return buffer;
+    }
+
+    static Requests decodeRequests(Buffer buffer) {
+        Reader in = new Reader(buffer);
+        String replyTo = in.readString();
+        int count = in.readInt();
+        List<Request> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            long timeout = in.readLong();
+            URI uri = URI.create(in.readString());
+            ProbeType probeType = PROBE_TYPES[in.readByte()];
+            // only what the probe needs, the rest stays with the store
+            Service service = new Service(uri, null, Instant.EPOCH, probeType.defaultPollInterval(), probeType, in.readString());
+            requests.add(new Request(id, service, timeout));
+        }
+        return new Requests(replyTo, requests);
+    }
+
+    static Buffer encodeResults(String vantage, List<Result> results) {
+        Buffer buffer = Buffer.buffer(22 * results.size() + 64);
+        appendString(buffer, vantage);
+        buffer.appendInt(results.size());
+        for (Result result : results) {
+            buffer.appendLong(result.id);
+            buffer.appendByte((byte) result.status.ordinal());
+            buffer.appendLong(result.latencyNanos);
+            buffer.appendInt(result.statusCode);
+            buffer.appendByte((byte) (result.failure == null ? 0 : result.failure.ordinal() + 1));
+        }
+        return buffer;
+    }
+
+    static Results decodeResults(Buffer buffer) {
+        Reader in = new Reader(buffer);
+        String vantage = in.readString();
+        int count = in.readInt();
+        List<Result> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = in.readLong();
+            Status status = STATUSES[in.readByte()];
+            long latencyNanos = in.readLong();
+            int code = in.readInt();
+            int failure = in.readByte();
+            results.add(new Result(id, status, latencyNanos, code, failure == 0 ? null : FAILURES[failure - 1]));
+        }
+        return new Results(vantage, results);
+    }
+
+    private static void appendString(Buffer buffer, String value) {
+        if (value == null) {
+            buffer.appendInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.appendInt(bytes.length);
+        buffer.appendBytes(bytes);
+    }
+
+    static class Request {
+        final long id;
+        final Service service;
+        final long timeout;
+
+        Request(long id, Service service, long timeout) {
+            this.id = id;
+            this.service = service;
+            this.timeout = timeout;
+        }
+    }
+
+    static class Requests {
+        final String replyTo;
+        final List<Request> requests;
+
+        Requests(String replyTo, List<Request> requests) {
+            this.replyTo = replyTo;
+            this.requests = requests;
+        }
+    }
+
+    // without URL or time, the quorum probe has both from the request
+    static class Result {
+        final long id;
+        final Status status;
+        final long latencyNanos;
+        final int statusCode;
+        final FailureClass failure;
+
+        Result(long id, Status status, long latencyNanos, int statusCode, FailureClass failure) {
+            this.id = id;
+            this.status = status;
+            this.latencyNanos = latencyNanos;
+            this.statusCode = statusCode;
+            this.failure = failure;
+        }
+
+        static Result of(long id, ProbeResult probe) {
+            return new Result(id, probe.status(), probe.latencyNanos(), probe.statusCode(), probe.failure().orElse(null));
+        }
+
+        ProbeResult probe(URI uri, Instant timestamp) {
+            return new ProbeResult(uri, timestamp, status, latencyNanos, statusCode, failure);
+        }
+    }
+
+    static class Results {
+        final String vantage;
+        final List<Result> results;
+
+        Results(String vantage, List<Result> results) {
+            this.vantage = vantage;
+            this.results = results;
+        }
+    }
+
+    private static class Reader {
+        private final Buffer buffer;
+        private int position;
+
+        private Reader(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private int readByte() {
+            return buffer.getByte(position++);
+        }
+
+        private int readInt() {
+            int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        private long readLong() {
+            long value = buffer.getLong(position);
+            position += Long.BYTES;
+            return value;
+        }
+
+        private String readString() {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            String value = buffer.getString(position, position + length, StandardCharsets.UTF_8.name());
+            position += length;
+            return value;
+        }
+    }
+}
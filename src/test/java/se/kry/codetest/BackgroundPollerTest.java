@@ -1,79 +1,343 @@
 package se.kry.codetest;
 
-import com.squareup.okhttp.*;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatcher;
+import se.kry.codetest.probe.AdaptiveTimeouts;
+import se.kry.codetest.probe.Probes;
 import se.kry.codetest.services.Service;
 import se.kry.codetest.services.ServiceStatus;
 import se.kry.codetest.services.ServiceStatusStore;
 
-import java.io.IOException;
 import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.time.Instant.now;
-import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.util.Lists.list;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static se.kry.codetest.OverflowPolicy.*;
 import static se.kry.codetest.Status.*;
 
+@ExtendWith(VertxExtension.class)
 class BackgroundPollerTest {
 
     private ServiceStatusStore store = mock(ServiceStatusStore.class);
-    private OkHttpClient httpClient = mock(OkHttpClient.class);
-    private BackgroundPoller poller = new BackgroundPoller(store, httpClient, newFixedThreadPool(2));
+    private AtomicInteger requests = new AtomicInteger();
+    private AtomicInteger concurrentRequests = new AtomicInteger();
+    private AtomicInteger maxConcurrentRequests = new AtomicInteger();
+    private int port;
+
+    @BeforeEach
+    void start_stub_server(Vertx vertx, VertxTestContext testContext) {
+        HttpServer server = vertx.createHttpServer().requestHandler(request -> {
+            requests.incrementAndGet();
+            maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+            int code = request.path().startsWith("/fail") ? 503 : 200;
+            long delay = request.path().startsWith("/slow") ? 50 : 1;
+            vertx.setTimer(delay, timerId -> {
+                concurrentRequests.decrementAndGet();
+                request.response().setStatusCode(code).end("some body");
+            });
+        });
+        server.listen(0, testContext.succeeding(listening -> {
+            port = listening.actualPort();
+            testContext.completeNow();
+        }));
+    }
 
     @Test
-    void should_call_GET_on_all_services() {
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_call_GET_on_all_services(Vertx vertx, VertxTestContext testContext) {
         // given
-        Service service1 = new Service(URI.create("https://www.kry-1.se/"), null, now());
-        Service service2 = new Service(URI.create("https://www.kry-2.se/"), null, now());
-        Service service3 = new Service(URI.create("https://www.kry-3.se/"), null, now());
+        Service service1 = new Service(URI.create(url("/ok-1")), null, now());
+        Service service2 = new Service(URI.create(url("/fail")), null, now());
+        Service service3 = new Service(URI.create(url("/ok-3")), null, now());
         when(store.getAll()).thenReturn(list(
                 new ServiceStatus(service1, OK),
                 new ServiceStatus(service2, FAIL),
                 new ServiceStatus(service3, UNKNOWN)
         ));
+        BackgroundPoller poller = poller(vertx, options(2));
 
-        when(httpClient.newCall(any())).thenAnswer(invocation -> {
-            Request request = invocation.getArgument(0);
-            if (request.urlString().equals(service1.uri().toString())) {
-                return aSuccess();
-            }
-            if (request.urlString().equals(service2.uri().toString())) {
-                return aFailure();
-            }
-            return aSuccess();
-        });
+        // when
+        poller.poll().setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            // then
+            verify(store).update(eq(service1.uri()), argThat(probed(service1, OK, 200, null)));
+            verify(store).update(eq(service2.uri()), argThat(probed(service2, FAIL, 503, FailureClass.HTTP_ERROR)));
+            verify(store).update(eq(service3.uri()), argThat(probed(service3, OK, 200, null)));
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_mark_unreachable_and_invalid_services_as_failed(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Service unreachable = new Service(URI.create("http://localhost:1/"), null, now());
+        Service invalid = new Service(URI.create("sdgf"), null, now());
+        when(store.getAll()).thenReturn(list(
+                new ServiceStatus(unreachable, UNKNOWN),
+                new ServiceStatus(invalid, UNKNOWN)
+        ));
+        BackgroundPoller poller = poller(vertx, options(2));
+
+        // when
+        poller.poll().setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            // then
+            verify(store).update(eq(unreachable.uri()), argThat(probed(unreachable, FAIL, ProbeResult.NO_STATUS_CODE, FailureClass.CONNECTION_REFUSED)));
+            verify(store).update(eq(invalid.uri()), argThat(probed(invalid, FAIL, ProbeResult.NO_STATUS_CODE, FailureClass.INVALID_URL)));
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_report_every_probe_to_observers(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Service ok = new Service(URI.create(url("/ok")), null, now());
+        Service failing = new Service(URI.create(url("/fail")), null, now());
+        Service unreachable = new Service(URI.create("http://localhost:1/"), null, now());
+        List<ProbeResult> results = new CopyOnWriteArrayList<>();
+        BackgroundPoller poller = poller(vertx, options(3));
+        poller.addObserver(results::add);
+
+        // when
+        poller.poll(list(ok, failing, unreachable)).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            // then
+            assertThat(results).extracting(ProbeResult::uri, ProbeResult::status, ProbeResult::statusCode)
+                    .containsExactlyInAnyOrder(
+                            tuple(ok.uri(), OK, 200),
+                            tuple(failing.uri(), FAIL, 503),
+                            tuple(unreachable.uri(), FAIL, ProbeResult.NO_STATUS_CODE)
+                    );
+            assertThat(results).allSatisfy(result -> assertThat(result.latencyNanos()).isPositive());
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_bound_probes_in_flight(Vertx vertx, VertxTestContext testContext) {
+        // given
+        List<Service> services = range(0, 12)
+                .mapToObj(i -> new Service(URI.create(url("/slow-" + i)), null, now()))
+                .collect(toList());
+        BackgroundPoller poller = poller(vertx, options(3));
+
+        // when
+        poller.poll(services).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            // then
+            verify(store, times(12)).update(any(), any());
+            assertThat(maxConcurrentRequests.get()).isBetween(1, 3);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_coalesce_probes_of_a_service_still_in_flight(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Service service = new Service(URI.create(url("/slow")), null, now());
+        BackgroundPoller poller = poller(vertx, options(2));
+
+        // when
+        Future<Void> first = poller.poll(list(service));
+        Future<Void> second = poller.poll(list(service));
+
+        // then
+        CompositeFuture.all(first, second).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            verify(store, times(1)).update(any(), any());
+            assertThat(poller.coalesced()).isEqualTo(1);
+            assertThat(requests.get()).isEqualTo(1);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_share_one_probe_between_services_with_equivalent_urls(Vertx vertx, VertxTestContext testContext) {
+        // given
+        // equivalent to a probe, but different URIs to the store
+        Service service = new Service(URI.create(url("")), null, now());
+        Service same = new Service(URI.create(url("/")), null, now());
+        BackgroundPoller poller = poller(vertx, options(2));
+
+        // when
+        poller.poll(list(service, same)).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            // then
+            assertThat(service.uri()).isNotEqualTo(same.uri());
+            assertThat(requests.get()).isEqualTo(1);
+            assertThat(poller.coalesced()).isEqualTo(1);
+            verify(store).update(eq(service.uri()), argThat(probed(service, OK, 200, null)));
+            verify(store).update(eq(same.uri()), argThat(probed(same, OK, 200, null)));
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_limit_probes_in_flight_per_host(Vertx vertx, VertxTestContext testContext) {
+        // given
+        List<Service> services = slowServices(6);
+        Service otherHost = new Service(URI.create("http://127.0.0.1:" + port + "/ok"), null, now());
+        BackgroundPoller poller = poller(vertx, options(4).setMaxInFlightPerHost(2));
 
         // when
-        Future<Void> result = poller.poll();
+        Future<Void> polled = poller.poll(services);
+        Future<Void> other = poller.poll(list(otherHost));
+
+        // then the busy host doesn't hold up the other one
+        assertThat(poller.inFlight()).isEqualTo(3);
+        assertThat(poller.queued()).isEqualTo(4);
+        CompositeFuture.all(polled, other).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            assertThat(requests.get()).isEqualTo(7);
+            assertThat(maxConcurrentRequests.get()).isLessThanOrEqualTo(3);
+            verify(store, times(7)).update(any(), any());
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_drop_oldest_queued_probe_on_overflow(Vertx vertx, VertxTestContext testContext) {
+        // given
+        List<Service> services = slowServices(5);
+        BackgroundPoller poller = poller(vertx, options(1)
+                .setMaxQueued(2)
+                .setOverflowPolicy(DROP_OLDEST));
+
+        // when
+        poller.poll(services).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            // then the first one got a slot, the next two were pushed out of the queue
+            assertThat(poller.dropped()).isEqualTo(2);
+            assertThat(requests.get()).isEqualTo(3);
+            verify(store).update(eq(services.get(0).uri()), any());
+            verify(store).update(eq(services.get(3).uri()), any());
+            verify(store).update(eq(services.get(4).uri()), any());
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_drop_newest_probe_on_overflow(Vertx vertx, VertxTestContext testContext) {
+        // given
+        List<Service> services = slowServices(5);
+        BackgroundPoller poller = poller(vertx, options(1)
+                .setMaxQueued(2)
+                .setOverflowPolicy(DROP_NEWEST));
+
+        // when
+        poller.poll(services).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            // then
+            assertThat(poller.dropped()).isEqualTo(2);
+            verify(store).update(eq(services.get(0).uri()), any());
+            verify(store).update(eq(services.get(1).uri()), any());
+            verify(store).update(eq(services.get(2).uri()), any());
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_skip_until_idle_after_overflow(Vertx vertx, VertxTestContext testContext) {
+        // given
+        List<Service> services = slowServices(4);
+        BackgroundPoller poller = poller(vertx, options(1)
+                .setMaxQueued(1)
+                .setOverflowPolicy(SKIP_UNTIL_IDLE));
+
+        // when the queue overflows, later probes are skipped even though the queue has room again
+        Future<Void> first = poller.poll(services.subList(0, 3));
+        assertThat(poller.queued()).isEqualTo(1);
 
         // then
-        assertThat(result.isComplete());
-        verify(store).update(URI.create("https://www.kry-1.se/"), new ServiceStatus(service1, OK));
-        verify(store).update(URI.create("https://www.kry-2.se/"), new ServiceStatus(service2, FAIL));
-        verify(store).update(URI.create("https://www.kry-3.se/"), new ServiceStatus(service3, OK));
+        first.setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            assertThat(poller.dropped()).isEqualTo(1);
+            assertThat(poller.queued()).isZero();
+            // idle again, so new probes are accepted
+            poller.poll(services.subList(3, 4)).setHandler(testContext.succeeding(next -> testContext.verify(() -> {
+                verify(store).update(eq(services.get(3).uri()), any());
+                assertThat(poller.dropped()).isEqualTo(1);
+                testContext.completeNow();
+            })));
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_retry_a_first_failure_right_away_and_only_publish_it_once_confirmed(Vertx vertx, VertxTestContext testContext) {
+        // given a service that has been OK so far
+        Service service = new Service(URI.create(url("/fail")), null, now());
+        PollerOptions options = options(2);
+        StatusConfirmation confirmation = new StatusConfirmation(options);
+        confirmation.record(service.uri(), OK);
+        BackgroundPoller poller = poller(vertx, options, confirmation);
+        List<Status> published = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            ServiceStatus status = invocation.getArgument(1);
+            published.add(status.status());
+            if (status.status() == FAIL) {
+                testContext.verify(() -> {
+                    // then the first failure is held back and retried out of cycle, until the third confirms it
+                    assertThat(published).containsExactly(OK, OK, FAIL);
+                    assertThat(requests.get()).isEqualTo(3);
+                    testContext.completeNow();
+                });
+            }
+            return null;
+        }).when(store).update(eq(service.uri()), any());
+
+        // when
+        poller.poll(list(service));
     }
 
-    private Call aSuccess() throws IOException {
-        Call call = mock(Call.class);
-        when(call.execute()).thenReturn(aResponse().code(200).build());
-        return call;
+    private List<Service> slowServices(int count) {
+        return range(0, count)
+                .mapToObj(i -> new Service(URI.create(url("/slow-" + i)), null, now()))
+                .collect(toList());
     }
 
-    private Call aFailure() throws IOException {
-        Call call = mock(Call.class);
-        when(call.execute()).thenReturn(aResponse().code(503).build());
-        return call;
+    private BackgroundPoller poller(Vertx vertx, PollerOptions options) {
+        return poller(vertx, options, new StatusConfirmation(options));
     }
 
-    private Response.Builder aResponse() {
-        Request request = new Request.Builder().url("http://someurl").build();
-        return new Response.Builder()
-                .request(request)
-                .protocol(Protocol.HTTP_1_0)
-                .code(200);
+    private BackgroundPoller poller(Vertx vertx, PollerOptions options, StatusConfirmation confirmation) {
+        return new BackgroundPoller(store, new Probes(vertx, WebClient.create(vertx), options), new AdaptiveTimeouts(options), confirmation, options);
     }
 
-}
\ No newline at end of file
+    private static PollerOptions options(int maxInFlight) {
+        return new PollerOptions()
+                .setMaxInFlight(maxInFlight)
+                .setRequestTimeout(1000);
+    }
+
+    private static ArgumentMatcher<ServiceStatus> probed(Service service, Status status, int statusCode, FailureClass failure) {
+        return probed -> probed.service().equals(service)
+                && probed.status() == status
+                && probed.probe().filter(probe -> probe.statusCode() == statusCode).isPresent()
+                && probed.probe().flatMap(ProbeResult::failure).orElse(null) == failure;
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
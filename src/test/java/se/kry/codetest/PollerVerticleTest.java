@@ -0,0 +1,101 @@
+package se.kry.codetest;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import se.kry.codetest.history.HistoryStore;
+import se.kry.codetest.scheduling.PollScheduler;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+import se.kry.codetest.services.ServiceStatusStore;
+import se.kry.codetest.services.StatusSnapshot;
+import se.kry.codetest.stream.StatusEventPublisher;
+import se.kry.codetest.uptime.UptimeAggregator;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.vertx.core.Future.failedFuture;
+import static io.vertx.core.Future.succeededFuture;
+import static java.time.Instant.now;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static org.mockito.Mockito.*;
+import static se.kry.codetest.Status.OK;
+
+@ExtendWith(VertxExtension.class)
+class PollerVerticleTest {
+
+    private ServiceStatusStore statusStore = mock(ServiceStatusStore.class);
+    private PollScheduler scheduler = mock(PollScheduler.class);
+    private HistoryStore historyStore = mock(HistoryStore.class);
+    private UptimeAggregator uptimeAggregator = mock(UptimeAggregator.class);
+    private StatusSnapshot snapshot = mock(StatusSnapshot.class);
+    private Map<URI, ServiceStatus> lastKnown = new HashMap<>();
+    private PollerVerticle verticle = new PollerVerticle(statusStore, scheduler, historyStore, uptimeAggregator, snapshot);
+
+    @BeforeEach
+    void setup() {
+        when(snapshot.load()).thenReturn(succeededFuture(lastKnown));
+        when(snapshot.save(any())).thenReturn(succeededFuture());
+        when(statusStore.init(any())).thenReturn(succeededFuture());
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_init_the_store_with_the_last_known_statuses(Vertx vertx, VertxTestContext testContext) {
+        vertx.deployVerticle(verticle, testContext.succeeding(id -> testContext.verify(() -> {
+            verify(statusStore).init(lastKnown);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_start_the_scheduler_and_keep_it_informed_of_services(Vertx vertx, VertxTestContext testContext) {
+        vertx.deployVerticle(verticle, testContext.succeeding(id -> testContext.verify(() -> {
+            verify(statusStore).addListener(scheduler);
+            verify(statusStore).addListener(uptimeAggregator);
+            verify(statusStore).addListener(any(StatusEventPublisher.class));
+            verify(scheduler).start(vertx);
+            verify(historyStore).start(vertx);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_fail_to_start_when_the_store_fails_to_load(Vertx vertx, VertxTestContext testContext) {
+        // given
+        RuntimeException exception = new RuntimeException("test exception");
+        when(statusStore.init(any())).thenReturn(failedFuture(exception));
+
+        // when
+        vertx.deployVerticle(verticle, testContext.failing(cause -> testContext.verify(() -> {
+            // then
+            assertThat(cause).isEqualTo(exception);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_save_a_snapshot_when_stopping(Vertx vertx, VertxTestContext testContext) {
+        // given
+        ServiceStatus status = new ServiceStatus(new Service(URI.create("https://www.kry.se"), "kry", now()), OK);
+        when(statusStore.getAll()).thenReturn(list(status));
+
+        // when
+        vertx.deployVerticle(verticle, testContext.succeeding(id -> vertx.undeploy(id, testContext.succeeding(done -> testContext.verify(() -> {
+            // then
+            verify(snapshot).save(list(status));
+            testContext.completeNow();
+        })))));
+    }
+}
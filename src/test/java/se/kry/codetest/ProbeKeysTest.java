@@ -0,0 +1,48 @@
+package se.kry.codetest;
+
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.services.ProbeType;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.time.Duration;
+
+import static java.time.Instant.now;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProbeKeysTest {
+
+    @Test
+    void should_normalize_case_default_port_and_empty_path() {
+        assertThat(ProbeKeys.normalize(URI.create("HTTPS://API.Kry.se:443"))).isEqualTo("https://api.kry.se/");
+        assertThat(ProbeKeys.normalize(URI.create("http://api.kry.se:80/health?full=true"))).isEqualTo("http://api.kry.se/health?full=true");
+        assertThat(ProbeKeys.normalize(URI.create("http://api.kry.se:8080/Health"))).isEqualTo("http://api.kry.se:8080/Health");
+    }
+
+    @Test
+    void should_key_origin_by_host_and_port() {
+        assertThat(ProbeKeys.origin(URI.create("https://API.kry.se/health"))).isEqualTo("api.kry.se:443");
+        assertThat(ProbeKeys.origin(URI.create("https://api.kry.se:8443/v2/health"))).isEqualTo("api.kry.se:8443");
+        assertThat(ProbeKeys.origin(URI.create("mailto:someone"))).isEmpty();
+    }
+
+    @Test
+    void should_only_coalesce_services_sending_the_same_probe() {
+        // given
+        Service get = service("https://api.kry.se/health", ProbeType.GET, null);
+        Service head = service("https://api.kry.se/health", ProbeType.HEAD, null);
+        Service body = service("https://api.kry.se/health", ProbeType.BODY, "ok");
+        Service otherBody = service("https://api.kry.se/health", ProbeType.BODY, "up");
+        Service tcp = service("https://api.kry.se/health", ProbeType.TCP, null);
+        Service otherTcp = service("https://api.kry.se/v2/health", ProbeType.TCP, null);
+
+        // when / then
+        assertThat(ProbeKeys.coalescing(get)).isNotEqualTo(ProbeKeys.coalescing(head));
+        assertThat(ProbeKeys.coalescing(body)).isNotEqualTo(ProbeKeys.coalescing(otherBody));
+        assertThat(ProbeKeys.coalescing(tcp)).isEqualTo(ProbeKeys.coalescing(otherTcp));
+    }
+
+    private static Service service(String url, ProbeType type, String expect) {
+        return new Service(URI.create(url), null, now(), Duration.ofMinutes(1), type, expect);
+    }
+}
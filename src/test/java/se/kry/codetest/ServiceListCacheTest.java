@@ -0,0 +1,138 @@
+package se.kry.codetest;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.metrics.MetricsRegistry;
+import se.kry.codetest.services.ColumnarStatusMap;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceRepository;
+import se.kry.codetest.services.ServiceStatus;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.zip.GZIPInputStream;
+
+import static java.time.Instant.now;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static org.mockito.Mockito.*;
+import static se.kry.codetest.Status.FAIL;
+import static se.kry.codetest.Status.OK;
+import static se.kry.codetest.Status.UNKNOWN;
+
+class ServiceListCacheTest {
+
+    private ServiceStatusStore store = mock(ServiceStatusStore.class);
+    private ServiceListCache cache = new ServiceListCache(store);
+
+    private Service service = new Service(URI.create("https://www.kry.se"), null, now());
+
+    @Test
+    void should_reuse_snapshot_while_version_is_unchanged() {
+        // given
+        when(store.version()).thenReturn(7L);
+        when(store.getAll()).thenReturn(list(new ServiceStatus(service, OK)));
+
+        // when
+        ServiceListCache.Snapshot first = cache.get();
+        ServiceListCache.Snapshot second = cache.get();
+
+        // then
+        assertThat(second).isSameAs(first);
+        assertThat(first.etag()).isEqualTo("\"7-0\"");
+        assertThat(first.json().toJsonArray()).hasSize(1);
+        verify(store, times(1)).getAll();
+    }
+
+    @Test
+    void should_rebuild_snapshot_once_version_moves() {
+        // given
+        when(store.version()).thenReturn(7L).thenReturn(8L);
+        when(store.getAll()).thenReturn(list(new ServiceStatus(service, OK))).thenReturn(list(new ServiceStatus(service, FAIL)));
+
+        // when
+        ServiceListCache.Snapshot first = cache.get();
+        ServiceListCache.Snapshot second = cache.get();
+
+        // then
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.etag()).isEqualTo("\"8-0\"");
+        assertThat(second.json().toJsonArray().getJsonObject(0).getString("status")).isEqualTo("FAIL");
+    }
+
+    @Test
+    void should_catch_up_with_probes_that_keep_the_status() {
+        // given
+        ServiceRepository repository = mock(ServiceRepository.class);
+        ColumnarStatusMap statuses = new ColumnarStatusMap();
+        statuses.put(service.uri(), new ServiceStatus(service, UNKNOWN));
+        ServiceStatusStore store = new ServiceStatusStore(repository, statuses);
+        ServiceListCache cache = new ServiceListCache(store, new MetricsRegistry(), 0);
+        store.update(service.uri(), new ServiceStatus(service, OK, probe(1000L, 50), null));
+        ServiceListCache.Snapshot first = cache.get();
+
+        // when
+        store.update(service.uri(), new ServiceStatus(service, OK, probe(2000L, 5000), null));
+        ServiceListCache.Snapshot second = cache.get();
+
+        // then
+        assertThat(first.json().toJsonArray().getJsonObject(0).getDouble("latency_ms")).isEqualTo(50.0);
+        assertThat(second.json().toJsonArray().getJsonObject(0).getDouble("latency_ms")).isEqualTo(5000.0);
+        assertThat(second.etag()).isNotEqualTo(first.etag());
+    }
+
+    @Test
+    void should_catch_up_with_probes_at_most_once_per_refresh() {
+        // given
+        ServiceListCache cache = new ServiceListCache(store, new MetricsRegistry(), 60_000);
+        when(store.version()).thenReturn(7L);
+        when(store.probeEpoch()).thenReturn(1L).thenReturn(2L);
+        when(store.getAll()).thenReturn(list(new ServiceStatus(service, OK)));
+
+        // when
+        ServiceListCache.Snapshot first = cache.get();
+        ServiceListCache.Snapshot second = cache.get();
+
+        // then
+        assertThat(second).isSameAs(first);
+        verify(store, times(1)).getAll();
+    }
+
+    @Test
+    void should_gzip_same_body() {
+        // given
+        when(store.getAll()).thenReturn(list(new ServiceStatus(service, OK)));
+        ServiceListCache.Snapshot snapshot = cache.get();
+
+        // when
+        Buffer gzipped = snapshot.gzipped();
+
+        // then
+        assertThat(snapshot.gzipped()).isSameAs(gzipped);
+        assertThat(new JsonArray(gunzip(gzipped))).isEqualTo(snapshot.json().toJsonArray());
+    }
+
+    private ProbeResult probe(long epochMillis, long latencyMillis) {
+        return new ProbeResult(service.uri(), Instant.ofEpochMilli(epochMillis), OK, latencyMillis * 1_000_000L, 200);
+    }
+
+    static Buffer gunzip(Buffer gzipped) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBytes()))) {
+            byte[] chunk = new byte[1024];
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                out.write(chunk, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Buffer.buffer(out.toByteArray());
+    }
+}
@@ -0,0 +1,123 @@
+package se.kry.codetest;
+
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.time.Instant.now;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static se.kry.codetest.Status.*;
+
+class StatusConfirmationTest {
+
+    private final URI uri = URI.create("https://www.kry.se");
+    private StatusConfirmation confirmation = new StatusConfirmation(new PollerOptions()
+            .setConfirmWindow(5)
+            .setConfirmThreshold(3));
+
+    @Test
+    void should_take_the_first_outcome_as_is() {
+        assertThat(confirmation.record(uri, FAIL)).isEqualTo(FAIL);
+        assertThat(confirmation.retry(uri)).isFalse();
+    }
+
+    @Test
+    void should_hold_the_status_through_a_blip() {
+        // given
+        record(OK, OK, OK);
+
+        // when
+        List<Status> published = record(FAIL, OK, OK);
+
+        // then
+        assertThat(published).containsExactly(OK, OK, OK);
+    }
+
+    @Test
+    void should_change_once_threshold_of_window_disagree() {
+        // given
+        record(OK, OK, OK);
+
+        // when
+        List<Status> published = record(FAIL, OK, FAIL, FAIL);
+
+        // then
+        assertThat(published).containsExactly(OK, OK, OK, FAIL);
+    }
+
+    @Test
+    void should_ask_for_retries_on_the_first_disagreeing_probe() {
+        // given
+        record(OK);
+
+        // when
+        record(FAIL);
+
+        // then
+        assertThat(confirmation.retry(uri)).isTrue();
+        assertThat(confirmation.record(uri, FAIL)).isEqualTo(OK);
+        assertThat(confirmation.retry(uri)).isTrue();
+        assertThat(confirmation.record(uri, FAIL)).isEqualTo(FAIL);
+        assertThat(confirmation.retry(uri)).isFalse();
+    }
+
+    @Test
+    void should_stop_retrying_once_a_probe_agrees_again() {
+        // given
+        record(OK, FAIL);
+
+        // when
+        record(OK);
+
+        // then
+        assertThat(confirmation.retry(uri)).isFalse();
+    }
+
+    @Test
+    void should_need_the_whole_window_while_flapping() {
+        // given a service that alternated until it was flapping, and is down for now
+        for (int i = 0; i < 20; i++) {
+            record(i % 2 == 0 ? OK : FAIL);
+        }
+        record(FAIL, FAIL, FAIL, FAIL, FAIL);
+
+        // when
+        List<Status> published = record(OK, OK, OK, OK, OK);
+
+        // then no retries are asked for, and only the whole window changes the status back
+        assertThat(published).containsExactly(FAIL, FAIL, FAIL, FAIL, OK);
+        assertThat(confirmation.retry(uri)).isFalse();
+    }
+
+    @Test
+    void should_forget_removed_services() {
+        // given
+        record(OK, OK, FAIL);
+
+        // when
+        confirmation.onRemoved(new Service(uri, null, now()));
+
+        // then
+        assertThat(confirmation.retry(uri)).isFalse();
+        assertThat(confirmation.record(uri, FAIL)).isEqualTo(FAIL);
+    }
+
+    @Test
+    void should_throw_exception_on_threshold_above_window() {
+        assertThatThrownBy(() -> new StatusConfirmation(new PollerOptions().setConfirmWindow(3).setConfirmThreshold(4)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Confirm threshold must not exceed the confirm window");
+    }
+
+    private List<Status> record(Status... outcomes) {
+        List<Status> published = new ArrayList<>();
+        for (Status outcome : outcomes) {
+            published.add(confirmation.record(uri, outcome));
+        }
+        return published;
+    }
+}
@@ -11,16 +11,32 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import se.kry.codetest.history.HistoryStore;
+import se.kry.codetest.history.Resolution;
+import se.kry.codetest.history.Rollup;
+import se.kry.codetest.metrics.MetricsRegistry;
+import se.kry.codetest.services.ProbeType;
 import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceChanges;
+import se.kry.codetest.services.ServicePage;
 import se.kry.codetest.services.ServiceRepository;
+import se.kry.codetest.services.ServiceSort;
 import se.kry.codetest.services.ServiceStatus;
 import se.kry.codetest.services.ServiceStatusStore;
+import se.kry.codetest.stream.StatusEventPublisher;
+import se.kry.codetest.uptime.Uptime;
+import se.kry.codetest.uptime.UptimeAggregator;
+import se.kry.codetest.uptime.UptimeWindow;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
+import static io.vertx.core.Future.failedFuture;
 import static io.vertx.core.Future.succeededFuture;
 import static java.time.Instant.now;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -33,19 +49,16 @@ import static se.kry.codetest.Status.*;
 public class TestMainVerticle {
 
     private ServiceStatusStore statusStore = mock(ServiceStatusStore.class);
-    private BackgroundPoller poller = mock(BackgroundPoller.class);
+    private HistoryStore historyStore = mock(HistoryStore.class);
+    private UptimeAggregator uptimeAggregator = mock(UptimeAggregator.class);
+    private MetricsRegistry metrics = new MetricsRegistry();
 
     @BeforeEach
     void deploy_verticle(Vertx vertx, VertxTestContext testContext) {
-        vertx.deployVerticle(new MainVerticle(statusStore, poller), testContext.succeeding(id -> testContext.completeNow()));
-    }
-
-    @Test
-    @DisplayName("Should init the status store when starting the server")
-    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
-    void init_status_store(Vertx vertx, VertxTestContext testContext) {
-        verify(statusStore).init();
-        testContext.completeNow();
+        vertx.deployVerticle(
+                new MainVerticle(statusStore, new ServiceListCache(statusStore), historyStore, uptimeAggregator, metrics),
+                testContext.succeeding(id -> testContext.completeNow())
+        );
     }
 
     @Test
@@ -54,7 +67,7 @@ public class TestMainVerticle {
     void get_all(Vertx vertx, VertxTestContext testContext) {
         when(statusStore.getAll()).thenReturn(list(
                 new ServiceStatus(new Service(URI.create("https://www.kry-1.se"), "some name", Instant.parse("2020-04-04T19:40:01.084884Z")), OK),
-                new ServiceStatus(new Service(URI.create("https://www.kry-2.se"), null, Instant.parse("2020-04-04T19:38:57.980500Z")), FAIL),
+                new ServiceStatus(new Service(URI.create("https://www.kry-2.se"), null, Instant.parse("2020-04-04T19:38:57.980500Z"), Duration.ofSeconds(10)), FAIL),
                 new ServiceStatus(new Service(URI.create("https://www.kry-3.se"), "kry", Instant.parse("2020-04-04T19:29:08.327Z")), UNKNOWN)
         ));
 
@@ -69,21 +82,313 @@ public class TestMainVerticle {
                                     .put("url", "https://www.kry-1.se")
                                     .put("name", "some name")
                                     .put("created_at", "2020-04-04T19:40:01.084884Z")
+                                    .put("poll_interval", 60)
+                                    .put("probe_type", "GET")
                                     .put("status", "OK"),
                             new JsonObject()
                                     .put("url", "https://www.kry-2.se")
                                     .put("created_at", "2020-04-04T19:38:57.980500Z")
+                                    .put("poll_interval", 10)
+                                    .put("probe_type", "GET")
                                     .put("status", "FAIL"),
                             new JsonObject()
                                     .put("url", "https://www.kry-3.se")
                                     .put("name", "kry")
                                     .put("created_at", "2020-04-04T19:29:08.327Z")
+                                    .put("poll_interval", 60)
+                                    .put("probe_type", "GET")
                                     .put("status", "UNKNOWN")
                     );
                     testContext.completeNow();
                 }));
     }
 
+    @Test
+    @DisplayName("Should include uptime in the service list on request")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_all_with_uptime(Vertx vertx, VertxTestContext testContext) {
+        URI uri = URI.create("https://www.kry-1.se");
+        when(statusStore.getAll()).thenReturn(list(
+                new ServiceStatus(new Service(uri, null, Instant.parse("2020-04-04T19:40:01.084884Z")), OK)
+        ));
+        when(uptimeAggregator.uptime(eq(uri), anyLong())).thenReturn(uptime());
+
+        WebClient.create(vertx)
+                .get(8080, "::1", "/service?include=uptime")
+                .send(response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    JsonArray body = response.result().bodyAsJsonArray();
+                    assertThat(body).hasSize(1);
+                    JsonObject uptime = body.getJsonObject(0).getJsonObject("uptime");
+                    assertThat(uptime.fieldNames()).containsExactly("1h", "24h", "7d", "30d");
+                    assertThat(uptime.getJsonObject("1h")).isEqualTo(new JsonObject()
+                            .put("probes", 60)
+                            .put("ok", 57)
+                            .put("uptime", 0.95)
+                            .put("p50_ms", 12.5)
+                            .put("p95_ms", 40.0)
+                            .put("p99_ms", 250.0));
+                    assertThat(uptime.getJsonObject("30d").getValue("uptime")).isNull();
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should get the uptime of a service")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_uptime(Vertx vertx, VertxTestContext testContext) {
+        URI uri = URI.create("https://www.kry-1.se");
+        when(uptimeAggregator.uptime(eq(uri), anyLong())).thenReturn(uptime());
+
+        WebClient.create(vertx)
+                .get(8080, "::1", "/service/uptime")
+                .addQueryParam("url", uri.toString())
+                .send(response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    JsonObject body = response.result().bodyAsJsonObject();
+                    assertThat(body.getString("url")).isEqualTo("https://www.kry-1.se");
+                    assertThat(body.getJsonObject("uptime").getJsonObject("24h").getDouble("uptime")).isEqualTo(0.95);
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should tag the service list with the store version and probe epoch")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_all_not_modified(Vertx vertx, VertxTestContext testContext) {
+        when(statusStore.version()).thenReturn(42L);
+        when(statusStore.probeEpoch()).thenReturn(7L);
+        when(statusStore.getAll()).thenReturn(list());
+
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "::1", "/service")
+                .send(first -> testContext.verify(() -> {
+                    assertThat(first.result().statusCode()).isEqualTo(200);
+                    assertThat(first.result().getHeader("etag")).isEqualTo("\"42-7\"");
+                    client.get(8080, "::1", "/service")
+                            .putHeader("if-none-match", "\"42-7\"")
+                            .send(second -> testContext.verify(() -> {
+                                assertThat(second.result().statusCode()).isEqualTo(304);
+                                testContext.completeNow();
+                            }));
+                }));
+    }
+
+    @Test
+    @DisplayName("Should catch up with probes that keep the status in the service list")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_all_after_probes_keeping_the_status(Vertx vertx, VertxTestContext testContext) {
+        URI uri = URI.create("https://www.kry-1.se");
+        Service service = new Service(uri, null, now());
+        Instant firstAt = Instant.parse("2020-04-04T19:40:00Z");
+        when(statusStore.version()).thenReturn(42L);
+        when(statusStore.probeEpoch()).thenReturn(1L);
+        when(statusStore.getAll()).thenReturn(list(new ServiceStatus(service, OK, new ProbeResult(uri, firstAt, OK, 50_000_000L, 200), firstAt)));
+
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "::1", "/service")
+                .send(first -> testContext.verify(() -> {
+                    assertThat(first.result().bodyAsJsonArray().getJsonObject(0).getDouble("latency_ms")).isEqualTo(50.0);
+                    // a second probe, as slow as it gets while still OK
+                    when(statusStore.probeEpoch()).thenReturn(2L);
+                    when(statusStore.getAll()).thenReturn(list(new ServiceStatus(service, OK, new ProbeResult(uri, firstAt.plusSeconds(10), OK, 5_000_000_000L, 200), firstAt)));
+                    vertx.setTimer(1100, timerId -> client.get(8080, "::1", "/service")
+                            .send(second -> testContext.verify(() -> {
+                                assertThat(second.result().bodyAsJsonArray().getJsonObject(0).getDouble("latency_ms")).isEqualTo(5000.0);
+                                assertThat(second.result().getHeader("etag")).isNotEqualTo(first.result().getHeader("etag"));
+                                testContext.completeNow();
+                            })));
+                }));
+    }
+
+    @Test
+    @DisplayName("Should serve the same cached list gzipped on request")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_all_gzipped(Vertx vertx, VertxTestContext testContext) {
+        when(statusStore.getAll()).thenReturn(list(
+                new ServiceStatus(new Service(URI.create("https://www.kry-1.se"), "some name", now()), OK)
+        ));
+
+        WebClient client = WebClient.create(vertx);
+        client.get(8080, "::1", "/service")
+                .send(plain -> testContext.verify(() -> {
+                    assertThat(plain.result().getHeader("content-encoding")).isNull();
+                    client.get(8080, "::1", "/service")
+                            .putHeader("accept-encoding", "gzip, deflate")
+                            .send(gzipped -> testContext.verify(() -> {
+                                assertThat(gzipped.result().statusCode()).isEqualTo(200);
+                                assertThat(gzipped.result().getHeader("content-encoding")).isEqualTo("gzip");
+                                assertThat(ServiceListCacheTest.gunzip(gzipped.result().body())).isEqualTo(plain.result().body());
+                                client.get(8080, "::1", "/service")
+                                        .send(again -> testContext.verify(() -> {
+                                            assertThat(again.result().body()).isEqualTo(plain.result().body());
+                                            // served from the cache every time
+                                            verify(statusStore, times(1)).getAll();
+                                            testContext.completeNow();
+                                        }));
+                            }));
+                }));
+    }
+
+    @Test
+    @DisplayName("Should get service changes since a version")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_changes_since(Vertx vertx, VertxTestContext testContext) {
+        Service service = new Service(URI.create("https://www.kry-1.se"), null, Instant.parse("2020-04-04T19:40:01.084884Z"));
+        when(statusStore.changesSince(40L)).thenReturn(new ServiceChanges(
+                42L,
+                false,
+                list(new ServiceStatus(service, OK)),
+                list(URI.create("https://www.kry-2.se"))
+        ));
+
+        WebClient.create(vertx)
+                .get(8080, "::1", "/service?since=40")
+                .send(response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    JsonObject body = response.result().bodyAsJsonObject();
+                    assertThat(body.getLong("version")).isEqualTo(42L);
+                    assertThat(body.getBoolean("full")).isFalse();
+                    assertThat(body.getJsonArray("services")).containsExactly(new JsonObject()
+                            .put("url", "https://www.kry-1.se")
+                            .put("created_at", "2020-04-04T19:40:01.084884Z")
+                            .put("poll_interval", 60)
+                            .put("probe_type", "GET")
+                            .put("status", "OK"));
+                    assertThat(body.getJsonArray("deleted")).containsExactly("https://www.kry-2.se");
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should reject an invalid since version")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_changes_since_invalid(Vertx vertx, VertxTestContext testContext) {
+        WebClient.create(vertx)
+                .get(8080, "::1", "/service?since=yesterday")
+                .send(response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(400);
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should get a page of services matching a query")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_page(Vertx vertx, VertxTestContext testContext) {
+        Service service = new Service(URI.create("https://www.kry-1.se"), null, Instant.parse("2020-04-04T19:40:01.084884Z"));
+        when(statusStore.query(any())).thenReturn(new ServicePage(list(new ServiceStatus(service, FAIL)), Optional.of("next-page")));
+
+        WebClient.create(vertx)
+                .get(8080, "::1", "/service?status=fail&sort=created_at&order=desc&limit=1")
+                .send(response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    JsonObject body = response.result().bodyAsJsonObject();
+                    assertThat(body.getJsonArray("services")).containsExactly(new JsonObject()
+                            .put("url", "https://www.kry-1.se")
+                            .put("created_at", "2020-04-04T19:40:01.084884Z")
+                            .put("poll_interval", 60)
+                            .put("probe_type", "GET")
+                            .put("status", "FAIL"));
+                    assertThat(body.getString("next")).isEqualTo("next-page");
+                    verify(statusStore).query(argThat(query -> query.limit() == 1
+                            && query.status().equals(Optional.of(FAIL))
+                            && query.sort() == ServiceSort.CREATED_AT
+                            && query.descending()));
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should reject an invalid query")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_page_invalid(Vertx vertx, VertxTestContext testContext) {
+        WebClient.create(vertx)
+                .get(8080, "::1", "/service?sort=popularity")
+                .send(response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(400);
+                    verify(statusStore, never()).query(any());
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should get the history of a service")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_history(Vertx vertx, VertxTestContext testContext) {
+        URI uri = URI.create("https://www.kry.se");
+        Instant from = Instant.parse("2020-04-04T19:00:00Z");
+        Instant to = Instant.parse("2020-04-04T21:00:00Z");
+        when(historyStore.rollups(uri, Resolution.HOUR, from, to)).thenReturn(succeededFuture(list(
+                new Rollup(Instant.parse("2020-04-04T19:00:00Z"), 60, 59, 1500, 30_000),
+                new Rollup(Instant.parse("2020-04-04T20:00:00Z"), 60, 60, 1200, 2_000)
+        )));
+
+        WebClient.create(vertx)
+                .get(8080, "::1", "/service/history")
+                .addQueryParam("url", uri.toString())
+                .addQueryParam("resolution", "hour")
+                .addQueryParam("from", from.toString())
+                .addQueryParam("to", to.toString())
+                .send(response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    JsonObject body = response.result().bodyAsJsonObject();
+                    assertThat(body.getString("url")).isEqualTo("https://www.kry.se");
+                    assertThat(body.getString("resolution")).isEqualTo("hour");
+                    assertThat(body.getJsonArray("entries")).containsExactly(
+                            new JsonObject()
+                                    .put("start", "2020-04-04T19:00:00Z")
+                                    .put("probes", 60)
+                                    .put("ok", 59)
+                                    .put("mean_latency_ms", 1.5)
+                                    .put("max_latency_ms", 30.0),
+                            new JsonObject()
+                                    .put("start", "2020-04-04T20:00:00Z")
+                                    .put("probes", 60)
+                                    .put("ok", 60)
+                                    .put("mean_latency_ms", 1.2)
+                                    .put("max_latency_ms", 2.0)
+                    );
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should reject a history request without a service")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void get_history_invalid(Vertx vertx, VertxTestContext testContext) {
+        WebClient.create(vertx)
+                .get(8080, "::1", "/service/history?resolution=minute")
+                .send(response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(400);
+                    assertThat(response.result().bodyAsString()).isEqualTo("url is required");
+                    verify(historyStore, never()).rollups(any(), any(), any(), any());
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should stream status events to subscribers")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    @SuppressWarnings("deprecation") // every response handler of the 3.6 HttpClient is, and WebClient waits for the end
+    void stream_status_events(Vertx vertx, VertxTestContext testContext) {
+        vertx.createHttpClient().get(8080, "::1", "/service/events").handler(response -> testContext.verify(() -> {
+            assertThat(response.statusCode()).isEqualTo(200);
+            assertThat(response.getHeader("content-type")).isEqualTo("text/event-stream");
+            StringBuilder received = new StringBuilder();
+            response.handler(chunk -> testContext.verify(() -> {
+                received.append(chunk.toString());
+                if (received.toString().contains("event: status")) {
+                    assertThat(received.toString()).contains("data: {\"url\":\"https://www.kry.se\",\"status\":\"FAIL\"}\n\n");
+                    testContext.completeNow();
+                }
+            }));
+            vertx.eventBus().publish(StatusEventPublisher.ADDRESS, new JsonObject()
+                    .put("type", "status")
+                    .put("service", new JsonObject().put("url", "https://www.kry.se").put("status", "FAIL")));
+        })).end();
+    }
+
     @Test
     @DisplayName("Should add service")
     @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
@@ -103,6 +408,86 @@ public class TestMainVerticle {
                 }));
     }
 
+    @Test
+    @DisplayName("Should add service with its own poll interval")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void add_service_with_poll_interval(Vertx vertx, VertxTestContext testContext) {
+        String url = "https://www.kry-5.se";
+        Service service = new Service(URI.create(url), null, now(), Duration.ofSeconds(30));
+        when(statusStore.add(any())).thenReturn(succeededFuture(new ServiceStatus(service, UNKNOWN)));
+        JsonObject json = new JsonObject().put("url", url).put("poll_interval", 30);
+
+        WebClient.create(vertx)
+                .post(8080, "::1", "/service")
+                .sendJson(json, response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    verify(statusStore).add(argThat(added -> added.pollInterval().equals(Duration.ofSeconds(30))));
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should add service with its probe type and that type's default poll interval")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void add_service_with_probe_type(Vertx vertx, VertxTestContext testContext) {
+        String url = "https://www.kry-6.se";
+        Service service = new Service(URI.create(url), null, now(), Duration.ofMinutes(5), ProbeType.BODY, "healthy");
+        when(statusStore.add(any())).thenReturn(succeededFuture(new ServiceStatus(service, UNKNOWN)));
+        JsonObject json = new JsonObject().put("url", url).put("probe_type", "body").put("expect", "healthy");
+
+        WebClient.create(vertx)
+                .post(8080, "::1", "/service")
+                .sendJson(json, response -> testContext.verify(() -> {
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    verify(statusStore).add(argThat(added -> added.probeType() == ProbeType.BODY
+                            && added.expect().get().pattern().equals("healthy")
+                            && added.pollInterval().equals(Duration.ofMinutes(5))));
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @DisplayName("Should reject a service with an invalid probe")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void add_service_invalid_probe(Vertx vertx, VertxTestContext testContext) {
+        WebClient client = WebClient.create(vertx);
+        JsonObject unknownType = new JsonObject().put("url", "https://www.kry-6.se").put("probe_type", "ping");
+        JsonObject invalidExpect = new JsonObject().put("url", "https://www.kry-6.se").put("probe_type", "body").put("expect", "[");
+        JsonObject missingExpect = new JsonObject().put("url", "https://www.kry-6.se").put("probe_type", "body");
+
+        client.post(8080, "::1", "/service").sendJson(unknownType, type -> client
+                .post(8080, "::1", "/service").sendJson(invalidExpect, expect -> client
+                        .post(8080, "::1", "/service").sendJson(missingExpect, missing -> testContext.verify(() -> {
+                            assertThat(type.result().statusCode()).isEqualTo(400);
+                            assertThat(type.result().bodyAsString()).startsWith("probe_type must be one of");
+                            assertThat(expect.result().statusCode()).isEqualTo(400);
+                            assertThat(expect.result().bodyAsString()).contains("Unclosed character class");
+                            assertThat(missing.result().statusCode()).isEqualTo(400);
+                            assertThat(missing.result().bodyAsString()).isEqualTo("Expect must be given for body probes only");
+                            verify(statusStore, never()).add(any());
+                            testContext.completeNow();
+                        }))));
+    }
+
+    @Test
+    @DisplayName("Should count a failed add and expose it on /metrics")
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void metrics(Vertx vertx, VertxTestContext testContext) {
+        when(statusStore.add(any())).thenReturn(failedFuture(new RuntimeException("test exception")));
+        WebClient client = WebClient.create(vertx);
+
+        client.post(8080, "::1", "/service")
+                .sendJson(new JsonObject().put("url", "https://www.kry-7.se"), added -> client
+                        .get(8080, "::1", "/metrics")
+                        .send(response -> testContext.verify(() -> {
+                            assertThat(added.result().statusCode()).isEqualTo(500);
+                            assertThat(response.result().statusCode()).isEqualTo(200);
+                            assertThat(response.result().getHeader("content-type")).startsWith("text/plain");
+                            assertThat(response.result().bodyAsString()).contains("\napi_errors_total 1\n");
+                            testContext.completeNow();
+                        })));
+    }
+
     @Test
     @DisplayName("Should delete service")
     @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
@@ -121,4 +506,13 @@ public class TestMainVerticle {
                 }));
     }
 
+    private static Map<UptimeWindow, Uptime> uptime() {
+        Map<UptimeWindow, Uptime> windows = new EnumMap<>(UptimeWindow.class);
+        windows.put(UptimeWindow.HOUR, new Uptime(UptimeWindow.HOUR, 60, 57, 12_500, 40_000, 250_000));
+        windows.put(UptimeWindow.DAY, new Uptime(UptimeWindow.DAY, 1440, 1368, 12_500, 40_000, 250_000));
+        windows.put(UptimeWindow.WEEK, new Uptime(UptimeWindow.WEEK, 1440, 1368, 12_500, 40_000, 250_000));
+        windows.put(UptimeWindow.MONTH, new Uptime(UptimeWindow.MONTH, 0, 0, 0, 0, 0));
+        return windows;
+    }
+
 }
@@ -0,0 +1,171 @@
+package se.kry.codetest.batch;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.vertx.core.Future.succeededFuture;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static se.kry.codetest.Status.OK;
+
+@ExtendWith(VertxExtension.class)
+class BatchHandlerTest {
+
+    private ServiceStatusStore store = mock(ServiceStatusStore.class);
+    private int port;
+
+    @BeforeEach
+    void start_server(Vertx vertx, VertxTestContext testContext) {
+        BatchHandler handler = new BatchHandler(store, 2);
+        Router router = Router.router(vertx);
+        router.get("/batch").handler(handler::export);
+        router.post("/batch").handler(handler::add);
+        router.delete("/batch").handler(handler::delete);
+        vertx.createHttpServer().requestHandler(router).listen(0, testContext.succeeding(server -> {
+            port = server.actualPort();
+            testContext.completeNow();
+        }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_add_ndjson_in_batches_with_a_result_per_line(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(store.addAll(any())).thenAnswer(invocation -> {
+            List<Service> services = invocation.getArgument(0);
+            // the second one is already known
+            return succeededFuture(services.stream().map(service -> !service.uri().toString().contains("kry-2")).collect(toList()));
+        });
+        String body = "{\"url\":\"https://kry-1.se\",\"name\":\"one\",\"poll_interval\":30}\n"
+                + "{\"url\":\"https://kry-2.se\"}\n"
+                + "\n"
+                + "not json\n"
+                + "{\"name\":\"no url\"}\n"
+                + "{\"url\":\"https://kry-3.se\"}";
+
+        // when
+        WebClient.create(vertx)
+                .post(port, "localhost", "/batch")
+                .putHeader("content-type", BatchHandler.NDJSON)
+                .sendBuffer(Buffer.buffer(body), response -> testContext.verify(() -> {
+                    // then
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    assertThat(response.result().getHeader("content-type")).isEqualTo(BatchHandler.NDJSON);
+                    List<JsonObject> results = lines(response.result().bodyAsString());
+                    assertThat(results).extracting(result -> result.getString("result"))
+                            .containsExactly("added", "exists", "invalid", "invalid", "added");
+                    assertThat(results).extracting(result -> result.getInteger("index"))
+                            .containsExactly(0, 1, 2, 3, 4);
+                    assertThat(results.get(0).getString("url")).isEqualTo("https://kry-1.se");
+                    assertThat(results.get(2).getString("error")).startsWith("malformed JSON");
+                    assertThat(results.get(3).getString("error")).isEqualTo("url must be non-null");
+                    // batches of two parsed items, invalid ones never reach the store
+                    verify(store).addAll(argThat(services -> services.size() == 2
+                            && services.get(0).name().equals(java.util.Optional.of("one"))
+                            && services.get(0).pollInterval().equals(Duration.ofSeconds(30))));
+                    verify(store).addAll(argThat(services -> services.size() == 1
+                            && services.get(0).uri().equals(URI.create("https://kry-3.se"))));
+                    verifyNoMoreInteractions(store);
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_delete_json_array(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(store.deleteAll(any())).thenAnswer(invocation -> {
+            List<URI> uris = invocation.getArgument(0);
+            return succeededFuture(uris.stream().map(uri -> !uri.toString().contains("kry-3")).collect(toList()));
+        });
+        JsonArray body = new JsonArray()
+                .add(new JsonObject().put("url", "https://kry-1.se"))
+                .add(new JsonObject().put("url", "https://kry-2.se"))
+                .add("https://kry-4.se")
+                .add(new JsonObject().put("url", "https://kry-3.se"));
+
+        // when
+        WebClient.create(vertx)
+                .delete(port, "localhost", "/batch")
+                .sendJson(body, response -> testContext.verify(() -> {
+                    // then
+                    assertThat(response.result().statusCode()).isEqualTo(200);
+                    JsonArray results = response.result().bodyAsJsonArray();
+                    assertThat(results.stream().map(result -> ((JsonObject) result).getString("result")).collect(toList()))
+                            .containsExactly("deleted", "deleted", "invalid", "not_found");
+                    verify(store).deleteAll(asList(URI.create("https://kry-1.se"), URI.create("https://kry-2.se")));
+                    verify(store).deleteAll(asList(URI.create("https://kry-3.se")));
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_report_malformed_json_after_the_items_read_so_far(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(store.addAll(any())).thenAnswer(invocation -> succeededFuture(list(true)));
+
+        // when
+        WebClient.create(vertx)
+                .post(port, "localhost", "/batch")
+                .putHeader("content-type", "application/json")
+                .sendBuffer(Buffer.buffer("[{\"url\":\"https://kry-1.se\"}, {\"url\": oops"), response -> testContext.verify(() -> {
+                    // then
+                    JsonArray results = response.result().bodyAsJsonArray();
+                    assertThat(results).hasSize(2);
+                    assertThat(results.getJsonObject(0).getString("result")).isEqualTo("added");
+                    assertThat(results.getJsonObject(1).getString("result")).isEqualTo("invalid");
+                    testContext.completeNow();
+                }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_export_services_as_ndjson(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(store.getAll()).thenReturn(list(
+                new ServiceStatus(new Service(URI.create("https://kry-1.se"), "one", Instant.parse("2020-04-04T19:40:01Z")), OK),
+                new ServiceStatus(new Service(URI.create("https://kry-2.se"), null, Instant.parse("2020-04-04T19:40:02Z")), OK),
+                new ServiceStatus(new Service(URI.create("https://kry-3.se"), null, Instant.parse("2020-04-04T19:40:03Z")), OK)
+        ));
+
+        // when
+        WebClient.create(vertx)
+                .get(port, "localhost", "/batch")
+                .send(response -> testContext.verify(() -> {
+                    // then
+                    List<JsonObject> services = lines(response.result().bodyAsString());
+                    assertThat(services).extracting(service -> service.getString("url"))
+                            .containsExactly("https://kry-1.se", "https://kry-2.se", "https://kry-3.se");
+                    assertThat(services.get(0).getString("name")).isEqualTo("one");
+                    testContext.completeNow();
+                }));
+    }
+
+    private static List<JsonObject> lines(String body) {
+        return asList(body.split("\n")).stream().map(JsonObject::new).collect(toList());
+    }
+}
@@ -0,0 +1,162 @@
+package se.kry.codetest.cluster;
+
+import io.vertx.core.Vertx;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import se.kry.codetest.ProbeObserver;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceRepository;
+import se.kry.codetest.services.ServiceStatus;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static io.vertx.core.Future.succeededFuture;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static se.kry.codetest.Status.*;
+
+/**
+ * Several nodes on one local event bus, which is all a cluster is to them.
+ */
+@ExtendWith(VertxExtension.class)
+class ClusterNodeTest {
+
+    private static final long HEARTBEAT_MILLIS = 50;
+    private static final long TIMEOUT_MILLIS = 200;
+    // long enough for everyone to have heard from everyone and settled
+    private static final long SETTLE_MILLIS = 300;
+
+    private List<URI> uris = range(0, 300).mapToObj(i -> URI.create("https://service-" + i + ".kry.se")).collect(toList());
+    private Service service = new Service(URI.create("https://www.kry.se"), "kry", Instant.ofEpochMilli(1234L));
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_split_services_between_nodes(Vertx vertx, VertxTestContext testContext) {
+        // given
+        ClusterNode a = node("a", store());
+        ClusterNode b = node("b", store());
+        ClusterNode c = node("c", store());
+
+        // when
+        a.start(vertx);
+        b.start(vertx);
+        c.start(vertx);
+
+        // then
+        vertx.setTimer(SETTLE_MILLIS, timerId -> testContext.verify(() -> {
+            assertThat(a.members()).containsExactly("a", "b", "c");
+            uris.forEach(uri -> assertThat(owners(uri, a, b, c)).isEqualTo(1));
+            testContext.completeNow();
+        }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_take_over_the_services_of_a_node_that_leaves(Vertx vertx, VertxTestContext testContext) {
+        // given
+        ClusterNode a = node("a", store());
+        ClusterNode b = node("b", store());
+        ClusterNode c = node("c", store());
+        a.start(vertx);
+        b.start(vertx);
+        c.start(vertx);
+
+        // when
+        vertx.setTimer(SETTLE_MILLIS, stopId -> {
+            c.stop();
+            // then
+            vertx.setTimer(HEARTBEAT_MILLIS, timerId -> testContext.verify(() -> {
+                assertThat(a.members()).containsExactly("a", "b");
+                assertThat(b.members()).containsExactly("a", "b");
+                uris.forEach(uri -> assertThat(owners(uri, a, b)).isEqualTo(1));
+                testContext.completeNow();
+            }));
+        });
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_share_what_probes_find(Vertx vertx, VertxTestContext testContext) {
+        // given
+        ServiceStatusStore prober = store(service);
+        ServiceStatusStore replica = store(service);
+        ClusterNode a = node("a", prober);
+        ClusterNode b = node("b", replica);
+        ProbeObserver observer = mock(ProbeObserver.class);
+        b.addObserver(observer);
+        a.start(vertx);
+        b.start(vertx);
+        ProbeResult probe = new ProbeResult(service.uri(), Instant.ofEpochSecond(100), FAIL, 5_000_000L, 503);
+
+        // when
+        prober.update(service.uri(), new ServiceStatus(service, FAIL, probe, null));
+        a.onProbe(probe);
+
+        // then
+        vertx.setTimer(HEARTBEAT_MILLIS, timerId -> testContext.verify(() -> {
+            assertThat(replica.get(service.uri())).contains(new ServiceStatus(service, FAIL, probe, probe.timestamp()));
+            verify(observer).onProbe(probe);
+            testContext.completeNow();
+        }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_apply_services_added_and_deleted_elsewhere(Vertx vertx, VertxTestContext testContext) {
+        // given
+        ServiceStatusStore first = store();
+        ServiceStatusStore second = store();
+        ClusterNode a = node("a", first);
+        ClusterNode b = node("b", second);
+        a.start(vertx);
+        b.start(vertx);
+
+        // when
+        first.add(service).setHandler(testContext.succeeding(added -> vertx.setTimer(HEARTBEAT_MILLIS, addedId -> {
+            testContext.verify(() -> assertThat(second.get(service.uri())).contains(new ServiceStatus(service, UNKNOWN)));
+            second.delete(service.uri()).setHandler(testContext.succeeding(deleted -> vertx.setTimer(HEARTBEAT_MILLIS, deletedId ->
+                    testContext.verify(() -> {
+                        // then
+                        assertThat(first.get(service.uri())).isEmpty();
+                        testContext.completeNow();
+                    }))));
+        })));
+    }
+
+    private ClusterNode node(String id, ServiceStatusStore store) {
+        ClusterNode node = new ClusterNode(id, store, HEARTBEAT_MILLIS, TIMEOUT_MILLIS);
+        store.addListener(node);
+        return node;
+    }
+
+    private static ServiceStatusStore store(Service... services) {
+        ServiceRepository repository = mock(ServiceRepository.class);
+        when(repository.add(any())).thenAnswer(invocation -> succeededFuture(invocation.getArgument(0)));
+        when(repository.delete(any())).thenReturn(succeededFuture());
+        when(repository.addAll(any())).thenReturn(succeededFuture(singletonList(true)));
+        when(repository.deleteAll(any())).thenReturn(succeededFuture(singletonList(true)));
+        ServiceStatusStore store = new ServiceStatusStore(repository, new ConcurrentHashMap<>());
+        for (Service service : services) {
+            store.addReplica(service);
+        }
+        return store;
+    }
+
+    private static long owners(URI uri, ClusterNode... nodes) {
+        return Arrays.stream(nodes).filter(node -> node.owns(uri)).count();
+    }
+}
@@ -0,0 +1,66 @@
+package se.kry.codetest.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.util.Lists.list;
+
+class HashRingTest {
+
+    private List<URI> uris = range(0, 30_000)
+            .mapToObj(i -> URI.create("https://service-" + i + ".kry.se/health"))
+            .collect(toList());
+
+    @Test
+    void should_share_services_about_evenly() {
+        // given
+        HashRing ring = new HashRing(list("a", "b", "c"), 128);
+
+        // when
+        Map<String, Integer> shares = new HashMap<>();
+        uris.forEach(uri -> shares.merge(ring.owner(uri), 1, Integer::sum));
+
+        // then
+        assertThat(shares).containsOnlyKeys("a", "b", "c");
+        shares.values().forEach(share -> assertThat(share).isBetween(8_000, 12_000));
+    }
+
+    @Test
+    void should_only_move_the_services_of_a_node_that_leaves() {
+        // given
+        HashRing before = new HashRing(list("a", "b", "c"), 128);
+
+        // when
+        HashRing after = new HashRing(list("a", "b"), 128);
+
+        // then
+        uris.stream()
+                .filter(uri -> !before.owner(uri).equals("c"))
+                .forEach(uri -> assertThat(after.owner(uri)).isEqualTo(before.owner(uri)));
+    }
+
+    @Test
+    void should_give_the_same_owners_whatever_the_order_of_nodes() {
+        // given
+        HashRing ring = new HashRing(list("a", "b", "c"), 128);
+        HashRing reordered = new HashRing(list("c", "a", "b"), 128);
+
+        // then
+        uris.forEach(uri -> assertThat(reordered.owner(uri)).isEqualTo(ring.owner(uri)));
+    }
+
+    @Test
+    void should_reject_no_nodes() {
+        assertThatThrownBy(() -> new HashRing(list(), 128))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Nodes must not be empty");
+    }
+}
@@ -0,0 +1,276 @@
+package se.kry.codetest.history;
+
+import io.vertx.core.Future;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import se.kry.codetest.ProbeResult;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+
+import static io.vertx.core.Future.failedFuture;
+import static io.vertx.core.Future.succeededFuture;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.util.Lists.emptyList;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static se.kry.codetest.Status.FAIL;
+import static se.kry.codetest.Status.OK;
+
+class HistoryStoreTest {
+
+    private static final URI SERVICE = URI.create("https://www.kry.se");
+    private static final URI OTHER_SERVICE = URI.create("https://www.kry-2.se");
+
+    private HistoryRepository repository = mock(HistoryRepository.class);
+    private HistoryStore store = new HistoryStore(repository, 1000);
+
+    @Test
+    void should_return_probes_not_yet_saved() {
+        // given
+        when(repository.find(any(), any(), anyLong(), anyLong())).thenReturn(succeededFuture(emptyList()));
+        ProbeResult first = probe(SERVICE, "10:00:10", true, 1200, 200);
+        ProbeResult second = probe(SERVICE, "10:00:40", false, 2000, 503);
+        ProbeResult third = probe(SERVICE, "10:01:10", false, 1_000_000, ProbeResult.NO_STATUS_CODE);
+        store.onProbe(first);
+        store.onProbe(probe(OTHER_SERVICE, "10:00:20", true, 900, 200));
+        store.onProbe(third);
+        store.onProbe(second);
+
+        // when
+        Future<List<ProbeResult>> probes = store.probes(SERVICE, time("10:00:00"), time("11:00:00"));
+
+        // then
+        assertThat(probes.result()).containsExactly(first, second, third);
+        verify(repository).find(SERVICE, Resolution.RAW, time("10:00:00").toEpochMilli(), time("11:00:00").toEpochMilli());
+    }
+
+    @Test
+    void should_roll_up_probes_into_minutes_and_hours() {
+        // given
+        when(repository.find(any(), any(), anyLong(), anyLong())).thenReturn(succeededFuture(emptyList()));
+        store.onProbe(probe(SERVICE, "10:00:10", true, 1000, 200));
+        store.onProbe(probe(SERVICE, "10:00:40", false, 3000, 503));
+        store.onProbe(probe(SERVICE, "10:59:05", true, 2000, 200));
+        // closes the 10:00 hour
+        store.onProbe(probe(SERVICE, "11:00:05", true, 2000, 200));
+
+        // when
+        Future<List<Rollup>> minutes = store.rollups(SERVICE, Resolution.MINUTE, time("10:00:00"), time("11:00:00"));
+        Future<List<Rollup>> hours = store.rollups(SERVICE, Resolution.HOUR, time("10:00:00"), time("11:00:00"));
+
+        // then
+        assertThat(minutes.result()).containsExactly(
+                new Rollup(time("10:00:00"), 2, 1, 2000, 3000),
+                new Rollup(time("10:59:00"), 1, 1, 2000, 2000)
+        );
+        assertThat(hours.result()).containsExactly(
+                new Rollup(time("10:00:00"), 3, 2, 2000, 3000)
+        );
+    }
+
+    @Test
+    void should_include_the_minute_still_open() {
+        // given
+        when(repository.find(any(), any(), anyLong(), anyLong())).thenReturn(succeededFuture(emptyList()));
+        store.onProbe(probe(SERVICE, "10:00:10", true, 1000, 200));
+
+        // when
+        Future<List<Rollup>> minutes = store.rollups(SERVICE, Resolution.MINUTE, time("10:00:00"), time("11:00:00"));
+
+        // then
+        assertThat(minutes.result()).containsExactly(new Rollup(time("10:00:00"), 1, 1, 1000, 1000));
+    }
+
+    @Test
+    void should_save_closed_and_open_segments_once_per_change() {
+        // given
+        when(repository.save(any())).thenReturn(succeededFuture());
+        store.onProbe(probe(SERVICE, "09:59:50", true, 1000, 200));
+        store.onProbe(probe(SERVICE, "10:00:10", true, 1000, 200));
+
+        // when
+        Future<Void> flushed = store.flush(time("10:00:20").toEpochMilli());
+        store.flush(time("10:00:30").toEpochMilli());
+
+        // then
+        assertThat(flushed.succeeded()).isTrue();
+        List<Segment> saved = captureSaved(1).get(0);
+        assertThat(saved).extracting(Segment::resolution, Segment::start, Segment::count).containsExactlyInAnyOrder(
+                // the 09:00 hour closed with the second probe
+                tuple(Resolution.RAW, time("09:59:50").toEpochMilli(), 1),
+                tuple(Resolution.MINUTE, time("09:59:50").toEpochMilli(), 1),
+                // still open, segments start at their first probe
+                tuple(Resolution.RAW, time("10:00:10").toEpochMilli(), 1),
+                tuple(Resolution.MINUTE, time("10:00:10").toEpochMilli(), 1),
+                tuple(Resolution.HOUR, time("09:59:50").toEpochMilli(), 1)
+        );
+    }
+
+    @Test
+    void should_rewrite_only_a_short_tail_of_what_is_still_open() {
+        // given
+        when(repository.save(any())).thenReturn(succeededFuture());
+        range(0, 300).forEach(i -> store.onProbe(new ProbeResult(
+                SERVICE,
+                time("10:00:00").plusSeconds(i),
+                OK,
+                MILLISECONDS.toNanos(12),
+                200
+        )));
+        store.flush(time("10:05:00").toEpochMilli());
+
+        // when
+        store.onProbe(probe(SERVICE, "10:05:01", true, 1000, 200));
+        store.flush(time("10:05:02").toEpochMilli());
+
+        // then
+        List<List<Segment>> saved = captureSaved(2);
+        assertThat(saved.get(0)).filteredOn(segment -> segment.resolution() == Resolution.RAW)
+                .extracting(Segment::count)
+                .containsExactlyInAnyOrder(ServiceHistory.MAX_OPEN_ENTRIES, ServiceHistory.MAX_OPEN_ENTRIES, 44);
+        // the hour did not change, and only the last raw segment is still open
+        assertThat(saved.get(1)).extracting(Segment::resolution, Segment::count).containsExactlyInAnyOrder(
+                tuple(Resolution.RAW, 45),
+                tuple(Resolution.MINUTE, 6)
+        );
+    }
+
+    @Test
+    void should_save_again_after_a_failed_flush() {
+        // given
+        when(repository.save(any())).thenReturn(failedFuture("disk full")).thenReturn(succeededFuture());
+        store.onProbe(probe(SERVICE, "09:59:50", true, 1000, 200));
+        store.onProbe(probe(SERVICE, "10:00:10", true, 1000, 200));
+        Future<Void> failed = store.flush(time("10:00:20").toEpochMilli());
+
+        // when
+        Future<Void> flushed = store.flush(time("10:00:30").toEpochMilli());
+
+        // then
+        assertThat(failed.failed()).isTrue();
+        assertThat(flushed.succeeded()).isTrue();
+        List<List<Segment>> saved = captureSaved(2);
+        assertThat(saved.get(1)).extracting(Segment::start).containsExactlyInAnyOrderElementsOf(
+                saved.get(0).stream().map(Segment::start).collect(toList()));
+    }
+
+    @Test
+    void should_prefer_segments_in_memory_over_stored_ones() {
+        // given
+        when(repository.save(any())).thenReturn(succeededFuture());
+        store.onProbe(probe(SERVICE, "10:00:10", true, 1000, 200));
+        store.flush(time("10:00:20").toEpochMilli());
+        List<Segment> stored = captureSaved(1).get(0);
+        when(repository.find(eq(SERVICE), eq(Resolution.RAW), anyLong(), anyLong()))
+                .thenReturn(succeededFuture(stored.stream().filter(segment -> segment.resolution() == Resolution.RAW).collect(toList())));
+        store.onProbe(probe(SERVICE, "10:00:40", true, 1000, 200));
+
+        // when
+        Future<List<ProbeResult>> probes = store.probes(SERVICE, time("10:00:00"), time("11:00:00"));
+
+        // then
+        assertThat(probes.result()).hasSize(2);
+    }
+
+    @Test
+    void should_merge_buckets_written_before_a_restart() {
+        // given
+        when(repository.save(any())).thenReturn(succeededFuture());
+        store.onProbe(probe(SERVICE, "10:00:10", true, 1000, 200));
+        store.flush(time("10:00:20").toEpochMilli());
+        List<Segment> stored = captureSaved(1).get(0);
+        when(repository.find(eq(SERVICE), eq(Resolution.MINUTE), anyLong(), anyLong()))
+                .thenReturn(succeededFuture(stored.stream().filter(segment -> segment.resolution() == Resolution.MINUTE).collect(toList())));
+        HistoryStore restarted = new HistoryStore(repository, 1000);
+        restarted.onProbe(probe(SERVICE, "10:00:40", false, 3000, 503));
+
+        // when
+        Future<List<Rollup>> minutes = restarted.rollups(SERVICE, Resolution.MINUTE, time("10:00:00"), time("11:00:00"));
+
+        // then
+        assertThat(minutes.result()).containsExactly(new Rollup(time("10:00:00"), 2, 1, 2000, 3000));
+    }
+
+    @Test
+    void should_encode_steady_probes_in_a_few_bytes_each() {
+        // given
+        when(repository.save(any())).thenReturn(succeededFuture());
+        range(0, 60).forEach(i -> store.onProbe(new ProbeResult(
+                SERVICE,
+                time("10:00:00").plusSeconds(60 * i),
+                OK,
+                MILLISECONDS.toNanos(12),
+                200
+        )));
+
+        // when
+        store.flush(time("11:00:00").toEpochMilli());
+
+        // then
+        Segment raw = captureSaved(1).get(0).stream()
+                .filter(segment -> segment.resolution() == Resolution.RAW)
+                .findFirst()
+                .get();
+        assertThat(raw.count()).isEqualTo(60);
+        assertThat(raw.end()).isEqualTo(time("10:59:00").toEpochMilli());
+        assertThat(raw.data().length).isLessThanOrEqualTo(60 * 5 + 4);
+    }
+
+    @Test
+    void should_forget_services_no_longer_probed_once_saved() {
+        // given
+        when(repository.save(any())).thenReturn(succeededFuture());
+        when(repository.find(any(), any(), anyLong(), anyLong())).thenReturn(succeededFuture(emptyList()));
+        store.onProbe(probe(SERVICE, "10:00:10", true, 1000, 200));
+        store.flush(time("10:00:20").toEpochMilli());
+
+        // when
+        store.flush(time("10:00:00").plusMillis(DAYS.toMillis(1)).toEpochMilli());
+        store.flush(time("10:00:00").plusMillis(DAYS.toMillis(1) + MINUTES.toMillis(1)).toEpochMilli());
+
+        // then
+        verify(repository, times(2)).save(any());
+        assertThat(store.probes(SERVICE, time("10:00:00"), time("11:00:00")).result()).isEmpty();
+    }
+
+    @Test
+    void should_expire_each_resolution_after_its_retention() {
+        // given
+        when(repository.deleteBefore(any(), anyLong())).thenReturn(succeededFuture());
+        long now = time("10:00:00").toEpochMilli();
+
+        // when
+        Future<Void> expired = store.expire(now);
+
+        // then
+        assertThat(expired.succeeded()).isTrue();
+        verify(repository).deleteBefore(Resolution.RAW, now - DAYS.toMillis(7));
+        verify(repository).deleteBefore(Resolution.MINUTE, now - DAYS.toMillis(30));
+        verify(repository).deleteBefore(Resolution.HOUR, now - DAYS.toMillis(365));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Segment>> captureSaved(int times) {
+        ArgumentCaptor<List<Segment>> saved = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(times)).save(saved.capture());
+        return saved.getAllValues();
+    }
+
+    private static ProbeResult probe(URI uri, String time, boolean ok, long latencyMicros, int statusCode) {
+        return new ProbeResult(uri, time(time), ok ? OK : FAIL, latencyMicros * 1000, statusCode);
+    }
+
+    private static Instant time(String time) {
+        return Instant.parse("2020-04-04T" + time + "Z");
+    }
+}
@@ -0,0 +1,85 @@
+package se.kry.codetest.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetricsRegistryTest {
+
+    private MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    void should_write_counters_and_gauges_in_the_prometheus_format() {
+        // given
+        registry.counter("probes_total", "Probes", "status", "ok").add(3);
+        registry.counter("probes_total", "Probes", "status", "fail").increment();
+        registry.gauge("queued", "Queued probes", () -> 7);
+
+        // when
+        String scraped = registry.scrape();
+
+        // then
+        assertThat(scraped).isEqualTo(
+                "# HELP probes_total Probes\n" +
+                "# TYPE probes_total counter\n" +
+                "probes_total{status=\"ok\"} 3\n" +
+                "probes_total{status=\"fail\"} 1\n" +
+                "# HELP queued Queued probes\n" +
+                "# TYPE queued gauge\n" +
+                "queued 7\n"
+        );
+    }
+
+    @Test
+    void should_write_histograms_as_summaries_in_seconds() {
+        // given
+        Histogram histogram = registry.histogram("latency_seconds", "Latency");
+        for (int i = 0; i < 100; i++) {
+            histogram.record(2_000_000L);
+        }
+
+        // when
+        String scraped = registry.scrape();
+
+        // then
+        assertThat(scraped).contains("# TYPE latency_seconds summary\n");
+        // 2ms to within its bucket
+        assertThat(scraped).containsPattern("latency_seconds\\{quantile=\"0.5\"} 0\\.00(19|20)\\d*\n");
+        assertThat(scraped).contains("latency_seconds_sum 0.2\n");
+        assertThat(scraped).contains("latency_seconds_count 100\n");
+    }
+
+    @Test
+    void should_return_the_same_metric_when_registered_again() {
+        // when
+        Counter first = registry.counter("requests_total", "Requests");
+        Counter second = registry.counter("requests_total", "Requests");
+
+        // then
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void should_escape_label_values() {
+        // given
+        registry.counter("errors_total", "Errors", "cause", "a \"quoted\" \\ value").increment();
+
+        // when
+        String scraped = registry.scrape();
+
+        // then
+        assertThat(scraped).contains("errors_total{cause=\"a \\\"quoted\\\" \\\\ value\"} 1\n");
+    }
+
+    @Test
+    void should_reject_a_name_registered_as_another_type() {
+        // given
+        registry.counter("requests_total", "Requests");
+
+        // then
+        assertThatThrownBy(() -> registry.histogram("requests_total", "Requests"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Metric requests_total is already registered as a counter");
+    }
+}
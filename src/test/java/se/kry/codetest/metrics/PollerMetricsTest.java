@@ -0,0 +1,62 @@
+package se.kry.codetest.metrics;
+
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.BackgroundPoller;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.scheduling.PollScheduler;
+import se.kry.codetest.services.ServiceStatusStore;
+
+import java.net.URI;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PollerMetricsTest {
+
+    private BackgroundPoller poller = mock(BackgroundPoller.class);
+    private PollScheduler scheduler = mock(PollScheduler.class);
+    private ServiceStatusStore store = mock(ServiceStatusStore.class);
+    private MetricsRegistry registry = new MetricsRegistry();
+    private PollerMetrics metrics = new PollerMetrics(registry, poller, scheduler, store);
+
+    private URI uri = URI.create("https://www.kry.se");
+
+    @Test
+    void should_count_probes_by_status_and_failures_by_cause() {
+        // when
+        metrics.onProbe(new ProbeResult(uri, Instant.now(), Status.OK, 1_000_000L, 200));
+        metrics.onProbe(new ProbeResult(uri, Instant.now(), Status.FAIL, 1_000_000L, 503));
+        metrics.onProbe(new ProbeResult(uri, Instant.now(), Status.FAIL, 2_000_000L, 0, FailureClass.DNS));
+
+        // then
+        String scraped = registry.scrape();
+        assertThat(scraped).contains("poller_probes_total{status=\"ok\"} 1\n");
+        assertThat(scraped).contains("poller_probes_total{status=\"fail\"} 2\n");
+        assertThat(scraped).contains("poller_probe_failures_total{cause=\"http_error\"} 1\n");
+        assertThat(scraped).contains("poller_probe_failures_total{cause=\"dns\"} 1\n");
+        assertThat(scraped).contains("poller_probe_latency_seconds_count 3\n");
+    }
+
+    @Test
+    void should_read_queue_depths_and_sizes_when_scraped() {
+        // given
+        when(poller.queued()).thenReturn(12);
+        when(poller.inFlight()).thenReturn(4);
+        when(scheduler.scheduledCount()).thenReturn(2);
+        when(store.getAll()).thenReturn(list());
+
+        // when
+        String scraped = registry.scrape();
+
+        // then
+        assertThat(scraped).contains("poller_queued 12\n");
+        assertThat(scraped).contains("poller_in_flight 4\n");
+        assertThat(scraped).contains("poller_scheduled_services 2\n");
+        assertThat(scraped).contains("store_services 0\n");
+    }
+}
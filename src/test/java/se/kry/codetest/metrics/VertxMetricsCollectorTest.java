@@ -0,0 +1,60 @@
+package se.kry.codetest.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.metrics.MetricsOptions;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(VertxExtension.class)
+class VertxMetricsCollectorTest {
+
+    // a Vert.x of its own, the one the extension hands out has no metrics
+    private Vertx vertx = Vertx.vertx(new VertxOptions()
+            .setMetricsOptions(new MetricsOptions().setEnabled(true).setFactory(new VertxMetricsCollector.Factory())));
+
+    @AfterEach
+    void close_vertx() {
+        vertx.close();
+    }
+
+    @Test
+    void should_hand_out_a_registry_of_its_own_without_metrics(Vertx plain) {
+        // then
+        assertThat(VertxMetricsCollector.registry(plain)).isNotSameAs(VertxMetricsCollector.registry(plain));
+        assertThat(VertxMetricsCollector.registry(vertx)).isSameAs(VertxMetricsCollector.registry(vertx));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_measure_requests_event_bus_and_worker_pools(VertxTestContext testContext) {
+        // given
+        MetricsRegistry registry = VertxMetricsCollector.registry(vertx);
+        vertx.eventBus().consumer("test", message -> message.reply("pong"));
+
+        vertx.createHttpServer()
+                .requestHandler(request -> vertx.<String>executeBlocking(
+                        blocking -> blocking.complete("ok"),
+                        done -> request.response().end(done.result())))
+                .listen(8081, testContext.succeeding(server -> vertx.eventBus().send("test", "ping", replied ->
+                        // when
+                        WebClient.create(vertx).get(8081, "localhost", "/").send(testContext.succeeding(response -> testContext.verify(() -> {
+                            // then
+                            String scraped = registry.scrape();
+                            assertThat(scraped).contains("http_server_requests_total 1\n");
+                            assertThat(scraped).contains("http_server_request_duration_seconds_count 1\n");
+                            assertThat(scraped).contains("eventbus_messages_sent_total");
+                            assertThat(scraped).containsPattern("pool_queue_wait_seconds_count\\{pool=\"worker/vert.x-worker-thread\"} [1-9]");
+                            testContext.completeNow();
+                        }))))));
+    }
+}
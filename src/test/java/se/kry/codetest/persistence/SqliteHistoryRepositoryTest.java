@@ -0,0 +1,107 @@
+package se.kry.codetest.persistence;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.ResultSet;
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.history.HistoryRepository;
+import se.kry.codetest.history.Resolution;
+import se.kry.codetest.history.Segment;
+
+import java.net.URI;
+import java.util.List;
+
+import static io.vertx.core.Future.failedFuture;
+import static io.vertx.core.Future.succeededFuture;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static org.mockito.Mockito.*;
+
+class SqliteHistoryRepositoryTest {
+
+    private DBConnector dbConnector = mock(DBConnector.class);
+    private HistoryRepository repository = new SqliteHistoryRepository(dbConnector);
+
+    @Test
+    void should_save_all_in_one_batch() {
+        // given
+        when(dbConnector.batch(any(), any())).thenReturn(succeededFuture(list(1, 1)));
+
+        // when
+        Future<Void> saved = repository.save(list(
+                new Segment(URI.create("http://service-1.com"), Resolution.RAW, 1000L, 2000L, 2, new byte[]{1, 2, 3}),
+                new Segment(URI.create("http://service-2.com"), Resolution.HOUR, 3000L, 3000L, 1, new byte[]{4})
+        ));
+
+        // then
+        verify(dbConnector).batch(
+                "insert or replace into history (url, resolution, start_at, end_at, count, data) values (?, ?, ?, ?, ?, ?)",
+                list(
+                        new JsonArray().add("http://service-1.com").add(0).add(1000L).add(2000L).add(2).add("AQID"),
+                        new JsonArray().add("http://service-2.com").add(2).add(3000L).add(3000L).add(1).add("BA==")
+                )
+        );
+        assertThat(saved.succeeded()).isTrue();
+    }
+
+    @Test
+    void should_find_segments_of_one_service() {
+        // given
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getRows()).thenReturn(list(
+                new JsonObject().put("start_at", 1000L).put("end_at", 2000L).put("count", 2).put("data", "AQID")
+        ));
+        when(dbConnector.query(any(), any())).thenReturn(succeededFuture(resultSet));
+
+        // when
+        Future<List<Segment>> segments = repository.find(URI.create("http://service-1.com"), Resolution.MINUTE, 7_200_000L, 9_000_000L);
+
+        // then
+        verify(dbConnector).query(
+                "select start_at, end_at, count, data from history where url = ? and resolution = ? and start_at >= ? and start_at < ? order by start_at",
+                new JsonArray().add("http://service-1.com").add(1).add(3_600_000L).add(9_000_000L)
+        );
+        assertThat(segments.result()).hasSize(1);
+        Segment segment = segments.result().get(0);
+        assertThat(segment.uri()).isEqualTo(URI.create("http://service-1.com"));
+        assertThat(segment.resolution()).isEqualTo(Resolution.MINUTE);
+        assertThat(segment.start()).isEqualTo(1000L);
+        assertThat(segment.end()).isEqualTo(2000L);
+        assertThat(segment.count()).isEqualTo(2);
+        assertThat(segment.data()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void should_delete_segments_past_retention() {
+        // given
+        when(dbConnector.update(any(), any())).thenReturn(succeededFuture());
+
+        // when
+        Future<Void> deleted = repository.deleteBefore(Resolution.RAW, 1234L);
+
+        // then
+        verify(dbConnector).update(
+                "delete from history where resolution = ? and end_at < ?",
+                new JsonArray().add(0).add(1234L)
+        );
+        assertThat(deleted.succeeded()).isTrue();
+    }
+
+    @Test
+    void should_propagate_failure_on_save() {
+        // given
+        RuntimeException exception = new RuntimeException("test exception");
+        when(dbConnector.batch(any(), any())).thenReturn(failedFuture(exception));
+
+        // when
+        Future<Void> saved = repository.save(list(
+                new Segment(URI.create("http://service-1.com"), Resolution.RAW, 1000L, 2000L, 2, new byte[]{1, 2, 3})
+        ));
+
+        // then
+        assertThat(saved.failed()).isTrue();
+        assertThat(saved.cause()).isEqualTo(exception);
+    }
+
+}
@@ -1,16 +1,21 @@
 package se.kry.codetest.persistence;
 
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.ResultSet;
 import org.junit.jupiter.api.Test;
+import se.kry.codetest.services.ProbeType;
 import se.kry.codetest.services.Service;
 import se.kry.codetest.services.ServiceRepository;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import static io.vertx.core.Future.failedFuture;
 import static io.vertx.core.Future.succeededFuture;
@@ -28,15 +33,15 @@ class SqliteServiceRepositoryTest {
     void should_add() {
         // given
         Service service = new Service(URI.create("http://localhost"), "some name", Instant.ofEpochMilli(1234L));
-        when(dbConnector.query(any(), any())).thenReturn(succeededFuture());
+        when(dbConnector.update(any(), any())).thenReturn(succeededFuture());
 
         // when
         Future<Service> added = repository.add(service);
 
         // then
-        verify(dbConnector).query(
-                "insert into service (url, name, created_at) values (?, ?, ?)",
-                new JsonArray().add("http://localhost").add("some name").add(1234L)
+        verify(dbConnector).update(
+                "insert into service (url, name, created_at, poll_interval, probe_type, expect) values (?, ?, ?, ?, ?, ?)",
+                new JsonArray().add("http://localhost").add("some name").add(1234L).add(60_000L).add("GET").addNull()
         );
         assertThat(added.isComplete()).isTrue();
         assertThat(added.result()).isEqualTo(service);
@@ -46,15 +51,15 @@ class SqliteServiceRepositoryTest {
     void should_add_with_empty_name() {
         // given
         Service service = new Service(URI.create("http://localhost"), null, Instant.ofEpochMilli(1234L));
-        when(dbConnector.query(any(), any())).thenReturn(succeededFuture());
+        when(dbConnector.update(any(), any())).thenReturn(succeededFuture());
 
         // when
         Future<Service> added = repository.add(service);
 
         // then
-        verify(dbConnector).query(
-                "insert into service (url, name, created_at) values (?, ?, ?)",
-                new JsonArray().add("http://localhost").addNull().add(1234L)
+        verify(dbConnector).update(
+                "insert into service (url, name, created_at, poll_interval, probe_type, expect) values (?, ?, ?, ?, ?, ?)",
+                new JsonArray().add("http://localhost").addNull().add(1234L).add(60_000L).add("GET").addNull()
         );
         assertThat(added.isComplete()).isTrue();
         assertThat(added.result()).isEqualTo(service);
@@ -64,7 +69,7 @@ class SqliteServiceRepositoryTest {
     void should_propagate_failure_on_add() {
         // given
         RuntimeException exception = new RuntimeException("test exception");
-        when(dbConnector.query(any(), any())).thenReturn(failedFuture(exception));
+        when(dbConnector.update(any(), any())).thenReturn(failedFuture(exception));
 
         // when
         Future<Service> added = repository.add(new Service(URI.create("http://localhost"), "some name", now()));
@@ -78,13 +83,13 @@ class SqliteServiceRepositoryTest {
     void should_delete() {
         // given
         Service service = new Service(URI.create("http://localhost"), "some name", now());
-        when(dbConnector.query(any(), any())).thenReturn(succeededFuture());
+        when(dbConnector.update(any(), any())).thenReturn(succeededFuture());
 
         // when
         Future<Void> deleted = repository.delete(service);
 
         // then
-        verify(dbConnector).query(
+        verify(dbConnector).update(
                 "delete from service where url = ?",
                 new JsonArray().add("http://localhost")
         );
@@ -95,7 +100,7 @@ class SqliteServiceRepositoryTest {
     void should_propagate_failure_on_delete() {
         // given
         RuntimeException exception = new RuntimeException("test exception");
-        when(dbConnector.query(any(), any())).thenReturn(failedFuture(exception));
+        when(dbConnector.update(any(), any())).thenReturn(failedFuture(exception));
 
         // when
         Future<Void> deleted = repository.delete(new Service(URI.create("http://localhost"), "some name", now()));
@@ -105,6 +110,46 @@ class SqliteServiceRepositoryTest {
         assertThat(deleted.cause()).isEqualTo(exception);
     }
 
+    @Test
+    void should_add_all_in_one_batch() {
+        // given
+        Service service1 = new Service(URI.create("http://service-1.com"), "some name", Instant.ofEpochMilli(1234L));
+        Service service2 = new Service(URI.create("http://service-2.com"), null, Instant.ofEpochMilli(5678L));
+        when(dbConnector.batch(any(), any())).thenReturn(succeededFuture(list(1, 0)));
+
+        // when
+        Future<List<Boolean>> added = repository.addAll(list(service1, service2));
+
+        // then
+        verify(dbConnector).batch(
+                "insert or ignore into service (url, name, created_at, poll_interval, probe_type, expect) values (?, ?, ?, ?, ?, ?)",
+                list(
+                        new JsonArray().add("http://service-1.com").add("some name").add(1234L).add(60_000L).add("GET").addNull(),
+                        new JsonArray().add("http://service-2.com").addNull().add(5678L).add(60_000L).add("GET").addNull()
+                )
+        );
+        assertThat(added.result()).containsExactly(true, false);
+    }
+
+    @Test
+    void should_delete_all_in_one_batch() {
+        // given
+        when(dbConnector.batch(any(), any())).thenReturn(succeededFuture(list(0, 1)));
+
+        // when
+        Future<List<Boolean>> deleted = repository.deleteAll(list(
+                new Service(URI.create("http://service-1.com"), null, now()),
+                new Service(URI.create("http://service-2.com"), null, now())
+        ));
+
+        // then
+        verify(dbConnector).batch(
+                "delete from service where url = ?",
+                list(new JsonArray().add("http://service-1.com"), new JsonArray().add("http://service-2.com"))
+        );
+        assertThat(deleted.result()).containsExactly(false, true);
+    }
+
     @Test
     void shouldFindAll() {
         // given
@@ -113,7 +158,8 @@ class SqliteServiceRepositoryTest {
         when(resultSet.getRows()).thenReturn(list(
                 new JsonObject().put("url", "http://service-1.com").put("name", "some name").put("created_at", 1234L),
                 new JsonObject().put("url", "http://service-2.com").put("name", (String)null).put("created_at", 5678L),
-                new JsonObject().put("url", "http://service-3.com").put("name", "another name").put("created_at", 111L)
+                new JsonObject().put("url", "http://service-3.com").put("name", "another name").put("created_at", 111L).put("poll_interval", 10_000L),
+                new JsonObject().put("url", "http://service-4.com").put("created_at", 222L).put("poll_interval", 300_000L).put("probe_type", "BODY").put("expect", "healthy")
         ));
         when(dbConnector.query("select * from service")).thenReturn(succeededFuture(resultSet));
 
@@ -125,7 +171,31 @@ class SqliteServiceRepositoryTest {
         assertThat(services.result()).containsExactlyInAnyOrder(
                 new Service(URI.create("http://service-1.com"), "some name", Instant.ofEpochMilli(1234L)),
                 new Service(URI.create("http://service-2.com"), null, Instant.ofEpochMilli(5678L)),
-                new Service(URI.create("http://service-3.com"), "another name", Instant.ofEpochMilli(111L))
+                new Service(URI.create("http://service-3.com"), "another name", Instant.ofEpochMilli(111L), Duration.ofSeconds(10)),
+                new Service(URI.create("http://service-4.com"), null, Instant.ofEpochMilli(222L), Duration.ofMinutes(5), ProbeType.BODY, "healthy")
+        );
+    }
+
+    @Test
+    void should_stream_all_row_by_row() {
+        // given
+        when(dbConnector.queryStream(any(), any())).thenAnswer(invocation -> {
+            Handler<JsonArray> rows = invocation.getArgument(1);
+            rows.handle(new JsonArray().add("http://service-1.com").add("some name").add(1234L).addNull().addNull().addNull());
+            rows.handle(new JsonArray().add("http://service-2.com").addNull().add(222).add(300_000).add("BODY").add("healthy"));
+            return succeededFuture();
+        });
+        List<Service> services = new ArrayList<>();
+
+        // when
+        Future<Void> streamed = repository.streamAll(services::add);
+
+        // then
+        verify(dbConnector).queryStream(eq("select url, name, created_at, poll_interval, probe_type, expect from service"), any());
+        assertThat(streamed.succeeded()).isTrue();
+        assertThat(services).containsExactly(
+                new Service(URI.create("http://service-1.com"), "some name", Instant.ofEpochMilli(1234L)),
+                new Service(URI.create("http://service-2.com"), null, Instant.ofEpochMilli(222L), Duration.ofMinutes(5), ProbeType.BODY, "healthy")
         );
     }
 
@@ -0,0 +1,213 @@
+package se.kry.codetest.persistence;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceRepository;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.vertx.core.Future.failedFuture;
+import static io.vertx.core.Future.succeededFuture;
+import static java.time.Instant.now;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(VertxExtension.class)
+class WriteBehindServiceRepositoryTest {
+
+    private ServiceRepository delegate = mock(ServiceRepository.class);
+
+    private Service service1 = new Service(URI.create("https://www.kry-1.se"), null, now());
+    private Service service2 = new Service(URI.create("https://www.kry-2.se"), null, now());
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_group_writes_into_one_batch(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(delegate.addAll(any())).thenReturn(succeededFuture(list(true, true)));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 100, 10);
+
+        // when
+        Future<Service> first = repository.add(service1);
+        Future<Service> second = repository.add(service2);
+
+        // then
+        assertThat(first.isComplete()).isFalse();
+        CompositeFuture.all(first, second).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            verify(delegate, times(1)).addAll(list(service1, service2));
+            assertThat(first.result()).isEqualTo(service1);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_flush_as_soon_as_the_batch_is_full(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(delegate.addAll(any())).thenReturn(succeededFuture(list(true, true)));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 2, 60_000);
+
+        // when
+        repository.addAll(list(service1, service2)).setHandler(testContext.succeeding(added -> testContext.verify(() -> {
+            // then
+            assertThat(added).containsExactly(true, true);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_cancel_out_add_followed_by_delete(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(delegate.deleteAll(any())).thenReturn(succeededFuture(list(false)));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 100, 10);
+
+        // when
+        Future<Service> added = repository.add(service1);
+        Future<Void> deleted = repository.delete(service1);
+
+        // then
+        CompositeFuture.all(added, deleted).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            verify(delegate).deleteAll(list(service1));
+            verify(delegate, never()).addAll(any());
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_delete_before_adding_again(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(delegate.deleteAll(any())).thenReturn(succeededFuture(list(true)));
+        when(delegate.addAll(any())).thenReturn(succeededFuture(list(true)));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 100, 10);
+
+        // when
+        Future<List<Boolean>> deleted = repository.deleteAll(list(service1));
+        Future<Service> added = repository.add(service1);
+
+        // then
+        CompositeFuture.all(deleted, added).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            InOrder inOrder = inOrder(delegate);
+            inOrder.verify(delegate).deleteAll(list(service1));
+            inOrder.verify(delegate).addAll(list(service1));
+            assertThat(deleted.result()).containsExactly(true);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_fail_add_of_existing_service(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(delegate.addAll(any())).thenReturn(succeededFuture(list(false)));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 100, 10);
+
+        // when
+        repository.add(service1).setHandler(testContext.failing(e -> testContext.verify(() -> {
+            // then
+            assertThat(e).isInstanceOf(IllegalStateException.class);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_fail_every_write_of_a_failed_batch(Vertx vertx, VertxTestContext testContext) {
+        // given
+        RuntimeException exception = new RuntimeException("test exception");
+        when(delegate.addAll(any())).thenReturn(failedFuture(exception));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 100, 10);
+
+        // when
+        Future<Service> first = repository.add(service1);
+        Future<Service> second = repository.add(service2);
+
+        // then
+        CompositeFuture.join(first, second).setHandler(testContext.failing(e -> testContext.verify(() -> {
+            assertThat(first.cause()).isEqualTo(exception);
+            assertThat(second.cause()).isEqualTo(exception);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_complete_committed_deletes_when_the_inserts_fail(Vertx vertx, VertxTestContext testContext) {
+        // given
+        RuntimeException exception = new RuntimeException("test exception");
+        when(delegate.deleteAll(any())).thenReturn(succeededFuture(list(true)));
+        when(delegate.addAll(any())).thenReturn(failedFuture(exception));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 100, 10);
+
+        // when
+        Future<Void> deleted = repository.delete(service1);
+        Future<Service> added = repository.add(service2);
+
+        // then
+        CompositeFuture.join(deleted, added).setHandler(testContext.failing(e -> testContext.verify(() -> {
+            assertThat(deleted.succeeded()).isTrue();
+            assertThat(added.cause()).isEqualTo(exception);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_write_what_queued_up_meanwhile_right_after_a_batch(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Future<List<Boolean>> slowWrite = Future.future();
+        when(delegate.addAll(any())).thenReturn(slowWrite).thenReturn(succeededFuture(list(true, true, true)));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 1, 60_000);
+        List<Service> later = range(3, 6)
+                .mapToObj(i -> new Service(URI.create("https://www.kry-" + i + ".se"), null, now()))
+                .collect(toList());
+
+        // when
+        Future<Service> first = repository.add(service1);
+        Future<List<Boolean>> queued = repository.addAll(later);
+        assertThat(repository.queued()).isEqualTo(3);
+        slowWrite.complete(list(true));
+
+        // then
+        CompositeFuture.all(first, queued).setHandler(testContext.succeeding(done -> testContext.verify(() -> {
+            verify(delegate).addAll(list(service1));
+            verify(delegate).addAll(later);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_flush_before_reading(Vertx vertx, VertxTestContext testContext) {
+        // given
+        when(delegate.addAll(any())).thenReturn(succeededFuture(list(true)));
+        when(delegate.findAll()).thenReturn(succeededFuture(list(service1)));
+        WriteBehindServiceRepository repository = new WriteBehindServiceRepository(vertx, delegate, 100, 60_000);
+
+        // when
+        repository.add(service1);
+        repository.findAll().setHandler(testContext.succeeding(services -> testContext.verify(() -> {
+            // then
+            InOrder inOrder = inOrder(delegate);
+            inOrder.verify(delegate).addAll(list(service1));
+            inOrder.verify(delegate).findAll();
+            assertThat(services).containsExactly(service1);
+            testContext.completeNow();
+        })));
+    }
+}
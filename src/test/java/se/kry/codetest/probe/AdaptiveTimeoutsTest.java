@@ -0,0 +1,121 @@
+package se.kry.codetest.probe;
+
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.PollerOptions;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.time.Instant;
+
+import static java.time.Instant.now;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static se.kry.codetest.ProbeResult.NO_STATUS_CODE;
+import static se.kry.codetest.Status.FAIL;
+import static se.kry.codetest.Status.OK;
+
+class AdaptiveTimeoutsTest {
+
+    private final URI uri = URI.create("https://www.kry.se");
+    private AdaptiveTimeouts timeouts = new AdaptiveTimeouts(new PollerOptions()
+            .setRequestTimeout(2000)
+            .setMinRequestTimeout(100)
+            .setMaxRequestTimeout(10_000));
+
+    @Test
+    void should_start_with_the_request_timeout() {
+        assertThat(timeouts.timeout(uri)).isEqualTo(2000);
+    }
+
+    @Test
+    void should_follow_a_steady_latency_down_to_the_min() {
+        // given
+        for (int i = 0; i < 50; i++) {
+            timeouts.onProbe(answered(40));
+        }
+
+        // when
+        long timeout = timeouts.timeout(uri);
+
+        // then the deviation has decayed, 40ms plus a little is below the floor
+        assertThat(timeout).isEqualTo(100);
+    }
+
+    @Test
+    void should_leave_room_for_jittery_latency() {
+        // given
+        for (int i = 0; i < 50; i++) {
+            timeouts.onProbe(answered(i % 2 == 0 ? 200 : 600));
+        }
+
+        // when
+        long timeout = timeouts.timeout(uri);
+
+        // then around 400ms smoothed, plus four times a ~200ms deviation
+        assertThat(timeout).isBetween(1000L, 1400L);
+    }
+
+    @Test
+    void should_double_on_every_timeout_until_the_service_answers() {
+        // given
+        for (int i = 0; i < 50; i++) {
+            timeouts.onProbe(answered(500));
+        }
+        long settled = timeouts.timeout(uri);
+
+        // when
+        timeouts.onProbe(timedOut());
+        long once = timeouts.timeout(uri);
+        timeouts.onProbe(timedOut());
+        long twice = timeouts.timeout(uri);
+        timeouts.onProbe(answered(500));
+
+        // then, give or take rounding up
+        assertThat(once).isCloseTo(2 * settled, within(1L));
+        assertThat(twice).isCloseTo(4 * settled, within(3L));
+        assertThat(timeouts.timeout(uri)).isEqualTo(settled);
+    }
+
+    @Test
+    void should_cap_at_the_max() {
+        // when
+        for (int i = 0; i < 10; i++) {
+            timeouts.onProbe(timedOut());
+        }
+
+        // then
+        assertThat(timeouts.timeout(uri)).isEqualTo(10_000);
+    }
+
+    @Test
+    void should_ignore_failures_that_say_nothing_about_latency() {
+        // when
+        timeouts.onProbe(new ProbeResult(uri, now(), FAIL, MILLISECONDS.toNanos(1), NO_STATUS_CODE, FailureClass.CONNECTION_REFUSED));
+
+        // then
+        assertThat(timeouts.timeout(uri)).isEqualTo(2000);
+    }
+
+    @Test
+    void should_forget_removed_services() {
+        // given
+        timeouts.onProbe(answered(40));
+
+        // when
+        timeouts.onRemoved(new Service(uri, null, now()));
+
+        // then
+        assertThat(timeouts.timeout(uri)).isEqualTo(2000);
+    }
+
+    private ProbeResult answered(long millis) {
+        return new ProbeResult(uri, Instant.now(), OK, MILLISECONDS.toNanos(millis), 200);
+    }
+
+    private ProbeResult timedOut() {
+        return new ProbeResult(uri, Instant.now(), FAIL, MILLISECONDS.toNanos(2000), NO_STATUS_CODE, FailureClass.READ_TIMEOUT);
+    }
+}
@@ -0,0 +1,192 @@
+package se.kry.codetest.probe;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.net.SelfSignedCertificate;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.PollerOptions;
+import se.kry.codetest.services.ProbeType;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.Instant.now;
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.kry.codetest.ProbeResult.NO_STATUS_CODE;
+import static se.kry.codetest.Status.FAIL;
+import static se.kry.codetest.Status.OK;
+
+@ExtendWith(VertxExtension.class)
+class ProbesTest {
+
+    private List<HttpMethod> methods = new CopyOnWriteArrayList<>();
+    private int port;
+    private int tlsPort;
+
+    @BeforeEach
+    void start_stub_servers(Vertx vertx, VertxTestContext testContext) {
+        vertx.createHttpServer().requestHandler(request -> {
+            methods.add(request.method());
+            int code = request.path().startsWith("/fail") ? 503 : 200;
+            request.response().setStatusCode(code).end("some padding before the status: healthy");
+        }).listen(0, testContext.succeeding(listening -> {
+            port = listening.actualPort();
+            SelfSignedCertificate certificate = SelfSignedCertificate.create();
+            vertx.createHttpServer(new HttpServerOptions().setSsl(true).setKeyCertOptions(certificate.keyCertOptions()))
+                    .requestHandler(request -> request.response().end())
+                    .listen(0, testContext.succeeding(tls -> {
+                        tlsPort = tls.actualPort();
+                        testContext.completeNow();
+                    }));
+        }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_check_the_status_code_of_a_HEAD(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Probes probes = probes(vertx, new PollerOptions());
+
+        // when
+        probes.probe(service("http://localhost:" + port + "/fail", ProbeType.HEAD, null), 2000).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+            // then
+            assertThat(methods).containsExactly(HttpMethod.HEAD);
+            assertThat(result.status()).isEqualTo(FAIL);
+            assertThat(result.statusCode()).isEqualTo(503);
+            assertThat(result.failure()).contains(FailureClass.HTTP_ERROR);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_pass_a_body_probe_whose_body_matches(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Probes probes = probes(vertx, new PollerOptions());
+
+        // when
+        probes.probe(service("http://localhost:" + port + "/ok", ProbeType.BODY, "status: (healthy|degraded)"), 2000).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+            // then
+            assertThat(methods).containsExactly(HttpMethod.GET);
+            assertThat(result.status()).isEqualTo(OK);
+            assertThat(result.statusCode()).isEqualTo(200);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_only_match_the_head_of_the_body(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Probes probes = probes(vertx, new PollerOptions().setMaxBodyBytes(16));
+
+        // when
+        probes.probe(service("http://localhost:" + port + "/ok", ProbeType.BODY, "healthy"), 2000).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+            // then
+            assertThat(result.status()).isEqualTo(FAIL);
+            assertThat(result.statusCode()).isEqualTo(200);
+            assertThat(result.failure()).contains(FailureClass.ASSERTION);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_connect_over_TCP_without_a_request(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Probes probes = probes(vertx, new PollerOptions());
+
+        // when
+        probes.probe(service("tcp://localhost:" + port, ProbeType.TCP, null), 2000).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+            // then
+            assertThat(methods).isEmpty();
+            assertThat(result.status()).isEqualTo(OK);
+            assertThat(result.statusCode()).isEqualTo(NO_STATUS_CODE);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_fail_TCP_probe_on_refused_connection(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Probes probes = probes(vertx, new PollerOptions());
+
+        // when
+        probes.probe(service("tcp://localhost:1", ProbeType.TCP, null), 2000).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+            // then
+            assertThat(result.status()).isEqualTo(FAIL);
+            assertThat(result.failure()).contains(FailureClass.CONNECTION_REFUSED);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_fail_TLS_probe_on_untrusted_certificate(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Probes probes = probes(vertx, new PollerOptions());
+
+        // when
+        probes.probe(service("https://localhost:" + tlsPort, ProbeType.TLS, null), 2000).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+            // then
+            assertThat(result.status()).isEqualTo(FAIL);
+            assertThat(result.failure()).contains(FailureClass.TLS);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_time_out_TLS_probe_on_a_handshake_that_never_completes(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Probes probes = probes(vertx, new PollerOptions());
+        vertx.createNetServer().connectHandler(socket -> {
+            // accepts, then never says a word
+        }).listen(0, testContext.succeeding(silent -> {
+
+            // when
+            probes.probe(service("https://localhost:" + silent.actualPort(), ProbeType.TLS, null), 200).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+                // then
+                assertThat(result.status()).isEqualTo(FAIL);
+                assertThat(result.failure()).contains(FailureClass.CONNECT_TIMEOUT);
+                testContext.completeNow();
+            })));
+        }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_fail_on_URL_without_host(Vertx vertx, VertxTestContext testContext) {
+        // given
+        Probes probes = probes(vertx, new PollerOptions());
+
+        // when
+        probes.probe(service("tcp:opaque", ProbeType.TCP, null), 2000).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+            // then
+            assertThat(result.status()).isEqualTo(FAIL);
+            assertThat(result.failure()).contains(FailureClass.INVALID_URL);
+            testContext.completeNow();
+        })));
+    }
+
+    private static Probes probes(Vertx vertx, PollerOptions options) {
+        return new Probes(vertx, WebClient.create(vertx), options);
+    }
+
+    private static Service service(String url, ProbeType probeType, String expect) {
+        return new Service(URI.create(url), null, now(), Duration.ofMinutes(1), probeType, expect);
+    }
+}
@@ -0,0 +1,226 @@
+package se.kry.codetest.scheduling;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import se.kry.codetest.BackgroundPoller;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.time.Instant.now;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static se.kry.codetest.Status.*;
+
+class PollSchedulerTest {
+
+    private BackgroundPoller poller = mock(BackgroundPoller.class);
+    // 1 tick = 1 second
+    private PollScheduler scheduler = new PollScheduler(poller, 1000, 64);
+
+    @Test
+    void should_poll_each_service_once_per_interval() {
+        // given
+        Service fast = service("https://fast.kry.se", Duration.ofSeconds(5));
+        Service slow = service("https://slow.kry.se", Duration.ofSeconds(20));
+        scheduler.onAdded(fast);
+        scheduler.onAdded(slow);
+
+        // when
+        Map<URI, Integer> polls = tickAndCount(40);
+
+        // then
+        assertThat(polls.get(fast.uri())).isEqualTo(8);
+        assertThat(polls.get(slow.uri())).isEqualTo(2);
+    }
+
+    @Test
+    void should_spread_services_over_the_interval() {
+        // given
+        range(0, 600).forEach(i -> scheduler.onAdded(service("https://service-" + i + ".kry.se", Duration.ofSeconds(60))));
+
+        // when
+        int busiestTick = 0;
+        int total = 0;
+        for (int i = 0; i < 60; i++) {
+            int polled = tickAndCount(1).values().stream().mapToInt(Integer::intValue).sum();
+            busiestTick = Math.max(busiestTick, polled);
+            total += polled;
+        }
+
+        // then every service is polled once, and no second sees a herd
+        assertThat(total).isEqualTo(600);
+        assertThat(busiestTick).isLessThan(30);
+    }
+
+    @Test
+    void should_only_poll_services_it_owns() {
+        // given
+        Service owned = service("https://owned.kry.se", Duration.ofSeconds(5));
+        Service other = service("https://other.kry.se", Duration.ofSeconds(5));
+        scheduler.onAdded(owned);
+        scheduler.onAdded(other);
+        scheduler.setOwnership(owned.uri()::equals);
+
+        // when
+        Map<URI, Integer> polls = tickAndCount(10);
+
+        // then
+        assertThat(polls.get(owned.uri())).isEqualTo(2);
+        assertThat(polls).doesNotContainKey(other.uri());
+    }
+
+    @Test
+    void should_use_same_phase_for_same_service() {
+        // given
+        Service service = service("https://www.kry.se", Duration.ofSeconds(30));
+        PollScheduler other = new PollScheduler(poller, 1000, 64);
+
+        // when
+        scheduler.onAdded(service);
+        other.onAdded(service);
+
+        // then
+        int first = firstPollTick(scheduler);
+        int second = firstPollTick(other);
+        assertThat(first).isEqualTo(second);
+    }
+
+    @Test
+    void should_stop_polling_removed_services() {
+        // given
+        Service service = service("https://www.kry.se", Duration.ofSeconds(1));
+        scheduler.onAdded(service);
+
+        // when
+        scheduler.onRemoved(service);
+        tickAndCount(5);
+
+        // then
+        verify(poller, never()).poll(any());
+        assertThat(scheduler.scheduledCount()).isZero();
+    }
+
+    @Test
+    void should_not_double_schedule_re_added_service() {
+        // given
+        Service service = service("https://www.kry.se", Duration.ofSeconds(2));
+        scheduler.onAdded(service);
+        scheduler.onAdded(service);
+
+        // when
+        Map<URI, Integer> polls = tickAndCount(10);
+
+        // then
+        assertThat(polls.get(service.uri())).isEqualTo(5);
+        assertThat(scheduler.scheduledCount()).isEqualTo(1);
+    }
+
+    @Test
+    void should_confirm_a_status_change_at_a_quarter_of_the_interval() {
+        // given
+        Service service = service("https://www.kry.se", Duration.ofSeconds(20));
+        scheduler.onAdded(service);
+        int first = firstPollTick(scheduler);
+
+        // when
+        scheduler.onStatusChanged(new ServiceStatus(service, OK), new ServiceStatus(service, FAIL));
+        Map<URI, Integer> polls = tickAndCount(15);
+
+        // then three probes 5 seconds apart, then back to the normal interval
+        assertThat(first).isPositive();
+        assertThat(polls.get(service.uri())).isEqualTo(3);
+    }
+
+    @Test
+    void should_not_confirm_the_first_status() {
+        // given
+        Service service = service("https://www.kry.se", Duration.ofSeconds(20));
+        scheduler.onAdded(service);
+        firstPollTick(scheduler);
+
+        // when
+        scheduler.onStatusChanged(new ServiceStatus(service, UNKNOWN), new ServiceStatus(service, OK));
+        Map<URI, Integer> polls = tickAndCount(15);
+
+        // then
+        assertThat(polls).isEmpty();
+    }
+
+    @Test
+    void should_back_off_from_a_service_that_keeps_failing() {
+        // given
+        Service service = service("https://www.kry.se", Duration.ofSeconds(2));
+        scheduler.onAdded(service);
+        for (int i = 0; i < 5; i++) {
+            scheduler.onProbe(new ProbeResult(service.uri(), now(), FAIL, 0, 503));
+        }
+
+        // when: two failures past confirmation, so every 8 seconds
+        Map<URI, Integer> polls = tickAndCount(40);
+
+        // then
+        assertThat(polls.get(service.uri())).isBetween(5, 6);
+    }
+
+    @Test
+    void should_return_to_the_interval_once_the_service_answers() {
+        // given
+        Service service = service("https://www.kry.se", Duration.ofSeconds(2));
+        scheduler.onAdded(service);
+        for (int i = 0; i < 5; i++) {
+            scheduler.onProbe(new ProbeResult(service.uri(), now(), FAIL, 0, 503));
+        }
+        tickAndCount(8);
+
+        // when
+        scheduler.onProbe(new ProbeResult(service.uri(), now(), OK, 0, 200));
+        tickAndCount(8);
+        Map<URI, Integer> polls = tickAndCount(20);
+
+        // then
+        assertThat(polls.get(service.uri())).isEqualTo(10);
+    }
+
+    private int firstPollTick(PollScheduler scheduler) {
+        reset(poller);
+        for (int i = 1; i <= 30; i++) {
+            scheduler.tick();
+            if (!mockingDetails(poller).getInvocations().isEmpty()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<URI, Integer> tickAndCount(int ticks) {
+        reset(poller);
+        for (int i = 0; i < ticks; i++) {
+            scheduler.tick();
+        }
+        ArgumentCaptor<Collection<Service>> captor = ArgumentCaptor.forClass(Collection.class);
+        Map<URI, Integer> polls = new HashMap<>();
+        if (mockingDetails(poller).getInvocations().isEmpty()) {
+            return polls;
+        }
+        verify(poller, atLeastOnce()).poll(captor.capture());
+        List<Service> polled = captor.getAllValues().stream().flatMap(Collection::stream).collect(toList());
+        polled.forEach(service -> polls.merge(service.uri(), 1, Integer::sum));
+        return polls;
+    }
+
+    private static Service service(String url, Duration interval) {
+        return new Service(URI.create(url), null, now(), interval);
+    }
+}
@@ -0,0 +1,95 @@
+package se.kry.codetest.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+
+    private TimingWheel<String> wheel = new TimingWheel<>(8);
+    private List<String> expired = new ArrayList<>();
+
+    @Test
+    void should_expire_on_deadline_tick() {
+        // given
+        wheel.schedule("a", 1);
+        wheel.schedule("b", 3);
+
+        // when / then
+        wheel.advance(expired::add);
+        assertThat(expired).containsExactly("a");
+        wheel.advance(expired::add);
+        assertThat(expired).containsExactly("a");
+        wheel.advance(expired::add);
+        assertThat(expired).containsExactly("a", "b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void should_wait_for_round_when_beyond_one_turn() {
+        // given
+        wheel.schedule("far", 11);
+
+        // when
+        advance(10);
+
+        // then
+        assertThat(expired).isEmpty();
+        advance(1);
+        assertThat(expired).containsExactly("far");
+        assertThat(wheel.currentTick()).isEqualTo(11);
+    }
+
+    @Test
+    void should_not_expire_cancelled() {
+        // given
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 2);
+        wheel.schedule("kept", 2);
+
+        // when
+        assertThat(wheel.cancel(cancelled)).isTrue();
+        advance(2);
+
+        // then
+        assertThat(expired).containsExactly("kept");
+        assertThat(wheel.cancel(cancelled)).isFalse();
+    }
+
+    @Test
+    void should_allow_rescheduling_from_callback() {
+        // given
+        wheel.schedule("periodic", 2);
+
+        // when
+        for (int i = 0; i < 8; i++) {
+            wheel.advance(item -> {
+                expired.add(item);
+                wheel.schedule(item, 2);
+            });
+        }
+
+        // then
+        assertThat(expired).hasSize(4);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void should_reject_invalid_parameters() {
+        assertThatThrownBy(() -> new TimingWheel<>(6))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Slot count must be a power of two");
+        assertThatThrownBy(() -> wheel.schedule("now", 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Timeouts must be at least one tick away");
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            wheel.advance(expired::add);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package se.kry.codetest.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeLogTest {
+
+    private static final URI SERVICE_1 = URI.create("https://www.kry-1.se");
+    private static final URI SERVICE_2 = URI.create("https://www.kry-2.se");
+    private static final URI SERVICE_3 = URI.create("https://www.kry-3.se");
+
+    private ChangeLog changeLog = new ChangeLog(2, 100);
+
+    @Test
+    void should_increment_version_on_every_change() {
+        // when
+        long first = changeLog.record(SERVICE_1, false);
+        long second = changeLog.record(SERVICE_1, false);
+
+        // then
+        assertThat(first).isEqualTo(101);
+        assertThat(second).isEqualTo(102);
+        assertThat(changeLog.version()).isEqualTo(102);
+    }
+
+    @Test
+    void should_list_each_changed_service_once() {
+        // given
+        changeLog.record(SERVICE_1, false);
+        long since = changeLog.record(SERVICE_2, false);
+        changeLog.record(SERVICE_3, false);
+        changeLog.record(SERVICE_1, false);
+        changeLog.record(SERVICE_3, false);
+
+        // when / then
+        assertThat(changeLog.since(since, changeLog.version()).get()).containsExactly(SERVICE_1, SERVICE_3);
+        assertThat(changeLog.since(changeLog.version(), changeLog.version()).get()).isEmpty();
+    }
+
+    @Test
+    void should_require_full_reload_once_tombstones_are_forgotten() {
+        // given
+        long since = changeLog.version();
+        changeLog.record(SERVICE_1, true);
+        changeLog.record(SERVICE_2, true);
+        assertThat(changeLog.since(since, changeLog.version())).isPresent();
+
+        // when
+        changeLog.record(SERVICE_3, true);
+
+        // then
+        assertThat(changeLog.since(since, changeLog.version())).isEmpty();
+        assertThat(changeLog.since(since + 1, changeLog.version()).get()).containsExactly(SERVICE_2, SERVICE_3);
+    }
+
+    @Test
+    void should_require_full_reload_for_versions_of_another_process() {
+        assertThat(changeLog.since(50, changeLog.version())).isEmpty();
+        assertThat(changeLog.since(500, changeLog.version())).isEmpty();
+    }
+}
@@ -0,0 +1,171 @@
+package se.kry.codetest.services;
+
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static se.kry.codetest.Status.*;
+
+class ColumnarStatusMapTest {
+
+    private ColumnarStatusMap map = new ColumnarStatusMap();
+
+    private Service service1 = new Service(URI.create("http://service-1.com"), "service 1", Instant.ofEpochSecond(1));
+    private Service service2 = new Service(URI.create("http://service-2.com"), "service 2", Instant.ofEpochSecond(2));
+
+    @Test
+    void should_give_back_what_was_put() {
+        // given
+        ServiceStatus unknown = new ServiceStatus(service1, UNKNOWN);
+        ServiceStatus failed = new ServiceStatus(service2, OK, failedProbe(service2, Instant.ofEpochSecond(10, 123)), Instant.ofEpochSecond(5));
+
+        // when
+        map.put(service1.uri(), unknown);
+        map.put(service2.uri(), failed);
+
+        // then
+        assertThat(map.get(service1.uri())).isEqualTo(unknown);
+        assertThat(map.get(service2.uri())).isEqualTo(failed);
+        assertThat(map).hasSize(2);
+        assertThat(map.values()).containsExactlyInAnyOrder(unknown, failed);
+    }
+
+    @Test
+    void should_replace_only_the_expected_status() {
+        // given
+        ServiceStatus unknown = new ServiceStatus(service1, UNKNOWN);
+        ServiceStatus ok = new ServiceStatus(service1, OK, okProbe(service1, Instant.ofEpochSecond(10)), Instant.ofEpochSecond(10));
+        ServiceStatus failed = new ServiceStatus(service1, FAIL, failedProbe(service1, Instant.ofEpochSecond(20)), Instant.ofEpochSecond(20));
+        map.put(service1.uri(), unknown);
+
+        // when
+        boolean replaced = map.replace(service1.uri(), unknown, ok);
+        boolean stale = map.replace(service1.uri(), unknown, failed);
+
+        // then
+        assertThat(replaced).isTrue();
+        assertThat(stale).isFalse();
+        assertThat(map.get(service1.uri())).isEqualTo(ok);
+    }
+
+    @Test
+    void should_record_a_probe_in_place_only_while_the_status_holds() {
+        // given
+        map.put(service1.uri(), new ServiceStatus(service1, OK, okProbe(service1, Instant.ofEpochSecond(10)), Instant.ofEpochSecond(10)));
+        ProbeResult ok = okProbe(service1, Instant.ofEpochSecond(20));
+        ProbeResult failed = failedProbe(service1, Instant.ofEpochSecond(30));
+
+        // when
+        boolean probed = map.probed(service1, OK, ok);
+        boolean changed = map.probed(service1, FAIL, failed);
+        boolean unknown = map.probed(service2, OK, okProbe(service2, Instant.ofEpochSecond(30)));
+
+        // then
+        assertThat(probed).isTrue();
+        assertThat(changed).isFalse();
+        assertThat(unknown).isFalse();
+        assertThat(map.get(service1.uri())).isEqualTo(new ServiceStatus(service1, OK, ok, Instant.ofEpochSecond(10)));
+    }
+
+    @Test
+    void should_not_replace_a_removed_service() {
+        // given
+        ServiceStatus unknown = new ServiceStatus(service1, UNKNOWN);
+        map.put(service1.uri(), unknown);
+
+        // when
+        ServiceStatus removed = map.remove(service1.uri());
+        boolean replaced = map.replace(service1.uri(), unknown, new ServiceStatus(service1, OK));
+
+        // then
+        assertThat(removed).isEqualTo(unknown);
+        assertThat(replaced).isFalse();
+        assertThat(map.get(service1.uri())).isNull();
+        assertThat(map).isEmpty();
+    }
+
+    @Test
+    void should_reuse_the_slots_of_removed_services() {
+        // given
+        map.put(service1.uri(), new ServiceStatus(service1, OK));
+        map.remove(service1.uri());
+
+        // when
+        map.put(service2.uri(), new ServiceStatus(service2, FAIL));
+
+        // then
+        assertThat(map.get(service1.uri())).isNull();
+        assertThat(map.get(service2.uri())).isEqualTo(new ServiceStatus(service2, FAIL));
+    }
+
+    @Test
+    void should_hold_more_services_than_fit_one_chunk() {
+        // given
+        List<ServiceStatus> statuses = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Service service = new Service(URI.create("http://service-" + i + ".com"), "service " + i, Instant.ofEpochSecond(i));
+            statuses.add(new ServiceStatus(service, OK, okProbe(service, Instant.ofEpochSecond(i)), null));
+        }
+
+        // when
+        statuses.forEach(status -> map.put(status.service().uri(), status));
+
+        // then
+        assertThat(map).hasSize(3000);
+        statuses.forEach(status -> assertThat(map.get(status.service().uri())).isEqualTo(status));
+    }
+
+    @Test
+    void should_reject_a_status_keyed_by_another_uri() {
+        assertThatThrownBy(() -> map.put(service1.uri(), new ServiceStatus(service2, OK)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Statuses must be keyed by their service's URI");
+    }
+
+    @Test
+    void should_never_read_a_half_written_status() throws InterruptedException {
+        // given
+        ServiceStatus ok = new ServiceStatus(service1, OK, okProbe(service1, Instant.ofEpochSecond(10)), Instant.ofEpochSecond(10));
+        ServiceStatus failed = new ServiceStatus(service1, FAIL, failedProbe(service1, Instant.ofEpochSecond(20)), Instant.ofEpochSecond(20));
+        map.put(service1.uri(), ok);
+        AtomicBoolean torn = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            while (done.getCount() > 0) {
+                ServiceStatus read = map.get(service1.uri());
+                if (!ok.equals(read) && !failed.equals(read)) {
+                    torn.set(true);
+                }
+            }
+        });
+        reader.start();
+
+        // when
+        for (int i = 0; i < 100_000; i++) {
+            map.replace(service1.uri(), i % 2 == 0 ? ok : failed, i % 2 == 0 ? failed : ok);
+        }
+        done.countDown();
+        reader.join();
+
+        // then
+        assertThat(torn).isFalse();
+        assertThat(map.get(service1.uri())).isEqualTo(ok);
+    }
+
+    private static ProbeResult okProbe(Service service, Instant timestamp) {
+        return new ProbeResult(service.uri(), timestamp, OK, 1_500_000L, 200);
+    }
+
+    private static ProbeResult failedProbe(Service service, Instant timestamp) {
+        return new ProbeResult(service.uri(), timestamp, FAIL, 10_000_000L, 0, FailureClass.READ_TIMEOUT);
+    }
+}
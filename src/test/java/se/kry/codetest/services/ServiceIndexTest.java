@@ -0,0 +1,189 @@
+package se.kry.codetest.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.vertx.core.Future.succeededFuture;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.util.Lists.list;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static se.kry.codetest.Status.*;
+import static se.kry.codetest.services.ServiceSort.*;
+import static se.kry.codetest.services.ServiceStatusStoreTest.streaming;
+
+class ServiceIndexTest {
+
+    private ServiceRepository repository = mock(ServiceRepository.class);
+    private ServiceStatusStore store = new ServiceStatusStore(repository, new ConcurrentHashMap<>());
+
+    private Service alpha = service("https://a.kry.se/health", "Alpha", 3);
+    private Service beta = service("https://b.kry.se/health", "beta", 1);
+    private Service gamma = service("https://a.kry.se/other", "Gamma", 2);
+    private Service unnamed = service("https://c.kry.se", null, 4);
+
+    @BeforeEach
+    void setup() {
+        when(repository.streamAll(any())).thenAnswer(streaming(list(alpha, beta, gamma, unnamed)));
+        store.init();
+    }
+
+    @Test
+    void should_sort_by_name_ignoring_case_and_unnamed_by_url() {
+        // when
+        ServicePage page = store.query(query(10, null, NAME, false));
+
+        // then
+        assertThat(services(page)).containsExactly(alpha, beta, gamma, unnamed);
+        assertThat(page.next()).isEmpty();
+    }
+
+    @Test
+    void should_sort_by_creation_time_descending() {
+        // when
+        ServicePage page = store.query(query(10, null, CREATED_AT, true));
+
+        // then
+        assertThat(services(page)).containsExactly(unnamed, alpha, gamma, beta);
+    }
+
+    @Test
+    void should_sort_by_last_change() {
+        // given
+        store.update(beta.uri(), new ServiceStatus(beta, OK));
+
+        // when
+        ServicePage page = store.query(query(1, null, LAST_CHANGE, true));
+
+        // then
+        assertThat(services(page)).containsExactly(beta);
+    }
+
+    @Test
+    void should_page_through_all_services_with_cursor() {
+        // given
+        List<Service> many = range(0, 25)
+                .mapToObj(i -> service("https://kry-" + i + ".se", String.format("service %02d", i), i))
+                .collect(toList());
+        doAnswer(streaming(many)).when(repository).streamAll(any());
+        store.init();
+
+        // when
+        List<Service> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            ServicePage page = store.query(new ServiceQuery(10, cursor, null, "service", null, NAME, false));
+            seen.addAll(services(page));
+            cursor = page.next().orElse(null);
+        } while (cursor != null);
+
+        // then
+        assertThat(seen).containsExactlyElementsOf(many);
+    }
+
+    @Test
+    void should_filter_by_status_and_host() {
+        // given
+        store.update(alpha.uri(), new ServiceStatus(alpha, FAIL));
+        store.update(gamma.uri(), new ServiceStatus(gamma, OK));
+        store.update(beta.uri(), new ServiceStatus(beta, FAIL));
+
+        // when
+        ServicePage failing = store.query(new ServiceQuery(10, null, FAIL, null, null, NAME, false));
+        ServicePage onHost = store.query(new ServiceQuery(10, null, null, null, "A.KRY.SE", NAME, false));
+        ServicePage both = store.query(new ServiceQuery(10, null, FAIL, null, "a.kry.se", NAME, false));
+
+        // then
+        assertThat(services(failing)).containsExactly(alpha, beta);
+        assertThat(services(onHost)).containsExactly(alpha, gamma);
+        assertThat(services(both)).containsExactly(alpha);
+    }
+
+    @Test
+    void should_page_filtered_candidates_with_cursor() {
+        // given
+        store.update(alpha.uri(), new ServiceStatus(alpha, FAIL));
+        store.update(beta.uri(), new ServiceStatus(beta, FAIL));
+        store.update(gamma.uri(), new ServiceStatus(gamma, FAIL));
+
+        // when
+        ServicePage first = store.query(new ServiceQuery(2, null, FAIL, null, null, NAME, false));
+        ServicePage second = store.query(new ServiceQuery(2, first.next().get(), FAIL, null, null, NAME, false));
+
+        // then
+        assertThat(services(first)).containsExactly(alpha, beta);
+        assertThat(services(second)).containsExactly(gamma);
+        assertThat(second.next()).isEmpty();
+    }
+
+    @Test
+    void should_filter_by_name_prefix() {
+        // when
+        ServicePage page = store.query(new ServiceQuery(10, null, null, "GA", null, NAME, false));
+
+        // then
+        assertThat(services(page)).containsExactly(gamma);
+    }
+
+    @Test
+    void should_filter_by_name_prefix_whatever_the_default_locale() {
+        // given
+        Service istio = service("https://d.kry.se", "ISTIO", 5);
+        when(repository.add(istio)).thenReturn(succeededFuture(istio));
+        store.add(istio);
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            // when
+            ServicePage page = store.query(new ServiceQuery(10, null, null, "is", null, NAME, false));
+
+            // then
+            assertThat(services(page)).containsExactly(istio);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void should_drop_deleted_services_from_indexes() {
+        // given
+        when(repository.delete(alpha)).thenReturn(succeededFuture());
+        store.delete(alpha.uri());
+
+        // when
+        ServicePage page = store.query(new ServiceQuery(10, null, UNKNOWN, null, "a.kry.se", NAME, false));
+
+        // then
+        assertThat(services(page)).containsExactly(gamma);
+    }
+
+    @Test
+    void should_reject_invalid_cursor() {
+        assertThatThrownBy(() -> store.query(query(10, "not a cursor", NAME, false)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ServiceQuery query(int limit, String after, ServiceSort sort, boolean descending) {
+        return new ServiceQuery(limit, after, null, null, null, sort, descending);
+    }
+
+    private static List<Service> services(ServicePage page) {
+        return page.services().stream().map(ServiceStatus::service).collect(toList());
+    }
+
+    private static Service service(String url, String name, long createdAtSeconds) {
+        return new Service(URI.create(url), name, Instant.ofEpochSecond(createdAtSeconds));
+    }
+}
@@ -1,12 +1,18 @@
 package se.kry.codetest.services;
 
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.stubbing.Answer;
+import se.kry.codetest.ProbeResult;
 
 import java.net.URI;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -14,7 +20,7 @@ import static io.vertx.core.Future.failedFuture;
 import static io.vertx.core.Future.succeededFuture;
 import static java.time.Instant.now;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.util.Lists.emptyList;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.util.Lists.list;
 import static org.mockito.Mockito.*;
 import static se.kry.codetest.Status.*;
@@ -29,7 +35,7 @@ class ServiceStatusStoreTest {
 
     @BeforeEach
     void setup() {
-        when(repository.findAll()).thenReturn(succeededFuture(emptyList()));
+        when(repository.streamAll(any())).thenReturn(succeededFuture());
     }
 
     @Test
@@ -40,12 +46,13 @@ class ServiceStatusStoreTest {
                 new Service(URI.create("https://www.kry-2.se"), "test service 2", now()),
                 new Service(URI.create("https://www.kry-3.se"), "test service 3", now())
         );
-        when(repository.findAll()).thenReturn(succeededFuture(persistedServices));
+        when(repository.streamAll(any())).thenAnswer(streaming(persistedServices));
 
         // when
-        store.init();
+        Future<Void> ready = store.init();
 
         // then
+        assertThat(ready.succeeded()).isTrue();
         Collection<ServiceStatus> statuses = store.getAll();
         assertThat(statuses)
                 .extracting(ServiceStatus::service)
@@ -77,14 +84,77 @@ class ServiceStatusStoreTest {
     }
 
     @Test
-    void should_ignore_failure_on_init() {
+    void should_restore_last_known_statuses_of_the_same_services_on_init() {
         // given
-        when(repository.findAll()).thenReturn(failedFuture(new RuntimeException("test exception")));
+        Instant createdAt = Instant.ofEpochMilli(1000);
+        Service known = new Service(URI.create("https://www.kry-1.se"), "known", createdAt);
+        Service readded = new Service(URI.create("https://www.kry-2.se"), "re-added", createdAt);
+        ProbeResult probe = new ProbeResult(known.uri(), Instant.ofEpochSecond(50), OK, 1000L, 200);
+        Map<URI, ServiceStatus> lastKnown = new HashMap<>();
+        lastKnown.put(known.uri(), new ServiceStatus(known, OK, probe, Instant.ofEpochSecond(40)));
+        lastKnown.put(readded.uri(), new ServiceStatus(new Service(readded.uri(), "re-added", Instant.ofEpochMilli(500)), FAIL));
+        when(repository.streamAll(any())).thenAnswer(streaming(list(known, readded)));
 
         // when
-        store.init();
+        store.init(lastKnown);
 
         // then
+        assertThat(statusMap.get(known.uri())).isEqualTo(new ServiceStatus(known, OK, probe, Instant.ofEpochSecond(40)));
+        assertThat(statusMap.get(readded.uri())).isEqualTo(new ServiceStatus(readded, UNKNOWN));
+    }
+
+    @Test
+    void should_persist_replicas_once() {
+        // given
+        ServiceStatusListener listener = mock(ServiceStatusListener.class);
+        store.addListener(listener);
+        when(repository.addAll(list(service))).thenReturn(succeededFuture(list(true)));
+        when(repository.deleteAll(list(service))).thenReturn(succeededFuture(list(true)));
+
+        // when
+        store.addReplica(service);
+        store.addReplica(service);
+        store.removeReplica(service.uri());
+        store.removeReplica(service.uri());
+
+        // then
+        verify(listener, times(1)).onAdded(service);
+        verify(listener, times(1)).onRemoved(service);
+        verify(repository, times(1)).addAll(list(service));
+        verify(repository, times(1)).deleteAll(list(service));
+        assertThat(store.get(service.uri())).isEmpty();
+    }
+
+    @Test
+    void should_replace_a_replica_that_changed_in_the_database_too() {
+        // given
+        Service renamed = new Service(service.uri(), "renamed", now());
+        when(repository.addAll(any())).thenReturn(succeededFuture(list(true)));
+        when(repository.deleteAll(list(service))).thenReturn(succeededFuture(list(true)));
+        store.addReplica(service);
+
+        // when
+        store.addReplica(renamed);
+
+        // then
+        InOrder inOrder = inOrder(repository);
+        inOrder.verify(repository).addAll(list(service));
+        inOrder.verify(repository).deleteAll(list(service));
+        inOrder.verify(repository).addAll(list(renamed));
+        assertThat(store.get(service.uri()).map(ServiceStatus::service)).contains(renamed);
+    }
+
+    @Test
+    void should_fail_init_when_loading_fails() {
+        // given
+        RuntimeException exception = new RuntimeException("test exception");
+        when(repository.streamAll(any())).thenReturn(failedFuture(exception));
+
+        // when
+        Future<Void> ready = store.init();
+
+        // then
+        assertThat(ready.cause()).isEqualTo(exception);
         assertThat(store.getAll()).isEmpty();
     }
 
@@ -162,17 +232,232 @@ class ServiceStatusStoreTest {
     }
 
 
+    @Test
+    void should_notify_listeners_of_added_and_removed_services() {
+        // given
+        ServiceStatusListener listener = mock(ServiceStatusListener.class);
+        store.addListener(listener);
+        when(repository.add(service)).thenReturn(succeededFuture(service));
+        when(repository.delete(service)).thenReturn(succeededFuture());
+
+        // when
+        store.add(service);
+        store.delete(service.uri());
+
+        // then
+        verify(listener).onAdded(service);
+        verify(listener).onRemoved(service);
+    }
+
+    @Test
+    void should_add_all_new_services_and_skip_existing() {
+        // given
+        ServiceStatusListener listener = mock(ServiceStatusListener.class);
+        store.addListener(listener);
+        Service existing = new Service(URI.create("https://www.kry-2.se"), null, now());
+        when(repository.addAll(list(service, existing))).thenReturn(succeededFuture(list(true, false)));
+
+        // when
+        Future<List<Boolean>> added = store.addAll(list(service, existing));
+
+        // then
+        assertThat(added.result()).containsExactly(true, false);
+        assertThat(statusMap).containsOnlyKeys(service.uri());
+        verify(listener).onAdded(service);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    void should_delete_all_known_services() {
+        // given
+        statusMap.put(service.uri(), new ServiceStatus(service, OK));
+        URI unknown = URI.create("https://www.kry-2.se");
+        when(repository.deleteAll(list(service))).thenReturn(succeededFuture(list(true)));
+
+        // when
+        Future<List<Boolean>> deleted = store.deleteAll(list(unknown, service.uri()));
+
+        // then
+        assertThat(deleted.result()).containsExactly(false, true);
+        assertThat(statusMap).isEmpty();
+    }
+
+    @Test
+    void should_keep_services_when_delete_all_fails() {
+        // given
+        statusMap.put(service.uri(), new ServiceStatus(service, OK));
+        when(repository.deleteAll(any())).thenReturn(failedFuture("test exception"));
+
+        // when
+        Future<List<Boolean>> deleted = store.deleteAll(list(service.uri()));
+
+        // then
+        assertThat(deleted.failed()).isTrue();
+        assertThat(statusMap).containsKey(service.uri());
+    }
+
+    @Test
+    void should_not_resurrect_deleted_service_on_update() {
+        // when
+        store.update(service.uri(), new ServiceStatus(service, OK));
+
+        // then
+        assertThat(statusMap).isEmpty();
+    }
+
+    @Test
+    void should_bump_version_only_on_actual_changes() {
+        // given
+        when(repository.add(service)).thenReturn(succeededFuture(service));
+        long initial = store.version();
+
+        // when / then
+        store.add(service);
+        assertThat(store.version()).isEqualTo(initial + 1);
+        store.update(service.uri(), new ServiceStatus(service, UNKNOWN));
+        assertThat(store.version()).isEqualTo(initial + 1);
+        store.update(service.uri(), new ServiceStatus(service, OK));
+        assertThat(store.version()).isEqualTo(initial + 2);
+    }
+
+    @Test
+    void should_return_changes_since_version() {
+        // given
+        Service other = new Service(URI.create("https://www.kry-2.se"), null, now());
+        when(repository.add(any())).thenAnswer(invocation -> succeededFuture(invocation.getArgument(0)));
+        when(repository.delete(any())).thenReturn(succeededFuture());
+        store.add(service);
+        store.add(other);
+        long since = store.version();
+
+        // when
+        store.update(service.uri(), new ServiceStatus(service, FAIL));
+        store.delete(other.uri());
+        ServiceChanges changes = store.changesSince(since);
+
+        // then
+        assertThat(changes.full()).isFalse();
+        assertThat(changes.version()).isEqualTo(store.version());
+        assertThat(changes.updated()).extracting(ServiceStatus::service, ServiceStatus::status).containsExactly(tuple(service, FAIL));
+        assertThat(changes.deleted()).containsExactly(other.uri());
+    }
+
+    @Test
+    void should_return_everything_for_unknown_version() {
+        // given
+        when(repository.add(service)).thenReturn(succeededFuture(service));
+        store.add(service);
+
+        // when
+        ServiceChanges changes = store.changesSince(0);
+
+        // then
+        assertThat(changes.full()).isTrue();
+        assertThat(changes.updated()).containsExactly(new ServiceStatus(service, UNKNOWN));
+        assertThat(changes.deleted()).isEmpty();
+    }
+
+    @Test
+    void should_ignore_status_of_replaced_service_on_update() {
+        // given
+        Service replaced = new Service(service.uri(), "old name", now());
+        statusMap.put(service.uri(), new ServiceStatus(service, UNKNOWN));
+
+        // when
+        store.update(service.uri(), new ServiceStatus(replaced, OK));
+
+        // then
+        assertThat(statusMap).containsEntry(service.uri(), new ServiceStatus(service, UNKNOWN));
+    }
+
+    @Test
+    void should_notify_listeners_of_status_transitions_only() {
+        // given
+        ServiceStatusListener listener = mock(ServiceStatusListener.class);
+        store.addListener(listener);
+        statusMap.put(service.uri(), new ServiceStatus(service, OK));
+
+        // when
+        store.update(service.uri(), new ServiceStatus(service, OK));
+        store.update(service.uri(), new ServiceStatus(service, FAIL));
+
+        // then
+        verify(listener).onStatusChanged(eq(new ServiceStatus(service, OK)), argThat(current -> current.status() == FAIL));
+        verifyNoMoreInteractions(listener);
+    }
+
     @Test
     void should_update() {
         // given
         ServiceStatus status = new ServiceStatus(service, OK);
         statusMap.put(service.uri(), status);
+        ProbeResult probe = new ProbeResult(service.uri(), Instant.ofEpochMilli(1000L), FAIL, 1_000_000L, 503);
 
         // when
-        store.update(service.uri(), new ServiceStatus(service, FAIL));
+        store.update(service.uri(), new ServiceStatus(service, FAIL, probe, null));
 
         // then
-        assertThat(statusMap).containsEntry(service.uri(), new ServiceStatus(service, FAIL));
+        assertThat(statusMap).containsEntry(service.uri(), new ServiceStatus(service, FAIL, probe, Instant.ofEpochMilli(1000L)));
     }
 
-}
\ No newline at end of file
+    @Test
+    void should_keep_last_changed_while_the_status_holds() {
+        // given
+        ProbeResult first = new ProbeResult(service.uri(), Instant.ofEpochMilli(1000L), FAIL, 1_000_000L, 503);
+        ProbeResult second = new ProbeResult(service.uri(), Instant.ofEpochMilli(2000L), FAIL, 3_000_000L, 500);
+        statusMap.put(service.uri(), new ServiceStatus(service, OK));
+        long initial = store.version();
+
+        // when
+        store.update(service.uri(), new ServiceStatus(service, FAIL, first, null));
+        store.update(service.uri(), new ServiceStatus(service, FAIL, second, null));
+
+        // then
+        assertThat(statusMap).containsEntry(service.uri(), new ServiceStatus(service, FAIL, second, Instant.ofEpochMilli(1000L)));
+    }
+
+    @Test
+    void should_keep_version_when_a_new_probe_leaves_the_status_unchanged() {
+        // given
+        ProbeResult first = new ProbeResult(service.uri(), Instant.ofEpochMilli(1000L), OK, 1_000_000L, 200);
+        ProbeResult second = new ProbeResult(service.uri(), Instant.ofEpochMilli(2000L), OK, 3_000_000L, 204);
+        statusMap.put(service.uri(), new ServiceStatus(service, UNKNOWN));
+        store.update(service.uri(), new ServiceStatus(service, OK, first, null));
+        long version = store.version();
+
+        // when
+        store.update(service.uri(), new ServiceStatus(service, OK, second, null));
+
+        // then
+        assertThat(store.version()).isEqualTo(version);
+        assertThat(store.changesSince(version).updated()).isEmpty();
+        assertThat(statusMap.get(service.uri()).probe()).contains(second);
+    }
+
+    @Test
+    void should_record_probes_that_confirm_the_status_in_place() {
+        // given
+        ColumnarStatusMap columnar = new ColumnarStatusMap();
+        ServiceStatusStore store = new ServiceStatusStore(repository, columnar);
+        ProbeResult first = new ProbeResult(service.uri(), Instant.ofEpochMilli(1000L), FAIL, 1_000_000L, 503);
+        ProbeResult second = new ProbeResult(service.uri(), Instant.ofEpochMilli(2000L), FAIL, 3_000_000L, 500);
+        columnar.put(service.uri(), new ServiceStatus(service, OK));
+        store.update(service.uri(), new ServiceStatus(service, FAIL, first, null));
+        long version = store.version();
+
+        // when
+        store.update(service.uri(), new ServiceStatus(service, FAIL, second, null));
+
+        // then
+        assertThat(columnar.get(service.uri())).isEqualTo(new ServiceStatus(service, FAIL, second, Instant.ofEpochMilli(1000L)));
+        assertThat(store.version()).isEqualTo(version);
+    }
+
+    static Answer<Future<Void>> streaming(Collection<Service> services) {
+        return invocation -> {
+            Handler<Service> handler = invocation.getArgument(0);
+            services.forEach(handler::handle);
+            return succeededFuture();
+        };
+    }
+}
@@ -1,6 +1,11 @@
 package se.kry.codetest.services;
 
 import org.junit.jupiter.api.Test;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+
+import java.net.URI;
+import java.time.Instant;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -23,6 +28,22 @@ class ServiceStatusTest {
         assertThat(status.status()).isEqualTo(OK);
     }
 
+    @Test
+    void should_carry_the_probe_it_comes_from() {
+        // given
+        Service service = mock(Service.class);
+        ProbeResult probe = new ProbeResult(URI.create("https://www.kry.se"), Instant.ofEpochMilli(1000L), FAIL, 2_000_000L, 503);
+
+        // when
+        ServiceStatus status = new ServiceStatus(service, FAIL, probe, Instant.ofEpochMilli(500L));
+
+        // then
+        assertThat(status.probe()).contains(probe);
+        assertThat(status.probe().flatMap(ProbeResult::failure)).contains(FailureClass.HTTP_ERROR);
+        assertThat(status.lastChanged()).contains(Instant.ofEpochMilli(500L));
+        assertThat(new ServiceStatus(service, UNKNOWN).probe()).isEmpty();
+    }
+
     @Test
     void should_throw_exception_on_invalid_parameters() {
         assertThatThrownBy(() -> new ServiceStatus(null, FAIL))
@@ -3,6 +3,7 @@ package se.kry.codetest.services;
 import org.junit.jupiter.api.Test;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 
 import static java.time.Instant.now;
@@ -36,6 +37,42 @@ class ServiceTest {
         assertThat(new Service(uri, null, now()).name()).isEmpty();
     }
 
+    @Test
+    void should_default_poll_interval() {
+        // given
+        URI uri = URI.create("http://service");
+
+        // when / then
+        assertThat(new Service(uri, null, now()).pollInterval()).isEqualTo(Service.DEFAULT_POLL_INTERVAL);
+        assertThat(new Service(uri, null, now(), Duration.ofSeconds(5)).pollInterval()).isEqualTo(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void should_default_to_GET_probes() {
+        // given
+        URI uri = URI.create("http://service");
+
+        // when
+        Service service = new Service(uri, null, now());
+
+        // then
+        assertThat(service.probeType()).isEqualTo(ProbeType.GET);
+        assertThat(service.expect()).isEmpty();
+    }
+
+    @Test
+    void should_create_body_probed_service() {
+        // given
+        URI uri = URI.create("http://service");
+
+        // when
+        Service service = new Service(uri, null, now(), Duration.ofMinutes(5), ProbeType.BODY, "status\\W+up");
+
+        // then
+        assertThat(service.probeType()).isEqualTo(ProbeType.BODY);
+        assertThat(service.expect().get().matcher("{\"status\": \"up\"}").find()).isTrue();
+    }
+
     @Test
     void should_throw_exception_on_invalid_parameters() {
         assertThatThrownBy(() -> new Service(null, "name", now()))
@@ -50,6 +87,20 @@ class ServiceTest {
         assertThatThrownBy(() -> new Service(URI.create("http://service"), "some name", null))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessage("Created at must be non-null");
+        assertThatThrownBy(() -> new Service(URI.create("http://service"), "some name", now(), Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Poll interval must be positive");
+        assertThatThrownBy(() -> new Service(URI.create("http://service"), "some name", now(), Duration.ofMinutes(1), null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Probe type must be non-null");
+        assertThatThrownBy(() -> new Service(URI.create("http://service"), "some name", now(), Duration.ofMinutes(1), ProbeType.BODY, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Expect must be given for body probes only");
+        assertThatThrownBy(() -> new Service(URI.create("http://service"), "some name", now(), Duration.ofMinutes(1), ProbeType.HEAD, "ok"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Expect must be given for body probes only");
+        assertThatThrownBy(() -> new Service(URI.create("http://service"), "some name", now(), Duration.ofMinutes(1), ProbeType.BODY, "(unclosed"))
+                .isInstanceOf(IllegalArgumentException.class);
     }
 
     @Test
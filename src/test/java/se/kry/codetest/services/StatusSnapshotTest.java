@@ -0,0 +1,91 @@
+package se.kry.codetest.services;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+import static se.kry.codetest.Status.*;
+
+@ExtendWith(VertxExtension.class)
+class StatusSnapshotTest {
+
+    private Service plain = new Service(URI.create("http://service-1.com"), null, Instant.ofEpochMilli(1234L));
+    private Service body = new Service(URI.create("http://service-2.com"), "body", Instant.ofEpochMilli(5678L),
+            Duration.ofMinutes(5), ProbeType.BODY, "heal+thy");
+
+    private ServiceStatus unknown = new ServiceStatus(plain, UNKNOWN);
+    private ServiceStatus failing = new ServiceStatus(
+            body,
+            OK,
+            new ProbeResult(body.uri(), Instant.ofEpochSecond(100, 42), FAIL, 2_000_000_000L, 503, FailureClass.HTTP_ERROR),
+            Instant.ofEpochSecond(10, 7)
+    );
+
+    @Test
+    void should_decode_what_it_encoded() {
+        // when
+        Buffer encoded = StatusSnapshot.encode(list(unknown, failing));
+
+        // then
+        assertThat(StatusSnapshot.decode(encoded))
+                .hasSize(2)
+                .containsEntry(plain.uri(), unknown)
+                .containsEntry(body.uri(), failing);
+    }
+
+    @Test
+    void should_ignore_another_format() {
+        // given
+        Buffer encoded = StatusSnapshot.encode(list(unknown));
+        encoded.setInt(0, 99);
+
+        // then
+        assertThat(StatusSnapshot.decode(encoded)).isEmpty();
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_load_what_it_saved(Vertx vertx, VertxTestContext testContext) throws IOException {
+        // given
+        Path directory = Files.createTempDirectory("snapshot");
+        StatusSnapshot snapshot = new StatusSnapshot(vertx, directory.resolve("statuses").toString());
+
+        // when
+        snapshot.save(list(unknown, failing))
+                .compose(saved -> snapshot.load())
+                .setHandler(testContext.succeeding(loaded -> testContext.verify(() -> {
+                    // then
+                    assertThat(loaded).containsOnlyKeys(plain.uri(), body.uri());
+                    assertThat(directory.resolve("statuses.tmp")).doesNotExist();
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_load_nothing_without_a_snapshot(Vertx vertx, VertxTestContext testContext) throws IOException {
+        Path directory = Files.createTempDirectory("snapshot");
+        new StatusSnapshot(vertx, directory.resolve("missing").toString())
+                .load()
+                .setHandler(testContext.succeeding(loaded -> testContext.verify(() -> {
+                    assertThat(loaded).isEmpty();
+                    testContext.completeNow();
+                })));
+    }
+}
@@ -0,0 +1,61 @@
+package se.kry.codetest.stream;
+
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.services.Service;
+import se.kry.codetest.services.ServiceStatus;
+
+import java.net.URI;
+import java.time.Instant;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static se.kry.codetest.Status.FAIL;
+import static se.kry.codetest.Status.OK;
+
+class StatusEventPublisherTest {
+
+    private EventBus eventBus = mock(EventBus.class);
+    private StatusEventPublisher publisher = new StatusEventPublisher(eventBus);
+
+    private Service service = new Service(URI.create("https://www.kry.se"), "kry", Instant.parse("2020-04-04T19:40:01.084884Z"));
+
+    @Test
+    void should_publish_status_transitions() {
+        // when
+        publisher.onStatusChanged(new ServiceStatus(service, OK), new ServiceStatus(service, FAIL));
+
+        // then
+        verify(eventBus).publish(StatusEventPublisher.ADDRESS, new JsonObject()
+                .put("type", "status")
+                .put("service", new JsonObject()
+                        .put("url", "https://www.kry.se")
+                        .put("created_at", "2020-04-04T19:40:01.084884Z")
+                        .put("poll_interval", 60L)
+                        .put("probe_type", "GET")
+                        .put("status", FAIL)
+                        .put("name", "kry")));
+    }
+
+    @Test
+    void should_publish_added_and_removed_services() {
+        // when
+        publisher.onAdded(service);
+        publisher.onRemoved(service);
+
+        // then
+        verify(eventBus).publish(StatusEventPublisher.ADDRESS, new JsonObject()
+                .put("type", "added")
+                .put("service", new JsonObject()
+                        .put("url", "https://www.kry.se")
+                        .put("created_at", "2020-04-04T19:40:01.084884Z")
+                        .put("poll_interval", 60L)
+                        .put("probe_type", "GET")
+                        .put("status", "UNKNOWN")
+                        .put("name", "kry")));
+        verify(eventBus).publish(StatusEventPublisher.ADDRESS, new JsonObject()
+                .put("type", "removed")
+                .put("service", new JsonObject().put("url", "https://www.kry.se")));
+    }
+}
@@ -0,0 +1,78 @@
+package se.kry.codetest.stream;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StatusStreamTest {
+
+    private Vertx vertx = Vertx.vertx();
+    private StatusStream stream = new StatusStream(vertx, 1024, 60_000);
+
+    @AfterEach
+    void close_vertx() {
+        vertx.close();
+    }
+
+    @Test
+    void should_send_events_to_subscribers() {
+        // given
+        HttpServerResponse response = subscribe();
+
+        // when
+        stream.publish(new JsonObject().put("type", "status").put("service", new JsonObject().put("url", "https://www.kry.se")));
+
+        // then
+        verify(response).write(Buffer.buffer("event: status\ndata: {\"url\":\"https://www.kry.se\"}\n\n"));
+    }
+
+    @Test
+    void should_evict_slow_subscribers() {
+        // given
+        HttpServerResponse fast = subscribe();
+        HttpServerResponse slow = subscribe();
+        when(slow.writeQueueFull()).thenReturn(true);
+
+        // when
+        stream.publish(new JsonObject().put("type", "status").put("service", new JsonObject()));
+
+        // then
+        verify(slow).close();
+        verify(slow, never()).write(any(Buffer.class));
+        verify(fast).write(any(Buffer.class));
+        assertThat(stream.subscribers()).isEqualTo(1);
+        assertThat(stream.evicted()).isEqualTo(1);
+    }
+
+    @Test
+    void should_forget_closed_subscribers() {
+        // given
+        HttpServerResponse response = subscribe();
+        when(response.closed()).thenReturn(true);
+
+        // when
+        stream.publish(new JsonObject().put("type", "status").put("service", new JsonObject()));
+
+        // then
+        verify(response, never()).write(any(Buffer.class));
+        assertThat(stream.subscribers()).isZero();
+    }
+
+    private HttpServerResponse subscribe() {
+        RoutingContext req = mock(RoutingContext.class);
+        HttpServerResponse response = mock(HttpServerResponse.class, RETURNS_SELF);
+        when(req.response()).thenReturn(response);
+        when(response.closed()).thenReturn(false);
+        when(response.writeQueueFull()).thenReturn(false);
+        stream.subscribe(req);
+        return response;
+    }
+}
@@ -0,0 +1,85 @@
+package se.kry.codetest.uptime;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.stream.LongStream.rangeClosed;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencySketchTest {
+
+    @Test
+    void should_keep_small_values_exact() {
+        // given
+        LatencySketch sketch = new LatencySketch();
+        sketch.record(3);
+        sketch.record(7);
+        sketch.record(3);
+        long[] histogram = new long[LatencySketch.BUCKETS];
+
+        // when
+        sketch.addTo(histogram);
+
+        // then
+        assertThat(histogram[3]).isEqualTo(2);
+        assertThat(histogram[7]).isEqualTo(1);
+        assertThat(LatencySketch.quantile(histogram, 3, 0.5)).isEqualTo(3);
+        assertThat(LatencySketch.quantile(histogram, 3, 0.99)).isEqualTo(7);
+    }
+
+    @Test
+    void should_estimate_quantiles_within_the_bucket_precision() {
+        // given
+        LatencySketch sketch = new LatencySketch();
+        rangeClosed(1, 10_000).forEach(micros -> sketch.record(micros * 100));
+        long[] histogram = new long[LatencySketch.BUCKETS];
+
+        // when
+        sketch.addTo(histogram);
+
+        // then
+        assertThat((double) LatencySketch.quantile(histogram, 10_000, 0.50)).isCloseTo(500_000, within(500_000 / 16.0));
+        assertThat((double) LatencySketch.quantile(histogram, 10_000, 0.95)).isCloseTo(950_000, within(950_000 / 16.0));
+        assertThat((double) LatencySketch.quantile(histogram, 10_000, 0.99)).isCloseTo(990_000, within(990_000 / 16.0));
+    }
+
+    @Test
+    void should_merge_by_adding_counts() {
+        // given
+        LatencySketch fast = new LatencySketch();
+        LatencySketch slow = new LatencySketch();
+        rangeClosed(1, 90).forEach(i -> fast.record(1_000));
+        rangeClosed(1, 10).forEach(i -> slow.record(1_000_000));
+        long[] histogram = new long[LatencySketch.BUCKETS];
+
+        // when
+        fast.addTo(histogram);
+        slow.addTo(histogram);
+
+        // then
+        assertThat((double) LatencySketch.quantile(histogram, 100, 0.50)).isCloseTo(1_000, within(1_000 / 16.0));
+        assertThat((double) LatencySketch.quantile(histogram, 100, 0.95)).isCloseTo(1_000_000, within(1_000_000 / 16.0));
+    }
+
+    @Test
+    void should_clamp_values_out_of_range() {
+        assertThat(LatencySketch.index(-5)).isEqualTo(0);
+        assertThat(LatencySketch.index(Long.MAX_VALUE)).isEqualTo(LatencySketch.BUCKETS - 1);
+        assertThat(LatencySketch.BUCKETS).isLessThanOrEqualTo(256);
+    }
+
+    @Test
+    void should_forget_everything_once_cleared() {
+        // given
+        LatencySketch sketch = new LatencySketch();
+        sketch.record(1_000);
+        long[] histogram = new long[LatencySketch.BUCKETS];
+
+        // when
+        sketch.clear();
+        sketch.addTo(histogram);
+
+        // then
+        assertThat(histogram).containsOnly(0);
+    }
+}
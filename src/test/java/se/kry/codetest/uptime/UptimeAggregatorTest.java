@@ -0,0 +1,116 @@
+package se.kry.codetest.uptime;
+
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static se.kry.codetest.Status.FAIL;
+import static se.kry.codetest.Status.OK;
+
+class UptimeAggregatorTest {
+
+    private static final URI SERVICE = URI.create("https://www.kry.se");
+    private static final Instant NOW = Instant.parse("2020-04-04T10:30:00Z");
+
+    private UptimeAggregator aggregator = new UptimeAggregator();
+
+    @Test
+    void should_count_probes_in_every_window() {
+        // given
+        for (int i = 0; i < 60; i++) {
+            boolean ok = i % 10 != 0;
+            aggregator.onProbe(probe(NOW.minusSeconds(60L * i), ok, 20));
+        }
+
+        // when
+        Map<UptimeWindow, Uptime> uptime = aggregator.uptime(SERVICE, NOW.toEpochMilli());
+
+        // then
+        assertThat(uptime.get(UptimeWindow.HOUR).probes()).isEqualTo(60);
+        assertThat(uptime.get(UptimeWindow.HOUR).ratio()).isEqualTo(0.9);
+        assertThat(uptime.get(UptimeWindow.DAY).probes()).isEqualTo(60);
+        assertThat(uptime.get(UptimeWindow.WEEK).ok()).isEqualTo(54);
+        assertThat(uptime.get(UptimeWindow.MONTH).ok()).isEqualTo(54);
+    }
+
+    @Test
+    void should_leave_probes_older_than_the_window_out() {
+        // given
+        aggregator.onProbe(probe(NOW, true, 20));
+        aggregator.onProbe(probe(NOW.minusMillis(HOURS.toMillis(2)), false, 20));
+        aggregator.onProbe(probe(NOW.minusMillis(DAYS.toMillis(2)), false, 20));
+        aggregator.onProbe(probe(NOW.minusMillis(DAYS.toMillis(10)), false, 20));
+
+        // when
+        Map<UptimeWindow, Uptime> uptime = aggregator.uptime(SERVICE, NOW.toEpochMilli());
+
+        // then
+        assertThat(uptime.get(UptimeWindow.HOUR).probes()).isEqualTo(1);
+        assertThat(uptime.get(UptimeWindow.DAY).probes()).isEqualTo(2);
+        assertThat(uptime.get(UptimeWindow.WEEK).probes()).isEqualTo(3);
+        assertThat(uptime.get(UptimeWindow.MONTH).probes()).isEqualTo(4);
+    }
+
+    @Test
+    void should_reuse_buckets_once_the_ring_wraps() {
+        // given
+        aggregator.onProbe(probe(NOW.minusMillis(MINUTES.toMillis(60)), false, 20));
+        aggregator.onProbe(probe(NOW, true, 20));
+
+        // when
+        Uptime hour = aggregator.uptime(SERVICE, UptimeWindow.HOUR, NOW.toEpochMilli());
+
+        // then
+        assertThat(hour.probes()).isEqualTo(1);
+        assertThat(hour.ok()).isEqualTo(1);
+    }
+
+    @Test
+    void should_compute_latency_percentiles_of_responses_only() {
+        // given
+        for (int i = 0; i < 100; i++) {
+            aggregator.onProbe(probe(NOW.minusSeconds(i), true, i < 95 ? 10 : 500));
+        }
+        // timed out, no response to measure
+        aggregator.onProbe(new ProbeResult(SERVICE, NOW, FAIL, MILLISECONDS.toNanos(2000), ProbeResult.NO_STATUS_CODE));
+
+        // when
+        Uptime hour = aggregator.uptime(SERVICE, UptimeWindow.HOUR, NOW.toEpochMilli());
+
+        // then
+        assertThat(hour.probes()).isEqualTo(101);
+        assertThat((double) hour.p50Micros()).isCloseTo(10_000, within(10_000 / 16.0));
+        assertThat((double) hour.p95Micros()).isCloseTo(10_000, within(10_000 / 16.0));
+        assertThat((double) hour.p99Micros()).isCloseTo(500_000, within(500_000 / 16.0));
+    }
+
+    @Test
+    void should_report_nothing_for_unknown_and_removed_services() {
+        // given
+        aggregator.onProbe(probe(NOW, true, 20));
+        aggregator.onRemoved(new Service(SERVICE, null, NOW));
+
+        // when
+        Uptime hour = aggregator.uptime(SERVICE, UptimeWindow.HOUR, NOW.toEpochMilli());
+        Uptime unknown = aggregator.uptime(URI.create("https://www.kry-2.se"), UptimeWindow.HOUR, NOW.toEpochMilli());
+
+        // then
+        assertThat(hour.probes()).isZero();
+        assertThat(hour.ratio()).isNaN();
+        assertThat(unknown).isEqualTo(new Uptime(UptimeWindow.HOUR, 0, 0, 0, 0, 0));
+    }
+
+    private static ProbeResult probe(Instant timestamp, boolean ok, long latencyMillis) {
+        return new ProbeResult(SERVICE, timestamp, ok ? OK : FAIL, MILLISECONDS.toNanos(latencyMillis), ok ? 200 : 503);
+    }
+}
@@ -0,0 +1,137 @@
+package se.kry.codetest.vantage;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.probe.ProbeStrategy;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.vertx.core.Future.succeededFuture;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+
+/**
+ * Agents on the same local event bus as the probe, standing in for vantages anywhere.
+ */
+@ExtendWith(VertxExtension.class)
+class QuorumProbeTest {
+
+    private static final long FLUSH_MILLIS = 20;
+
+    private URI uri = URI.create("https://www.kry.se");
+    private Instant now = Instant.ofEpochMilli(1234L);
+
+    @Test
+    void should_fail_when_a_majority_fails() {
+        // when
+        ProbeResult result = QuorumProbe.decide(uri, now, list(
+                ok(1), fail(2, FailureClass.READ_TIMEOUT), fail(3, FailureClass.READ_TIMEOUT)
+        ), 3);
+
+        // then
+        assertThat(result.status()).isEqualTo(Status.FAIL);
+        assertThat(result.failure()).contains(FailureClass.READ_TIMEOUT);
+    }
+
+    @Test
+    void should_stay_up_when_only_a_minority_fails() {
+        // when
+        ProbeResult result = QuorumProbe.decide(uri, now, list(
+                ok(1), ok(3), ok(5), fail(2, FailureClass.CONNECTION_REFUSED)
+        ), 4);
+
+        // then
+        assertThat(result.status()).isEqualTo(Status.OK);
+        assertThat(result.latencyNanos()).isEqualTo(3);
+    }
+
+    @Test
+    void should_fail_without_quorum_when_no_vantage_got_through() {
+        // when
+        ProbeResult result = QuorumProbe.decide(uri, now, list(fail(2, FailureClass.CONNECTION_REFUSED)), 3);
+
+        // then
+        assertThat(result.status()).isEqualTo(Status.FAIL);
+        assertThat(result.failure()).contains(FailureClass.NO_QUORUM);
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_settle_on_what_the_majority_of_agents_see(Vertx vertx, VertxTestContext testContext) {
+        // given
+        List<Service> services = range(0, 100)
+                .mapToObj(i -> new Service(URI.create("https://service-" + i + ".kry.se"), null, now))
+                .collect(toList());
+        QuorumProbe probe = new QuorumProbe(vertx, list("a", "b", "c"), FLUSH_MILLIS, 32);
+        probe.start();
+        deploy(vertx, "a", Status.OK)
+                .compose(a -> deploy(vertx, "b", Status.FAIL))
+                .compose(b -> deploy(vertx, "c", Status.OK))
+                .setHandler(testContext.succeeding(deployed -> {
+                    // when
+                    @SuppressWarnings("rawtypes") // CompositeFuture.all takes a raw list
+                    List<Future> probed = services.stream().map(service -> probe.probe(service, 1000)).collect(toList());
+
+                    // then
+                    CompositeFuture.all(probed).setHandler(testContext.succeeding(all -> testContext.verify(() -> {
+                        for (int i = 0; i < services.size(); i++) {
+                            ProbeResult result = all.resultAt(i);
+                            assertThat(result.uri()).isEqualTo(services.get(i).uri());
+                            assertThat(result.status()).isEqualTo(Status.OK);
+                        }
+                        testContext.completeNow();
+                    })));
+                }));
+    }
+
+    @Test
+    @Timeout(value = 10, timeUnit = TimeUnit.SECONDS)
+    void should_not_wait_for_a_vantage_that_never_answers(Vertx vertx, VertxTestContext testContext) {
+        // given
+        QuorumProbe probe = new QuorumProbe(vertx, list("a", "b", "c"), FLUSH_MILLIS, 32);
+        probe.start();
+        deploy(vertx, "a", Status.FAIL)
+                .compose(a -> deploy(vertx, "b", Status.FAIL))
+                .setHandler(testContext.succeeding(deployed -> {
+                    // when
+                    probe.probe(new Service(uri, null, now), 100).setHandler(testContext.succeeding(result -> testContext.verify(() -> {
+                        // then
+                        assertThat(result.status()).isEqualTo(Status.FAIL);
+                        assertThat(result.failure()).contains(FailureClass.CONNECTION_REFUSED);
+                        testContext.completeNow();
+                    })));
+                }));
+    }
+
+    private Future<String> deploy(Vertx vertx, String vantage, Status status) {
+        ProbeStrategy probes = (service, timeout) -> succeededFuture(status == Status.OK
+                ? new ProbeResult(service.uri(), Instant.now(), Status.OK, 1_000_000L, 200)
+                : new ProbeResult(service.uri(), Instant.now(), Status.FAIL, 1_000_000L, ProbeResult.NO_STATUS_CODE, FailureClass.CONNECTION_REFUSED));
+        Future<String> deployed = Future.future();
+        vertx.deployVerticle(new ProbeAgent(vantage, agentVertx -> probes, FLUSH_MILLIS, 32), deployed);
+        return deployed;
+    }
+
+    private ProbeResult ok(long latencyNanos) {
+        return new ProbeResult(uri, now, Status.OK, latencyNanos, 200);
+    }
+
+    private ProbeResult fail(long latencyNanos, FailureClass failure) {
+        return new ProbeResult(uri, now, Status.FAIL, latencyNanos, ProbeResult.NO_STATUS_CODE, failure);
+    }
+}
@@ -0,0 +1,77 @@
+package se.kry.codetest.vantage;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.jupiter.api.Test;
+import se.kry.codetest.FailureClass;
+import se.kry.codetest.ProbeResult;
+import se.kry.codetest.Status;
+import se.kry.codetest.services.ProbeType;
+import se.kry.codetest.services.Service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.util.Lists.list;
+
+class VantageCodecTest {
+
+    @Test
+    void should_round_trip_requests() {
+        // given
+        Service service = new Service(URI.create("https://www.kry.se"), "kry", Instant.ofEpochMilli(1234L), Duration.ofSeconds(10), ProbeType.BODY, "ok");
+
+        // when
+        VantageCodec.Requests decoded = VantageCodec.decodeRequests(VantageCodec.encodeRequests(
+                "vantage.results.1",
+                list(new VantageCodec.Request(42L, service, 2000L))
+        ));
+
+        // then
+        assertThat(decoded.replyTo).isEqualTo("vantage.results.1");
+        assertThat(decoded.requests).hasSize(1);
+        VantageCodec.Request request = decoded.requests.get(0);
+        assertThat(request.id).isEqualTo(42L);
+        assertThat(request.timeout).isEqualTo(2000L);
+        // only what probing needs travels
+        assertThat(request.service.uri()).isEqualTo(URI.create("https://www.kry.se"));
+        assertThat(request.service.probeType()).isEqualTo(ProbeType.BODY);
+        assertThat(request.service.expect().get().pattern()).isEqualTo("ok");
+    }
+
+    @Test
+    void should_round_trip_results() {
+        // given
+        URI uri = URI.create("https://www.kry.se");
+        Instant now = Instant.ofEpochMilli(5678L);
+
+        // when
+        VantageCodec.Results decoded = VantageCodec.decodeResults(VantageCodec.encodeResults("eu-north", list(
+                VantageCodec.Result.of(1L, new ProbeResult(uri, now, Status.OK, 1_000_000L, 200)),
+                VantageCodec.Result.of(2L, new ProbeResult(uri, now, Status.FAIL, 3_000_000L, 0, FailureClass.READ_TIMEOUT))
+        )));
+
+        // then
+        assertThat(decoded.vantage).isEqualTo("eu-north");
+        assertThat(decoded.results).hasSize(2);
+        assertThat(decoded.results.get(0).id).isEqualTo(1L);
+        assertThat(decoded.results.get(0).probe(uri, now)).isEqualTo(new ProbeResult(uri, now, Status.OK, 1_000_000L, 200));
+        assertThat(decoded.results.get(1).id).isEqualTo(2L);
+        assertThat(decoded.results.get(1).probe(uri, now)).isEqualTo(new ProbeResult(uri, now, Status.FAIL, 3_000_000L, 0, FailureClass.READ_TIMEOUT));
+    }
+
+    @Test
+    void should_keep_results_compact() {
+        // given
+        URI uri = URI.create("https://www.kry.se");
+        ProbeResult ok = new ProbeResult(uri, Instant.now(), Status.OK, 1_000_000L, 200);
+
+        // when
+        Buffer encoded = VantageCodec.encodeResults("eu-north", list(VantageCodec.Result.of(1L, ok), VantageCodec.Result.of(2L, ok)));
+        Buffer one = VantageCodec.encodeResults("eu-north", list(VantageCodec.Result.of(1L, ok)));
+
+        // then
+        assertThat(encoded.length() - one.length()).isLessThanOrEqualTo(24);
+    }
+}
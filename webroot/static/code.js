@@ -1,14 +1,41 @@
 const listContainer = document.querySelector('#service-list');
-let servicesRequest = new Request('/service');
-fetch(servicesRequest)
-.then(function(response) { return response.json(); })
-.then(function(serviceList) {
-  serviceList.forEach(service => {
-    var li = document.createElement("li");
-    li.appendChild(document.createTextNode(service.name + ': ' + service.status));
+const items = new Map();
+
+function render(service) {
+  let li = items.get(service.url);
+  if (!li) {
+    li = document.createElement("li");
+    items.set(service.url, li);
     listContainer.appendChild(li);
+  }
+  li.textContent = (service.name || service.url) + ': ' + service.status;
+}
+
+function remove(service) {
+  const li = items.get(service.url);
+  if (li) {
+    li.remove();
+    items.delete(service.url);
+  }
+}
+
+function load() {
+  return fetch(new Request('/service'))
+  .then(function(response) { return response.json(); })
+  .then(function(serviceList) {
+    items.forEach(li => li.remove());
+    items.clear();
+    serviceList.forEach(render);
   });
-});
+}
+
+// the server pushes changes, so the list stays current without reloading
+const events = new EventSource('/service/events');
+events.addEventListener('added', evt => render(JSON.parse(evt.data)));
+events.addEventListener('status', evt => render(JSON.parse(evt.data)));
+events.addEventListener('removed', evt => remove(JSON.parse(evt.data)));
+// on (re)connect we may have missed events, start over from a full listing
+events.onopen = load;
 
 const saveButton = document.querySelector('#post-service');
 saveButton.onclick = evt => {
@@ -20,5 +47,5 @@ saveButton.onclick = evt => {
     'Content-Type': 'application/json'
     },
   body: JSON.stringify({url:urlName})
-}).then(res=> location.reload());
-}
\ No newline at end of file
+});
+}